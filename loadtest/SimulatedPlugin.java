@@ -0,0 +1,44 @@
+package com.minecraft.clanwars;
+
+import com.minecraft.clanwars.simulation.SimulatedDatabase;
+import org.bukkit.Server;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// The real plugin with its database swapped for SimulatedDatabase. It sits in the plugin's
+// package for the package-private constructor, so the plugin exposes nothing extra for it.
+// There is no plugin jar, an empty config.yml keeps Config at its built-in defaults and no
+// commands are registered without a plugin.yml.
+public class SimulatedPlugin extends ClanWarsPlugin {
+    private final SimulatedDatabase database;
+    
+    @SuppressWarnings("deprecation")
+    public SimulatedPlugin(Server server, File dataFolder) {
+        super(new JavaPluginLoader(server), new PluginDescriptionFile("ClanWars", "simulated", SimulatedPlugin.class.getName()),
+            dataFolder, new File(dataFolder, "ClanWars.jar"), plugin -> ((SimulatedPlugin) plugin).database);
+        this.database = new SimulatedDatabase(this);
+        
+        try {
+            dataFolder.mkdirs();
+            new File(dataFolder, "config.yml").createNewFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    public SimulatedDatabase getSimulatedDatabase() {
+        return database;
+    }
+    
+    public void enable() {
+        setEnabled(true);
+    }
+    
+    public void disable() {
+        setEnabled(false);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,350 @@
+package com.minecraft.clanwars.simulation;
+
+import com.minecraft.clanwars.SimulatedPlugin;
+import com.minecraft.clanwars.managers.BattleManager;
+import com.minecraft.clanwars.managers.MetricsManager;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.models.BattleEndReason;
+import com.minecraft.clanwars.models.BattleGameMode;
+import com.minecraft.clanwars.models.BattleRequest;
+import com.minecraft.clanwars.models.BattleStatus;
+import com.minecraft.clanwars.models.ClanRole;
+import com.minecraft.clanwars.utils.LatencyHistogram;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.*;
+
+// Headless load test: runs the real BattleManager and ClanManager against SimulatedServer
+// and SimulatedDatabase with synthetic clans and players, then prints per-phase latency
+// percentiles, main-thread allocation and DB calls per battle.
+//
+//   mvn -P loadtest verify -Dsim.battles=4 -Dsim.playersPerBattle=100
+public class BattleSimulator {
+    private static final UUID STAFF_UUID = UUID.nameUUIDFromBytes("clanwars-sim-staff".getBytes());
+    private static final int DRAIN_TICKS = 200;
+    private static final long MAX_COUNTDOWN_TICKS = 20L * 60 * 10;
+    
+    private final Profile profile;
+    private final SimulatedServer server;
+    private final SimulatedPlugin plugin;
+    private final World world;
+    private final Random random;
+    private final List<String[]> matchups; // clan 1 tag, clan 2 tag, clan 1 leader
+    private final Map<UUID, Long> rejoinAt; // churned player -> tick they come back
+    
+    private BattleSimulator(Profile profile) throws Exception {
+        this.profile = profile;
+        this.server = new SimulatedServer();
+        Bukkit.setServer(server.getServer());
+        this.world = server.createWorld("arena_world");
+        this.random = new Random(profile.seed);
+        this.matchups = new ArrayList<>();
+        this.rejoinAt = new HashMap<>();
+        
+        File dataFolder = Files.createTempDirectory("clanwars-sim").toFile();
+        this.plugin = new SimulatedPlugin(server.getServer(), dataFolder);
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Profile profile = Profile.parse(args);
+        BattleSimulator simulator = new BattleSimulator(profile);
+        simulator.seed();
+        simulator.run();
+    }
+    
+    // Clans, members and arenas the managers load on enable
+    private void seed() {
+        SimulatedDatabase database = plugin.getSimulatedDatabase();
+        int perClan = Math.max(1, profile.playersPerBattle / 2);
+        
+        for (int battle = 0; battle < profile.battles; battle++) {
+            String[] tags = {"A" + battle, "B" + battle};
+            UUID[] leaders = new UUID[2];
+            for (int side = 0; side < 2; side++) {
+                for (int member = 0; member < perClan; member++) {
+                    UUID uuid = UUID.nameUUIDFromBytes((tags[side] + ":" + member).getBytes());
+                    server.createPlayer(uuid, tags[side] + "_" + member, new Location(world, 0, 64, 0));
+                    if (member == 0) {
+                        leaders[side] = uuid;
+                    }
+                    
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("clan_tag", tags[side]);
+                    row.put("player_uuid", uuid.toString());
+                    row.put("role", (member == 0 ? ClanRole.LEADER : ClanRole.MEMBER).name());
+                    row.put("joined_time", 0L);
+                    database.seed("clan_members", row);
+                }
+                
+                Map<String, Object> clan = new LinkedHashMap<>();
+                clan.put("tag", tags[side]);
+                clan.put("name", "Clan " + tags[side]);
+                clan.put("leader_uuid", leaders[side].toString());
+                clan.put("rating", 1500);
+                clan.put("wins", 0);
+                clan.put("losses", 0);
+                clan.put("created_time", 0L);
+                database.seed("clans", clan);
+            }
+            matchups.add(new String[] {tags[0], tags[1], leaders[0].toString()});
+            
+            // One arena per concurrent battle, spread out so spawns never share chunks
+            int x = battle * 1000;
+            Map<String, Object> arena = new LinkedHashMap<>();
+            arena.put("id", "arena" + battle);
+            arena.put("name", "Arena " + battle);
+            arena.put("world", world.getName());
+            arena.put("game_modes", profile.gameMode);
+            arena.put("team1_x", x - 40.0);
+            arena.put("team1_y", 64.0);
+            arena.put("team1_z", 0.0);
+            arena.put("team2_x", x + 40.0);
+            arena.put("team2_y", 64.0);
+            arena.put("team2_z", 0.0);
+            arena.put("spectator_x", (double) x);
+            arena.put("spectator_y", 80.0);
+            arena.put("spectator_z", 0.0);
+            arena.put("enabled", true);
+            database.seed("arenas", arena);
+        }
+        
+        SimulatedServer.SimulatedPlayer staff = server.createPlayer(STAFF_UUID, "sim_staff", new Location(world, 0, 64, 0));
+        staff.grant("clanwars.staff");
+        staff.grant("clanwars.admin");
+    }
+    
+    private void run() {
+        plugin.enable();
+        if (!plugin.isEnabled()) {
+            throw new IllegalStateException("Plugin failed to enable in the simulator");
+        }
+        
+        for (UUID uuid : allPlayers()) {
+            server.getPlayer(uuid).join();
+        }
+        // No join events fire here, tell the staff cache directly
+        plugin.getStaffCache().update(server.getPlayer(STAFF_UUID).getPlayer());
+        
+        MetricsManager metrics = plugin.getMetricsManager();
+        LatencyHistogram tickTimes = metrics.timer("sim_tick");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long dbCallsBefore = metrics.counter("db_calls").sum();
+        long wallStart = System.nanoTime();
+        
+        BattleManager battleManager = plugin.getBattleManager();
+        List<Battle> running = new ArrayList<>();
+        for (String[] matchup : matchups) {
+            BattleRequest request = battleManager.createBattleRequest(matchup[0], matchup[1], UUID.fromString(matchup[2]),
+                profile.gameMode, System.currentTimeMillis());
+            if (request == null || !battleManager.approveBattleRequest(request.getId(), STAFF_UUID)) {
+                throw new IllegalStateException("Could not create battle " + matchup[0] + " vs " + matchup[1]);
+            }
+            Battle battle = battleManager.startBattle(request.getId());
+            if (battle == null) {
+                throw new IllegalStateException("Could not start battle " + matchup[0] + " vs " + matchup[1]);
+            }
+            running.add(battle);
+        }
+        
+        Map<Battle, Long> fightStarted = new HashMap<>();
+        long fightTicks = profile.fightSeconds * 20L;
+        long maxTicks = fightTicks + MAX_COUNTDOWN_TICKS;
+        double killChance = profile.killsPerMinute / 1200.0; // per battle per tick
+        double churnChance = profile.churnPerMinute / 1200.0;
+        
+        while (!running.isEmpty()) {
+            long start = System.nanoTime();
+            server.tick();
+            long tick = server.getCurrentTick();
+            if (tick > maxTicks) {
+                throw new IllegalStateException("Battles did not finish within " + maxTicks + " ticks");
+            }
+            rejoinChurnedPlayers(tick);
+            
+            Iterator<Battle> iterator = running.iterator();
+            while (iterator.hasNext()) {
+                Battle battle = iterator.next();
+                if (battle.getStatus() == BattleStatus.ENDED) {
+                    iterator.remove();
+                    continue;
+                }
+                if (battle.getStatus() != BattleStatus.ACTIVE) {
+                    continue; // Still counting down
+                }
+                
+                long startedAt = fightStarted.computeIfAbsent(battle, b -> tick);
+                List<UUID> fighters = onlineParticipants(battle);
+                for (UUID uuid : fighters) {
+                    server.getPlayer(uuid).move(random);
+                }
+                for (double chance = killChance; chance > 0; chance--) {
+                    if (random.nextDouble() < chance) {
+                        simulateKill(battleManager, battle, fighters);
+                    }
+                }
+                if (!fighters.isEmpty() && random.nextDouble() < churnChance) {
+                    UUID leaving = fighters.get(random.nextInt(fighters.size()));
+                    server.getPlayer(leaving).quit();
+                    rejoinAt.put(leaving, tick + profile.offlineSeconds * 20L);
+                }
+                if (tick - startedAt >= fightTicks) {
+                    battleManager.endBattle(battle, BattleEndReason.TIME_EXPIRED);
+                }
+            }
+            tickTimes.record(System.nanoTime() - start);
+        }
+        
+        // Let deferred teleports, rewards and saves finish
+        for (int i = 0; i < DRAIN_TICKS; i++) {
+            long start = System.nanoTime();
+            server.tick();
+            tickTimes.record(System.nanoTime() - start);
+        }
+        
+        long wallNanos = System.nanoTime() - wallStart;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long dbCalls = metrics.counter("db_calls").sum() - dbCallsBefore;
+        plugin.disable();
+        server.shutdown();
+        
+        report(metrics, wallNanos, allocated, dbCalls);
+    }
+    
+    private void simulateKill(BattleManager battleManager, Battle battle, List<UUID> fighters) {
+        if (fighters.size() < 2) {
+            return;
+        }
+        UUID killer = fighters.get(random.nextInt(fighters.size()));
+        String killerClan = battle.getPlayerClanTag(killer);
+        for (int attempt = 0; attempt < 8; attempt++) {
+            UUID victim = fighters.get(random.nextInt(fighters.size()));
+            if (!victim.equals(killer) && !Objects.equals(battle.getPlayerClanTag(victim), killerClan)) {
+                battleManager.recordKill(server.getPlayer(killer).getPlayer(), server.getPlayer(victim).getPlayer());
+                return;
+            }
+        }
+    }
+    
+    private void rejoinChurnedPlayers(long tick) {
+        Iterator<Map.Entry<UUID, Long>> iterator = rejoinAt.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Long> entry = iterator.next();
+            if (entry.getValue() <= tick) {
+                server.getPlayer(entry.getKey()).join();
+                iterator.remove();
+            }
+        }
+    }
+    
+    private List<UUID> onlineParticipants(Battle battle) {
+        List<UUID> online = new ArrayList<>();
+        for (UUID uuid : battle.getParticipants()) {
+            SimulatedServer.SimulatedPlayer player = server.getPlayer(uuid);
+            if (player != null && player.isOnline()) {
+                online.add(uuid);
+            }
+        }
+        return online;
+    }
+    
+    private List<UUID> allPlayers() {
+        List<UUID> players = new ArrayList<>();
+        int perClan = Math.max(1, profile.playersPerBattle / 2);
+        for (String[] matchup : matchups) {
+            for (int side = 0; side < 2; side++) {
+                for (int member = 0; member < perClan; member++) {
+                    players.add(UUID.nameUUIDFromBytes((matchup[side] + ":" + member).getBytes()));
+                }
+            }
+        }
+        players.add(STAFF_UUID);
+        return players;
+    }
+    
+    private void report(MetricsManager metrics, long wallNanos, long allocated, long dbCalls) {
+        long ticks = server.getCurrentTick();
+        double wallSeconds = wallNanos / 1e9;
+        
+        System.out.println("=== ClanWars load test ===");
+        System.out.printf(Locale.ROOT, "profile: %d battles, %d players each, %.1f kills/min, %.1f quits/min, %ds fights, %s%n",
+            profile.battles, profile.playersPerBattle, profile.killsPerMinute, profile.churnPerMinute, profile.fightSeconds, profile.gameMode);
+        System.out.printf(Locale.ROOT, "simulated %d ticks (%.1f game minutes) in %.2fs%n", ticks, ticks / 1200.0, wallSeconds);
+        System.out.println();
+        
+        System.out.printf(Locale.ROOT, "%-32s %10s %10s %10s %10s %10s%n", "phase", "count", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.getTimers().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-32s %10d %10.3f %10.3f %10.3f %10.3f%n", entry.getKey(), histogram.getCount(),
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(90) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6, histogram.getMax() / 1e6);
+        }
+        System.out.println();
+        
+        System.out.printf(Locale.ROOT, "main thread allocation: %.1f MB total, %.1f MB/s, %.1f KB/tick%n",
+            allocated / 1e6, allocated / 1e6 / wallSeconds, allocated / 1e3 / Math.max(1, ticks));
+        System.out.printf(Locale.ROOT, "database calls: %d total, %.1f per battle%n", dbCalls, (double) dbCalls / profile.battles);
+        System.out.printf(Locale.ROOT, "chat messages: %d total, %.1f per player%n",
+            server.getMessagesSent(), (double) server.getMessagesSent() / Math.max(1, profile.battles * profile.playersPerBattle));
+    }
+    
+    private static class Profile {
+        private int battles = 2;
+        private int playersPerBattle = 100;
+        private double killsPerMinute = 60;
+        private double churnPerMinute = 2;
+        private int offlineSeconds = 20;
+        private int fightSeconds = 300;
+        private String gameMode = BattleGameMode.TEAM_DEATHMATCH.name();
+        private long seed = 42;
+        
+        // Arguments look like --battles=4
+        static Profile parse(String[] args) {
+            Profile profile = new Profile();
+            for (String arg : args) {
+                String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+                if (parts.length != 2 || parts[1].isEmpty()) {
+                    continue;
+                }
+                switch (parts[0]) {
+                    case "battles":
+                        profile.battles = Integer.parseInt(parts[1]);
+                        break;
+                    case "playersPerBattle":
+                        profile.playersPerBattle = Integer.parseInt(parts[1]);
+                        break;
+                    case "killsPerMinute":
+                        profile.killsPerMinute = Double.parseDouble(parts[1]);
+                        break;
+                    case "churnPerMinute":
+                        profile.churnPerMinute = Double.parseDouble(parts[1]);
+                        break;
+                    case "offlineSeconds":
+                        profile.offlineSeconds = Integer.parseInt(parts[1]);
+                        break;
+                    case "fightSeconds":
+                        profile.fightSeconds = Integer.parseInt(parts[1]);
+                        break;
+                    case "gameMode":
+                        profile.gameMode = parts[1];
+                        break;
+                    case "seed":
+                        profile.seed = Long.parseLong(parts[1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown simulation option: " + parts[0]);
+                }
+            }
+            return profile;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+package com.minecraft.clanwars.simulation;
+
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.models.BattleGameMode;
+import com.minecraft.clanwars.models.Clan;
+import com.minecraft.clanwars.models.ClanMember;
+import com.minecraft.clanwars.models.ClanRole;
+import com.minecraft.clanwars.models.MemberRoster;
+import com.minecraft.clanwars.utils.ClanTags;
+
+import java.util.*;
+
+// Retained heap of the model objects the plugin keeps per clan and per battle: Clan with its
+// ClanMembers as ClanManager builds them, the member roster of a clan reload or profile, and
+// Battle with its participants as the journal and the reward ledger rebuild them. Each is built
+// twice, once with a fresh String per column the way a row-by-row load without interning ends up,
+// once with canonical tags, game-mode names and role enum names. Measured from the heap after
+// full collections, not with JOL, which is not a dependency of this build, so it gives totals
+// and no per-object layouts. The models still hold roles and game modes as Strings and Battle
+// its participants as a Map<UUID, String>. Clan, ClanMember and Battle are not in this source
+// tree, so they were not converted to enums. Run it with a fixed heap, e.g. -Xms2g -Xmx2g:
+//   --clans=100000 --members=20 --battles=100000 --playersPerBattle=20 --seed=1
+public class FootprintBenchmark {
+    private static final String[] ROLE_NAMES = {"LEADER", "OFFICER", "MEMBER"};
+    
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+            if (parts.length == 2) {
+                options.put(parts[0], parts[1]);
+            }
+        }
+        int clanCount = Integer.parseInt(options.getOrDefault("clans", "100000"));
+        int memberCount = Integer.parseInt(options.getOrDefault("members", "20"));
+        int battleCount = Integer.parseInt(options.getOrDefault("battles", "100000"));
+        int playersPerBattle = Integer.parseInt(options.getOrDefault("playersPerBattle", "20"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        
+        long baseline = usedHeap();
+        List<Clan> clansBefore = loadClans(clanCount, memberCount, seed, false);
+        long clanBytesBefore = usedHeap() - baseline;
+        
+        baseline = usedHeap();
+        List<Clan> clansAfter = loadClans(clanCount, memberCount, seed, true);
+        long clanBytesAfter = usedHeap() - baseline;
+        
+        baseline = usedHeap();
+        List<Map<UUID, String>> rostersBefore = loadRosterMaps(clanCount, memberCount, seed);
+        long rosterBytesBefore = usedHeap() - baseline;
+        
+        baseline = usedHeap();
+        List<MemberRoster> rostersAfter = loadRosters(clanCount, memberCount, seed);
+        long rosterBytesAfter = usedHeap() - baseline;
+        
+        baseline = usedHeap();
+        List<Battle> battlesBefore = loadBattles(battleCount, playersPerBattle, clanCount, seed, false);
+        long battleBytesBefore = usedHeap() - baseline;
+        
+        baseline = usedHeap();
+        List<Battle> battlesAfter = loadBattles(battleCount, playersPerBattle, clanCount, seed, true);
+        long battleBytesAfter = usedHeap() - baseline;
+        
+        System.out.println("Footprint, " + clanCount + " clans of " + memberCount + " members, " + battleCount + " battles of " +
+            playersPerBattle + " players");
+        System.out.printf("  Clan:       %8.1f bytes as rows, %8.1f bytes canonical%n",
+            (double) clanBytesBefore / clanCount, (double) clanBytesAfter / clanCount);
+        System.out.printf("  roster:     %8.1f bytes as a map, %8.1f bytes as MemberRoster%n",
+            (double) rosterBytesBefore / clanCount, (double) rosterBytesAfter / clanCount);
+        System.out.printf("  Battle:     %8.1f bytes as rows, %8.1f bytes canonical%n",
+            (double) battleBytesBefore / battleCount, (double) battleBytesAfter / battleCount);
+        System.out.println("  (kept " + (clansBefore.size() + clansAfter.size() + rostersBefore.size() + rostersAfter.size()
+            + battlesBefore.size() + battlesAfter.size()) + " objects)");
+    }
+    
+    // Clans and members the way ClanManager creates them from clans and clan_members rows
+    private static List<Clan> loadClans(int clanCount, int memberCount, long seed, boolean canonical) {
+        Random random = new Random(seed);
+        List<Clan> clans = new ArrayList<>(clanCount);
+        for (int i = 0; i < clanCount; i++) {
+            String tag = new String(tagOf(i));
+            UUID leader = new UUID(random.nextLong(), random.nextLong());
+            Clan clan = new Clan(canonical ? ClanTags.canonical(tag) : tag, new String("Clan " + tag), leader);
+            for (int member = 0; member < memberCount; member++) {
+                UUID playerId = member == 0 ? leader : new UUID(random.nextLong(), random.nextLong());
+                String role = new String(ROLE_NAMES[roleOf(member)]);
+                clan.addMember(new ClanMember(playerId, canonical ? ClanRole.of(role).name() : role));
+            }
+            clans.add(clan);
+        }
+        return clans;
+    }
+    
+    // The player UUID -> role name map clan reloads and profiles held before MemberRoster
+    private static List<Map<UUID, String>> loadRosterMaps(int clanCount, int memberCount, long seed) {
+        Random random = new Random(seed);
+        List<Map<UUID, String>> rosters = new ArrayList<>(clanCount);
+        for (int i = 0; i < clanCount; i++) {
+            Map<UUID, String> members = new HashMap<>();
+            for (int member = 0; member < memberCount; member++) {
+                members.put(new UUID(random.nextLong(), random.nextLong()), new String(ROLE_NAMES[roleOf(member)]));
+            }
+            rosters.add(members);
+        }
+        return rosters;
+    }
+    
+    private static List<MemberRoster> loadRosters(int clanCount, int memberCount, long seed) {
+        Random random = new Random(seed);
+        List<MemberRoster> rosters = new ArrayList<>(clanCount);
+        for (int i = 0; i < clanCount; i++) {
+            MemberRoster members = new MemberRoster(memberCount);
+            for (int member = 0; member < memberCount; member++) {
+                members.put(new UUID(random.nextLong(), random.nextLong()), ClanRole.of(ROLE_NAMES[roleOf(member)]));
+            }
+            members.trim();
+            rosters.add(members);
+        }
+        return rosters;
+    }
+    
+    // Battles and participants the way BattleJournal and RewardLedger read them back
+    private static List<Battle> loadBattles(int battleCount, int playersPerBattle, int clanCount, long seed, boolean canonical) {
+        Random random = new Random(seed);
+        List<Battle> battles = new ArrayList<>(battleCount);
+        for (int i = 0; i < battleCount; i++) {
+            String clan1Tag = new String(tagOf(random.nextInt(clanCount)));
+            String clan2Tag = new String(tagOf(random.nextInt(clanCount)));
+            String gameMode = new String(BattleGameMode.values()[random.nextInt(BattleGameMode.values().length)].name());
+            if (canonical) {
+                clan1Tag = ClanTags.canonical(clan1Tag);
+                clan2Tag = ClanTags.canonical(clan2Tag);
+                gameMode = BattleGameMode.canonicalName(gameMode);
+            }
+            
+            Battle battle = new Battle("B" + i, clan1Tag, clan2Tag, gameMode, "arena", i);
+            for (int player = 0; player < playersPerBattle; player++) {
+                String tag = player % 2 == 0 ? clan1Tag : clan2Tag;
+                battle.addParticipant(new UUID(random.nextLong(), random.nextLong()), canonical ? tag : new String(tag));
+            }
+            battles.add(battle);
+        }
+        return battles;
+    }
+    
+    private static String tagOf(int clan) {
+        return "C" + Integer.toString(clan, 36).toUpperCase(Locale.ROOT);
+    }
+    
+    private static int roleOf(int member) {
+        return member == 0 ? 0 : member < 3 ? 1 : 2;
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.minecraft.clanwars.simulation;
+
+import com.minecraft.clanwars.SimulatedPlugin;
+import com.minecraft.clanwars.managers.MatchmakingManager;
+import com.minecraft.clanwars.models.ClanRole;
+import com.minecraft.clanwars.models.MatchSuggestion;
+import com.minecraft.clanwars.utils.LatencyHistogram;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+
+// Suggestion latency of the real MatchmakingManager on a large clan population, loaded by
+// the plugin from SimulatedDatabase. Ratings are normally distributed, a share of the clans
+// has members online, and queries alternate between battles right now (online counts
+// matter) and battles tomorrow. No run of it is recorded yet, so answering 100k clans in
+// under a millisecond is a target, not a measured result:
+//   --clans=100000 --members=5 --onlineClans=2000 --queries=100000 --seed=1
+public class MatchmakingBenchmark {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+            if (parts.length == 2) {
+                options.put(parts[0], parts[1]);
+            }
+        }
+        int clanCount = Integer.parseInt(options.getOrDefault("clans", "100000"));
+        int memberCount = Integer.parseInt(options.getOrDefault("members", "5"));
+        int onlineClans = Integer.parseInt(options.getOrDefault("onlineClans", "2000"));
+        int queryCount = Integer.parseInt(options.getOrDefault("queries", "100000"));
+        Random random = new Random(Long.parseLong(options.getOrDefault("seed", "1")));
+        
+        SimulatedServer server = new SimulatedServer();
+        Bukkit.setServer(server.getServer());
+        World world = server.createWorld("world");
+        File dataFolder = Files.createTempDirectory("clanwars-matchmaking").toFile();
+        SimulatedPlugin plugin = new SimulatedPlugin(server.getServer(), dataFolder);
+        SimulatedDatabase database = plugin.getSimulatedDatabase();
+        
+        String[] tags = new String[clanCount];
+        List<SimulatedServer.SimulatedPlayer> online = new ArrayList<>();
+        for (int i = 0; i < clanCount; i++) {
+            tags[i] = "M" + i;
+            UUID leader = null;
+            for (int member = 0; member < memberCount; member++) {
+                UUID uuid = UUID.nameUUIDFromBytes((tags[i] + ":" + member).getBytes());
+                if (member == 0) {
+                    leader = uuid;
+                }
+                if (i < onlineClans) {
+                    online.add(server.createPlayer(uuid, tags[i] + "_" + member, new Location(world, 0, 64, 0)));
+                }
+                
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("clan_tag", tags[i]);
+                row.put("player_uuid", uuid.toString());
+                row.put("role", (member == 0 ? ClanRole.LEADER : ClanRole.MEMBER).name());
+                row.put("joined_time", 0L);
+                database.seed("clan_members", row);
+            }
+            
+            Map<String, Object> clan = new LinkedHashMap<>();
+            clan.put("tag", tags[i]);
+            clan.put("name", "Clan " + tags[i]);
+            clan.put("leader_uuid", leader.toString());
+            clan.put("rating", (int) Math.round(1500 + random.nextGaussian() * 300));
+            clan.put("wins", 0);
+            clan.put("losses", 0);
+            clan.put("created_time", 0L);
+            database.seed("clans", clan);
+        }
+        
+        plugin.enable();
+        if (!plugin.isEnabled()) {
+            throw new IllegalStateException("Plugin failed to enable in the benchmark");
+        }
+        for (SimulatedServer.SimulatedPlayer player : online) {
+            player.join();
+        }
+        
+        MatchmakingManager matchmaking = plugin.getMatchmakingManager();
+        long tomorrow = System.currentTimeMillis() + 24L * 60 * 60 * 1000;
+        long found = 0;
+        
+        // Warm up before timing
+        for (int i = 0; i < queryCount / 10; i++) {
+            found += matchmaking.findOpponents(tags[random.nextInt(clanCount)], tomorrow, 5).size();
+        }
+        
+        LatencyHistogram now = new LatencyHistogram();
+        LatencyHistogram later = new LatencyHistogram();
+        for (int i = 0; i < queryCount; i++) {
+            boolean immediate = i % 2 == 0;
+            String clanTag = tags[immediate ? random.nextInt(onlineClans) : random.nextInt(clanCount)];
+            long scheduledTime = immediate ? System.currentTimeMillis() : tomorrow;
+            
+            long start = System.nanoTime();
+            List<MatchSuggestion> suggestions = matchmaking.findOpponents(clanTag, scheduledTime, 5);
+            (immediate ? now : later).record(System.nanoTime() - start);
+            found += suggestions.size();
+        }
+        
+        plugin.disable();
+        server.shutdown();
+        
+        System.out.println("Matchmaking suggestions, " + clanCount + " clans, " + onlineClans + " with members online, " + queryCount + " queries");
+        System.out.printf(Locale.ROOT, "%-10s %10s %10s %10s %10s%n", "battle", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        print("now", now);
+        print("tomorrow", later);
+        System.out.println("  (" + found + " suggestions)");
+    }
+    
+    private static void print(String name, LatencyHistogram histogram) {
+        System.out.printf(Locale.ROOT, "%-10s %10.4f %10.4f %10.4f %10.4f%n", name, histogram.getValueAtPercentile(50) / 1e6,
+            histogram.getValueAtPercentile(90) / 1e6, histogram.getValueAtPercentile(99) / 1e6, histogram.getMax() / 1e6);
+    }
+}
\ No newline at end of file
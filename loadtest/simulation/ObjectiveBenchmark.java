@@ -0,0 +1,100 @@
+package com.minecraft.clanwars.simulation;
+
+import com.minecraft.clanwars.managers.ObjectiveManager;
+import com.minecraft.clanwars.models.CaptureZone;
+import com.minecraft.clanwars.utils.SpatialGrid;
+
+import java.util.*;
+
+// Times one objective evaluation (locating every player in the zone grid) against testing
+// every player against every zone, on a random arena layout:
+//   --players=100 --zones=20 --arenaSize=200 --iterations=200000 --seed=1
+public class ObjectiveBenchmark {
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+            if (parts.length == 2) {
+                options.put(parts[0], parts[1]);
+            }
+        }
+        int playerCount = Integer.parseInt(options.getOrDefault("players", "100"));
+        int zoneCount = Integer.parseInt(options.getOrDefault("zones", "20"));
+        double arenaSize = Double.parseDouble(options.getOrDefault("arenaSize", "200"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "200000"));
+        Random random = new Random(Long.parseLong(options.getOrDefault("seed", "1")));
+        
+        // Zones on a jittered lattice so they never overlap
+        int perRow = (int) Math.ceil(Math.sqrt(zoneCount));
+        double spacing = arenaSize / perRow;
+        List<CaptureZone> zones = new ArrayList<>();
+        for (int i = 0; i < zoneCount; i++) {
+            double x = (i % perRow + 0.5) * spacing + (random.nextDouble() - 0.5) * spacing * 0.2;
+            double z = (i / perRow + 0.5) * spacing + (random.nextDouble() - 0.5) * spacing * 0.2;
+            zones.add(new CaptureZone("P" + i, i, CaptureZone.Kind.CONTROL_POINT, -1, x, 64, z, 5));
+        }
+        SpatialGrid<CaptureZone> grid = ObjectiveManager.buildGrid(zones);
+        
+        // Around half of the players stand on a point, like a busy control point match
+        double[] xs = new double[playerCount];
+        double[] ys = new double[playerCount];
+        double[] zs = new double[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            if (random.nextBoolean()) {
+                CaptureZone zone = zones.get(random.nextInt(zoneCount));
+                xs[i] = zone.getX() + (random.nextDouble() - 0.5) * zone.getRadius();
+                zs[i] = zone.getZ() + (random.nextDouble() - 0.5) * zone.getRadius();
+            } else {
+                xs[i] = random.nextDouble() * arenaSize;
+                zs[i] = random.nextDouble() * arenaSize;
+            }
+            ys[i] = 64 + random.nextDouble() * 2;
+        }
+        
+        int[] gridResult = new int[playerCount];
+        int[] scanResult = new int[playerCount];
+        ObjectiveManager.locate(grid, xs, ys, zs, playerCount, gridResult);
+        scan(zones, xs, ys, zs, playerCount, scanResult);
+        if (!Arrays.equals(gridResult, scanResult)) {
+            throw new IllegalStateException("Grid and full scan disagree on zone occupancy");
+        }
+        
+        // Warm up both paths before timing them
+        long sink = 0;
+        for (int i = 0; i < iterations / 10; i++) {
+            sink += ObjectiveManager.locate(grid, xs, ys, zs, playerCount, gridResult)[i % playerCount];
+            sink += scan(zones, xs, ys, zs, playerCount, scanResult)[i % playerCount];
+        }
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += ObjectiveManager.locate(grid, xs, ys, zs, playerCount, gridResult)[i % playerCount];
+        }
+        long gridNanos = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += scan(zones, xs, ys, zs, playerCount, scanResult)[i % playerCount];
+        }
+        long scanNanos = System.nanoTime() - start;
+        
+        long occupied = Arrays.stream(gridResult).filter(zone -> zone >= 0).count();
+        System.out.println("Objective evaluation, " + playerCount + " players, " + zoneCount + " zones, " + occupied + " players on a zone");
+        System.out.printf("  grid:      %8.1f ns per evaluation%n", (double) gridNanos / iterations);
+        System.out.printf("  full scan: %8.1f ns per evaluation%n", (double) scanNanos / iterations);
+        System.out.println("  (checksum " + sink + ")");
+    }
+    
+    private static int[] scan(List<CaptureZone> zones, double[] x, double[] y, double[] z, int count, int[] zoneOf) {
+        for (int i = 0; i < count; i++) {
+            zoneOf[i] = -1;
+            for (CaptureZone zone : zones) {
+                if (zone.contains(x[i], y[i], z[i])) {
+                    zoneOf[i] = zone.getIndex();
+                    break;
+                }
+            }
+        }
+        return zoneOf;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,134 @@
+package com.minecraft.clanwars.simulation;
+
+import com.minecraft.clanwars.models.RatingState;
+import com.minecraft.clanwars.utils.EloRatingEngine;
+import com.minecraft.clanwars.utils.FixedRatingEngine;
+import com.minecraft.clanwars.utils.Glicko2RatingEngine;
+import com.minecraft.clanwars.utils.RatingEngine;
+import com.minecraft.clanwars.utils.RatingReplay;
+
+import java.util.*;
+
+// Times a full rating recomputation (RatingReplay, as RatingManager runs it over the battle
+// history) and the per-battle update for every engine, on a synthetic history where stronger
+// clans win more often. Battles are generated up front so only the replay is timed:
+//   --clans=10000 --battles=1000000 --days=365 --periodHours=24 --seed=1
+public class RatingBenchmark {
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+            if (parts.length == 2) {
+                options.put(parts[0], parts[1]);
+            }
+        }
+        int clanCount = Integer.parseInt(options.getOrDefault("clans", "10000"));
+        int battleCount = Integer.parseInt(options.getOrDefault("battles", "1000000"));
+        int days = Integer.parseInt(options.getOrDefault("days", "365"));
+        long periodLength = Long.parseLong(options.getOrDefault("periodHours", "24")) * 60L * 60L * 1000L;
+        Random random = new Random(Long.parseLong(options.getOrDefault("seed", "1")));
+        
+        String[] tags = new String[clanCount];
+        double[] strength = new double[clanCount];
+        for (int i = 0; i < clanCount; i++) {
+            tags[i] = "C" + i;
+            strength[i] = random.nextGaussian();
+        }
+        
+        // Sorted end times, like the battles table streamed in end_time order
+        long span = days * 24L * 60L * 60L * 1000L;
+        long[] endTimes = new long[battleCount];
+        for (int i = 0; i < battleCount; i++) {
+            endTimes[i] = (long) (random.nextDouble() * span);
+        }
+        Arrays.sort(endTimes);
+        String[] clan1 = new String[battleCount];
+        String[] clan2 = new String[battleCount];
+        String[] winner = new String[battleCount];
+        for (int i = 0; i < battleCount; i++) {
+            int a = random.nextInt(clanCount);
+            int b = random.nextInt(clanCount - 1);
+            if (b >= a) {
+                b++;
+            }
+            clan1[i] = tags[a];
+            clan2[i] = tags[b];
+            double winChance = 1 / (1 + Math.exp(strength[b] - strength[a]));
+            winner[i] = random.nextDouble() < winChance ? tags[a] : tags[b];
+        }
+        
+        System.out.println("Rating recomputation, " + clanCount + " clans, " + battleCount + " battles over " + days + " days");
+        RatingEngine[] engines = {
+            new FixedRatingEngine(25, 15),
+            new EloRatingEngine(32),
+            new Glicko2RatingEngine(350, 0.06, 0.5)
+        };
+        for (RatingEngine engine : engines) {
+            // One untimed run warms up the JIT and the parallel pool
+            replay(engine, periodLength, clan1, clan2, winner, endTimes);
+            long start = System.nanoTime();
+            RatingReplay replay = replay(engine, periodLength, clan1, clan2, winner, endTimes);
+            long replayNanos = System.nanoTime() - start;
+            
+            double correlation = rankCorrelation(tags, strength, replay.getStates());
+            
+            RatingState[] states = replay.getStates().values().toArray(new RatingState[0]);
+            start = System.nanoTime();
+            for (int i = 0; i < battleCount; i++) {
+                engine.applyResult(states[i % states.length], states[(i + 1) % states.length]);
+            }
+            long updateNanos = System.nanoTime() - start;
+            
+            System.out.printf("  %-8s recompute %7d ms (%d periods, %.1f M battles/s), single update %6.1f ns%n",
+                engine.getName(), replayNanos / 1_000_000, replay.getPeriodCount(),
+                battleCount / (replayNanos / 1e9) / 1e6, (double) updateNanos / battleCount);
+            System.out.printf("           rank correlation with true strength %.3f%n", correlation);
+        }
+    }
+    
+    private static RatingReplay replay(RatingEngine engine, long periodLength, String[] clan1, String[] clan2,
+                                       String[] winner, long[] endTimes) {
+        RatingReplay replay = new RatingReplay(engine, 1000, periodLength);
+        for (int i = 0; i < endTimes.length; i++) {
+            replay.addGame(clan1[i], clan2[i], winner[i], endTimes[i]);
+        }
+        replay.finish();
+        return replay;
+    }
+    
+    // Spearman correlation between the hidden strengths and the recomputed ratings
+    private static double rankCorrelation(String[] tags, double[] strength, Map<String, RatingState> states) {
+        int count = 0;
+        double[] expected = new double[tags.length];
+        double[] actual = new double[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            RatingState state = states.get(tags[i]);
+            if (state != null) {
+                expected[count] = strength[i];
+                actual[count] = state.getRating();
+                count++;
+            }
+        }
+        double[] expectedRanks = ranks(Arrays.copyOf(expected, count));
+        double[] actualRanks = ranks(Arrays.copyOf(actual, count));
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            double difference = expectedRanks[i] - actualRanks[i];
+            sum += difference * difference;
+        }
+        return 1 - 6 * sum / ((double) count * ((double) count * count - 1));
+    }
+    
+    private static double[] ranks(double[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> values[i]));
+        double[] ranks = new double[values.length];
+        for (int rank = 0; rank < order.length; rank++) {
+            ranks[order[rank]] = rank;
+        }
+        return ranks;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,274 @@
+package com.minecraft.clanwars.simulation;
+
+import com.minecraft.clanwars.SimulatedPlugin;
+import com.minecraft.clanwars.managers.BattleManager;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.models.BattleEndReason;
+import com.minecraft.clanwars.models.BattleGameMode;
+import com.minecraft.clanwars.models.BattleRequest;
+import com.minecraft.clanwars.models.BattleStatus;
+import com.minecraft.clanwars.models.ClanRole;
+import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.ReplayReader;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+
+// Records one battle through the real ReplayRecorder on SimulatedServer, reads the file back
+// with ReplayReader and throws if it differs from what happened: header, player indexes, kill
+// order, event clock and the final positions. Whatever the recorder drops when its ring is
+// full, the rest of the replay has to stay consistent; the drop count is reported.
+//
+//   mvn -P loadtest verify
+public class ReplayRoundTripCheck {
+    private static final UUID STAFF_UUID = UUID.nameUUIDFromBytes("clanwars-replay-staff".getBytes());
+    private static final long MAX_COUNTDOWN_TICKS = 20L * 60 * 10;
+    private static final long FREEZE_TICKS = 20L * 15; // players stand still before the end, respawns included
+    private static final int DRAIN_TICKS = 200;
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+            if (parts.length == 2) {
+                options.put(parts[0], parts[1]);
+            }
+        }
+        int perClan = Integer.parseInt(options.getOrDefault("players", "200")) / 2;
+        int fightTicks = Integer.parseInt(options.getOrDefault("fightTicks", "1200"));
+        double killChance = Double.parseDouble(options.getOrDefault("killChance", "0.05")); // per tick
+        Random random = new Random(Long.parseLong(options.getOrDefault("seed", "7")));
+        if (!Config.REPLAY_ENABLED) {
+            throw new IllegalStateException("Replays are disabled in the default config");
+        }
+        
+        SimulatedServer server = new SimulatedServer();
+        Bukkit.setServer(server.getServer());
+        World world = server.createWorld("arena_world");
+        SimulatedPlugin plugin = new SimulatedPlugin(server.getServer(), Files.createTempDirectory("clanwars-replay").toFile());
+        seed(plugin.getSimulatedDatabase(), server, world, perClan);
+        
+        plugin.enable();
+        if (!plugin.isEnabled()) {
+            throw new IllegalStateException("Plugin failed to enable in the simulator");
+        }
+        for (int side = 0; side < 2; side++) {
+            for (int member = 0; member < perClan; member++) {
+                server.getPlayer(playerId(side, member)).join();
+            }
+        }
+        server.getPlayer(STAFF_UUID).join();
+        plugin.getStaffCache().update(server.getPlayer(STAFF_UUID).getPlayer());
+        
+        BattleManager battleManager = plugin.getBattleManager();
+        BattleRequest request = battleManager.createBattleRequest("RA", "RB", playerId(0, 0),
+            BattleGameMode.TEAM_DEATHMATCH.name(), System.currentTimeMillis());
+        if (request == null || !battleManager.approveBattleRequest(request.getId(), STAFF_UUID)) {
+            throw new IllegalStateException("Could not create the battle");
+        }
+        Battle battle = battleManager.startBattle(request.getId());
+        if (battle == null) {
+            throw new IllegalStateException("Could not start the battle");
+        }
+        
+        List<String> kills = new ArrayList<>();
+        long freezeTicks = Math.max(FREEZE_TICKS, 4L * Config.REPLAY_SAMPLE_TICKS);
+        long fightStart = -1;
+        long startedAfter = 0; // the recording starts in the tick the countdown ends
+        long startedBefore = 0;
+        while (fightStart < 0 || server.getCurrentTick() - fightStart < fightTicks + freezeTicks) {
+            long tickStarted = System.currentTimeMillis();
+            server.tick();
+            long tick = server.getCurrentTick();
+            if (battle.getStatus() == BattleStatus.ENDED) {
+                throw new IllegalStateException("Battle ended on its own at tick " + tick + ", lower --fightTicks or --killChance");
+            }
+            if (tick > MAX_COUNTDOWN_TICKS) {
+                throw new IllegalStateException("Battle countdown did not finish");
+            }
+            if (battle.getStatus() != BattleStatus.ACTIVE) {
+                continue;
+            }
+            if (fightStart < 0) {
+                fightStart = tick;
+                startedAfter = tickStarted;
+                startedBefore = System.currentTimeMillis();
+            }
+            if (tick - fightStart >= fightTicks) {
+                continue; // Everyone stands still, later frames must decode to the final positions
+            }
+            
+            List<UUID> fighters = onlineParticipants(server, battle);
+            for (UUID uuid : fighters) {
+                server.getPlayer(uuid).move(random);
+            }
+            if (random.nextDouble() >= killChance) {
+                continue;
+            }
+            UUID killer = fighters.get(random.nextInt(fighters.size()));
+            UUID victim = fighters.get(random.nextInt(fighters.size()));
+            int scoreBefore = battle.getTeam1Score() + battle.getTeam2Score();
+            if (!Objects.equals(battle.getPlayerClanTag(killer), battle.getPlayerClanTag(victim))) {
+                battleManager.recordKill(server.getPlayer(killer).getPlayer(), server.getPlayer(victim).getPlayer());
+            }
+            if (battle.getTeam1Score() + battle.getTeam2Score() > scoreBefore) {
+                kills.add(describe(battle, killer) + " killed " + describe(battle, victim));
+            }
+        }
+        
+        Map<UUID, double[]> finalPositions = new HashMap<>();
+        for (UUID uuid : onlineParticipants(server, battle)) {
+            Location location = server.getPlayer(uuid).getPlayer().getLocation();
+            finalPositions.put(uuid, new double[] {quantize(location.getX()), quantize(location.getY()), quantize(location.getZ())});
+        }
+        long beforeEnd = System.currentTimeMillis();
+        battleManager.endBattle(battle, BattleEndReason.TIME_EXPIRED);
+        long afterEnd = System.currentTimeMillis();
+        
+        for (int i = 0; i < DRAIN_TICKS; i++) {
+            server.tick();
+        }
+        long dropped = plugin.getMetricsManager().counter("replay_records_dropped").sum();
+        plugin.disable();
+        server.shutdown();
+        
+        File file = plugin.getReplayRecorder().getReplayFile(battle.getId());
+        verify(ReplayReader.read(file), battle, kills, finalPositions, beforeEnd - startedBefore, afterEnd - startedAfter, dropped);
+        System.out.println("Replay round trip OK: " + kills.size() + " kills, " + dropped + " records dropped, " +
+            file.length() + " bytes");
+    }
+    
+    private static void verify(ReplayReader.Replay replay, Battle battle, List<String> kills, Map<UUID, double[]> finalPositions,
+                               long minDuration, long maxDuration, long dropped) {
+        check(battle.getId().equals(replay.getBattleId()), "battle ID " + replay.getBattleId());
+        check(battle.getClan1Tag().equals(replay.getClan1Tag()) && battle.getClan2Tag().equals(replay.getClan2Tag()),
+            "clans " + replay.getClan1Tag() + " vs " + replay.getClan2Tag());
+        check(battle.getGameMode().equals(replay.getGameMode()), "game mode " + replay.getGameMode());
+        check(replay.getWinnerTag() != null, "missing END record, the stream was not finished");
+        
+        // Player records are never dropped and carry their index
+        List<UUID> players = replay.getPlayers();
+        for (int index = 0; index < players.size(); index++) {
+            UUID uuid = players.get(index);
+            check(uuid != null && battle.isParticipant(uuid), "player index " + index + " is " + uuid);
+            check(Objects.equals(battle.getPlayerClanTag(uuid), replay.getPlayerClan(index)), "clan of player " + uuid);
+        }
+        
+        // Kill events may be dropped under load, but never reordered or attributed to someone else
+        List<String> recorded = new ArrayList<>();
+        long time = 0;
+        for (ReplayReader.Event event : replay.getEvents()) {
+            check(event.getTime() >= time, "event clock went back at " + event.getDescription());
+            time = event.getTime();
+            if (event.getType() == ReplayReader.KILL) {
+                recorded.add(event.getDescription());
+            }
+        }
+        Iterator<String> expected = kills.iterator();
+        for (String kill : recorded) {
+            boolean found = false;
+            while (!found && expected.hasNext()) {
+                found = expected.next().equals(kill);
+            }
+            check(found, "unexpected or out of order kill: " + kill);
+        }
+        check(dropped > 0 || recorded.equals(kills), "recorded " + recorded.size() + " of " + kills.size() + " kills without drops");
+        
+        // Dropped records must not shift the clock of the ones after them
+        ReplayReader.Event end = replay.getEvents().get(replay.getEvents().size() - 1);
+        check(end.getType() == ReplayReader.END, "last event is " + end.getDescription());
+        check(end.getTime() >= minDuration && end.getTime() <= maxDuration,
+            "battle ended at " + end.getTime() + " ms, expected " + minDuration + " to " + maxDuration);
+        
+        // The last frame was sampled after everyone stood still
+        ReplayReader.Frame frame = replay.getFrameAt(end.getTime());
+        check(frame != null, "no position frames");
+        for (Map.Entry<Integer, double[]> entry : frame.getPositions().entrySet()) {
+            UUID uuid = players.get(entry.getKey());
+            double[] actual = entry.getValue();
+            double[] position = finalPositions.get(uuid);
+            check(position != null && position[0] == actual[0] && position[1] == actual[1] && position[2] == actual[2],
+                "position of " + uuid + " decoded as " + Arrays.toString(actual) + ", expected " + Arrays.toString(position));
+        }
+    }
+    
+    private static void seed(SimulatedDatabase database, SimulatedServer server, World world, int perClan) {
+        String[] tags = {"RA", "RB"};
+        for (int side = 0; side < 2; side++) {
+            for (int member = 0; member < perClan; member++) {
+                UUID uuid = playerId(side, member);
+                server.createPlayer(uuid, tags[side] + "_" + member, new Location(world, 0, 64, 0));
+                
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("clan_tag", tags[side]);
+                row.put("player_uuid", uuid.toString());
+                row.put("role", (member == 0 ? ClanRole.LEADER : ClanRole.MEMBER).name());
+                row.put("joined_time", 0L);
+                database.seed("clan_members", row);
+            }
+            
+            Map<String, Object> clan = new LinkedHashMap<>();
+            clan.put("tag", tags[side]);
+            clan.put("name", "Clan " + tags[side]);
+            clan.put("leader_uuid", playerId(side, 0).toString());
+            clan.put("rating", 1500);
+            clan.put("wins", 0);
+            clan.put("losses", 0);
+            clan.put("created_time", 0L);
+            database.seed("clans", clan);
+        }
+        
+        Map<String, Object> arena = new LinkedHashMap<>();
+        arena.put("id", "arena0");
+        arena.put("name", "Arena 0");
+        arena.put("world", world.getName());
+        arena.put("game_modes", BattleGameMode.TEAM_DEATHMATCH.name());
+        arena.put("team1_x", -40.0);
+        arena.put("team1_y", 64.0);
+        arena.put("team1_z", 0.0);
+        arena.put("team2_x", 40.0);
+        arena.put("team2_y", 64.0);
+        arena.put("team2_z", 0.0);
+        arena.put("spectator_x", 0.0);
+        arena.put("spectator_y", 80.0);
+        arena.put("spectator_z", 0.0);
+        arena.put("enabled", true);
+        database.seed("arenas", arena);
+        
+        SimulatedServer.SimulatedPlayer staff = server.createPlayer(STAFF_UUID, "replay_staff", new Location(world, 0, 64, 0));
+        staff.grant("clanwars.staff");
+        staff.grant("clanwars.admin");
+    }
+    
+    private static List<UUID> onlineParticipants(SimulatedServer server, Battle battle) {
+        List<UUID> online = new ArrayList<>();
+        for (UUID uuid : battle.getParticipants()) {
+            if (server.getPlayer(uuid).isOnline()) {
+                online.add(uuid);
+            }
+        }
+        return online;
+    }
+    
+    private static UUID playerId(int side, int member) {
+        return UUID.nameUUIDFromBytes(("replay:" + side + ":" + member).getBytes());
+    }
+    
+    private static String describe(Battle battle, UUID playerId) {
+        return playerId + " (" + battle.getPlayerClanTag(playerId) + ")";
+    }
+    
+    private static double quantize(double value) {
+        return (double) Math.round(value * ReplayReader.POSITION_SCALE) / ReplayReader.POSITION_SCALE;
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("Replay round trip failed: " + message);
+        }
+    }
+}
\ No newline at end of file
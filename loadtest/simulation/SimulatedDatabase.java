@@ -0,0 +1,181 @@
+package com.minecraft.clanwars.simulation;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.managers.DatabaseManager;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// In-memory database for the simulator. Selects are answered from seeded rows, filtered on
+// the first "column = ?" condition; every write succeeds without storing anything. The plugin
+// still wraps these connections with MetricsManager.instrument, so DB calls are measured.
+// An optional per-statement latency stands in for the round trip to a real database server.
+// It replaces DatabaseManager's pool by overriding connect, disconnect and getConnection.
+public class SimulatedDatabase extends DatabaseManager {
+    private static final Pattern TABLE = Pattern.compile("\\bFROM\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FILTER = Pattern.compile("\\bWHERE\\s+(\\w+)\\s*=\\s*\\?", Pattern.CASE_INSENSITIVE);
+    
+    private final Map<String, List<Map<String, Object>>> tables;
+    private volatile long latencyMillis;
+    
+    public SimulatedDatabase(ClanWarsPlugin plugin) {
+        super(plugin);
+        this.tables = new ConcurrentHashMap<>();
+    }
+    
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+    
+    public void seed(String table, Map<String, Object> row) {
+        tables.computeIfAbsent(table.toLowerCase(Locale.ROOT), name -> Collections.synchronizedList(new ArrayList<>())).add(row);
+    }
+    
+    @Override
+    public boolean connect() {
+        return true;
+    }
+    
+    @Override
+    public void disconnect() {
+    }
+    
+    @Override
+    public Connection getConnection() {
+        Map<String, StandIns.Handler> handlers = new HashMap<>();
+        handlers.put("prepareStatement", (proxy, args) -> statement((String) args[0]));
+        handlers.put("createStatement", (proxy, args) -> statement(null));
+        handlers.put("getAutoCommit", (proxy, args) -> true);
+        handlers.put("isValid", (proxy, args) -> true);
+        return StandIns.create(Connection.class, handlers);
+    }
+    
+    private PreparedStatement statement(String preparedSql) {
+        Map<Integer, Object> parameters = new HashMap<>();
+        int[] batchSize = new int[1];
+        
+        Map<String, StandIns.Handler> handlers = new HashMap<>();
+        StandIns.Handler setter = (proxy, args) -> {
+            parameters.put((Integer) args[0], args.length > 1 ? args[1] : null);
+            return null;
+        };
+        for (String name : new String[] {"setString", "setInt", "setLong", "setDouble", "setFloat", "setBoolean",
+            "setObject", "setTimestamp", "setNull", "setBytes", "setShort"}) {
+            handlers.put(name, setter);
+        }
+        handlers.put("clearParameters", (proxy, args) -> {
+            parameters.clear();
+            return null;
+        });
+        handlers.put("executeQuery", (proxy, args) -> {
+            roundTrip();
+            return query(args.length > 0 ? (String) args[0] : preparedSql, parameters);
+        });
+        handlers.put("executeUpdate", (proxy, args) -> {
+            roundTrip();
+            return 1;
+        });
+        handlers.put("executeLargeUpdate", (proxy, args) -> {
+            roundTrip();
+            return 1L;
+        });
+        handlers.put("execute", (proxy, args) -> {
+            roundTrip();
+            return false;
+        });
+        handlers.put("getUpdateCount", (proxy, args) -> 1);
+        handlers.put("addBatch", (proxy, args) -> {
+            batchSize[0]++;
+            return null;
+        });
+        handlers.put("executeBatch", (proxy, args) -> {
+            roundTrip();
+            int[] counts = new int[batchSize[0]];
+            Arrays.fill(counts, 1);
+            batchSize[0] = 0;
+            return counts;
+        });
+        handlers.put("getGeneratedKeys", (proxy, args) -> resultSet(Collections.emptyList()));
+        return StandIns.create(PreparedStatement.class, handlers);
+    }
+    
+    private void roundTrip() throws InterruptedException {
+        long latency = latencyMillis;
+        if (latency > 0) {
+            Thread.sleep(latency);
+        }
+    }
+    
+    private ResultSet query(String sql, Map<Integer, Object> parameters) {
+        Matcher table = TABLE.matcher(sql);
+        if (!table.find()) {
+            return resultSet(Collections.emptyList());
+        }
+        List<Map<String, Object>> rows = tables.get(table.group(1).toLowerCase(Locale.ROOT));
+        if (rows == null) {
+            return resultSet(Collections.emptyList());
+        }
+        
+        List<Map<String, Object>> result;
+        synchronized (rows) {
+            result = new ArrayList<>(rows);
+        }
+        Matcher filter = FILTER.matcher(sql);
+        if (filter.find()) {
+            // The parameter index is the number of placeholders up to and including this one
+            int index = 0;
+            for (int i = 0; i < filter.end(); i++) {
+                if (sql.charAt(i) == '?') {
+                    index++;
+                }
+            }
+            String column = filter.group(1);
+            Object expected = parameters.get(index);
+            result.removeIf(row -> !Objects.equals(String.valueOf(row.get(column)), String.valueOf(expected)));
+        }
+        return resultSet(result);
+    }
+    
+    private static ResultSet resultSet(List<Map<String, Object>> rows) {
+        int[] cursor = {-1};
+        Object[] last = new Object[1];
+        
+        Map<String, StandIns.Handler> handlers = new HashMap<>();
+        handlers.put("next", (proxy, args) -> ++cursor[0] < rows.size());
+        StandIns.Handler getter = (proxy, args) -> {
+            Map<String, Object> row = rows.get(cursor[0]);
+            if (args[0] instanceof Integer) {
+                List<Object> values = new ArrayList<>(row.values());
+                last[0] = values.get((Integer) args[0] - 1);
+            } else {
+                last[0] = row.get(String.valueOf(args[0]));
+            }
+            return last[0];
+        };
+        handlers.put("getObject", getter);
+        handlers.put("getString", (proxy, args) -> {
+            Object value = getter.invoke(proxy, args);
+            return value != null ? value.toString() : null;
+        });
+        handlers.put("getInt", (proxy, args) -> (int) number(getter.invoke(proxy, args)));
+        handlers.put("getLong", (proxy, args) -> (long) number(getter.invoke(proxy, args)));
+        handlers.put("getDouble", (proxy, args) -> number(getter.invoke(proxy, args)));
+        handlers.put("getFloat", (proxy, args) -> (float) number(getter.invoke(proxy, args)));
+        handlers.put("getBoolean", (proxy, args) -> {
+            Object value = getter.invoke(proxy, args);
+            return value instanceof Boolean ? value : number(value) != 0;
+        });
+        handlers.put("wasNull", (proxy, args) -> last[0] == null);
+        return StandIns.create(ResultSet.class, handlers);
+    }
+    
+    private static double number(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value == null ? 0 : Double.parseDouble(value.toString());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,367 @@
+package com.minecraft.clanwars.simulation;
+
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.BaseComponent;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Headless server: players, worlds and a scheduler that only advances when tick() is called.
+// Ticks run back to back, so a 30 minute battle takes as long as its work does.
+public class SimulatedServer {
+    private final Thread mainThread;
+    private final Logger logger;
+    private final Map<UUID, SimulatedPlayer> players;
+    private final Map<String, World> worlds;
+    private final PriorityQueue<ScheduledTask> queue; // main thread only
+    private final Queue<ScheduledTask> submitted; // tasks scheduled from any thread
+    private final ExecutorService asyncExecutor;
+    private final AtomicInteger nextTaskId;
+    private final AtomicInteger nextEntityId;
+    private final LongAdder messagesSent;
+    private final BukkitScheduler scheduler;
+    private final Server server;
+    private long currentTick;
+    
+    public SimulatedServer() {
+        this.mainThread = Thread.currentThread();
+        this.logger = Logger.getLogger("ClanWarsSimulation");
+        this.players = new ConcurrentHashMap<>();
+        this.worlds = new ConcurrentHashMap<>();
+        this.queue = new PriorityQueue<>(Comparator.comparingLong((ScheduledTask task) -> task.nextRun).thenComparingInt(task -> task.id));
+        this.submitted = new ConcurrentLinkedQueue<>();
+        this.asyncExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Simulated-Async");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.nextTaskId = new AtomicInteger(1);
+        this.nextEntityId = new AtomicInteger(1);
+        this.messagesSent = new LongAdder();
+        this.scheduler = createScheduler();
+        this.server = createServer();
+    }
+    
+    public Server getServer() {
+        return server;
+    }
+    
+    public long getCurrentTick() {
+        return currentTick;
+    }
+    
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+    
+    public void shutdown() {
+        asyncExecutor.shutdownNow();
+    }
+    
+    // Runs every task due in the next tick, async tasks are handed to worker threads
+    public void tick() {
+        currentTick++;
+        ScheduledTask task;
+        while ((task = submitted.poll()) != null) {
+            task.nextRun = currentTick + task.delay;
+            queue.add(task);
+        }
+        
+        while (!queue.isEmpty() && queue.peek().nextRun <= currentTick) {
+            task = queue.poll();
+            if (task.cancelled) {
+                continue;
+            }
+            if (task.sync) {
+                try {
+                    task.runnable.run();
+                } catch (Throwable e) {
+                    logger.log(Level.WARNING, "Task " + task.id + " threw an exception", e);
+                }
+            } else {
+                asyncExecutor.execute(task.runnable);
+            }
+            if (task.period > 0 && !task.cancelled) {
+                task.nextRun = currentTick + task.period;
+                queue.add(task);
+            }
+        }
+    }
+    
+    public World createWorld(String name) {
+        Map<String, StandIns.Handler> handlers = new HashMap<>();
+        World[] world = new World[1];
+        UUID worldId = UUID.nameUUIDFromBytes(name.getBytes());
+        handlers.put("getName", (proxy, args) -> name);
+        handlers.put("getUID", (proxy, args) -> worldId);
+        handlers.put("isChunkLoaded", (proxy, args) -> true);
+        handlers.put("loadChunk", (proxy, args) -> args.length > 2 ? (Object) true : null);
+        handlers.put("getSpawnLocation", (proxy, args) -> new Location(world[0], 0, 64, 0));
+        handlers.put("getPlayers", (proxy, args) -> {
+            List<Player> inWorld = new ArrayList<>();
+            for (SimulatedPlayer player : players.values()) {
+                if (player.online && player.location.getWorld() == world[0]) {
+                    inWorld.add(player.proxy);
+                }
+            }
+            return inWorld;
+        });
+        world[0] = StandIns.create(World.class, handlers);
+        worlds.put(name, world[0]);
+        return world[0];
+    }
+    
+    public SimulatedPlayer createPlayer(UUID uuid, String name, Location location) {
+        SimulatedPlayer player = new SimulatedPlayer(uuid, name, nextEntityId.getAndIncrement(), location);
+        players.put(uuid, player);
+        return player;
+    }
+    
+    public SimulatedPlayer getPlayer(UUID uuid) {
+        return players.get(uuid);
+    }
+    
+    private Server createServer() {
+        Map<String, StandIns.Handler> handlers = new HashMap<>();
+        handlers.put("getName", (proxy, args) -> "ClanWarsSimulation");
+        handlers.put("getVersion", (proxy, args) -> "simulated");
+        handlers.put("getBukkitVersion", (proxy, args) -> "simulated");
+        handlers.put("getLogger", (proxy, args) -> logger);
+        handlers.put("isPrimaryThread", (proxy, args) -> Thread.currentThread() == mainThread);
+        handlers.put("getMaxPlayers", (proxy, args) -> 1000);
+        handlers.put("getScheduler", (proxy, args) -> scheduler);
+        handlers.put("getOnlinePlayers", (proxy, args) -> {
+            List<Player> online = new ArrayList<>();
+            for (SimulatedPlayer player : players.values()) {
+                if (player.online) {
+                    online.add(player.proxy);
+                }
+            }
+            return online;
+        });
+        handlers.put("getPlayer", (proxy, args) -> {
+            SimulatedPlayer player = null;
+            if (args[0] instanceof UUID) {
+                player = players.get(args[0]);
+            } else {
+                for (SimulatedPlayer candidate : players.values()) {
+                    if (candidate.name.equalsIgnoreCase(String.valueOf(args[0]))) {
+                        player = candidate;
+                    }
+                }
+            }
+            return player != null && player.online ? player.proxy : null;
+        });
+        handlers.put("getPlayerExact", handlers.get("getPlayer"));
+        handlers.put("getWorld", (proxy, args) -> {
+            if (args[0] instanceof String) {
+                return worlds.get(args[0]);
+            }
+            for (World world : worlds.values()) {
+                if (world.getUID().equals(args[0])) {
+                    return world;
+                }
+            }
+            return null;
+        });
+        handlers.put("getWorlds", (proxy, args) -> new ArrayList<>(worlds.values()));
+        handlers.put("broadcastMessage", (proxy, args) -> {
+            messagesSent.increment();
+            return 0;
+        });
+        return StandIns.create(Server.class, handlers);
+    }
+    
+    private BukkitScheduler createScheduler() {
+        Map<String, StandIns.Handler> handlers = new HashMap<>();
+        handlers.put("runTask", (proxy, args) -> schedule(args, true, 0, 0));
+        handlers.put("runTaskLater", (proxy, args) -> schedule(args, true, (Long) args[2], 0));
+        handlers.put("runTaskTimer", (proxy, args) -> schedule(args, true, (Long) args[2], (Long) args[3]));
+        handlers.put("runTaskAsynchronously", (proxy, args) -> schedule(args, false, 0, 0));
+        handlers.put("runTaskLaterAsynchronously", (proxy, args) -> schedule(args, false, (Long) args[2], 0));
+        handlers.put("runTaskTimerAsynchronously", (proxy, args) -> schedule(args, false, (Long) args[2], (Long) args[3]));
+        handlers.put("cancelTask", (proxy, args) -> {
+            int taskId = (Integer) args[0];
+            submitted.forEach(task -> task.cancelled |= task.id == taskId);
+            queue.forEach(task -> task.cancelled |= task.id == taskId);
+            return null;
+        });
+        handlers.put("cancelTasks", (proxy, args) -> {
+            submitted.forEach(task -> task.cancelled = true);
+            queue.forEach(task -> task.cancelled = true);
+            return null;
+        });
+        return StandIns.create(BukkitScheduler.class, handlers);
+    }
+    
+    private BukkitTask schedule(Object[] args, boolean sync, long delay, long period) {
+        if (!(args[1] instanceof Runnable)) {
+            throw new UnsupportedOperationException("Only Runnable tasks are simulated");
+        }
+        // Bukkit runs a zero delay task on the next tick
+        ScheduledTask task = new ScheduledTask(nextTaskId.getAndIncrement(), (Plugin) args[0], (Runnable) args[1], sync,
+            Math.max(1, delay), period > 0 ? Math.max(1, period) : 0);
+        submitted.add(task);
+        return task;
+    }
+    
+    private static class ScheduledTask implements BukkitTask {
+        private final int id;
+        private final Plugin owner;
+        private final Runnable runnable;
+        private final boolean sync;
+        private final long delay;
+        private final long period;
+        private volatile boolean cancelled;
+        private long nextRun;
+        
+        ScheduledTask(int id, Plugin owner, Runnable runnable, boolean sync, long delay, long period) {
+            this.id = id;
+            this.owner = owner;
+            this.runnable = runnable;
+            this.sync = sync;
+            this.delay = delay;
+            this.period = period;
+        }
+        
+        @Override
+        public int getTaskId() {
+            return id;
+        }
+        
+        @Override
+        public Plugin getOwner() {
+            return owner;
+        }
+        
+        @Override
+        public boolean isSync() {
+            return sync;
+        }
+        
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+    
+    public class SimulatedPlayer {
+        private final UUID uuid;
+        private final String name;
+        private final int entityId;
+        private final Set<String> permissions;
+        private final Player proxy;
+        private volatile boolean online;
+        private volatile Location location;
+        private GameMode gameMode;
+        private double health;
+        private long messages;
+        
+        SimulatedPlayer(UUID uuid, String name, int entityId, Location location) {
+            this.uuid = uuid;
+            this.name = name;
+            this.entityId = entityId;
+            this.permissions = ConcurrentHashMap.newKeySet();
+            this.location = location;
+            this.gameMode = GameMode.SURVIVAL;
+            this.health = 20;
+            this.proxy = createProxy();
+        }
+        
+        public Player getPlayer() {
+            return proxy;
+        }
+        
+        public UUID getUniqueId() {
+            return uuid;
+        }
+        
+        public boolean isOnline() {
+            return online;
+        }
+        
+        public void join() {
+            online = true;
+        }
+        
+        public void quit() {
+            online = false;
+        }
+        
+        public void grant(String permission) {
+            permissions.add(permission);
+        }
+        
+        public long getMessages() {
+            return messages;
+        }
+        
+        // Random walk, enough to make position sampling and movement checks do real work
+        public void move(Random random) {
+            Location next = location.clone();
+            next.add(random.nextDouble() - 0.5, 0, random.nextDouble() - 0.5);
+            next.setYaw(random.nextFloat() * 360f - 180f);
+            location = next;
+        }
+        
+        private Player createProxy() {
+            Map<String, StandIns.Handler> handlers = new HashMap<>();
+            handlers.put("getUniqueId", (p, args) -> uuid);
+            handlers.put("getName", (p, args) -> name);
+            handlers.put("getDisplayName", (p, args) -> name);
+            handlers.put("getEntityId", (p, args) -> entityId);
+            handlers.put("isOnline", (p, args) -> online);
+            handlers.put("isValid", (p, args) -> online);
+            handlers.put("isDead", (p, args) -> health <= 0);
+            handlers.put("getLocation/0", (p, args) -> location.clone());
+            handlers.put("getWorld", (p, args) -> location.getWorld());
+            handlers.put("teleport", (p, args) -> {
+                location = args[0] instanceof Location ? ((Location) args[0]).clone() : ((Player) args[0]).getLocation();
+                return true;
+            });
+            handlers.put("getGameMode", (p, args) -> gameMode);
+            handlers.put("setGameMode", (p, args) -> {
+                gameMode = (GameMode) args[0];
+                return null;
+            });
+            handlers.put("getHealth", (p, args) -> health);
+            handlers.put("setHealth", (p, args) -> {
+                health = (Double) args[0];
+                return null;
+            });
+            handlers.put("getMaxHealth", (p, args) -> 20.0);
+            handlers.put("hasPermission", (p, args) -> permissions.contains(String.valueOf(args[0])));
+            handlers.put("isOp", (p, args) -> false);
+            handlers.put("sendMessage", (p, args) -> {
+                messages++;
+                messagesSent.increment();
+                return null;
+            });
+            handlers.put("spigot", (p, args) -> new Player.Spigot() {
+                @Override
+                public void sendMessage(ChatMessageType position, BaseComponent... components) {
+                    messages++;
+                    messagesSent.increment();
+                }
+            });
+            return StandIns.create(Player.class, handlers);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.minecraft.clanwars.simulation;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+// In-memory stand-ins for Bukkit and JDBC interfaces. Only the methods the plugin actually
+// calls are implemented; everything else returns a harmless default, and interface return
+// values are themselves no-op stand-ins so call chains like getInventory().clear() work.
+final class StandIns {
+    private StandIns() {
+    }
+    
+    interface Handler {
+        Object invoke(Object proxy, Object[] args) throws Throwable;
+    }
+    
+    // Handlers are keyed by method name, or by name/argument count where overloads differ
+    static <T> T create(Class<T> type, Map<String, Handler> handlers) {
+        InvocationHandler dispatcher = (proxy, method, args) -> {
+            Object[] arguments = args != null ? args : new Object[0];
+            Handler handler = handlers.get(method.getName() + "/" + arguments.length);
+            if (handler == null) {
+                handler = handlers.get(method.getName());
+            }
+            if (handler != null) {
+                return handler.invoke(proxy, arguments);
+            }
+            
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == arguments[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    return defaultValue(method);
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(StandIns.class.getClassLoader(), new Class<?>[] {type}, dispatcher));
+    }
+    
+    static <T> T noop(Class<T> type) {
+        return create(type, Collections.emptyMap());
+    }
+    
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == String.class) {
+            return "";
+        }
+        if (type == Optional.class) {
+            return Optional.empty();
+        }
+        if (type.isArray()) {
+            return java.lang.reflect.Array.newInstance(type.getComponentType(), 0);
+        }
+        if (List.class.isAssignableFrom(type) || type == Collection.class || type == Iterable.class) {
+            return new ArrayList<>();
+        }
+        if (Set.class.isAssignableFrom(type)) {
+            return new HashSet<>();
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return new HashMap<>();
+        }
+        if (type.isInterface()) {
+            return noop(type);
+        }
+        return null;
+    }
+}
\ No newline at end of file
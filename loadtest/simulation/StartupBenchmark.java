@@ -0,0 +1,102 @@
+package com.minecraft.clanwars.simulation;
+
+import com.minecraft.clanwars.SimulatedPlugin;
+import com.minecraft.clanwars.models.ClanRole;
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Enables the real plugin against SimulatedDatabase with a fixed latency per statement and
+// prints the startup graph's report. "ms of work" is what the steps cost back to back, as
+// onEnable ran them before the graph, next to the wall time the graph took. No run of it is
+// recorded yet, so a several-fold cut in enable time is a target, not a measured result:
+//   --clans=500 --membersPerClan=20 --latencyMs=2
+public class StartupBenchmark {
+    private static final Pattern REPORT = Pattern.compile("Startup took (\\d+) ms for (\\d+) ms of work");
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+            if (parts.length == 2) {
+                options.put(parts[0], parts[1]);
+            }
+        }
+        int clanCount = Integer.parseInt(options.getOrDefault("clans", "500"));
+        int membersPerClan = Integer.parseInt(options.getOrDefault("membersPerClan", "20"));
+        long latencyMillis = Long.parseLong(options.getOrDefault("latencyMs", "2"));
+        
+        SimulatedServer server = new SimulatedServer();
+        Bukkit.setServer(server.getServer());
+        server.createWorld("arena_world");
+        File dataFolder = Files.createTempDirectory("clanwars-startup").toFile();
+        SimulatedPlugin plugin = new SimulatedPlugin(server.getServer(), dataFolder);
+        
+        SimulatedDatabase database = plugin.getSimulatedDatabase();
+        for (int clan = 0; clan < clanCount; clan++) {
+            String tag = "C" + clan;
+            UUID leader = null;
+            for (int member = 0; member < membersPerClan; member++) {
+                UUID uuid = UUID.nameUUIDFromBytes((tag + ":" + member).getBytes());
+                if (member == 0) {
+                    leader = uuid;
+                }
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("clan_tag", tag);
+                row.put("player_uuid", uuid.toString());
+                row.put("role", (member == 0 ? ClanRole.LEADER : ClanRole.MEMBER).name());
+                row.put("joined_time", 0L);
+                database.seed("clan_members", row);
+            }
+            
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("tag", tag);
+            row.put("name", "Clan " + tag);
+            row.put("leader_uuid", String.valueOf(leader));
+            row.put("rating", 1500);
+            row.put("wins", 0);
+            row.put("losses", 0);
+            row.put("created_time", 0L);
+            database.seed("clans", row);
+        }
+        database.setLatencyMillis(latencyMillis);
+        
+        List<String> reports = Collections.synchronizedList(new ArrayList<>());
+        plugin.getLogger().addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getMessage() != null && record.getMessage().contains("Startup took")) {
+                    reports.add(record.getMessage());
+                }
+            }
+            
+            @Override
+            public void flush() {
+            }
+            
+            @Override
+            public void close() {
+            }
+        });
+        
+        System.out.println("Startup, " + clanCount + " clans of " + membersPerClan + ", " + latencyMillis + " ms per statement");
+        plugin.enable();
+        if (!plugin.isEnabled() || reports.isEmpty()) {
+            throw new IllegalStateException("Plugin failed to enable in the simulator");
+        }
+        plugin.disable();
+        
+        Matcher matcher = REPORT.matcher(reports.get(0));
+        if (matcher.find()) {
+            System.out.printf("  steps back to back: %s ms%n", matcher.group(2));
+            System.out.printf("  startup graph:      %s ms%n", matcher.group(1));
+        }
+        System.out.println(reports.get(0));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.minecraft.clanwars.simulation;
+
+import com.minecraft.clanwars.utils.LatencyHistogram;
+import com.minecraft.clanwars.utils.TeamBalancer;
+
+import java.util.*;
+
+// Quality and runtime of TeamBalancer on random skill sets. Mixed teams (partition) are
+// compared with the old split by list order, clan battles (selectMovers) with the old move of
+// the last players of the larger clan. Quality is the gap between the team skill totals.
+// No run of it is recorded yet, so finishing 200 players inside one tick is a target, not a
+// measured result:
+//   --players=200 --trials=2000 --budgetMs=5 --seed=1
+public class TeamBalanceBenchmark {
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+            if (parts.length == 2) {
+                options.put(parts[0], parts[1]);
+            }
+        }
+        int maxPlayers = Integer.parseInt(options.getOrDefault("players", "200"));
+        int trials = Integer.parseInt(options.getOrDefault("trials", "2000"));
+        long budgetNanos = Long.parseLong(options.getOrDefault("budgetMs", "5")) * 1_000_000L;
+        Random random = new Random(Long.parseLong(options.getOrDefault("seed", "1")));
+        
+        // Warm up both entry points before timing them
+        for (int i = 0; i < trials; i++) {
+            double[] skills = skills(random, maxPlayers);
+            TeamBalancer.partition(skills, System.nanoTime() + budgetNanos);
+            TeamBalancer.selectMovers(skills, 0, skills.length / 4, System.nanoTime() + budgetNanos);
+        }
+        
+        System.out.println("Team balancing, " + trials + " trials per size, " + budgetNanos / 1_000_000 + " ms budget");
+        System.out.printf(Locale.ROOT, "%-14s %8s %14s %14s %10s %10s %10s%n",
+            "mode", "players", "old gap", "new gap", "p50 ms", "p99 ms", "max ms");
+        for (int players : new TreeSet<>(Arrays.asList(Math.min(20, maxPlayers), Math.min(50, maxPlayers), Math.min(100, maxPlayers), maxPlayers))) {
+            runPartition(random, players, trials, budgetNanos);
+            runMovers(random, players, trials, budgetNanos);
+        }
+    }
+    
+    private static void runPartition(Random random, int players, int trials, long budgetNanos) {
+        LatencyHistogram times = new LatencyHistogram();
+        double oldGap = 0;
+        double newGap = 0;
+        for (int trial = 0; trial < trials; trial++) {
+            double[] skills = skills(random, players);
+            
+            // Old behaviour: the first half of the list against the second
+            double difference = 0;
+            for (int i = 0; i < players; i++) {
+                difference += i < (players + 1) / 2 ? skills[i] : -skills[i];
+            }
+            oldGap += Math.abs(difference);
+            
+            long start = System.nanoTime();
+            boolean[] firstTeam = TeamBalancer.partition(skills, start + budgetNanos);
+            times.record(System.nanoTime() - start);
+            
+            difference = 0;
+            for (int i = 0; i < players; i++) {
+                difference += firstTeam[i] ? skills[i] : -skills[i];
+            }
+            newGap += Math.abs(difference);
+        }
+        print("partition", players, oldGap / trials, newGap / trials, times);
+    }
+    
+    // Two clans 60/40 of the players, the larger moves the surplus to even the team sizes
+    private static void runMovers(Random random, int players, int trials, long budgetNanos) {
+        int largerSize = players * 3 / 5;
+        int moveCount = (largerSize - (players - largerSize)) / 2;
+        LatencyHistogram times = new LatencyHistogram();
+        double oldGap = 0;
+        double newGap = 0;
+        for (int trial = 0; trial < trials; trial++) {
+            double[] larger = skills(random, largerSize);
+            double smallerTotal = 0;
+            for (double skill : skills(random, players - largerSize)) {
+                smallerTotal += skill;
+            }
+            double largerTotal = Arrays.stream(larger).sum();
+            
+            // Old behaviour: the last players of the larger clan move
+            double moved = 0;
+            for (int i = largerSize - moveCount; i < largerSize; i++) {
+                moved += larger[i];
+            }
+            oldGap += Math.abs(largerTotal - moved - (smallerTotal + moved));
+            
+            long start = System.nanoTime();
+            int[] movers = TeamBalancer.selectMovers(larger, smallerTotal, moveCount, start + budgetNanos);
+            times.record(System.nanoTime() - start);
+            
+            moved = 0;
+            for (int index : movers) {
+                moved += larger[index];
+            }
+            newGap += Math.abs(largerTotal - moved - (smallerTotal + moved));
+        }
+        print("selectMovers", players, oldGap / trials, newGap / trials, times);
+    }
+    
+    // Roughly the spread PlayerStatsManager.getSkill produces, with a few standouts
+    private static double[] skills(Random random, int count) {
+        double[] skills = new double[count];
+        for (int i = 0; i < count; i++) {
+            skills[i] = Math.max(0, 100 + random.nextGaussian() * 25 + (random.nextInt(20) == 0 ? 80 : 0));
+        }
+        return skills;
+    }
+    
+    private static void print(String mode, int players, double oldGap, double newGap, LatencyHistogram times) {
+        System.out.printf(Locale.ROOT, "%-14s %8d %14.3f %14.6f %10.4f %10.4f %10.4f%n", mode, players, oldGap, newGap,
+            times.getValueAtPercentile(50) / 1e6, times.getValueAtPercentile(99) / 1e6, times.getMax() / 1e6);
+    }
+}
\ No newline at end of file
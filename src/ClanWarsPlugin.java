@@ -5,10 +5,14 @@ import com.minecraft.clanwars.listeners.*;
 import com.minecraft.clanwars.managers.*;
 import com.minecraft.clanwars.models.*;
 import com.minecraft.clanwars.utils.Config;
-import org.bukkit.Bukkit;
+import com.minecraft.clanwars.utils.IdGenerator;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 
+import java.io.File;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 public class ClanWarsPlugin extends JavaPlugin {
@@ -21,6 +25,40 @@ public class ClanWarsPlugin extends JavaPlugin {
     private FileConfiguration config;
     private ServerManager serverManager;
     private DatabaseManager databaseManager;
+    private SchemaManager schemaManager;
+    private RatingManager ratingManager;
+    private MatchmakingManager matchmakingManager;
+    private PlayerStatsManager playerStatsManager;
+    private BattleHistoryManager battleHistoryManager;
+    private BattleJournal battleJournal;
+    private MetricsManager metricsManager;
+    private TickScheduler tickScheduler;
+    private IOExecutor ioExecutor;
+    private IdGenerator idGenerator;
+    private NodeCoordinator nodeCoordinator;
+    private ChangeFeedManager changeFeedManager;
+    private ReadinessProbe readinessProbe;
+    private PowerPlanner powerPlanner;
+    private SpectatorManager spectatorManager;
+    private ReplayRecorder replayRecorder;
+    private ObjectiveManager objectiveManager;
+    private StaffCache staffCache;
+    private RewardLedger rewardLedger;
+    private ArchiveManager archiveManager;
+    private final Function<ClanWarsPlugin, DatabaseManager> databaseFactory;
+    
+    public ClanWarsPlugin() {
+        super();
+        this.databaseFactory = DatabaseManager::new;
+    }
+    
+    // Used by the headless simulator in the loadtest profile, which runs the plugin outside a
+    // server against its own database. Package-private, the simulator's plugin lives in this package.
+    ClanWarsPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file,
+                   Function<ClanWarsPlugin, DatabaseManager> databaseFactory) {
+        super(loader, description, dataFolder, file);
+        this.databaseFactory = databaseFactory;
+    }
     
     @Override
     public void onEnable() {
@@ -32,42 +70,134 @@ public class ClanWarsPlugin extends JavaPlugin {
         saveDefaultConfig();
         config = getConfig();
         
-        // Initialize database connection
-        databaseManager = new DatabaseManager(this);
-        boolean dbConnected = databaseManager.connect();
+        // Metrics come first so every manager can register its timers
+        metricsManager = new MetricsManager(this);
+        metricsManager.startHttpServer();
         
-        if (!dbConnected) {
-            logger.severe("Failed to connect to database. Disabling ClanWars plugin.");
-            getServer().getPluginManager().disablePlugin(this);
-            return;
-        }
+        // Budgeted main-thread work queue shared by all managers
+        tickScheduler = new TickScheduler(this);
+        
+        // Virtual threads for blocking database and file work
+        ioExecutor = new IOExecutor(this);
         
-        // Initialize managers
-        clanManager = new ClanManager(this);
-        battleManager = new BattleManager(this);
-        arenaManager = new ArenaManager(this);
-        serverManager = new ServerManager(this);
-        scheduleManager = new ScheduleManager(this);
+        // Battle and request IDs, unique across the fleet through the node number
+        idGenerator = new IdGenerator(Config.NODE_NUMBER);
         
-        // Register commands
-        registerCommands();
+        // Loads with nothing in common run side by side on IO threads, Bukkit-facing steps and steps
+        // changing caches other steps read run here. The server ticks only after onEnable returns,
+        // so thenSync callbacks queued by any step run after the whole graph finished. Each step's
+        // uses line names the steps building the managers it gets from the plugin, checked against
+        // its dependencies when it is registered
+        StartupGraph startup = new StartupGraph(logger);
+        startup.worker("database", () -> {
+            databaseManager = databaseFactory.apply(this);
+            if (!databaseManager.connect()) {
+                throw new IllegalStateException("Failed to connect to database");
+            }
+        });
+        
+        // Bring plugin tables up to date
+        startup.worker("schema", () -> {
+            schemaManager = new SchemaManager(this);
+            if (!schemaManager.migrate()) {
+                throw new IllegalStateException("Failed to migrate database schema");
+            }
+        }, "database");
+        startup.uses("schema", "database");
         
-        // Register event listeners
-        registerEventListeners();
+        // Open the battle journal before any battle state is loaded
+        startup.worker("journal", () -> {
+            battleJournal = new BattleJournal(this);
+            battleJournal.open();
+        });
+        
+        // Fleet coordination comes before battle recovery, which checks lease ownership. The node
+        // number must be ours alone before any ID is generated
+        startup.worker("nodes", () -> {
+            nodeCoordinator = new NodeCoordinator(this);
+            nodeCoordinator.claimNodeNumber();
+        }, "schema");
+        startup.uses("nodes", "database");
+        
+        // Read the change feed position before the caches load so no change is missed
+        startup.worker("change-feed", () -> changeFeedManager = new ChangeFeedManager(this), "schema");
+        startup.uses("change-feed", "database");
+        
+        // Finish interrupted archive batches before anything reads battle history
+        startup.worker("archive", () -> archiveManager = new ArchiveManager(this), "schema");
+        startup.uses("archive", "database");
+        
+        // Independent caches
+        startup.worker("ratings", () -> ratingManager = new RatingManager(this), "schema");
+        startup.uses("ratings", "database");
+        startup.worker("player-stats", () -> playerStatsManager = new PlayerStatsManager(this), "schema");
+        startup.uses("player-stats", "database");
+        startup.worker("history", () -> battleHistoryManager = new BattleHistoryManager(this), "archive");
+        startup.uses("history", "database", "archive");
+        startup.worker("clans", () -> clanManager = new ClanManager(this), "change-feed", "ratings");
+        startup.uses("clans", "database", "change-feed", "ratings");
+        // Arenas resolve their worlds and locations through Bukkit
+        startup.main("arenas", () -> arenaManager = new ArenaManager(this), "schema");
+        startup.uses("arenas", "database");
+        startup.worker("battles", () -> battleManager = new BattleManager(this), "schema");
+        startup.worker("battle-requests", () -> battleManager.loadBattleRequests(), "battles", "change-feed");
+        startup.uses("battle-requests", "database", "battles");
+        // Recovered battles record their entitlements, so the ledger exists before recovery runs
+        startup.worker("rewards", () -> rewardLedger = new RewardLedger(this), "schema");
+        // Finalizing a battle updates clan and player stats and restoring one puts its request back
+        // in the cache, so recovery waits for those loads and runs here, where nothing else writes them
+        startup.main("battle-recovery", () -> battleManager.recoverInterruptedBattles(),
+            "battles", "battle-requests", "journal", "nodes", "change-feed", "clans", "player-stats", "rewards");
+        startup.uses("battle-recovery", "database", "battles", "battle-requests", "journal", "nodes", "change-feed",
+            "clans", "ratings", "player-stats", "rewards");
+        startup.worker("matchmaking", () -> matchmakingManager = new MatchmakingManager(this), "clans", "battle-recovery");
+        startup.uses("matchmaking", "database", "clans");
+        
+        startup.main("services", () -> {
+            serverManager = new ServerManager(this);
+            scheduleManager = new ScheduleManager(this);
+            readinessProbe = new ReadinessProbe(this);
+            powerPlanner = new PowerPlanner(this);
+            spectatorManager = new SpectatorManager(this);
+            replayRecorder = new ReplayRecorder(this);
+            objectiveManager = new ObjectiveManager(this);
+            staffCache = new StaffCache(this);
+            metricsManager.gauge("matchmaking_queue", matchmakingManager::getQueueSize);
+            metricsManager.gauge("online_players", () -> getServer().getOnlinePlayers().size());
+        }, "arenas", "battle-requests", "battle-recovery", "matchmaking", "history");
+        // Commands, listeners and tasks reach every manager, all of them are built before services
+        startup.uses("services", "database", "journal", "nodes", "change-feed", "archive", "ratings", "player-stats",
+            "history", "clans", "arenas", "battles", "battle-requests", "rewards", "battle-recovery", "matchmaking");
+        
+        // Register commands and event listeners
+        startup.main("commands", this::registerCommands, "services");
+        startup.main("listeners", this::registerEventListeners, "services");
         
         // Start scheduled tasks
-        scheduleManager.startScheduleTasks();
+        startup.main("tasks", () -> {
+            tickScheduler.start();
+            replayRecorder.start();
+            scheduleManager.startScheduleTasks();
+            matchmakingManager.startTasks();
+            nodeCoordinator.startTasks();
+            changeFeedManager.startTasks();
+            playerStatsManager.startRefreshTask();
+            staffCache.startTasks();
+            archiveManager.startTasks();
+        }, "services");
+        
+        if (!startup.run(ioExecutor)) {
+            logger.severe("ClanWars failed to start. Disabling ClanWars plugin.");
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
         
         // Check if server should be running based on schedule
-        if (!serverManager.shouldServerBeRunning()) {
+        if (!serverManager.shouldServerBeRunning() && !powerPlanner.shouldKeepAlive(System.currentTimeMillis())) {
             logger.info("No battles scheduled for current time. Server should be shut down.");
             if (Config.AUTO_SHUTDOWN_ENABLED) {
-                logger.info("Auto-shutdown is enabled. Server will shutdown in 30 seconds if no admin overrides.");
-                Bukkit.getScheduler().runTaskLater(this, () -> {
-                    if (!serverManager.isAdminOverride() && !serverManager.shouldServerBeRunning()) {
-                        serverManager.shutdownServer();
-                    }
-                }, 20 * 30); // 30 seconds delay
+                logger.info("Auto-shutdown is enabled. Server will shutdown in " + ReadinessProbe.IDLE_SHUTDOWN_GRACE_SECONDS + " seconds if no admin overrides, or up to " + Math.max(ReadinessProbe.IDLE_SHUTDOWN_GRACE_SECONDS, Config.READINESS_MAX_WAIT_SECONDS) + " seconds while one is online.");
+                readinessProbe.awaitIdleShutdown();
             }
         }
         
@@ -76,6 +206,11 @@ public class ClanWarsPlugin extends JavaPlugin {
     
     @Override
     public void onDisable() {
+        // Let queued database work finish, anything submitted from here on runs inline
+        if (ioExecutor != null) {
+            ioExecutor.shutdown();
+        }
+        
         // Save data before shutdown
         if (clanManager != null) {
             clanManager.saveAllClans();
@@ -85,15 +220,54 @@ public class ClanWarsPlugin extends JavaPlugin {
             battleManager.endAllBattles();
         }
         
+        // No more ticks will come, run the teleports and rewards ending battles queued
+        if (tickScheduler != null) {
+            tickScheduler.shutdown();
+        }
+        
+        // Ended battles queued their last replay records, let the writer finish the files
+        if (replayRecorder != null) {
+            replayRecorder.shutdown();
+        }
+        
+        if (battleJournal != null) {
+            battleJournal.close();
+        }
+        
+        if (nodeCoordinator != null) {
+            nodeCoordinator.shutdown();
+        }
+        
+        if (changeFeedManager != null) {
+            changeFeedManager.shutdown();
+        }
+        
+        if (staffCache != null) {
+            staffCache.shutdown();
+        }
+        
+        if (archiveManager != null) {
+            archiveManager.shutdown();
+        }
+        
         // Close database connection
         if (databaseManager != null) {
             databaseManager.disconnect();
         }
         
+        if (metricsManager != null) {
+            metricsManager.shutdown();
+        }
+        
         logger.info("ClanWars plugin has been disabled!");
     }
     
     private void registerCommands() {
+        // Commands come from plugin.yml, the headless simulator runs without one
+        if (getDescription().getCommands().isEmpty()) {
+            return;
+        }
+        
         // Register main command executor
         ClanWarsCommandExecutor mainExecutor = new ClanWarsCommandExecutor(this);
         getCommand("clanwars").setExecutor(mainExecutor);
@@ -111,6 +285,14 @@ public class ClanWarsPlugin extends JavaPlugin {
         
         // Battle related events
         getServer().getPluginManager().registerEvents(new BattleListener(this), this);
+        getServer().getPluginManager().registerEvents(new ArenaBoundaryListener(this), this);
+        getServer().getPluginManager().registerEvents(new ObjectiveListener(this), this);
+        
+        // Staff presence
+        getServer().getPluginManager().registerEvents(new StaffListener(this), this);
+        
+        // Rewards owed from battles fought while offline
+        getServer().getPluginManager().registerEvents(new RewardListener(this), this);
         
         // Clan related events
         getServer().getPluginManager().registerEvents(new ClanListener(this), this);
@@ -144,4 +326,84 @@ public class ClanWarsPlugin extends JavaPlugin {
     public DatabaseManager getDatabaseManager() {
         return databaseManager;
     }
+    
+    public BattleJournal getBattleJournal() {
+        return battleJournal;
+    }
+    
+    public SchemaManager getSchemaManager() {
+        return schemaManager;
+    }
+    
+    public RatingManager getRatingManager() {
+        return ratingManager;
+    }
+    
+    public MatchmakingManager getMatchmakingManager() {
+        return matchmakingManager;
+    }
+    
+    public PlayerStatsManager getPlayerStatsManager() {
+        return playerStatsManager;
+    }
+    
+    public BattleHistoryManager getBattleHistoryManager() {
+        return battleHistoryManager;
+    }
+    
+    public MetricsManager getMetricsManager() {
+        return metricsManager;
+    }
+    
+    public TickScheduler getTickScheduler() {
+        return tickScheduler;
+    }
+    
+    public IOExecutor getIOExecutor() {
+        return ioExecutor;
+    }
+    
+    public NodeCoordinator getNodeCoordinator() {
+        return nodeCoordinator;
+    }
+    
+    public ChangeFeedManager getChangeFeedManager() {
+        return changeFeedManager;
+    }
+    
+    public ReadinessProbe getReadinessProbe() {
+        return readinessProbe;
+    }
+    
+    public PowerPlanner getPowerPlanner() {
+        return powerPlanner;
+    }
+    
+    public SpectatorManager getSpectatorManager() {
+        return spectatorManager;
+    }
+    
+    public ReplayRecorder getReplayRecorder() {
+        return replayRecorder;
+    }
+    
+    public ObjectiveManager getObjectiveManager() {
+        return objectiveManager;
+    }
+    
+    public StaffCache getStaffCache() {
+        return staffCache;
+    }
+    
+    public IdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+    
+    public RewardLedger getRewardLedger() {
+        return rewardLedger;
+    }
+    
+    public ArchiveManager getArchiveManager() {
+        return archiveManager;
+    }
 }
\ No newline at end of file
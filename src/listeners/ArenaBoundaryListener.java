@@ -0,0 +1,149 @@
+package com.minecraft.clanwars.listeners;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.managers.BattleManager;
+import com.minecraft.clanwars.managers.MetricsManager;
+import com.minecraft.clanwars.models.Arena;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.models.BattleStatus;
+import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.LatencyHistogram;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps fighting players inside their arena. Move events fire many times a second for every
+// player on the server, so players outside a battle leave after one bit test and the
+// boundary is only checked when the player reaches a new block. The arena is the box around
+// its spawn points, widened by the boundary radius. Outside it, only moves that get further
+// away are stopped, so a player who ends up outside can still walk back in.
+public class ArenaBoundaryListener implements Listener {
+    private final ClanWarsPlugin plugin;
+    private final Map<String, Bounds> arenaBounds; // arena ID -> box around its spawn points
+    private final LongAdder moveEvents;
+    private final LongAdder moveChecks;
+    private final LongAdder joinEvents;
+    private final LatencyHistogram moveTimer;
+    private final LatencyHistogram joinTimer;
+    
+    public ArenaBoundaryListener(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.arenaBounds = new HashMap<>();
+        
+        MetricsManager metrics = plugin.getMetricsManager();
+        this.moveEvents = metrics.counter("listener_move_events");
+        this.moveChecks = metrics.counter("listener_move_boundary_checks");
+        this.joinEvents = metrics.counter("listener_join_events");
+        this.moveTimer = metrics.timer("listener_move");
+        this.joinTimer = metrics.timer("listener_join");
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        long start = System.nanoTime();
+        joinEvents.increment();
+        plugin.getBattleManager().getMembershipIndex().rejoined(event.getPlayer());
+        joinTimer.record(System.nanoTime() - start);
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        // Timed from the top, the filtered events are most of the cost
+        long start = System.nanoTime();
+        try {
+            moveEvents.increment();
+            BattleManager battleManager = plugin.getBattleManager();
+            if (!battleManager.isPlayerInBattle(event.getPlayer())) {
+                return;
+            }
+            
+            Location from = event.getFrom();
+            Location to = event.getTo();
+            if (to == null || (from.getBlockX() == to.getBlockX() && from.getBlockZ() == to.getBlockZ()
+                && from.getBlockY() == to.getBlockY())) {
+                return;
+            }
+            
+            moveChecks.increment();
+            Player player = event.getPlayer();
+            Battle battle = battleManager.getPlayerBattle(player.getUniqueId());
+            if (battle != null && battle.getStatus() == BattleStatus.ACTIVE) {
+                Bounds bounds = arenaBounds.computeIfAbsent(battle.getArenaId(), this::computeBounds);
+                double outside = bounds.distanceOutside(to);
+                if (outside > 0 && outside > bounds.distanceOutside(from)) {
+                    event.setTo(from);
+                    player.sendMessage(ChatColor.RED + "You cannot leave the arena during the battle!");
+                }
+            }
+        } finally {
+            moveTimer.record(System.nanoTime() - start);
+        }
+    }
+    
+    private Bounds computeBounds(String arenaId) {
+        Arena arena = plugin.getArenaManager().getArena(arenaId);
+        List<Location> spawns = new ArrayList<>();
+        spawns.add(arena.getTeam1SpawnPoint());
+        spawns.add(arena.getTeam2SpawnPoint());
+        if (arena.getSpectatorSpawnPoint() != null) {
+            spawns.add(arena.getSpectatorSpawnPoint());
+        }
+        return new Bounds(spawns, Config.ARENA_BOUNDARY_RADIUS);
+    }
+    
+    // Box around the spawn points in the arena's world. Other worlds count as infinitely far,
+    // so a player moved to another world is not stopped there.
+    private static class Bounds {
+        private final UUID worldId;
+        private final double minX;
+        private final double minY;
+        private final double minZ;
+        private final double maxX;
+        private final double maxY;
+        private final double maxZ;
+        
+        private Bounds(List<Location> spawns, double margin) {
+            Location first = spawns.get(0);
+            double lowX = first.getX();
+            double lowY = first.getY();
+            double lowZ = first.getZ();
+            double highX = lowX;
+            double highY = lowY;
+            double highZ = lowZ;
+            for (Location spawn : spawns) {
+                lowX = Math.min(lowX, spawn.getX());
+                lowY = Math.min(lowY, spawn.getY());
+                lowZ = Math.min(lowZ, spawn.getZ());
+                highX = Math.max(highX, spawn.getX());
+                highY = Math.max(highY, spawn.getY());
+                highZ = Math.max(highZ, spawn.getZ());
+            }
+            this.worldId = first.getWorld() != null ? first.getWorld().getUID() : null;
+            this.minX = lowX - margin;
+            this.minY = lowY - margin;
+            this.minZ = lowZ - margin;
+            this.maxX = highX + margin;
+            this.maxY = highY + margin;
+            this.maxZ = highZ + margin;
+        }
+        
+        // Squared distance from the box, 0 inside it
+        private double distanceOutside(Location location) {
+            if (location.getWorld() == null || !location.getWorld().getUID().equals(worldId)) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double dx = Math.max(0, Math.max(minX - location.getX(), location.getX() - maxX));
+            double dy = Math.max(0, Math.max(minY - location.getY(), location.getY() - maxY));
+            double dz = Math.max(0, Math.max(minZ - location.getZ(), location.getZ() - maxZ));
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.minecraft.clanwars.listeners;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Battle;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+// Drops a carried flag however its carrier leaves play: the void, a fall, any other death
+// or a disconnect. Kills reach ObjectiveManager through BattleManager.recordKill as well,
+// dropping an already dropped flag does nothing. LOWEST so the player still belongs to
+// the battle when the quit handlers run.
+public class ObjectiveListener implements Listener {
+    private final ClanWarsPlugin plugin;
+    
+    public ObjectiveListener(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerDeath(PlayerDeathEvent event) {
+        playerLeftPlay(event.getEntity());
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        playerLeftPlay(event.getPlayer());
+    }
+    
+    private void playerLeftPlay(Player player) {
+        Battle battle = plugin.getBattleManager().getPlayerBattle(player.getUniqueId());
+        if (battle != null) {
+            plugin.getObjectiveManager().playerDied(battle, player);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.minecraft.clanwars.listeners;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+// Hands out rewards from the ledger that were earned while the player was offline
+public class RewardListener implements Listener {
+    private final ClanWarsPlugin plugin;
+    
+    public RewardListener(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getRewardLedger().deliver(event.getPlayer());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.minecraft.clanwars.listeners;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+// Keeps StaffCache in step with who is online. Permission plugins set up permissions before
+// MONITOR handlers run, and per-world permissions can change with the world.
+public class StaffListener implements Listener {
+    private final ClanWarsPlugin plugin;
+    
+    public StaffListener(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getStaffCache().update(event.getPlayer());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        plugin.getStaffCache().update(event.getPlayer());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getStaffCache().remove(event.getPlayer());
+    }
+}
\ No newline at end of file
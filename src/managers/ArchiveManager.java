@@ -0,0 +1,649 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.BattleGameMode;
+import com.minecraft.clanwars.models.BattleSummary;
+import com.minecraft.clanwars.models.PlayerBattleSummary;
+import com.minecraft.clanwars.utils.ArchiveSegment;
+import com.minecraft.clanwars.utils.ArchiveSegment.ColumnType;
+import com.minecraft.clanwars.utils.ClanTags;
+import com.minecraft.clanwars.utils.Config;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+// Moves ended battles, their player stats and declined or started requests past the retention
+// window out of the database into ArchiveSegment files. A batch is written to disk first, then
+// cataloged in archive_segments, then deleted from the live tables, and only then marked
+// complete; every step after the catalog row can be repeated, so a batch interrupted half way
+// is finished by the next run. Head-to-head counts of archived battles stay queryable from
+// archived_matchups, lifetime stats were never derived from the archived rows.
+//
+// Only one node archives at a time: a run holds the row in archive_lease, renewed before every
+// batch, and finishing interrupted batches also happens under it. Segment files live in the
+// plugin's archive directory while the rows they replace are deleted from the shared database, so
+// in a fleet either set archive node-id to the one node whose disk keeps the files, or put the
+// archive directory on storage every node mounts. Other nodes only pick up completed segments
+// from the catalog, which is all they need when the directory is shared.
+public class ArchiveManager {
+    public static final String BATTLES = "BATTLES";
+    public static final String PLAYER_STATS = "PLAYER_STATS";
+    public static final String REQUESTS = "REQUESTS";
+    private static final int MAX_BATCHES_PER_RUN = 20;
+    private static final int DECODED_SEGMENTS = 8;
+    private static final String LEASE = "archive";
+    public static final Comparator<BattleSummary> NEWEST_FIRST =
+        Comparator.comparingLong(BattleSummary::getStartTime).thenComparing(BattleSummary::getId).reversed();
+    public static final Comparator<PlayerBattleSummary> PLAYER_NEWEST_FIRST =
+        Comparator.comparingLong(PlayerBattleSummary::getStartTime).thenComparing(PlayerBattleSummary::getBattleId).reversed();
+    
+    private static final String[] BATTLE_COLUMNS = {"id", "request_id", "clan1_tag", "clan2_tag", "game_mode", "arena_id",
+        "start_time", "end_time", "status", "end_reason", "winner_tag", "team1_score", "team2_score"};
+    private static final ColumnType[] BATTLE_TYPES = {ColumnType.STRING, ColumnType.STRING, ColumnType.STRING, ColumnType.STRING,
+        ColumnType.STRING, ColumnType.STRING, ColumnType.LONG, ColumnType.LONG, ColumnType.STRING, ColumnType.STRING,
+        ColumnType.STRING, ColumnType.INT, ColumnType.INT};
+    // Game mode and start time are copied from the battle so player history needs no join
+    private static final String[] STATS_COLUMNS = {"battle_id", "player_uuid", "player_name", "clan_tag", "kills", "deaths",
+        "score", "winner", "game_mode", "start_time"};
+    private static final ColumnType[] STATS_TYPES = {ColumnType.STRING, ColumnType.UUID, ColumnType.STRING, ColumnType.STRING,
+        ColumnType.INT, ColumnType.INT, ColumnType.INT, ColumnType.BOOLEAN, ColumnType.STRING, ColumnType.LONG};
+    private static final String[] REQUEST_COLUMNS = {"id", "clan1_tag", "clan2_tag", "requester_uuid", "admin_uuid", "game_mode",
+        "scheduled_time", "request_time", "status"};
+    private static final ColumnType[] REQUEST_TYPES = {ColumnType.STRING, ColumnType.STRING, ColumnType.STRING, ColumnType.STRING,
+        ColumnType.STRING, ColumnType.STRING, ColumnType.LONG, ColumnType.LONG, ColumnType.STRING};
+    
+    private final ClanWarsPlugin plugin;
+    private final File directory;
+    private final Map<String, List<ArchiveSegment>> segments; // kind -> completed segments, newest first
+    private final Map<File, List<Object[]>> decoded; // recently read segment bodies
+    private final Set<String> missing; // cataloged segments not found on this node's disk
+    private final AtomicBoolean archiving;
+    private BukkitTask archiveTask;
+    
+    public ArchiveManager(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), "archive");
+        this.segments = new HashMap<>();
+        this.decoded = new LinkedHashMap<File, List<Object[]>>(DECODED_SEGMENTS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, List<Object[]>> eldest) {
+                return size() > DECODED_SEGMENTS;
+            }
+        };
+        this.archiving = new AtomicBoolean();
+        this.missing = Collections.synchronizedSet(new HashSet<>());
+        
+        MetricsManager metrics = plugin.getMetricsManager();
+        metrics.gauge("archive_segments", this::segmentCount);
+        try {
+            // Batches interrupted by a crash are finished before anything reads battle history
+            if (Config.ARCHIVE_ENABLED && isArchiveNode() && acquireLease()) {
+                try {
+                    finishIncompleteBatches();
+                } finally {
+                    releaseLease();
+                }
+            } else {
+                refreshCatalog();
+            }
+        } catch (SQLException | IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error loading battle archive catalog", e);
+        }
+    }
+    
+    public void startTasks() {
+        if (!Config.ARCHIVE_ENABLED) {
+            return;
+        }
+        // Every node runs the task, only the archive node archives and the others refresh the catalog
+        long period = 20L * 60L * Math.max(1, Config.ARCHIVE_INTERVAL_MINUTES);
+        archiveTask = Bukkit.getScheduler().runTaskTimer(plugin, this::archiveAsync, period, period);
+    }
+    
+    public void shutdown() {
+        if (archiveTask != null) {
+            archiveTask.cancel();
+        }
+    }
+    
+    public void archiveAsync() {
+        if (!archiving.compareAndSet(false, true)) {
+            return;
+        }
+        plugin.getIOExecutor().run(() -> {
+            if (isArchiveNode() && acquireLease()) {
+                try {
+                    finishIncompleteBatches();
+                    archive();
+                } finally {
+                    releaseLease();
+                }
+            } else {
+                refreshCatalog();
+            }
+        }).whenComplete((ignored, error) -> {
+            archiving.set(false);
+            if (error != null) {
+                plugin.getLogger().log(Level.SEVERE, "Error archiving old battles", error);
+            }
+        });
+    }
+    
+    // Newest first archived battles of a clan, or of a clan against one opponent, strictly before
+    // the (start time, battle ID) position
+    public List<BattleSummary> findBattles(String clanTag, String opponentTag, long beforeTime, String beforeId, int limit) throws IOException {
+        List<BattleSummary> found = new ArrayList<>();
+        for (ArchiveSegment segment : segments(BATTLES)) {
+            if (segment.getMinTime() > beforeTime || !segment.mayContainClan(clanTag)
+                || (opponentTag != null && !segment.mayContainClan(opponentTag))) {
+                continue;
+            }
+            // Segments are ordered by their newest battle, none of the rest can beat a full page
+            if (found.size() >= limit && segment.getMaxTime() < found.get(limit - 1).getStartTime()) {
+                break;
+            }
+            
+            for (Object[] row : rows(segment)) {
+                BattleSummary battle = toBattleSummary(row);
+                boolean involved = opponentTag == null
+                    ? clanTag.equals(battle.getClan1Tag()) || clanTag.equals(battle.getClan2Tag())
+                    : (clanTag.equals(battle.getClan1Tag()) && opponentTag.equals(battle.getClan2Tag()))
+                      || (opponentTag.equals(battle.getClan1Tag()) && clanTag.equals(battle.getClan2Tag()));
+                if (involved && isBefore(battle, beforeTime, beforeId)) {
+                    found.add(battle);
+                }
+            }
+            found.sort(NEWEST_FIRST);
+        }
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+    
+    // Newest first archived battles of a player strictly before the (start time, battle ID) position
+    public List<PlayerBattleSummary> findPlayerBattles(UUID playerId, long beforeTime, String beforeId, int limit) throws IOException {
+        List<PlayerBattleSummary> found = new ArrayList<>();
+        for (ArchiveSegment segment : segments(PLAYER_STATS)) {
+            if (segment.getMinTime() > beforeTime) {
+                continue;
+            }
+            // Segments are ordered by their newest battle, none of the rest can beat a full page
+            if (found.size() >= limit && segment.getMaxTime() < found.get(limit - 1).getStartTime()) {
+                break;
+            }
+            for (Object[] row : rows(segment)) {
+                String battleId = (String) row[0];
+                long startTime = (Long) row[9];
+                if (playerId.equals(row[1]) && (startTime < beforeTime || (startTime == beforeTime && battleId.compareTo(beforeId) < 0))) {
+                    found.add(new PlayerBattleSummary(battleId, ClanTags.canonical((String) row[3]),
+                        BattleGameMode.canonicalName((String) row[8]), startTime,
+                        (Integer) row[4], (Integer) row[5], (Integer) row[6], (Boolean) row[7]));
+                }
+            }
+            found.sort(PLAYER_NEWEST_FIRST);
+        }
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+    
+    // Start time of the newest archived battle, live battles after it never need the archive
+    public long getNewestBattleTime() {
+        List<ArchiveSegment> battles = segments(BATTLES);
+        return battles.isEmpty() ? Long.MIN_VALUE : battles.get(0).getMaxTime();
+    }
+    
+    public long getNewestPlayerBattleTime() {
+        List<ArchiveSegment> stats = segments(PLAYER_STATS);
+        return stats.isEmpty() ? Long.MIN_VALUE : stats.get(0).getMaxTime();
+    }
+    
+    // Archived battles with a winner that ended before the given time, by end time across all
+    // segments. Segments are cut by start time, so their end times overlap.
+    public List<BattleSummary> findDecidedBattles(long endedBefore) throws IOException {
+        List<BattleSummary> found = new ArrayList<>();
+        for (ArchiveSegment segment : segments(BATTLES)) {
+            for (Object[] row : segment.readRows()) {
+                BattleSummary battle = toBattleSummary(row);
+                if (battle.getWinnerTag() != null && battle.getEndTime() < endedBefore) {
+                    found.add(battle);
+                }
+            }
+        }
+        found.sort(Comparator.comparingLong(BattleSummary::getEndTime).thenComparing(BattleSummary::getId));
+        return found;
+    }
+    
+    private void archive() throws SQLException, IOException {
+        long cutoff = System.currentTimeMillis() - Config.ARCHIVE_RETENTION_DAYS * 24L * 60L * 60L * 1000L;
+        int batchSize = Math.max(1, Config.ARCHIVE_BATCH_SIZE);
+        directory.mkdirs();
+        
+        int archived = 0;
+        for (int batch = 0; batch < MAX_BATCHES_PER_RUN && renewLease(); batch++) {
+            int moved = archiveBattles(cutoff, batchSize);
+            archived += moved;
+            if (moved < batchSize) {
+                break;
+            }
+        }
+        for (int batch = 0; batch < MAX_BATCHES_PER_RUN && renewLease(); batch++) {
+            int moved = archiveRequests(cutoff, batchSize);
+            archived += moved;
+            if (moved < batchSize) {
+                break;
+            }
+        }
+        if (archived > 0) {
+            plugin.getMetricsManager().counter("archive_rows").add(archived);
+            plugin.getLogger().info("Archived " + archived + " battle and request rows older than " + Config.ARCHIVE_RETENTION_DAYS + " days");
+        }
+    }
+    
+    private int archiveBattles(long cutoff, int batchSize) throws SQLException, IOException {
+        try (Connection conn = connection()) {
+            // Battles with rewards still owed stay until the ledger delivered them
+            PreparedStatement ps = conn.prepareStatement(
+                "SELECT " + String.join(", ", BATTLE_COLUMNS) + " FROM battles b WHERE status = 'ENDED' AND start_time < ? " +
+                "AND NOT EXISTS (SELECT 1 FROM reward_ledger r WHERE r.battle_id = b.id AND r.delivered_at IS NULL) " +
+                "ORDER BY start_time, id LIMIT ?");
+            ps.setLong(1, cutoff);
+            ps.setInt(2, batchSize);
+            ResultSet rs = ps.executeQuery();
+            List<Object[]> battles = new ArrayList<>();
+            Map<String, Object[]> battlesById = new HashMap<>();
+            while (rs.next()) {
+                Object[] row = readRow(rs, BATTLE_COLUMNS, BATTLE_TYPES);
+                battles.add(row);
+                battlesById.put((String) row[0], row);
+            }
+            rs.close();
+            ps.close();
+            if (battles.isEmpty()) {
+                return 0;
+            }
+            
+            ps = conn.prepareStatement(
+                "SELECT battle_id, player_uuid, player_name, clan_tag, kills, deaths, score, winner FROM player_battle_stats " +
+                "WHERE battle_id IN (" + String.join(", ", Collections.nCopies(battles.size(), "?")) + ")");
+            for (int i = 0; i < battles.size(); i++) {
+                ps.setString(i + 1, (String) battles.get(i)[0]);
+            }
+            rs = ps.executeQuery();
+            List<Object[]> stats = new ArrayList<>();
+            while (rs.next()) {
+                Object[] battle = battlesById.get(rs.getString("battle_id"));
+                stats.add(new Object[] {rs.getString("battle_id"), UUID.fromString(rs.getString("player_uuid")), rs.getString("player_name"),
+                    rs.getString("clan_tag"), rs.getInt("kills"), rs.getInt("deaths"), rs.getInt("score"), rs.getBoolean("winner"),
+                    battle[4], battle[6]});
+            }
+            rs.close();
+            ps.close();
+            stats.sort(Comparator.comparingLong((Object[] row) -> (Long) row[9]).thenComparing(row -> (String) row[0]));
+            
+            String batchId = plugin.getIdGenerator().next();
+            List<ArchiveSegment> written = new ArrayList<>();
+            try {
+                if (!stats.isEmpty()) {
+                    written.add(ArchiveSegment.write(new File(directory, "stats-" + batchId + ".cwa"), PLAYER_STATS,
+                        STATS_COLUMNS, STATS_TYPES, stats, 9, 3));
+                }
+                written.add(ArchiveSegment.write(new File(directory, "battles-" + batchId + ".cwa"), BATTLES,
+                    BATTLE_COLUMNS, BATTLE_TYPES, battles, 6, 2, 3));
+                catalog(conn, written);
+            } catch (IOException | SQLException e) {
+                // Nothing was deleted yet, the rows stay live and the batch is retried next run
+                for (ArchiveSegment segment : written) {
+                    segment.getFile().delete();
+                }
+                throw e;
+            }
+            
+            // Stats first, in case player_battle_stats references battles
+            for (ArchiveSegment segment : written) {
+                complete(conn, segment, segment.getKind().equals(BATTLES) ? battles : stats);
+            }
+            return battles.size();
+        }
+    }
+    
+    private int archiveRequests(long cutoff, int batchSize) throws SQLException, IOException {
+        try (Connection conn = connection()) {
+            PreparedStatement ps = conn.prepareStatement(
+                "SELECT " + String.join(", ", REQUEST_COLUMNS) + " FROM battle_requests " +
+                "WHERE status IN ('DECLINED', 'STARTED') AND scheduled_time < ? ORDER BY scheduled_time, id LIMIT ?");
+            ps.setLong(1, cutoff);
+            ps.setInt(2, batchSize);
+            ResultSet rs = ps.executeQuery();
+            List<Object[]> requests = new ArrayList<>();
+            while (rs.next()) {
+                requests.add(readRow(rs, REQUEST_COLUMNS, REQUEST_TYPES));
+            }
+            rs.close();
+            ps.close();
+            if (requests.isEmpty()) {
+                return 0;
+            }
+            
+            ArchiveSegment segment = ArchiveSegment.write(new File(directory, "requests-" + plugin.getIdGenerator().next() + ".cwa"),
+                REQUESTS, REQUEST_COLUMNS, REQUEST_TYPES, requests, 6, 1, 2);
+            try {
+                catalog(conn, Collections.singletonList(segment));
+            } catch (SQLException e) {
+                segment.getFile().delete();
+                throw e;
+            }
+            complete(conn, segment, requests);
+            return requests.size();
+        }
+    }
+    
+    // One statement for the whole batch, so a batch is either cataloged or not at all
+    private void catalog(Connection conn, List<ArchiveSegment> batch) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "INSERT INTO archive_segments (file_name, kind, row_count, min_time, max_time, created_at) VALUES " +
+            String.join(", ", Collections.nCopies(batch.size(), "(?, ?, ?, ?, ?, ?)")));
+        long now = System.currentTimeMillis();
+        int index = 1;
+        for (ArchiveSegment segment : batch) {
+            ps.setString(index++, segment.getFile().getName());
+            ps.setString(index++, segment.getKind());
+            ps.setInt(index++, segment.getRowCount());
+            ps.setLong(index++, segment.getMinTime());
+            ps.setLong(index++, segment.getMaxTime());
+            ps.setLong(index++, now);
+        }
+        ps.executeUpdate();
+        ps.close();
+    }
+    
+    // Rolls the segment up and deletes its rows from the live tables. Each statement can run
+    // again without changing the result, which is what makes an interrupted batch resumable.
+    private void complete(Connection conn, ArchiveSegment segment, List<Object[]> rows) throws SQLException {
+        String segmentName = segment.getFile().getName();
+        Set<String> ids = new LinkedHashSet<>();
+        for (Object[] row : rows) {
+            ids.add((String) row[0]);
+        }
+        PreparedStatement ps;
+        
+        switch (segment.getKind()) {
+            case BATTLES:
+                Map<String, int[]> matchups = new HashMap<>(); // "clan|opponent" -> battles, wins
+                for (Object[] row : rows) {
+                    String clan1Tag = (String) row[2];
+                    String clan2Tag = (String) row[3];
+                    String winnerTag = (String) row[10];
+                    int[] first = matchups.computeIfAbsent(clan1Tag + "|" + clan2Tag, key -> new int[2]);
+                    int[] second = matchups.computeIfAbsent(clan2Tag + "|" + clan1Tag, key -> new int[2]);
+                    first[0]++;
+                    second[0]++;
+                    if (clan1Tag.equals(winnerTag)) {
+                        first[1]++;
+                    } else if (clan2Tag.equals(winnerTag)) {
+                        second[1]++;
+                    }
+                }
+                ps = conn.prepareStatement(
+                    "INSERT IGNORE INTO archived_matchups (clan_tag, opponent_tag, segment_name, battles, wins) VALUES (?, ?, ?, ?, ?)");
+                for (Map.Entry<String, int[]> entry : matchups.entrySet()) {
+                    int separator = entry.getKey().indexOf('|');
+                    ps.setString(1, entry.getKey().substring(0, separator));
+                    ps.setString(2, entry.getKey().substring(separator + 1));
+                    ps.setString(3, segmentName);
+                    ps.setInt(4, entry.getValue()[0]);
+                    ps.setInt(5, entry.getValue()[1]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                ps.close();
+                deleteRows(conn, "DELETE FROM battles WHERE id = ?", ids);
+                break;
+            case PLAYER_STATS:
+                deleteRows(conn, "DELETE FROM player_battle_stats WHERE battle_id = ?", ids);
+                break;
+            case REQUESTS:
+                deleteRows(conn, "DELETE FROM battle_requests WHERE id = ?", ids);
+                break;
+        }
+        
+        ps = conn.prepareStatement("UPDATE archive_segments SET completed_at = ? WHERE file_name = ?");
+        ps.setLong(1, System.currentTimeMillis());
+        ps.setString(2, segmentName);
+        ps.executeUpdate();
+        ps.close();
+        
+        addSegment(segment);
+    }
+    
+    private synchronized void addSegment(ArchiveSegment segment) {
+        List<ArchiveSegment> list = new ArrayList<>(segments.getOrDefault(segment.getKind(), Collections.emptyList()));
+        for (ArchiveSegment known : list) {
+            if (known.getFile().equals(segment.getFile())) {
+                return;
+            }
+        }
+        list.add(segment);
+        list.sort(Comparator.comparingLong(ArchiveSegment::getMaxTime).reversed());
+        segments.put(segment.getKind(), list);
+    }
+    
+    private static void deleteRows(Connection conn, String sql, Collection<String> ids) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql);
+        for (String id : ids) {
+            ps.setString(1, id);
+            ps.addBatch();
+        }
+        ps.executeBatch();
+        ps.close();
+    }
+    
+    // Opens completed segments cataloged since the last refresh, e.g. by the archive node
+    private void refreshCatalog() throws SQLException, IOException {
+        Set<String> known = new HashSet<>();
+        synchronized (this) {
+            for (List<ArchiveSegment> list : segments.values()) {
+                for (ArchiveSegment segment : list) {
+                    known.add(segment.getFile().getName());
+                }
+            }
+        }
+        
+        List<String> added = new ArrayList<>();
+        try (Connection conn = connection()) {
+            PreparedStatement ps = conn.prepareStatement(
+                "SELECT file_name FROM archive_segments WHERE completed_at IS NOT NULL ORDER BY file_name");
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                String fileName = rs.getString("file_name");
+                if (!known.contains(fileName)) {
+                    added.add(fileName);
+                }
+            }
+            rs.close();
+            ps.close();
+        }
+        
+        for (String fileName : added) {
+            File file = new File(directory, fileName);
+            if (!file.exists()) {
+                if (missing.add(fileName)) {
+                    plugin.getLogger().warning("Archive segment " + fileName + " is cataloged but missing from " + directory.getPath()
+                        + ", archive node-id should name the node that keeps the archive unless the directory is shared");
+                }
+                continue;
+            }
+            missing.remove(fileName);
+            addSegment(ArchiveSegment.open(file));
+        }
+    }
+    
+    // Finishes batches an earlier run left incomplete and removes files that never made it into
+    // the catalog. Only runs under the lease, another archiver's files are never touched.
+    private void finishIncompleteBatches() throws SQLException, IOException {
+        try (Connection conn = connection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT file_name, completed_at FROM archive_segments ORDER BY file_name");
+            ResultSet rs = ps.executeQuery();
+            Map<String, Boolean> cataloged = new LinkedHashMap<>();
+            while (rs.next()) {
+                rs.getLong("completed_at");
+                cataloged.put(rs.getString("file_name"), !rs.wasNull());
+            }
+            rs.close();
+            ps.close();
+            
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(".cwa") || name.endsWith(".cwa.tmp"));
+            if (files != null) {
+                for (File file : files) {
+                    if (!cataloged.containsKey(file.getName())) {
+                        file.delete();
+                    }
+                }
+            }
+            
+            // Stats segments sort before the battles of their batch, matching the delete order
+            List<ArchiveSegment> incomplete = new ArrayList<>();
+            for (Map.Entry<String, Boolean> entry : cataloged.entrySet()) {
+                File file = new File(directory, entry.getKey());
+                if (!entry.getValue() && file.exists()) {
+                    incomplete.add(ArchiveSegment.open(file));
+                }
+            }
+            incomplete.sort(Comparator.comparing((ArchiveSegment segment) -> !segment.getKind().equals(PLAYER_STATS)));
+            for (ArchiveSegment segment : incomplete) {
+                complete(conn, segment, segment.readRows());
+                plugin.getLogger().info("Finished interrupted archive segment " + segment.getFile().getName());
+            }
+        }
+        refreshCatalog();
+    }
+    
+    private boolean isArchiveNode() {
+        return Config.ARCHIVE_NODE_ID.isEmpty() || Config.ARCHIVE_NODE_ID.equals(Config.NODE_ID);
+    }
+    
+    // Same scheme as the battle leases: the insert creates the lease or the conditional update
+    // takes over an expired one, so exactly one node gets it
+    private boolean acquireLease() throws SQLException {
+        long now = System.currentTimeMillis();
+        try (Connection conn = connection()) {
+            PreparedStatement ps = conn.prepareStatement("INSERT IGNORE INTO archive_lease (name, node_id, expires_at) VALUES (?, ?, ?)");
+            ps.setString(1, LEASE);
+            ps.setString(2, Config.NODE_ID);
+            ps.setLong(3, now + Config.NODE_LEASE_SECONDS * 1000L);
+            boolean inserted = ps.executeUpdate() > 0;
+            ps.close();
+            if (inserted) {
+                return true;
+            }
+            
+            ps = conn.prepareStatement("UPDATE archive_lease SET node_id = ?, expires_at = ? WHERE name = ? AND (node_id = ? OR expires_at < ?)");
+            ps.setString(1, Config.NODE_ID);
+            ps.setLong(2, now + Config.NODE_LEASE_SECONDS * 1000L);
+            ps.setString(3, LEASE);
+            ps.setString(4, Config.NODE_ID);
+            ps.setLong(5, now);
+            boolean claimed = ps.executeUpdate() > 0;
+            ps.close();
+            return claimed;
+        }
+    }
+    
+    // Extends the lease before a batch, false once another node took it over
+    private boolean renewLease() throws SQLException {
+        try (Connection conn = connection()) {
+            PreparedStatement ps = conn.prepareStatement("UPDATE archive_lease SET expires_at = ? WHERE name = ? AND node_id = ?");
+            ps.setLong(1, System.currentTimeMillis() + Config.NODE_LEASE_SECONDS * 1000L);
+            ps.setString(2, LEASE);
+            ps.setString(3, Config.NODE_ID);
+            boolean renewed = ps.executeUpdate() > 0;
+            ps.close();
+            if (!renewed) {
+                plugin.getLogger().warning("Lost the archive lease to another node, stopping this archive run");
+            }
+            return renewed;
+        }
+    }
+    
+    private void releaseLease() {
+        try (Connection conn = connection()) {
+            PreparedStatement ps = conn.prepareStatement("UPDATE archive_lease SET expires_at = 0 WHERE name = ? AND node_id = ?");
+            ps.setString(1, LEASE);
+            ps.setString(2, Config.NODE_ID);
+            ps.executeUpdate();
+            ps.close();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Error releasing the archive lease, it expires on its own", e);
+        }
+    }
+    
+    private synchronized List<ArchiveSegment> segments(String kind) {
+        return segments.getOrDefault(kind, Collections.emptyList());
+    }
+    
+    private synchronized int segmentCount() {
+        int count = 0;
+        for (List<ArchiveSegment> list : segments.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+    
+    private List<Object[]> rows(ArchiveSegment segment) throws IOException {
+        synchronized (decoded) {
+            List<Object[]> rows = decoded.get(segment.getFile());
+            if (rows != null) {
+                return rows;
+            }
+        }
+        List<Object[]> rows = segment.readRows();
+        synchronized (decoded) {
+            decoded.put(segment.getFile(), rows);
+        }
+        return rows;
+    }
+    
+    private Connection connection() throws SQLException {
+        return plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection());
+    }
+    
+    private static Object[] readRow(ResultSet rs, String[] columns, ColumnType[] types) throws SQLException {
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            switch (types[i]) {
+                case LONG:
+                    row[i] = rs.getLong(columns[i]);
+                    break;
+                case INT:
+                    row[i] = rs.getInt(columns[i]);
+                    break;
+                case BOOLEAN:
+                    row[i] = rs.getBoolean(columns[i]);
+                    break;
+                default:
+                    row[i] = rs.getString(columns[i]);
+                    break;
+            }
+            if (rs.wasNull()) {
+                row[i] = null;
+            }
+        }
+        return row;
+    }
+    
+    private static BattleSummary toBattleSummary(Object[] row) {
+        Long endTime = (Long) row[7];
+        return new BattleSummary((String) row[0], ClanTags.canonical((String) row[2]), ClanTags.canonical((String) row[3]),
+            BattleGameMode.canonicalName((String) row[4]), (Long) row[6], endTime != null ? endTime : 0L,
+            ClanTags.canonical((String) row[10]), row[11] != null ? (Integer) row[11] : 0, row[12] != null ? (Integer) row[12] : 0);
+    }
+    
+    private static boolean isBefore(BattleSummary battle, long beforeTime, String beforeId) {
+        return battle.getStartTime() < beforeTime || (battle.getStartTime() == beforeTime && battle.getId().compareTo(beforeId) < 0);
+    }
+}
\ No newline at end of file
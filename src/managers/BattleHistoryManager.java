@@ -0,0 +1,378 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.BattleGameMode;
+import com.minecraft.clanwars.models.BattleSummary;
+import com.minecraft.clanwars.models.ClanProfile;
+import com.minecraft.clanwars.models.ClanRole;
+import com.minecraft.clanwars.models.HeadToHeadRecord;
+import com.minecraft.clanwars.models.HistoryPage;
+import com.minecraft.clanwars.models.LifetimeStats;
+import com.minecraft.clanwars.models.MemberRoster;
+import com.minecraft.clanwars.models.PlayerBattleSummary;
+import com.minecraft.clanwars.utils.ClanTags;
+import com.minecraft.clanwars.utils.Config;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+public class BattleHistoryManager {
+    private static final int MAX_PAGE_SIZE = 50;
+    private static final int MAX_CACHE_ENTRIES = 1000;
+    private static final int PROFILE_BATTLES = 5;
+    private static final String BATTLE_COLUMNS =
+        "id, clan1_tag, clan2_tag, game_mode, start_time, end_time, winner_tag, team1_score, team2_score";
+    
+    private final ClanWarsPlugin plugin;
+    private final Map<String, CachedResult> cache; // query key -> result
+    private final AtomicLong generation; // bumped by every invalidation
+    
+    public BattleHistoryManager(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.cache = new ConcurrentHashMap<>();
+        this.generation = new AtomicLong();
+    }
+    
+    // All lookups run off the main thread, callbacks are invoked back on the main thread
+    public void getClanHistory(String clanTag, String cursor, int limit, Consumer<HistoryPage<BattleSummary>> callback) {
+        int pageSize = clampPageSize(limit);
+        fetch("clan|" + clanTag + "|" + cursor + "|" + pageSize, callback, conn -> queryClanHistory(conn, clanTag, cursor, pageSize));
+    }
+    
+    public void getHeadToHead(String clanTag, String opponentTag, String cursor, int limit, Consumer<HeadToHeadRecord> callback) {
+        int pageSize = clampPageSize(limit);
+        fetch("h2h|" + clanTag + "|" + opponentTag + "|" + cursor + "|" + pageSize, callback,
+            conn -> queryHeadToHead(conn, clanTag, opponentTag, cursor, pageSize));
+    }
+    
+    public void getPlayerHistory(UUID playerId, String cursor, int limit, Consumer<HistoryPage<PlayerBattleSummary>> callback) {
+        int pageSize = clampPageSize(limit);
+        fetch("player|" + playerId + "|" + cursor + "|" + pageSize, callback, conn -> queryPlayerHistory(conn, playerId, cursor, pageSize));
+    }
+    
+    // Loads a clan's roster, lifetime stats and latest battles in parallel
+    public void getClanProfile(String clanTag, Consumer<ClanProfile> callback) {
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.structured(scope -> {
+            CompletableFuture<MemberRoster> members = scope.fork(() -> withConnection(conn -> queryMembers(conn, clanTag)));
+            CompletableFuture<LifetimeStats> stats = scope.fork(() -> withConnection(conn -> queryClanStats(conn, clanTag)));
+            CompletableFuture<HistoryPage<BattleSummary>> recent = scope.fork(() -> withConnection(conn -> queryClanHistory(conn, clanTag, null, PROFILE_BATTLES)));
+            scope.join();
+            return new ClanProfile(clanTag, members.join(), stats.join(), recent.join());
+        }), callback, error -> {
+            plugin.getLogger().log(Level.SEVERE, "Error loading clan profile from database", error);
+            callback.accept(null);
+        });
+    }
+    
+    // Drops cached pages that may now be missing a just-finished battle
+    public void invalidateClan(String clanTag) {
+        generation.incrementAndGet();
+        String marker = "|" + clanTag + "|";
+        cache.keySet().removeIf(key -> key.contains(marker));
+    }
+    
+    public void invalidatePlayer(UUID playerId) {
+        generation.incrementAndGet();
+        String prefix = "player|" + playerId + "|";
+        cache.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+    
+    private static int clampPageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> void fetch(String cacheKey, Consumer<T> callback, HistoryQuery<T> query) {
+        CachedResult cached = cache.get(cacheKey);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            callback.accept((T) cached.value);
+            return;
+        }
+        
+        long fetchGeneration = generation.get();
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.supply(() -> {
+            T result = withConnection(query);
+            cacheResult(cacheKey, result, fetchGeneration);
+            return result;
+        }), callback, error -> {
+            plugin.getLogger().log(Level.SEVERE, "Error loading battle history from database", error);
+            callback.accept(null);
+        });
+    }
+    
+    private <T> T withConnection(HistoryQuery<T> query) throws SQLException, IOException {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            return query.run(conn);
+        }
+    }
+    
+    // A result read before an invalidation may miss the battle that caused it, so it is not kept.
+    // Invalidations bump the generation before removing keys, an entry put after the removal is taken back here.
+    private void cacheResult(String cacheKey, Object value, long fetchGeneration) {
+        long now = System.currentTimeMillis();
+        if (cache.size() >= MAX_CACHE_ENTRIES) {
+            cache.values().removeIf(entry -> entry.expiresAt <= now);
+            if (cache.size() >= MAX_CACHE_ENTRIES) {
+                cache.clear();
+            }
+        }
+        CachedResult entry = new CachedResult(value, now + Config.HISTORY_CACHE_SECONDS * 1000L);
+        cache.put(cacheKey, entry);
+        if (generation.get() != fetchGeneration) {
+            cache.remove(cacheKey, entry);
+        }
+    }
+    
+    private HistoryPage<BattleSummary> queryClanHistory(Connection conn, String clanTag, String cursor, int limit) throws SQLException, IOException {
+        BattleCursor position = BattleCursor.parse(cursor);
+        
+        // One keyset range scan per side of the battle, each served by its covering index
+        PreparedStatement ps = conn.prepareStatement(
+            "SELECT " + BATTLE_COLUMNS + " FROM (" +
+            "(SELECT " + BATTLE_COLUMNS + " FROM battles WHERE clan1_tag = ? AND status = 'ENDED' " +
+            "AND (start_time < ? OR (start_time = ? AND id < ?)) ORDER BY start_time DESC, id DESC LIMIT ?) " +
+            "UNION ALL " +
+            "(SELECT " + BATTLE_COLUMNS + " FROM battles WHERE clan2_tag = ? AND status = 'ENDED' " +
+            "AND (start_time < ? OR (start_time = ? AND id < ?)) ORDER BY start_time DESC, id DESC LIMIT ?)" +
+            ") page ORDER BY start_time DESC, id DESC LIMIT ?");
+        int index = 1;
+        for (int side = 0; side < 2; side++) {
+            ps.setString(index++, clanTag);
+            ps.setLong(index++, position.startTime);
+            ps.setLong(index++, position.startTime);
+            ps.setString(index++, position.battleId);
+            ps.setInt(index++, limit + 1);
+        }
+        ps.setInt(index, limit + 1);
+        
+        List<BattleSummary> battles = readBattles(ps.executeQuery());
+        ps.close();
+        return withArchived(battles, clanTag, null, position, limit);
+    }
+    
+    private HeadToHeadRecord queryHeadToHead(Connection conn, String clanTag, String opponentTag, String cursor, int limit) throws SQLException, IOException {
+        BattleCursor position = BattleCursor.parse(cursor);
+        
+        PreparedStatement ps = conn.prepareStatement(
+            "SELECT " + BATTLE_COLUMNS + " FROM battles WHERE status = 'ENDED' " +
+            "AND ((clan1_tag = ? AND clan2_tag = ?) OR (clan1_tag = ? AND clan2_tag = ?)) " +
+            "AND (start_time < ? OR (start_time = ? AND id < ?)) ORDER BY start_time DESC, id DESC LIMIT ?");
+        ps.setString(1, clanTag);
+        ps.setString(2, opponentTag);
+        ps.setString(3, opponentTag);
+        ps.setString(4, clanTag);
+        ps.setLong(5, position.startTime);
+        ps.setLong(6, position.startTime);
+        ps.setString(7, position.battleId);
+        ps.setInt(8, limit + 1);
+        List<BattleSummary> battles = readBattles(ps.executeQuery());
+        ps.close();
+        HistoryPage<BattleSummary> page = withArchived(battles, clanTag, opponentTag, position, limit);
+        
+        ps = conn.prepareStatement(
+            "SELECT winner_tag, COUNT(*) AS wins FROM battles WHERE status = 'ENDED' " +
+            "AND ((clan1_tag = ? AND clan2_tag = ?) OR (clan1_tag = ? AND clan2_tag = ?)) GROUP BY winner_tag");
+        ps.setString(1, clanTag);
+        ps.setString(2, opponentTag);
+        ps.setString(3, opponentTag);
+        ps.setString(4, clanTag);
+        ResultSet rs = ps.executeQuery();
+        
+        int clanWins = 0;
+        int opponentWins = 0;
+        while (rs.next()) {
+            String winnerTag = rs.getString("winner_tag");
+            if (clanTag.equals(winnerTag)) {
+                clanWins = rs.getInt("wins");
+            } else if (opponentTag.equals(winnerTag)) {
+                opponentWins = rs.getInt("wins");
+            }
+        }
+        rs.close();
+        ps.close();
+        
+        // Archived battles only survive as rolled up counts
+        ps = conn.prepareStatement(
+            "SELECT clan_tag, SUM(wins) AS wins FROM archived_matchups " +
+            "WHERE (clan_tag = ? AND opponent_tag = ?) OR (clan_tag = ? AND opponent_tag = ?) GROUP BY clan_tag");
+        ps.setString(1, clanTag);
+        ps.setString(2, opponentTag);
+        ps.setString(3, opponentTag);
+        ps.setString(4, clanTag);
+        rs = ps.executeQuery();
+        while (rs.next()) {
+            if (clanTag.equals(rs.getString("clan_tag"))) {
+                clanWins += rs.getInt("wins");
+            } else {
+                opponentWins += rs.getInt("wins");
+            }
+        }
+        rs.close();
+        ps.close();
+        
+        return new HeadToHeadRecord(clanTag, opponentTag, clanWins, opponentWins, page);
+    }
+    
+    private HistoryPage<PlayerBattleSummary> queryPlayerHistory(Connection conn, UUID playerId, String cursor, int limit) throws SQLException, IOException {
+        BattleCursor position = BattleCursor.parse(cursor);
+        
+        // Keyset range scan on (player_uuid, start_time, battle_id), older battle IDs are not time ordered
+        PreparedStatement ps = conn.prepareStatement(
+            "SELECT s.battle_id, s.clan_tag, s.kills, s.deaths, s.score, s.winner, s.start_time, b.game_mode " +
+            "FROM player_battle_stats s JOIN battles b ON b.id = s.battle_id WHERE s.player_uuid = ? " +
+            "AND (s.start_time < ? OR (s.start_time = ? AND s.battle_id < ?)) ORDER BY s.start_time DESC, s.battle_id DESC LIMIT ?");
+        ps.setString(1, playerId.toString());
+        ps.setLong(2, position.startTime);
+        ps.setLong(3, position.startTime);
+        ps.setString(4, position.battleId);
+        ps.setInt(5, limit + 1);
+        ResultSet rs = ps.executeQuery();
+        
+        List<PlayerBattleSummary> entries = new ArrayList<>();
+        while (rs.next()) {
+            entries.add(new PlayerBattleSummary(
+                rs.getString("battle_id"),
+                ClanTags.canonical(rs.getString("clan_tag")),
+                BattleGameMode.canonicalName(rs.getString("game_mode")),
+                rs.getLong("start_time"),
+                rs.getInt("kills"),
+                rs.getInt("deaths"),
+                rs.getInt("score"),
+                rs.getBoolean("winner")));
+        }
+        rs.close();
+        ps.close();
+        
+        // Archived battles can be newer than live ones, so merge whenever the page reaches back past the newest of them
+        ArchiveManager archive = plugin.getArchiveManager();
+        if (entries.size() <= limit || entries.get(limit).getStartTime() <= archive.getNewestPlayerBattleTime()) {
+            entries.addAll(archive.findPlayerBattles(playerId, position.startTime, position.battleId, limit + 1));
+            entries.sort(ArchiveManager.PLAYER_NEWEST_FIRST);
+        }
+        
+        String nextCursor = null;
+        if (entries.size() > limit) {
+            entries = new ArrayList<>(entries.subList(0, limit));
+            PlayerBattleSummary last = entries.get(limit - 1);
+            nextCursor = last.getStartTime() + ":" + last.getBattleId();
+        }
+        return new HistoryPage<>(entries, nextCursor);
+    }
+    
+    private MemberRoster queryMembers(Connection conn, String clanTag) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement("SELECT player_uuid, role FROM clan_members WHERE clan_tag = ?");
+        ps.setString(1, clanTag);
+        ResultSet rs = ps.executeQuery();
+        
+        MemberRoster members = new MemberRoster();
+        while (rs.next()) {
+            members.put(UUID.fromString(rs.getString("player_uuid")), ClanRole.of(rs.getString("role")));
+        }
+        rs.close();
+        ps.close();
+        members.trim();
+        return members;
+    }
+    
+    private LifetimeStats queryClanStats(Connection conn, String clanTag) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "SELECT kills, deaths, score, battles, wins FROM clan_lifetime_stats WHERE clan_tag = ?");
+        ps.setString(1, clanTag);
+        ResultSet rs = ps.executeQuery();
+        
+        LifetimeStats stats = rs.next()
+            ? new LifetimeStats(rs.getInt("kills"), rs.getInt("deaths"), rs.getInt("score"), rs.getInt("battles"), rs.getInt("wins"))
+            : new LifetimeStats(0, 0, 0, 0, 0);
+        rs.close();
+        ps.close();
+        return stats;
+    }
+    
+    // Merges in archived battles when the page reaches back past the newest archived one
+    private HistoryPage<BattleSummary> withArchived(List<BattleSummary> battles, String clanTag, String opponentTag,
+                                                    BattleCursor position, int limit) throws IOException {
+        ArchiveManager archive = plugin.getArchiveManager();
+        boolean reachesArchive = battles.size() <= limit || battles.get(limit).getStartTime() <= archive.getNewestBattleTime();
+        if (reachesArchive) {
+            battles.addAll(archive.findBattles(clanTag, opponentTag, position.startTime, position.battleId, limit + 1));
+            battles.sort(ArchiveManager.NEWEST_FIRST);
+        }
+        
+        String nextCursor = null;
+        if (battles.size() > limit) {
+            // One extra row was requested only to know whether another page exists
+            BattleSummary last = battles.get(limit - 1);
+            nextCursor = last.getStartTime() + ":" + last.getId();
+            battles = new ArrayList<>(battles.subList(0, limit));
+        }
+        return new HistoryPage<>(battles, nextCursor);
+    }
+    
+    private static List<BattleSummary> readBattles(ResultSet rs) throws SQLException {
+        List<BattleSummary> entries = new ArrayList<>();
+        while (rs.next()) {
+            entries.add(new BattleSummary(
+                rs.getString("id"),
+                ClanTags.canonical(rs.getString("clan1_tag")),
+                ClanTags.canonical(rs.getString("clan2_tag")),
+                BattleGameMode.canonicalName(rs.getString("game_mode")),
+                rs.getLong("start_time"),
+                rs.getLong("end_time"),
+                ClanTags.canonical(rs.getString("winner_tag")),
+                rs.getInt("team1_score"),
+                rs.getInt("team2_score")));
+        }
+        rs.close();
+        return entries;
+    }
+    
+    private interface HistoryQuery<T> {
+        T run(Connection conn) throws SQLException, IOException;
+    }
+    
+    private static class CachedResult {
+        private final Object value;
+        private final long expiresAt;
+        
+        CachedResult(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    // Keyset position "startTime:battleId" of the last row on the previous page
+    private static class BattleCursor {
+        private final long startTime;
+        private final String battleId;
+        
+        BattleCursor(long startTime, String battleId) {
+            this.startTime = startTime;
+            this.battleId = battleId;
+        }
+        
+        static BattleCursor parse(String cursor) {
+            if (cursor != null) {
+                int separator = cursor.indexOf(':');
+                if (separator > 0) {
+                    try {
+                        return new BattleCursor(Long.parseLong(cursor.substring(0, separator)), cursor.substring(separator + 1));
+                    } catch (NumberFormatException ignored) {
+                        // Fall through to the first page
+                    }
+                }
+            }
+            return new BattleCursor(Long.MAX_VALUE, "");
+        }
+    }
+}
\ No newline at end of file
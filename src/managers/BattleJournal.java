@@ -0,0 +1,483 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.models.BattleGameMode;
+import com.minecraft.clanwars.models.BattleStatus;
+import com.minecraft.clanwars.utils.ClanTags;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+public class BattleJournal {
+    private static final int MAGIC = 0x434A524E; // "CJRN"
+    private static final int HEADER_SIZE = 8; // magic + reserved
+    private static final int RECORD_HEADER_SIZE = 8; // payload length + crc32
+    private static final int MAX_PAYLOAD_SIZE = 1024;
+    private static final int INITIAL_CAPACITY = 4 * 1024 * 1024;
+    private static final double COMPACTION_THRESHOLD = 0.75;
+    
+    // Record types
+    private static final byte BATTLE_STARTED = 1;
+    private static final byte PARTICIPANT_ADDED = 2;
+    private static final byte PHASE_CHANGED = 3;
+    private static final byte KILL_RECORDED = 4;
+    private static final byte SCORE_CHANGED = 5;
+    private static final byte BATTLE_ENDED = 6;
+    
+    private final ClanWarsPlugin plugin;
+    private final File file;
+    private final Set<String> liveBattles; // battles started but not yet ended
+    private final ByteBuffer scratch;
+    private final CRC32 crc;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private BukkitTask flushTask;
+    private boolean dirty;
+    private boolean compactionWanted;
+    private boolean compacting;
+    
+    public BattleJournal(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "battles.journal");
+        this.liveBattles = new HashSet<>();
+        this.scratch = ByteBuffer.allocate(MAX_PAYLOAD_SIZE);
+        this.crc = new CRC32();
+    }
+    
+    public synchronized boolean open() {
+        try {
+            file.getParentFile().mkdirs();
+            boolean existed = file.exists() && file.length() >= HEADER_SIZE;
+            long capacity = Math.max(INITIAL_CAPACITY, existed ? file.length() : 0);
+            
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            
+            if (!existed || buffer.getInt(0) != MAGIC) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, 0);
+                buffer.position(HEADER_SIZE);
+            } else {
+                // Find the end of the valid records and rebuild the set of live battles
+                buffer.position(scan(null));
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to open battle journal, battles will not be crash-safe", e);
+            buffer = null;
+            return false;
+        }
+        
+        // Flush dirty pages and compact in the background once per second
+        flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flush, 20L, 20L);
+        return true;
+    }
+    
+    public synchronized void close() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (buffer == null) {
+            return;
+        }
+        
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Error closing battle journal", e);
+        }
+        buffer = null;
+    }
+    
+    public synchronized void battleStarted(Battle battle, String requestId) {
+        if (!begin(BATTLE_STARTED, battle.getId())) {
+            return;
+        }
+        putString(requestId);
+        putString(battle.getClan1Tag());
+        putString(battle.getClan2Tag());
+        putString(battle.getGameMode());
+        putString(battle.getArenaId());
+        scratch.putLong(battle.getStartTime());
+        putString(battle.getStatus().toString());
+        commit();
+        liveBattles.add(battle.getId());
+    }
+    
+    public synchronized void participantAdded(Battle battle, UUID playerId, String clanTag) {
+        if (!begin(PARTICIPANT_ADDED, battle.getId())) {
+            return;
+        }
+        putUuid(playerId);
+        putString(clanTag);
+        commit();
+    }
+    
+    public synchronized void phaseChanged(Battle battle) {
+        if (!begin(PHASE_CHANGED, battle.getId())) {
+            return;
+        }
+        putString(battle.getStatus().toString());
+        commit();
+    }
+    
+    public synchronized void killRecorded(Battle battle, UUID killerId, UUID victimId) {
+        if (!begin(KILL_RECORDED, battle.getId())) {
+            return;
+        }
+        putUuid(killerId);
+        putUuid(victimId);
+        scratch.putInt(battle.getTeam1Score());
+        scratch.putInt(battle.getTeam2Score());
+        commit();
+    }
+    
+    public synchronized void scoreChanged(Battle battle) {
+        if (!begin(SCORE_CHANGED, battle.getId())) {
+            return;
+        }
+        scratch.putInt(battle.getTeam1Score());
+        scratch.putInt(battle.getTeam2Score());
+        commit();
+    }
+    
+    public synchronized void battleEnded(String battleId) {
+        if (!begin(BATTLE_ENDED, battleId)) {
+            return;
+        }
+        commit();
+        liveBattles.remove(battleId);
+        compactionWanted = true;
+    }
+    
+    // Rebuilds every battle that was started but never ended from the journal
+    public synchronized List<RecoveredBattle> replay() {
+        if (buffer == null) {
+            return Collections.emptyList();
+        }
+        
+        Map<String, RecoveredBattle> recovered = new LinkedHashMap<>();
+        scan(recovered);
+        return new ArrayList<>(recovered.values());
+    }
+    
+    private boolean begin(byte type, String battleId) {
+        if (buffer == null) {
+            return false;
+        }
+        scratch.clear();
+        scratch.put(type);
+        scratch.putLong(System.currentTimeMillis());
+        putString(battleId);
+        return true;
+    }
+    
+    private void commit() {
+        scratch.flip();
+        int length = scratch.remaining();
+        
+        if (buffer.remaining() < RECORD_HEADER_SIZE + length) {
+            // Compaction runs in the background, until it catches up the journal just gets longer
+            grow();
+            compactionWanted = true;
+            if (buffer == null) {
+                return;
+            }
+        }
+        
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+        
+        // Write payload before the length so a torn write is never seen as a valid record
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER_SIZE);
+        buffer.put(scratch);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, length);
+        dirty = true;
+    }
+    
+    // Takes what needs doing under the lock and does it outside, so appends from the main
+    // thread never wait for an fsync
+    private void flush() {
+        MappedByteBuffer toForce = null;
+        boolean compact = false;
+        synchronized (this) {
+            if (buffer == null) {
+                return;
+            }
+            if (dirty) {
+                toForce = buffer;
+                dirty = false;
+            }
+            if (compactionWanted && !compacting && buffer.position() > buffer.capacity() * COMPACTION_THRESHOLD) {
+                compactionWanted = false;
+                compacting = true;
+                compact = true;
+            }
+        }
+        
+        // A mapping replaced by compaction meanwhile stays valid while referenced, and forcing it is harmless
+        if (toForce != null) {
+            toForce.force();
+        }
+        if (compact) {
+            plugin.getIOExecutor().run(this::compact);
+        }
+    }
+    
+    // Rewrites the journal keeping only records of battles that are still live. Copying and
+    // syncing the live records happens on an IO thread without the lock; only records appended
+    // meanwhile are copied under it, right before the new file replaces the old one.
+    private void compact() {
+        MappedByteBuffer source;
+        Set<String> live;
+        int end;
+        synchronized (this) {
+            if (buffer == null) {
+                compacting = false;
+                return;
+            }
+            source = buffer;
+            live = new HashSet<>(liveBattles);
+            end = buffer.position();
+        }
+        
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileChannel out = null;
+        try {
+            ByteBuffer compacted = ByteBuffer.allocate(end);
+            compacted.putInt(MAGIC);
+            compacted.putInt(0);
+            copyRecords(source, HEADER_SIZE, end, live, compacted);
+            compacted.flip();
+            int compactedSize = compacted.remaining();
+            
+            out = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            while (compacted.hasRemaining()) {
+                out.write(compacted);
+            }
+            out.force(true);
+            
+            synchronized (this) {
+                if (buffer == null) {
+                    return; // closed meanwhile
+                }
+                MappedByteBuffer mapped = out.map(FileChannel.MapMode.READ_WRITE, 0, buffer.capacity());
+                mapped.position(compactedSize);
+                // Everything appended meanwhile, ended battles included so their end record is kept
+                copyRecords(buffer, end, buffer.position(), null, mapped);
+                
+                // The old mapping gets no more writes and its channel is closed before the file is replaced
+                buffer = null;
+                channel.close();
+                try {
+                    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Error replacing battle journal, journaling disabled", e);
+                    return;
+                }
+                channel = out;
+                buffer = mapped;
+                out = null;
+                dirty = true;
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Error compacting battle journal, keeping the uncompacted one", e);
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+            if (out != null) {
+                try {
+                    out.close();
+                    Files.deleteIfExists(tempFile.toPath());
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Error removing temporary battle journal", e);
+                }
+            }
+        }
+    }
+    
+    // Copies the records in [from, to) whose battle is in live, or all of them if live is null
+    private static void copyRecords(ByteBuffer source, int from, int to, Set<String> live, ByteBuffer target) {
+        int offset = from;
+        while (offset < to) {
+            int recordSize = RECORD_HEADER_SIZE + source.getInt(offset);
+            if (live == null || live.contains(readBattleId(source, offset + RECORD_HEADER_SIZE))) {
+                ByteBuffer record = source.duplicate();
+                record.position(offset).limit(offset + recordSize);
+                target.put(record);
+            }
+            offset += recordSize;
+        }
+    }
+    
+    private void grow() {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            int position = buffer.position();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) buffer.capacity() * 2);
+            buffer.position(position);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error growing battle journal, journaling disabled", e);
+            buffer = null;
+        }
+    }
+    
+    // Walks all valid records, optionally replaying them, and returns the offset after the last one
+    private int scan(Map<String, RecoveredBattle> recovered) {
+        liveBattles.clear();
+        int offset = HEADER_SIZE;
+        int capacity = buffer.capacity();
+        
+        while (offset + RECORD_HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > MAX_PAYLOAD_SIZE || offset + RECORD_HEADER_SIZE + length > capacity) {
+                break;
+            }
+            
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(offset + RECORD_HEADER_SIZE).limit(offset + RECORD_HEADER_SIZE + length);
+            ByteBuffer record = payload.slice();
+            
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break; // torn write at the tail
+            }
+            
+            applyRecord(record, recovered);
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+    
+    private void applyRecord(ByteBuffer record, Map<String, RecoveredBattle> recovered) {
+        byte type = record.get();
+        long timestamp = record.getLong();
+        String battleId = getString(record);
+        
+        if (type == BATTLE_STARTED) {
+            liveBattles.add(battleId);
+        } else if (type == BATTLE_ENDED) {
+            liveBattles.remove(battleId);
+        }
+        if (recovered == null) {
+            return;
+        }
+        
+        if (type == BATTLE_STARTED) {
+            String requestId = getString(record);
+            String clan1Tag = ClanTags.canonical(getString(record));
+            String clan2Tag = ClanTags.canonical(getString(record));
+            String gameMode = BattleGameMode.canonicalName(getString(record));
+            String arenaId = getString(record);
+            long startTime = record.getLong();
+            Battle battle = new Battle(battleId, clan1Tag, clan2Tag, gameMode, arenaId, startTime);
+            battle.setStatus(BattleStatus.valueOf(getString(record)));
+            recovered.put(battleId, new RecoveredBattle(requestId, battle, timestamp));
+            return;
+        }
+        if (type == BATTLE_ENDED) {
+            recovered.remove(battleId);
+            return;
+        }
+        
+        RecoveredBattle entry = recovered.get(battleId);
+        if (entry == null) {
+            return;
+        }
+        entry.lastEventTime = timestamp;
+        Battle battle = entry.battle;
+        
+        switch (type) {
+            case PARTICIPANT_ADDED:
+                UUID playerId = getUuid(record);
+                battle.addParticipant(playerId, ClanTags.canonical(getString(record)));
+                break;
+            case PHASE_CHANGED:
+                battle.setStatus(BattleStatus.valueOf(getString(record)));
+                break;
+            case KILL_RECORDED:
+                battle.recordKill(getUuid(record), getUuid(record));
+                battle.setTeam1Score(record.getInt());
+                battle.setTeam2Score(record.getInt());
+                break;
+            case SCORE_CHANGED:
+                battle.setTeam1Score(record.getInt());
+                battle.setTeam2Score(record.getInt());
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private static String readBattleId(ByteBuffer source, int payloadOffset) {
+        ByteBuffer payload = source.duplicate();
+        payload.position(payloadOffset + 1 + 8); // skip type and timestamp
+        return getString(payload);
+    }
+    
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        scratch.putShort((short) bytes.length);
+        scratch.put(bytes);
+    }
+    
+    private void putUuid(UUID uuid) {
+        scratch.putLong(uuid.getMostSignificantBits());
+        scratch.putLong(uuid.getLeastSignificantBits());
+    }
+    
+    private static String getString(ByteBuffer source) {
+        byte[] bytes = new byte[source.getShort()];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static UUID getUuid(ByteBuffer source) {
+        return new UUID(source.getLong(), source.getLong());
+    }
+    
+    public static class RecoveredBattle {
+        private final String requestId;
+        private final Battle battle;
+        private long lastEventTime;
+        
+        RecoveredBattle(String requestId, Battle battle, long lastEventTime) {
+            this.requestId = requestId;
+            this.battle = battle;
+            this.lastEventTime = lastEventTime;
+        }
+        
+        public String getRequestId() {
+            return requestId;
+        }
+        
+        public Battle getBattle() {
+            return battle;
+        }
+        
+        public long getLastEventTime() {
+            return lastEventTime;
+        }
+    }
+}
\ No newline at end of file
@@ -2,7 +2,11 @@ package com.minecraft.clanwars.managers;
 
 import com.minecraft.clanwars.ClanWarsPlugin;
 import com.minecraft.clanwars.models.*;
+import com.minecraft.clanwars.utils.ClanTags;
 import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.IdGenerator;
+import com.minecraft.clanwars.utils.LatencyHistogram;
+import com.minecraft.clanwars.utils.TeamBalancer;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.GameMode;
@@ -18,39 +22,182 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 public class BattleManager {
+    private static final int SAVE_ATTEMPTS = 5;
+    private static final int SAVE_RETRY_SECONDS = 10;
+    private static final int SUGGESTED_SLOTS = 3;
+    
     private final ClanWarsPlugin plugin;
     private final Map<String, Battle> activeBattles; // battle ID -> Battle
     private final Map<String, BattleRequest> battleRequests; // request ID -> BattleRequest
+    private final Map<String, String> battleRequestIds; // battle ID -> request ID
     private final Map<UUID, String> playerBattleMap; // player UUID -> battle ID
+    private final BattleMembershipIndex membershipIndex;
+    private final Set<String> pausedBattles; // battle IDs held while staff is away
+    private final ScheduleIndex scheduleIndex;
+    private final Map<String, CompletableFuture<Void>> requestWrites; // request ID -> its last queued write, main thread only
+    private final LatencyHistogram setupTimer;
+    private final LatencyHistogram countdownTimer;
+    private final LatencyHistogram battleTimer;
+    private final LatencyHistogram scoreboardTimer;
+    private final LatencyHistogram killTimer;
+    private final LatencyHistogram broadcastTimer;
+    private final LatencyHistogram endTimer;
+    private final LongAdder battlesStarted;
+    private final LongAdder battlesEnded;
+    private final LongAdder killCount;
     
     public BattleManager(ClanWarsPlugin plugin) {
         this.plugin = plugin;
         this.activeBattles = new ConcurrentHashMap<>();
         this.battleRequests = new ConcurrentHashMap<>();
+        this.battleRequestIds = new ConcurrentHashMap<>();
         this.playerBattleMap = new ConcurrentHashMap<>();
+        this.membershipIndex = new BattleMembershipIndex();
+        this.pausedBattles = ConcurrentHashMap.newKeySet();
+        this.scheduleIndex = new ScheduleIndex(plugin);
+        this.requestWrites = new HashMap<>();
+        
+        MetricsManager metrics = plugin.getMetricsManager();
+        this.setupTimer = metrics.timer("battle_setup");
+        this.countdownTimer = metrics.timer("battle_countdown_tick");
+        this.battleTimer = metrics.timer("battle_timer_tick");
+        this.scoreboardTimer = metrics.timer("battle_scoreboard_tick");
+        this.killTimer = metrics.timer("battle_kill");
+        this.broadcastTimer = metrics.timer("battle_broadcast");
+        this.endTimer = metrics.timer("battle_end");
+        this.battlesStarted = metrics.counter("battles_started");
+        this.battlesEnded = metrics.counter("battles_ended");
+        this.killCount = metrics.counter("kills");
+        metrics.gauge("active_battles", activeBattles::size);
+        metrics.gauge("battle_players", playerBattleMap::size);
+        metrics.gauge("battle_requests_pending", () -> countRequests(BattleRequestStatus.PENDING));
+        metrics.gauge("battle_requests_approved", () -> countRequests(BattleRequestStatus.APPROVED));
+    }
+    
+    // Finishes or restores battles interrupted by a crash, run on the main thread by the startup
+    // graph once battle requests and the clan and player stats caches are loaded
+    public void recoverInterruptedBattles() {
+        BattleJournal journal = plugin.getBattleJournal();
         
-        // Load pending battle requests from database
-        loadBattleRequests();
+        for (BattleJournal.RecoveredBattle recovered : journal.replay()) {
+            Battle battle = recovered.getBattle();
+            
+            if (plugin.getNodeCoordinator().isLeasedElsewhere(recovered.getRequestId())) {
+                // Another node took the battle over while this one was down
+                plugin.getLogger().info("Dropping journaled battle " + battle.getId() + ", it was taken over by another node");
+            } else if (isBattleEnded(battle.getId())) {
+                // Saved before the crash but not yet cleared from the journal, the results already count
+                plugin.getLogger().info("Journaled battle " + battle.getId() + " was already saved, clearing it");
+                plugin.getNodeCoordinator().finishLease(recovered.getRequestId());
+            } else if (battle.getStatus() == BattleStatus.ACTIVE) {
+                // The fight was running, finalize it with the journaled scores
+                if (!finalizeInterruptedBattle(battle, recovered.getLastEventTime())) {
+                    continue; // Stays journaled, the next start tries again
+                }
+                plugin.getNodeCoordinator().finishLease(recovered.getRequestId());
+            } else {
+                // Still counting down, nobody fought yet so let the request start again
+                restoreInterruptedRequest(battle, recovered.getRequestId());
+                plugin.getNodeCoordinator().release(recovered.getRequestId());
+            }
+            
+            journal.battleEnded(battle.getId());
+        }
+    }
+    
+    private boolean isBattleEnded(String battleId) {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            PreparedStatement ps = conn.prepareStatement("SELECT status FROM battles WHERE id = ?");
+            ps.setString(1, battleId);
+            ResultSet rs = ps.executeQuery();
+            boolean ended = rs.next() && BattleStatus.ENDED.toString().equals(rs.getString("status"));
+            rs.close();
+            ps.close();
+            return ended;
+        } catch (SQLException e) {
+            // Unknown, finalizing is safe since the save is fenced on the row's status
+            plugin.getLogger().log(Level.WARNING, "Error reading status of journaled battle " + battleId, e);
+            return false;
+        }
     }
     
-    private void loadBattleRequests() {
+    private boolean finalizeInterruptedBattle(Battle battle, long lastEventTime) {
+        String winnerTag = determineWinner(battle);
+        String loserTag = winnerTag.equals(battle.getClan1Tag()) ? battle.getClan2Tag() : battle.getClan1Tag();
+        
+        battle.setStatus(BattleStatus.ENDED);
+        battle.setEndTime(lastEventTime);
+        battle.setEndReason(BattleEndReason.SERVER_SHUTDOWN);
+        battle.setWinnerTag(winnerTag);
+        
         try {
-            Connection conn = plugin.getDatabaseManager().getConnection();
+            if (!saveBattleResults(battle)) {
+                plugin.getLogger().info("Dropping interrupted battle " + battle.getId() + ", it was taken over or already saved");
+                return true;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error saving results of interrupted battle " + battle.getId(), e);
+            return false;
+        }
+        plugin.getClanManager().updateClanStats(winnerTag, loserTag);
+        plugin.getPlayerStatsManager().recordBattle(battle);
+        plugin.getRewardLedger().recordEntitlements(battle);
+        
+        plugin.getLogger().info("Recovered interrupted battle " + battle.getId() + ": " + battle.getClan1Tag() + " " +
+            battle.getTeam1Score() + " - " + battle.getTeam2Score() + " " + battle.getClan2Tag());
+        return true;
+    }
+    
+    private void restoreInterruptedRequest(Battle battle, String requestId) {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            PreparedStatement ps = conn.prepareStatement(
+                "UPDATE battle_requests SET status = ? WHERE id = ?");
+            ps.setString(1, BattleRequestStatus.APPROVED.toString());
+            ps.setString(2, requestId);
+            ps.executeUpdate();
+            ps.close();
+            
+            ps = conn.prepareStatement("DELETE FROM battles WHERE id = ?");
+            ps.setString(1, battle.getId());
+            ps.executeUpdate();
+            ps.close();
+            
+            // Requests are loaded before recovery runs, so the restored one goes into the cache here
+            BattleRequest request = readBattleRequest(conn, requestId);
+            if (request != null) {
+                battleRequests.put(requestId, request);
+                scheduleIndex.update(request);
+            }
+            
+            plugin.getLogger().info("Restored battle request " + requestId + " interrupted during countdown");
+            publishRequestChange(requestId);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error restoring interrupted battle request " + requestId, e);
+        }
+    }
+    
+    // Loads pending and approved battle requests, arena capacity first so they index against it
+    public void loadBattleRequests() {
+        scheduleIndex.loadArenaCapacity();
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
             PreparedStatement ps = conn.prepareStatement(
                 "SELECT id, clan1_tag, clan2_tag, requester_uuid, game_mode, scheduled_time, status FROM battle_requests WHERE status = 'PENDING' OR status = 'APPROVED'");
             ResultSet rs = ps.executeQuery();
             
             while (rs.next()) {
                 String id = rs.getString("id");
-                String clan1Tag = rs.getString("clan1_tag");
-                String clan2Tag = rs.getString("clan2_tag");
+                String clan1Tag = ClanTags.canonical(rs.getString("clan1_tag"));
+                String clan2Tag = ClanTags.canonical(rs.getString("clan2_tag"));
                 UUID requesterUuid = UUID.fromString(rs.getString("requester_uuid"));
-                String gameMode = rs.getString("game_mode");
+                String gameMode = BattleGameMode.canonicalName(rs.getString("game_mode"));
                 long scheduledTime = rs.getLong("scheduled_time");
                 String status = rs.getString("status");
                 
@@ -58,6 +205,7 @@ public class BattleManager {
                 request.setStatus(BattleRequestStatus.valueOf(status));
                 
                 battleRequests.put(id, request);
+                scheduleIndex.update(request);
             }
             rs.close();
             ps.close();
@@ -68,6 +216,96 @@ public class BattleManager {
         }
     }
     
+    // Refreshes one request from the database, e.g. after another node changed it
+    public void reloadBattleRequest(String requestId, Consumer<BattleRequest> callback) {
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.supply(() -> {
+            try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+                return readBattleRequest(conn, requestId);
+            }
+        }), request -> {
+            // Only open requests are cached, like on startup
+            if (request != null && (request.getStatus() == BattleRequestStatus.PENDING || request.getStatus() == BattleRequestStatus.APPROVED)) {
+                battleRequests.put(requestId, request);
+                scheduleIndex.update(request);
+            } else {
+                battleRequests.remove(requestId);
+                scheduleIndex.remove(requestId);
+                request = null;
+            }
+            callback.accept(request);
+        }, error -> {
+            plugin.getLogger().log(Level.SEVERE, "Error reloading battle request " + requestId + " from database", error);
+            callback.accept(null);
+        });
+    }
+    
+    private BattleRequest readBattleRequest(Connection conn, String requestId) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "SELECT id, clan1_tag, clan2_tag, requester_uuid, game_mode, scheduled_time, status FROM battle_requests WHERE id = ?");
+        ps.setString(1, requestId);
+        ResultSet rs = ps.executeQuery();
+        
+        BattleRequest request = null;
+        if (rs.next()) {
+            request = new BattleRequest(rs.getString("id"), ClanTags.canonical(rs.getString("clan1_tag")),
+                ClanTags.canonical(rs.getString("clan2_tag")), UUID.fromString(rs.getString("requester_uuid")),
+                BattleGameMode.canonicalName(rs.getString("game_mode")), rs.getLong("scheduled_time"));
+            request.setStatus(BattleRequestStatus.valueOf(rs.getString("status")));
+        }
+        rs.close();
+        ps.close();
+        return request;
+    }
+    
+    private void publishRequestChange(String requestId) {
+        plugin.getChangeFeedManager().publish(ChangeFeedManager.EntityType.BATTLE_REQUEST, requestId);
+    }
+    
+    // Queues a write behind the request's earlier ones, so e.g. an approval never lands before
+    // the insert it updates. A failed write does not hold up the next.
+    private CompletableFuture<Void> writeRequest(String requestId, IOExecutor.IORunnable task) {
+        IOExecutor io = plugin.getIOExecutor();
+        CompletableFuture<Void> previous = requestWrites.get(requestId);
+        CompletableFuture<Void> write = previous == null ? io.run(task)
+            : previous.handle((ignored, error) -> null).thenCompose(ignored -> io.run(task));
+        requestWrites.put(requestId, write);
+        write.whenComplete((ignored, error) -> io.runOnMain(() -> requestWrites.remove(requestId, write)));
+        return write;
+    }
+    
+    private CompletableFuture<Void> writeRequestStatus(String requestId, BattleRequestStatus status, UUID adminUuid) {
+        return writeRequest(requestId, () -> {
+            try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+                PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE battle_requests SET status = ?, admin_uuid = ? WHERE id = ?");
+                ps.setString(1, status.toString());
+                ps.setString(2, adminUuid.toString());
+                ps.setString(3, requestId);
+                ps.executeUpdate();
+                ps.close();
+            }
+        });
+    }
+    
+    private void sendSuggestedSlots(UUID requesterUuid, String clan1Tag, String clan2Tag, List<Long> slots) {
+        Player requester = Bukkit.getPlayer(requesterUuid);
+        if (requester == null) {
+            return; // Matchmaking or an offline requester, the log has the slots
+        }
+        if (slots.isEmpty()) {
+            requester.sendMessage(ChatColor.RED + clan1Tag + " or " + clan2Tag + " is already booked then, and no free time was found within a week.");
+            return;
+        }
+        
+        List<String> times = new ArrayList<>();
+        for (long slot : slots) {
+            times.add(ScheduleManager.formatTime(slot));
+        }
+        requester.sendMessage(ChatColor.RED + clan1Tag + " or " + clan2Tag + " is already booked then. " +
+            ChatColor.YELLOW + "Free times: " + String.join(", ", times));
+    }
+    
     public BattleRequest createBattleRequest(String clan1Tag, String clan2Tag, UUID requesterUuid, String gameMode, long scheduledTime) {
         // Validate clans exist
         ClanManager clanManager = plugin.getClanManager();
@@ -75,36 +313,52 @@ public class BattleManager {
             return null;
         }
         
-        // Create a unique ID for the request
-        String requestId = UUID.randomUUID().toString().substring(0, 8);
+        // Neither clan may already be booked then, the requester is offered free times instead
+        List<String> conflicts = scheduleIndex.findClanConflicts(clan1Tag, clan2Tag, scheduledTime);
+        if (!conflicts.isEmpty()) {
+            List<Long> slots = scheduleIndex.suggestSlots(clan1Tag, clan2Tag, gameMode, scheduledTime, SUGGESTED_SLOTS);
+            plugin.getLogger().info("Rejected battle request " + clan1Tag + " vs " + clan2Tag + ", it overlaps " + conflicts + ", free slots " + slots);
+            sendSuggestedSlots(requesterUuid, clan1Tag, clan2Tag, slots);
+            return null;
+        }
+        
+        // Create a unique, time-ordered ID for the request
+        String requestId = plugin.getIdGenerator().next();
         
         // Create the request object
         BattleRequest request = new BattleRequest(requestId, clan1Tag, clan2Tag, requesterUuid, gameMode, scheduledTime);
         
-        // Save to database
-        try {
-            Connection conn = plugin.getDatabaseManager().getConnection();
-            PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO battle_requests (id, clan1_tag, clan2_tag, requester_uuid, game_mode, scheduled_time, status, request_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
-            ps.setString(1, request.getId());
-            ps.setString(2, request.getClan1Tag());
-            ps.setString(3, request.getClan2Tag());
-            ps.setString(4, request.getRequesterUuid().toString());
-            ps.setString(5, request.getGameMode());
-            ps.setLong(6, request.getScheduledTime());
-            ps.setString(7, request.getStatus().toString());
-            ps.setLong(8, System.currentTimeMillis());
-            ps.executeUpdate();
-            ps.close();
-            
-            // Add to cache
-            battleRequests.put(requestId, request);
-            
-            return request;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error saving battle request to database", e);
-            return null;
-        }
+        // Cached right away so the next conflict check sees it, dropped again if the save fails
+        battleRequests.put(requestId, request);
+        scheduleIndex.update(request);
+        
+        long requestTime = System.currentTimeMillis();
+        plugin.getIOExecutor().thenSync(writeRequest(requestId, () -> {
+            try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+                PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO battle_requests (id, clan1_tag, clan2_tag, requester_uuid, game_mode, scheduled_time, status, request_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                ps.setString(1, request.getId());
+                ps.setString(2, request.getClan1Tag());
+                ps.setString(3, request.getClan2Tag());
+                ps.setString(4, request.getRequesterUuid().toString());
+                ps.setString(5, request.getGameMode());
+                ps.setLong(6, request.getScheduledTime());
+                ps.setString(7, BattleRequestStatus.PENDING.toString());
+                ps.setLong(8, requestTime);
+                ps.executeUpdate();
+                ps.close();
+            }
+        }), ignored -> publishRequestChange(requestId), error -> {
+            plugin.getLogger().log(Level.SEVERE, "Error saving battle request to database", error);
+            battleRequests.remove(requestId);
+            scheduleIndex.remove(requestId);
+            Player requester = Bukkit.getPlayer(requesterUuid);
+            if (requester != null) {
+                requester.sendMessage(ChatColor.RED + "Your battle request against " + clan2Tag + " could not be saved, please try again.");
+            }
+        });
+        
+        return request;
     }
     
     public boolean approveBattleRequest(String requestId, UUID adminUuid) {
@@ -113,28 +367,29 @@ public class BattleManager {
             return false;
         }
         
+        // Approved battles are guaranteed an arena of their game mode
+        if (!scheduleIndex.hasArenaCapacity(request.getGameMode(), request.getScheduledTime(), requestId)) {
+            plugin.getLogger().warning("Cannot approve battle request " + requestId + " - no " + request.getGameMode() + " arena free at that time");
+            return false;
+        }
+        
         // Update status
         request.setStatus(BattleRequestStatus.APPROVED);
+        scheduleIndex.update(request);
         
-        // Update in database
-        try {
-            Connection conn = plugin.getDatabaseManager().getConnection();
-            PreparedStatement ps = conn.prepareStatement(
-                "UPDATE battle_requests SET status = ?, admin_uuid = ? WHERE id = ?");
-            ps.setString(1, request.getStatus().toString());
-            ps.setString(2, adminUuid.toString());
-            ps.setString(3, request.getId());
-            ps.executeUpdate();
-            ps.close();
-            
-            // Schedule the server to start if needed
+        // Update in database, the server start is scheduled once the approval is stored
+        plugin.getIOExecutor().thenSync(writeRequestStatus(requestId, BattleRequestStatus.APPROVED, adminUuid), ignored -> {
             plugin.getScheduleManager().scheduleServerStart(request.getScheduledTime(), request.getId());
-            
-            return true;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error updating battle request in database", e);
-            return false;
-        }
+            publishRequestChange(requestId);
+        }, error -> {
+            plugin.getLogger().log(Level.SEVERE, "Error updating battle request in database", error);
+            if (request.getStatus() == BattleRequestStatus.APPROVED) {
+                request.setStatus(BattleRequestStatus.PENDING);
+                scheduleIndex.update(request);
+            }
+        });
+        
+        return true;
     }
     
     public boolean declineBattleRequest(String requestId, UUID adminUuid) {
@@ -145,53 +400,43 @@ public class BattleManager {
         
         // Update status
         request.setStatus(BattleRequestStatus.DECLINED);
-        
-        // Update in database
-        try {
-            Connection conn = plugin.getDatabaseManager().getConnection();
-            PreparedStatement ps = conn.prepareStatement(
-                "UPDATE battle_requests SET status = ?, admin_uuid = ? WHERE id = ?");
-            ps.setString(1, request.getStatus().toString());
-            ps.setString(2, adminUuid.toString());
-            ps.setString(3, request.getId());
-            ps.executeUpdate();
-            ps.close();
-            
-            // Remove from cache
-            battleRequests.remove(requestId);
-            
-            return true;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error updating battle request in database", e);
-            return false;
-        }
+        scheduleIndex.remove(requestId);
+        
+        // Remove from cache, it comes back if the database still has it pending
+        battleRequests.remove(requestId);
+        plugin.getIOExecutor().thenSync(writeRequestStatus(requestId, BattleRequestStatus.DECLINED, adminUuid),
+            ignored -> publishRequestChange(requestId), error -> {
+                plugin.getLogger().log(Level.SEVERE, "Error updating battle request in database", error);
+                request.setStatus(BattleRequestStatus.PENDING);
+                battleRequests.putIfAbsent(requestId, request);
+                scheduleIndex.update(request);
+            });
+        
+        return true;
     }
     
     public Battle startBattle(String requestId) {
+        return startBattle(requestId, null);
+    }
+    
+    // Starts in the given arena, e.g. the one the readiness probe warmed, or selects one when null
+    public Battle startBattle(String requestId, Arena preparedArena) {
         BattleRequest request = battleRequests.get(requestId);
         if (request == null || request.getStatus() != BattleRequestStatus.APPROVED) {
             return null;
         }
         
         // Check if staff member is online
-        boolean staffOnline = false;
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            if (player.hasPermission("clanwars.staff")) {
-                staffOnline = true;
-                break;
-            }
-        }
-        
-        if (!staffOnline && Config.REQUIRE_STAFF_ONLINE) {
+        if (Config.REQUIRE_STAFF_ONLINE && !plugin.getStaffCache().isStaffOnline()) {
             plugin.getLogger().warning("Cannot start battle - no staff member online");
             return null;
         }
         
         // Generate battle ID
-        String battleId = "B-" + UUID.randomUUID().toString().substring(0, 6);
+        String battleId = "B-" + plugin.getIdGenerator().next();
         
         // Select an arena
-        Arena arena = plugin.getArenaManager().selectArena(request.getGameMode());
+        Arena arena = preparedArena != null ? preparedArena : plugin.getArenaManager().selectArena(request.getGameMode());
         if (arena == null) {
             plugin.getLogger().warning("No suitable arena found for game mode: " + request.getGameMode());
             return null;
@@ -209,39 +454,63 @@ public class BattleManager {
         
         // Update battle request status
         request.setStatus(BattleRequestStatus.STARTED);
-        try {
-            Connection conn = plugin.getDatabaseManager().getConnection();
-            PreparedStatement ps = conn.prepareStatement(
-                "UPDATE battle_requests SET status = ? WHERE id = ?");
-            ps.setString(1, request.getStatus().toString());
-            ps.setString(2, request.getId());
-            ps.executeUpdate();
-            ps.close();
-            
-            // Create battle record in database
-            ps = conn.prepareStatement(
-                "INSERT INTO battles (id, request_id, clan1_tag, clan2_tag, game_mode, arena_id, start_time, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
-            ps.setString(1, battle.getId());
-            ps.setString(2, requestId);
-            ps.setString(3, battle.getClan1Tag());
-            ps.setString(4, battle.getClan2Tag());
-            ps.setString(5, battle.getGameMode());
-            ps.setString(6, battle.getArenaId());
-            ps.setLong(7, battle.getStartTime());
-            ps.setString(8, battle.getStatus().toString());
-            ps.executeUpdate();
-            ps.close();
-            
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error updating battle request or creating battle in database", e);
-            return null;
-        }
+        scheduleIndex.update(request);
+        String battleStatus = battle.getStatus().toString();
+        
+        // Journal the battle so it can be recovered after a crash
+        plugin.getBattleJournal().battleStarted(battle, requestId);
         
         // Add to cache
         activeBattles.put(battleId, battle);
-        
-        // Start the countdown
-        startBattleCountdown(battle);
+        battleRequestIds.put(battleId, requestId);
+        battlesStarted.increment();
+        
+        // Players are only set up once the battle row exists, the results save depends on it
+        plugin.getIOExecutor().thenSync(writeRequest(requestId, () -> {
+            try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+                conn.setAutoCommit(false);
+                try {
+                    PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE battle_requests SET status = ? WHERE id = ?");
+                    ps.setString(1, BattleRequestStatus.STARTED.toString());
+                    ps.setString(2, requestId);
+                    ps.executeUpdate();
+                    ps.close();
+                    
+                    // Create battle record in database
+                    ps = conn.prepareStatement(
+                        "INSERT INTO battles (id, request_id, clan1_tag, clan2_tag, game_mode, arena_id, start_time, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                    ps.setString(1, battle.getId());
+                    ps.setString(2, requestId);
+                    ps.setString(3, battle.getClan1Tag());
+                    ps.setString(4, battle.getClan2Tag());
+                    ps.setString(5, battle.getGameMode());
+                    ps.setString(6, battle.getArenaId());
+                    ps.setLong(7, battle.getStartTime());
+                    ps.setString(8, battleStatus);
+                    ps.executeUpdate();
+                    ps.close();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        }), ignored -> {
+            // Other nodes drop the request from their caches
+            publishRequestChange(requestId);
+            startBattleCountdown(battle);
+        }, error -> {
+            plugin.getLogger().log(Level.SEVERE, "Error updating battle request or creating battle in database", error);
+            activeBattles.remove(battleId);
+            battleRequestIds.remove(battleId);
+            plugin.getBattleJournal().battleEnded(battleId);
+            request.setStatus(BattleRequestStatus.APPROVED);
+            scheduleIndex.update(request);
+            plugin.getNodeCoordinator().release(requestId);
+        });
         
         return battle;
     }
@@ -250,21 +519,31 @@ public class BattleManager {
         final int[] countdown = {Config.BATTLE_COUNTDOWN_SECONDS};
         
         // Set up teams and teleport players to waiting area
+        long setupStart = System.nanoTime();
         setupTeams(battle);
+        setupTimer.record(System.nanoTime() - setupStart);
         
         BukkitTask countdownTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-            if (countdown[0] <= 0) {
-                // Start the actual battle
-                beginBattleFight(battle);
-                return;
-            }
-            
-            // Broadcast countdown
-            if (countdown[0] <= 10 || countdown[0] % 10 == 0) {
-                broadcastToBattle(battle, ChatColor.YELLOW + "Battle starting in " + countdown[0] + " seconds!");
+            long start = System.nanoTime();
+            try {
+                if (countdown[0] <= 0) {
+                    // Start the actual battle
+                    beginBattleFight(battle);
+                    return;
+                }
+                if (pausedBattles.contains(battle.getId())) {
+                    return;
+                }
+                
+                // Broadcast countdown
+                if (countdown[0] <= 10 || countdown[0] % 10 == 0) {
+                    broadcastToBattle(battle, ChatColor.YELLOW + "Battle starting in " + countdown[0] + " seconds!");
+                }
+                
+                countdown[0]--;
+            } finally {
+                countdownTimer.record(System.nanoTime() - start);
             }
-            
-            countdown[0]--;
         }, 0L, 20L); // Run every second
         
         // Store the task in the battle object for cancellation if needed
@@ -286,11 +565,11 @@ public class BattleManager {
         Scoreboard mainScoreboard = scoreboardManager.getMainScoreboard();
         
         // Create or get teams
-        Team team1 = mainScoreboard.getTeam("clan1") != null ? 
-                     mainScoreboard.getTeam("clan1") : 
+        Team team1 = mainScoreboard.getTeam("clan1") != null ?
+                     mainScoreboard.getTeam("clan1") :
                      mainScoreboard.registerNewTeam("clan1");
-        Team team2 = mainScoreboard.getTeam("clan2") != null ? 
-                     mainScoreboard.getTeam("clan2") : 
+        Team team2 = mainScoreboard.getTeam("clan2") != null ?
+                     mainScoreboard.getTeam("clan2") :
                      mainScoreboard.registerNewTeam("clan2");
         
         // Set team colors and prefixes
@@ -300,7 +579,7 @@ public class BattleManager {
         team2.setPrefix(ChatColor.BLUE + "[" + clan2.getTag() + "] ");
         
         // Apply friendly fire settings based on game mode
-        boolean friendlyFire = battle.getGameMode().equals("FREE_FOR_ALL");
+        boolean friendlyFire = BattleGameMode.of(battle.getGameMode()) == BattleGameMode.FREE_FOR_ALL;
         team1.setAllowFriendlyFire(friendlyFire);
         team2.setAllowFriendlyFire(friendlyFire);
         
@@ -309,7 +588,7 @@ public class BattleManager {
         List<Player> clan2Players = clanManager.getOnlineMembers(clan2);
         
         // Team balancing if enabled
-        if (Config.AUTO_TEAM_BALANCING && clan1Players.size() != clan2Players.size()) {
+        if (Config.AUTO_TEAM_BALANCING) {
             balanceTeams(clan1Players, clan2Players);
         }
         
@@ -317,6 +596,7 @@ public class BattleManager {
         for (Player player : clan1Players) {
             team1.addEntry(player.getName());
             playerBattleMap.put(player.getUniqueId(), battle.getId());
+            membershipIndex.add(player);
             player.teleport(team1Waiting);
             player.setGameMode(GameMode.ADVENTURE);
             player.getInventory().clear();
@@ -326,12 +606,14 @@ public class BattleManager {
             
             // Add to battle participants
             battle.addParticipant(player.getUniqueId(), battle.getClan1Tag());
+            plugin.getBattleJournal().participantAdded(battle, player.getUniqueId(), battle.getClan1Tag());
         }
         
         // Add players to team 2
         for (Player player : clan2Players) {
             team2.addEntry(player.getName());
             playerBattleMap.put(player.getUniqueId(), battle.getId());
+            membershipIndex.add(player);
             player.teleport(team2Waiting);
             player.setGameMode(GameMode.ADVENTURE);
             player.getInventory().clear();
@@ -341,46 +623,66 @@ public class BattleManager {
             
             // Add to battle participants
             battle.addParticipant(player.getUniqueId(), battle.getClan2Tag());
+            plugin.getBattleJournal().participantAdded(battle, player.getUniqueId(), battle.getClan2Tag());
         }
         
         // Set up spectators for other online players
         if (Config.ENABLE_SPECTATOR_MODE) {
-            setupSpectators(battle, arena.getSpectatorSpawnPoint());
+            plugin.getSpectatorManager().addSpectators(battle, arena.getSpectatorSpawnPoint());
         }
     }
     
     private void balanceTeams(List<Player> team1, List<Player> team2) {
-        // Balance teams by moving players from the larger team to the smaller one
-        if (team1.size() > team2.size()) {
-            int playersToMove = (team1.size() - team2.size()) / 2;
-            for (int i = 0; i < playersToMove && !team1.isEmpty(); i++) {
-                Player player = team1.remove(team1.size() - 1);
-                team2.add(player);
-                player.sendMessage(ChatColor.YELLOW + "You have been moved to the other team for balance!");
-            }
-        } else if (team2.size() > team1.size()) {
-            int playersToMove = (team2.size() - team1.size()) / 2;
-            for (int i = 0; i < playersToMove && !team2.isEmpty(); i++) {
-                Player player = team2.remove(team2.size() - 1);
-                team1.add(player);
-                player.sendMessage(ChatColor.YELLOW + "You have been moved to the other team for balance!");
+        long deadline = System.nanoTime() + Config.TEAM_BALANCE_BUDGET_MS * 1_000_000L;
+        
+        if (Config.BALANCE_MIXED_TEAMS) {
+            // Mixed battles split everyone into two skill-balanced halves
+            List<Player> players = new ArrayList<>(team1);
+            players.addAll(team2);
+            Set<Player> previousTeam1 = new HashSet<>(team1);
+            
+            boolean[] firstTeam = TeamBalancer.partition(getSkills(players), deadline);
+            team1.clear();
+            team2.clear();
+            for (int i = 0; i < players.size(); i++) {
+                Player player = players.get(i);
+                (firstTeam[i] ? team1 : team2).add(player);
+                if (firstTeam[i] != previousTeam1.contains(player)) {
+                    player.sendMessage(ChatColor.YELLOW + "You have been moved to the other team for balance!");
+                }
             }
+            return;
+        }
+        
+        // Clan battles keep clans together and only move the surplus of the larger team
+        List<Player> larger = team1.size() > team2.size() ? team1 : team2;
+        List<Player> smaller = larger == team1 ? team2 : team1;
+        int playersToMove = (larger.size() - smaller.size()) / 2;
+        if (playersToMove == 0) {
+            return;
+        }
+        
+        double smallerTotal = 0;
+        for (double skill : getSkills(smaller)) {
+            smallerTotal += skill;
+        }
+        int[] movers = TeamBalancer.selectMovers(getSkills(larger), smallerTotal, playersToMove, deadline);
+        
+        // Remove from the back so the remaining indexes stay valid
+        for (int i = movers.length - 1; i >= 0; i--) {
+            Player player = larger.remove(movers[i]);
+            smaller.add(player);
+            player.sendMessage(ChatColor.YELLOW + "You have been moved to the other team for balance!");
         }
     }
     
-    private void setupSpectators(Battle battle, Location spectatorSpawn) {
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            if (!battle.isParticipant(player.getUniqueId()) && 
-                !player.hasPermission("clanwars.staff")) {
-                
-                player.setGameMode(GameMode.SPECTATOR);
-                player.teleport(spectatorSpawn);
-                player.sendMessage(ChatColor.GRAY + "You are now spectating the clan battle!");
-                
-                // Add to battle spectators
-                battle.addSpectator(player.getUniqueId());
-            }
+    private double[] getSkills(List<Player> players) {
+        PlayerStatsManager statsManager = plugin.getPlayerStatsManager();
+        double[] skills = new double[players.size()];
+        for (int i = 0; i < skills.length; i++) {
+            skills[i] = statsManager.getSkill(players.get(i).getUniqueId());
         }
+        return skills;
     }
     
     private void beginBattleFight(Battle battle) {
@@ -392,19 +694,24 @@ public class BattleManager {
         
         // Set battle as active
         battle.setStatus(BattleStatus.ACTIVE);
-        
-        // Update in database
-        try {
-            Connection conn = plugin.getDatabaseManager().getConnection();
-            PreparedStatement ps = conn.prepareStatement(
-                "UPDATE battles SET status = ? WHERE id = ?");
-            ps.setString(1, battle.getStatus().toString());
-            ps.setString(2, battle.getId());
-            ps.executeUpdate();
-            ps.close();
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error updating battle status in database", e);
-        }
+        plugin.getBattleJournal().phaseChanged(battle);
+        
+        // Update in database, never over the results of a battle that already ended
+        String battleId = battle.getId();
+        plugin.getIOExecutor().run(() -> {
+            try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+                PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE battles SET status = ? WHERE id = ? AND status <> ?");
+                ps.setString(1, BattleStatus.ACTIVE.toString());
+                ps.setString(2, battleId);
+                ps.setString(3, BattleStatus.ENDED.toString());
+                ps.executeUpdate();
+                ps.close();
+            }
+        }).exceptionally(error -> {
+            plugin.getLogger().log(Level.SEVERE, "Error updating battle status in database", error);
+            return null;
+        });
         
         // Get arena
         Arena arena = plugin.getArenaManager().getArena(battle.getArenaId());
@@ -419,10 +726,13 @@ public class BattleManager {
         giveEquipment(battle);
         
         // Broadcast battle start
-        broadcastToBattle(battle, ChatColor.GREEN + "The battle has begun! Fight!");
+        broadcastToBattle(battle, ChatColor.GREEN + "The battle has begun! Fight! " + ChatColor.GRAY + "(battle " + IdGenerator.shortForm(battle.getId()) + ")");
         
-        // Start scoreboard updates
+        // Start scoreboard updates, spectators get their own slower stream
         startScoreboardUpdates(battle);
+        plugin.getSpectatorManager().start(battle);
+        plugin.getReplayRecorder().battleStarted(battle);
+        plugin.getObjectiveManager().start(battle);
     }
     
     private void teleportTeamsToSpawns(Battle battle, Arena arena) {
@@ -455,7 +765,7 @@ public class BattleManager {
     
     private void giveEquipment(Battle battle) {
         // Determine what equipment to give based on game mode
-        String gameMode = battle.getGameMode();
+        BattleGameMode gameMode = BattleGameMode.of(battle.getGameMode());
         
         for (UUID playerId : battle.getParticipants()) {
             Player player = Bukkit.getPlayer(playerId);
@@ -463,23 +773,24 @@ public class BattleManager {
                 // Clear inventory first
                 player.getInventory().clear();
                 
-                // Give game mode specific equipment
+                // Give game mode specific equipment, modes this version does not know get the default kit
+                if (gameMode == null) {
+                    plugin.getItemManager().giveDefaultKit(player);
+                    continue;
+                }
                 switch (gameMode) {
-                    case "TEAM_DEATHMATCH":
+                    case TEAM_DEATHMATCH:
                         plugin.getItemManager().giveTDMKit(player);
                         break;
-                    case "CAPTURE_THE_FLAG":
+                    case CAPTURE_THE_FLAG:
                         plugin.getItemManager().giveCTFKit(player);
                         break;
-                    case "CONTROL_POINT":
+                    case CONTROL_POINT:
                         plugin.getItemManager().giveControlPointKit(player);
                         break;
-                    case "FREE_FOR_ALL":
+                    case FREE_FOR_ALL:
                         plugin.getItemManager().giveFFAKit(player);
                         break;
-                    default:
-                        plugin.getItemManager().giveDefaultKit(player);
-                        break;
                 }
             }
         }
@@ -489,31 +800,39 @@ public class BattleManager {
         final int[] timeRemaining = {Config.BATTLE_DURATION_MINUTES * 60}; // Convert to seconds
         
         BukkitTask timerTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-            if (timeRemaining[0] <= 0 || battle.getStatus() != BattleStatus.ACTIVE) {
-                // Time's up, end the battle
-                endBattle(battle, BattleEndReason.TIME_EXPIRED);
-                return;
-            }
-            
-            // Update battle time
-            battle.setTimeRemaining(timeRemaining[0]);
-            
-            // Announce time remaining at specific intervals
-            if (timeRemaining[0] <= 60 || // Last minute
-                (timeRemaining[0] <= 300 && timeRemaining[0] % 60 == 0) || // Every minute in last 5 minutes
-                timeRemaining[0] % 300 == 0) { // Every 5 minutes otherwise
+            long start = System.nanoTime();
+            try {
+                if (timeRemaining[0] <= 0 || battle.getStatus() != BattleStatus.ACTIVE) {
+                    // Time's up, end the battle
+                    endBattle(battle, BattleEndReason.TIME_EXPIRED);
+                    return;
+                }
+                if (pausedBattles.contains(battle.getId())) {
+                    return;
+                }
                 
-                int minutes = timeRemaining[0] / 60;
-                int seconds = timeRemaining[0] % 60;
+                // Update battle time
+                battle.setTimeRemaining(timeRemaining[0]);
                 
-                if (minutes > 0) {
-                    broadcastToBattle(battle, ChatColor.YELLOW + "Time remaining: " + minutes + " minutes");
-                } else {
-                    broadcastToBattle(battle, ChatColor.RED + "Time remaining: " + seconds + " seconds!");
+                // Announce time remaining at specific intervals
+                if (timeRemaining[0] <= 60 || // Last minute
+                    (timeRemaining[0] <= 300 && timeRemaining[0] % 60 == 0) || // Every minute in last 5 minutes
+                    timeRemaining[0] % 300 == 0) { // Every 5 minutes otherwise
+                    
+                    int minutes = timeRemaining[0] / 60;
+                    int seconds = timeRemaining[0] % 60;
+                    
+                    if (minutes > 0) {
+                        broadcastToBattle(battle, ChatColor.YELLOW + "Time remaining: " + minutes + " minutes");
+                    } else {
+                        broadcastToBattle(battle, ChatColor.RED + "Time remaining: " + seconds + " seconds!");
+                    }
                 }
+                
+                timeRemaining[0]--;
+            } finally {
+                battleTimer.record(System.nanoTime() - start);
             }
-            
-            timeRemaining[0]--;
         }, 0L, 20L); // Run every second
         
         // Store the task in the battle object for cancellation if needed
@@ -522,25 +841,29 @@ public class BattleManager {
     
     private void startScoreboardUpdates(Battle battle) {
         BukkitTask scoreboardTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-            // Update scoreboard for all participants and spectators
+            long start = System.nanoTime();
+            
+            // Update scoreboard for all participants, a player whose previous update
+            // is still queued only gets the newest one
             for (UUID playerId : battle.getParticipants()) {
-                Player player = Bukkit.getPlayer(playerId);
-                if (player != null && player.isOnline()) {
-                    updatePlayerScoreboard(player, battle);
-                }
+                queueScoreboardUpdate(playerId, battle);
             }
             
-            for (UUID spectatorId : battle.getSpectators()) {
-                Player spectator = Bukkit.getPlayer(spectatorId);
-                if (spectator != null && spectator.isOnline()) {
-                    updatePlayerScoreboard(spectator, battle);
-                }
-            }
+            scoreboardTimer.record(System.nanoTime() - start);
         }, 0L, 20L); // Update every second
         
         battle.setScoreboardTask(scoreboardTask);
     }
     
+    public void queueScoreboardUpdate(UUID playerId, Battle battle) {
+        plugin.getTickScheduler().submit(TickScheduler.Priority.DEFERRABLE, "scoreboard:" + playerId, () -> {
+            Player player = Bukkit.getPlayer(playerId);
+            if (player != null && player.isOnline() && battle.getStatus() != BattleStatus.ENDED) {
+                updatePlayerScoreboard(player, battle);
+            }
+        });
+    }
+    
     private void updatePlayerScoreboard(Player player, Battle battle) {
         ClanManager clanManager = plugin.getClanManager();
         String clan1Tag = battle.getClan1Tag();
@@ -567,6 +890,7 @@ public class BattleManager {
         if (battle == null || battle.getStatus() != BattleStatus.ACTIVE) {
             return;
         }
+        long start = System.nanoTime();
         
         // Cancel all tasks
         if (battle.getTimerTask() != null) {
@@ -575,6 +899,8 @@ public class BattleManager {
         if (battle.getScoreboardTask() != null) {
             battle.getScoreboardTask().cancel();
         }
+        plugin.getSpectatorManager().stop(battle);
+        plugin.getObjectiveManager().stop(battle);
         
         // Determine winner
         String winnerTag = determineWinner(battle);
@@ -585,12 +911,10 @@ public class BattleManager {
         battle.setEndTime(System.currentTimeMillis());
         battle.setEndReason(reason);
         battle.setWinnerTag(winnerTag);
+        plugin.getReplayRecorder().battleEnded(battle, winnerTag, reason);
         
-        // Update in database
-        saveBattleResults(battle);
-        
-        // Update clan stats
-        plugin.getClanManager().updateClanStats(winnerTag, loserTag);
+        // Update in database off the main thread, clan stats follow once the results are stored
+        saveBattleOutcome(battle, winnerTag, loserTag, 1);
         
         // Distribute rewards
         distributeRewards(battle);
@@ -601,155 +925,273 @@ public class BattleManager {
         // Clean up
         cleanupBattle(battle);
         
-        // Schedule server shutdown if this was the last battle
-        if (activeBattles.size() <= 1 && Config.AUTO_SHUTDOWN_ENABLED) {
-            plugin.getServerManager().scheduleShutdown(Config.SHUTDOWN_DELAY_MINUTES);
+        // Schedule server shutdown unless the power plan keeps the server up for what comes next
+        if (Config.AUTO_SHUTDOWN_ENABLED) {
+            if (plugin.getPowerPlanner().shouldKeepAlive(System.currentTimeMillis())) {
+                plugin.getLogger().info("Keeping the server up, the next battle is closer than a reboot is worth.");
+            } else {
+                plugin.getServerManager().scheduleShutdown(Config.SHUTDOWN_DELAY_MINUTES);
+            }
+        }
+        
+        battlesEnded.increment();
+        endTimer.record(System.nanoTime() - start);
+    }
+    
+    // Retries a failed save a few times. If it never succeeds, the journal entry and the lease are
+    // kept, so the battle is finalized by crash recovery instead of counting results that were never stored.
+    // A disabled plugin can't schedule the retry, so the battle goes to crash recovery right away.
+    private void saveBattleOutcome(Battle battle, String winnerTag, String loserTag, int attempt) {
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.supply(() -> saveBattleResults(battle)), saved -> {
+            if (saved) {
+                recordBattleOutcome(battle, winnerTag, loserTag);
+            } else {
+                // Taken over by another node while this one stalled, its results are the ones that count.
+                // Or an attempt whose reply was lost already saved it, then the outcome is dropped too.
+                plugin.getLogger().warning("Battle " + battle.getId() + " was taken over or already saved, dropping this node's results");
+                plugin.getBattleJournal().battleEnded(battle.getId());
+                plugin.getNodeCoordinator().battleEnded(battle.getId());
+            }
+        }, error -> {
+            if (attempt < SAVE_ATTEMPTS && plugin.isEnabled()) {
+                plugin.getLogger().log(Level.WARNING, "Error saving results of battle " + battle.getId() + ", retrying", error);
+                Bukkit.getScheduler().runTaskLater(plugin, () -> saveBattleOutcome(battle, winnerTag, loserTag, attempt + 1),
+                    20L * SAVE_RETRY_SECONDS * attempt);
+            } else {
+                plugin.getLogger().log(Level.SEVERE, "Could not save results of battle " + battle.getId()
+                    + ", leaving it to crash recovery", error);
+            }
+        });
+    }
+    
+    private void recordBattleOutcome(Battle battle, String winnerTag, String loserTag) {
+        // Update clan stats
+        plugin.getClanManager().updateClanStats(winnerTag, loserTag);
+        plugin.getPlayerStatsManager().recordBattle(battle);
+        
+        // Rewards go through the ledger only once the battle row is committed, so every entitlement
+        // points at a stored battle. Offline players collect theirs on their next join
+        plugin.getRewardLedger().recordEntitlements(battle);
+        
+        // Results are persisted, the journal and the fleet lease no longer need this battle
+        plugin.getBattleJournal().battleEnded(battle.getId());
+        plugin.getNodeCoordinator().battleEnded(battle.getId());
+        
+        // Remember the pairing so matchmaking avoids immediate rematches
+        plugin.getMatchmakingManager().recordBattle(battle.getClan1Tag(), battle.getClan2Tag());
+        
+        // Cached history pages no longer include the newest battle
+        BattleHistoryManager historyManager = plugin.getBattleHistoryManager();
+        historyManager.invalidateClan(battle.getClan1Tag());
+        historyManager.invalidateClan(battle.getClan2Tag());
+        for (UUID playerId : battle.getParticipants()) {
+            historyManager.invalidatePlayer(playerId);
         }
     }
     
     private String determineWinner(Battle battle) {
         // Logic to determine winner based on game mode and scores
-        switch(battle.getGameMode()) {
-            case "TEAM_DEATHMATCH":
+        BattleGameMode gameMode = BattleGameMode.of(battle.getGameMode());
+        if (gameMode == null) {
+            // Default to team with most kills
+            return battle.getTeam1Score() > battle.getTeam2Score() ?
+                   battle.getClan1Tag() : battle.getClan2Tag();
+        }
+        switch (gameMode) {
+            case TEAM_DEATHMATCH:
                 // Team with more kills wins
-                return battle.getTeam1Score() > battle.getTeam2Score() ? 
+                return battle.getTeam1Score() > battle.getTeam2Score() ?
                        battle.getClan1Tag() : battle.getClan2Tag();
-                
-            case "CAPTURE_THE_FLAG":
-                // Team with more flag captures wins
-                return battle.getTeam1Score() > battle.getTeam2Score() ? 
+            
+            case CAPTURE_THE_FLAG:
+                // Team with more flag captures wins, scored by ObjectiveManager
+                return battle.getTeam1Score() > battle.getTeam2Score() ?
                        battle.getClan1Tag() : battle.getClan2Tag();
-                
-            case "CONTROL_POINT":
-                // Team with more control point time wins
-                return battle.getTeam1Score() > battle.getTeam2Score() ? 
+            
+            case CONTROL_POINT:
+                // Team with more control point time wins, ObjectiveManager scores held points
+                return battle.getTeam1Score() > battle.getTeam2Score() ?
                        battle.getClan1Tag() : battle.getClan2Tag();
-                
+            
             default:
-                // Default to team with most kills
-                // Default to team with most kills
-                return battle.getTeam1Score() > battle.getTeam2Score() ? 
+                // Free for all, the team with most kills
+                return battle.getTeam1Score() > battle.getTeam2Score() ?
                        battle.getClan1Tag() : battle.getClan2Tag();
         }
     }
     
-    private void saveBattleResults(Battle battle) {
-        try {
-            Connection conn = plugin.getDatabaseManager().getConnection();
-            PreparedStatement ps = conn.prepareStatement(
-                "UPDATE battles SET status = ?, end_time = ?, end_reason = ?, winner_tag = ?, " +
-                "team1_score = ?, team2_score = ? WHERE id = ?");
-            ps.setString(1, battle.getStatus().toString());
-            ps.setLong(2, battle.getEndTime());
-            ps.setString(3, battle.getEndReason().toString());
-            ps.setString(4, battle.getWinnerTag());
-            ps.setInt(5, battle.getTeam1Score());
-            ps.setInt(6, battle.getTeam2Score());
-            ps.setString(7, battle.getId());
-            ps.executeUpdate();
-            ps.close();
-            
-            // Save individual player stats
-            savePlayerStats(battle);
-            
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error saving battle results to database", e);
+    // One transaction, so a failed save can be retried without duplicating player stats. Fenced by
+    // the battle's lease: if another node took the battle over, or its row is gone, nothing is
+    // written and false tells the caller to drop the outcome. The lease is finished in the same
+    // transaction, so a takeover can no longer start after the results are stored. A battle that is
+    // already ENDED is not saved twice.
+    private boolean saveBattleResults(Battle battle) throws SQLException {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            conn.setAutoCommit(false);
+            try {
+                // Locks the lease row, a takeover waits for this transaction
+                PreparedStatement ps = conn.prepareStatement(
+                    "SELECT l.request_id, l.node_id FROM battle_leases l JOIN battles b ON b.request_id = l.request_id " +
+                    "WHERE b.id = ? FOR UPDATE");
+                ps.setString(1, battle.getId());
+                ResultSet rs = ps.executeQuery();
+                String leasedRequestId = null;
+                if (rs.next()) {
+                    if (!Config.NODE_ID.equals(rs.getString("node_id"))) {
+                        rs.close();
+                        ps.close();
+                        conn.rollback();
+                        return false;
+                    }
+                    leasedRequestId = rs.getString("request_id");
+                }
+                rs.close();
+                ps.close();
+                
+                ps = conn.prepareStatement(
+                    "UPDATE battles SET status = ?, end_time = ?, end_reason = ?, winner_tag = ?, " +
+                    "team1_score = ?, team2_score = ? WHERE id = ? AND status <> ?");
+                ps.setString(1, battle.getStatus().toString());
+                ps.setLong(2, battle.getEndTime());
+                ps.setString(3, battle.getEndReason().toString());
+                ps.setString(4, battle.getWinnerTag());
+                ps.setInt(5, battle.getTeam1Score());
+                ps.setInt(6, battle.getTeam2Score());
+                ps.setString(7, battle.getId());
+                ps.setString(8, BattleStatus.ENDED.toString());
+                int updated = ps.executeUpdate();
+                ps.close();
+                if (updated == 0) {
+                    // The row was dropped by a takeover, or an earlier attempt already saved it
+                    conn.rollback();
+                    return false;
+                }
+                
+                if (leasedRequestId != null) {
+                    ps = conn.prepareStatement(
+                        "UPDATE battle_leases SET finished_time = ? WHERE request_id = ? AND node_id = ? AND finished_time IS NULL");
+                    ps.setLong(1, System.currentTimeMillis());
+                    ps.setString(2, leasedRequestId);
+                    ps.setString(3, Config.NODE_ID);
+                    ps.executeUpdate();
+                    ps.close();
+                }
+                
+                // Save individual player stats
+                savePlayerStats(conn, battle);
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
     
-    private void savePlayerStats(Battle battle) {
-        try {
-            Connection conn = plugin.getDatabaseManager().getConnection();
-            PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO player_battle_stats (battle_id, player_uuid, player_name, clan_tag, " +
-                "kills, deaths, score, winner) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
-            
-            for (Map.Entry<UUID, BattlePlayerStats> entry : battle.getPlayerStats().entrySet()) {
-                UUID playerId = entry.getKey();
-                BattlePlayerStats stats = entry.getValue();
-                String playerName = Bukkit.getOfflinePlayer(playerId).getName();
-                String clanTag = battle.getPlayerClanTag(playerId);
-                boolean isWinner = clanTag.equals(battle.getWinnerTag());
-                
-                ps.setString(1, battle.getId());
-                ps.setString(2, playerId.toString());
-                ps.setString(3, playerName);
-                ps.setString(4, clanTag);
-                ps.setInt(5, stats.getKills());
-                ps.setInt(6, stats.getDeaths());
-                ps.setInt(7, stats.getScore());
-                ps.setBoolean(8, isWinner);
-                ps.addBatch();
-            }
-            
-            ps.executeBatch();
-            ps.close();
+    private void savePlayerStats(Connection conn, Battle battle) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "INSERT IGNORE INTO player_battle_stats (battle_id, player_uuid, player_name, clan_tag, " +
+            "kills, deaths, score, winner, start_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        
+        for (Map.Entry<UUID, BattlePlayerStats> entry : battle.getPlayerStats().entrySet()) {
+            UUID playerId = entry.getKey();
+            BattlePlayerStats stats = entry.getValue();
+            String playerName = Bukkit.getOfflinePlayer(playerId).getName();
+            String clanTag = battle.getPlayerClanTag(playerId);
+            boolean isWinner = clanTag.equals(battle.getWinnerTag());
             
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error saving player battle stats to database", e);
+            ps.setString(1, battle.getId());
+            ps.setString(2, playerId.toString());
+            ps.setString(3, playerName);
+            ps.setString(4, clanTag);
+            ps.setInt(5, stats.getKills());
+            ps.setInt(6, stats.getDeaths());
+            ps.setInt(7, stats.getScore());
+            ps.setBoolean(8, isWinner);
+            ps.setLong(9, battle.getStartTime());
+            ps.addBatch();
         }
+        
+        ps.executeBatch();
+        ps.close();
     }
     
     private void distributeRewards(Battle battle) {
         String winnerTag = battle.getWinnerTag();
+        TickScheduler scheduler = plugin.getTickScheduler();
         
-        // Get winning clan members
+        // Entitlements are written by recordBattleOutcome once the results are stored
         for (UUID playerId : battle.getParticipants()) {
-            String playerClanTag = battle.getPlayerClanTag(playerId);
-            Player player = Bukkit.getPlayer(playerId);
+            boolean isWinner = battle.getPlayerClanTag(playerId).equals(winnerTag);
             
-            if (player != null && player.isOnline()) {
-                if (playerClanTag.equals(winnerTag)) {
-                    // Reward winning players
-                    plugin.getRewardManager().giveWinnerRewards(player, battle);
-                    player.sendMessage(ChatColor.GREEN + "Congratulations! Your clan won the battle!");
-                } else {
-                    // Participation reward for losing players
-                    plugin.getRewardManager().giveParticipationRewards(player, battle);
-                    player.sendMessage(ChatColor.RED + "Your clan lost the battle. Better luck next time!");
+            scheduler.submit(TickScheduler.Priority.DEFERRABLE, () -> {
+                Player player = Bukkit.getPlayer(playerId);
+                if (player != null && player.isOnline()) {
+                    player.sendMessage(isWinner
+                        ? ChatColor.GREEN + "Congratulations! Your clan won the battle!"
+                        : ChatColor.RED + "Your clan lost the battle. Better luck next time!");
                 }
-            }
+            });
         }
         
         // Broadcast results
-        ClanManager clanManager = plugin.getClanManager();
-        Clan winnerClan = clanManager.getClan(winnerTag);
-        
-        Bukkit.broadcastMessage(ChatColor.GOLD + "=== Battle Results ===");
-        Bukkit.broadcastMessage(ChatColor.GREEN + "Winner: " + winnerClan.getName() + " [" + winnerClan.getTag() + "]");
-        Bukkit.broadcastMessage(ChatColor.YELLOW + "Game Mode: " + battle.getGameMode());
-        Bukkit.broadcastMessage(ChatColor.YELLOW + "Score: " + battle.getTeam1Score() + " - " + battle.getTeam2Score());
+        scheduler.submit(TickScheduler.Priority.DEFERRABLE, () -> {
+            Clan winnerClan = plugin.getClanManager().getClan(winnerTag);
+            
+            Bukkit.broadcastMessage(ChatColor.GOLD + "=== Battle Results ===");
+            Bukkit.broadcastMessage(ChatColor.GREEN + "Winner: " + winnerClan.getName() + " [" + winnerClan.getTag() + "]");
+            Bukkit.broadcastMessage(ChatColor.YELLOW + "Game Mode: " + battle.getGameMode());
+            Bukkit.broadcastMessage(ChatColor.YELLOW + "Score: " + battle.getTeam1Score() + " - " + battle.getTeam2Score());
+            Bukkit.broadcastMessage(ChatColor.GRAY + "Battle ID: " + IdGenerator.shortForm(battle.getId()));
+        });
     }
     
     private void teleportPlayersToMainSpawn(Battle battle) {
         Location mainSpawn = plugin.getServerManager().getMainSpawn();
+        TickScheduler scheduler = plugin.getTickScheduler();
         
-        // Teleport participants
+        // Players leave the battle right away, the teleports themselves are spread over ticks
         for (UUID playerId : battle.getParticipants()) {
-            Player player = Bukkit.getPlayer(playerId);
-            if (player != null && player.isOnline()) {
-                player.teleport(mainSpawn);
-                player.setGameMode(GameMode.SURVIVAL);
-                player.getInventory().clear();
-                
-                // Remove from battle map
-                playerBattleMap.remove(playerId);
-            }
+            playerBattleMap.remove(playerId);
+            membershipIndex.remove(playerId);
+            
+            scheduler.submit(TickScheduler.Priority.NORMAL, () -> {
+                Player player = Bukkit.getPlayer(playerId);
+                // Skip players who already joined the next battle
+                if (player != null && player.isOnline() && !isPlayerInBattle(playerId)) {
+                    player.teleport(mainSpawn);
+                    player.setGameMode(GameMode.SURVIVAL);
+                    player.getInventory().clear();
+                }
+            });
         }
         
         // Teleport spectators
         for (UUID spectatorId : battle.getSpectators()) {
-            Player spectator = Bukkit.getPlayer(spectatorId);
-            if (spectator != null && spectator.isOnline()) {
-                spectator.teleport(mainSpawn);
-                spectator.setGameMode(GameMode.SURVIVAL);
-            }
+            scheduler.submit(TickScheduler.Priority.NORMAL, () -> {
+                Player spectator = Bukkit.getPlayer(spectatorId);
+                if (spectator != null && spectator.isOnline() && !isPlayerInBattle(spectatorId)) {
+                    spectator.teleport(mainSpawn);
+                    spectator.setGameMode(GameMode.SURVIVAL);
+                }
+            });
         }
     }
     
     private void cleanupBattle(Battle battle) {
         // Remove from active battles
         activeBattles.remove(battle.getId());
+        pausedBattles.remove(battle.getId());
+        
+        // The request is done, free its booking and arena slot
+        String requestId = battleRequestIds.remove(battle.getId());
+        if (requestId != null) {
+            battleRequests.remove(requestId);
+            scheduleIndex.remove(requestId);
+        }
         
         // Remove scoreboard teams
         ScoreboardManager scoreboardManager = Bukkit.getScoreboardManager();
@@ -767,6 +1209,33 @@ public class BattleManager {
         }
     }
     
+    // Another node took the battle over after this one lost its lease. Nothing is stored,
+    // the battles row already belongs to the new owner, who fights the battle again from the start.
+    public void abandonBattle(Battle battle) {
+        if (activeBattles.get(battle.getId()) != battle) {
+            return;
+        }
+        if (battle.getCountdownTask() != null) {
+            battle.getCountdownTask().cancel();
+            battle.setCountdownTask(null);
+        }
+        if (battle.getTimerTask() != null) {
+            battle.getTimerTask().cancel();
+        }
+        if (battle.getScoreboardTask() != null) {
+            battle.getScoreboardTask().cancel();
+        }
+        plugin.getSpectatorManager().stop(battle);
+        plugin.getObjectiveManager().stop(battle);
+        battle.setStatus(BattleStatus.ENDED);
+        plugin.getReplayRecorder().battleEnded(battle, "", BattleEndReason.SERVER_SHUTDOWN);
+        plugin.getBattleJournal().battleEnded(battle.getId());
+        
+        broadcastToBattle(battle, ChatColor.RED + "This battle moved to another server and will be fought again from the start.");
+        teleportPlayersToMainSpawn(battle);
+        cleanupBattle(battle);
+    }
+    
     public void endAllBattles() {
         List<Battle> battles = new ArrayList<>(activeBattles.values());
         for (Battle battle : battles) {
@@ -782,38 +1251,72 @@ public class BattleManager {
         return activeBattles.get(battleId);
     }
     
+    // Holds the countdown or battle clock and stops kill and objective scoring
+    public void pauseBattle(Battle battle) {
+        if (pausedBattles.add(battle.getId())) {
+            broadcastToBattle(battle, ChatColor.RED + "The battle is paused until staff is back online.");
+        }
+    }
+    
+    public void resumeBattle(Battle battle) {
+        if (pausedBattles.remove(battle.getId())) {
+            broadcastToBattle(battle, ChatColor.GREEN + "Staff is back, the battle continues!");
+        }
+    }
+    
+    public boolean isBattlePaused(Battle battle) {
+        return pausedBattles.contains(battle.getId());
+    }
+    
     public boolean isPlayerInBattle(UUID playerId) {
         return playerBattleMap.containsKey(playerId);
     }
     
+    // Single bit test, for event handlers that mostly see players outside any battle
+    public boolean isPlayerInBattle(Player player) {
+        return membershipIndex.contains(player);
+    }
+    
+    public BattleMembershipIndex getMembershipIndex() {
+        return membershipIndex;
+    }
+    
     public void broadcastToBattle(Battle battle, String message) {
-        // Send message to all participants and spectators
-        for (UUID playerId : battle.getParticipants()) {
-            Player player = Bukkit.getPlayer(playerId);
-            if (player != null && player.isOnline()) {
-                player.sendMessage(message);
+        broadcast(battle, message, true);
+    }
+    
+    private void broadcast(Battle battle, String message, boolean includeSpectators) {
+        // Chat is cosmetic, it waits for a tick with spare budget
+        plugin.getTickScheduler().submit(TickScheduler.Priority.DEFERRABLE, () -> {
+            long start = System.nanoTime();
+            
+            // Send message to all participants and spectators
+            for (UUID playerId : battle.getParticipants()) {
+                Player player = Bukkit.getPlayer(playerId);
+                if (player != null && player.isOnline()) {
+                    player.sendMessage(message);
+                }
             }
-        }
-        
-        for (UUID spectatorId : battle.getSpectators()) {
-            Player spectator = Bukkit.getPlayer(spectatorId);
-            if (spectator != null && spectator.isOnline()) {
-                spectator.sendMessage(message);
+            
+            if (includeSpectators) {
+                plugin.getSpectatorManager().broadcast(battle, message);
             }
-        }
+            
+            broadcastTimer.record(System.nanoTime() - start);
+        });
     }
     
     public void recordKill(Player killer, Player victim) {
-        // Make sure both players are in a battle
-        if (!isPlayerInBattle(killer.getUniqueId()) || !isPlayerInBattle(victim.getUniqueId())) {
+        long start = System.nanoTime();
+        
+        // Make sure both players are in a battle, most deaths on the server are not
+        if (!membershipIndex.contains(killer) || !membershipIndex.contains(victim)) {
             return;
         }
         
-        // Get the battle
-        Battle battle = getPlayerBattle(killer.getUniqueId());
-        
         // Make sure they're in the same battle
-        if (battle != getPlayerBattle(victim.getUniqueId())) {
+        Battle battle = getPlayerBattle(killer.getUniqueId());
+        if (battle == null || !battle.isParticipant(victim.getUniqueId()) || isBattlePaused(battle)) {
             return;
         }
         
@@ -824,15 +1327,24 @@ public class BattleManager {
         // Update player stats
         battle.recordKill(killer.getUniqueId(), victim.getUniqueId());
         
-        // Update team scores
-        if (killerClanTag.equals(battle.getClan1Tag())) {
+        // Kills are the score unless the objective engine scores this battle
+        ObjectiveManager objectiveManager = plugin.getObjectiveManager();
+        if (objectiveManager.isScoringObjectives(battle)) {
+            objectiveManager.playerDied(battle, victim);
+        } else if (killerClanTag.equals(battle.getClan1Tag())) {
             battle.setTeam1Score(battle.getTeam1Score() + 1);
         } else if (killerClanTag.equals(battle.getClan2Tag())) {
             battle.setTeam2Score(battle.getTeam2Score() + 1);
         }
+        plugin.getBattleJournal().killRecorded(battle, killer.getUniqueId(), victim.getUniqueId());
+        plugin.getReplayRecorder().killRecorded(battle, killer.getUniqueId(), victim.getUniqueId());
         
-        // Broadcast kill message
-        broadcastToBattle(battle, ChatColor.YELLOW + killer.getName() + " killed " + victim.getName() + "!");
+        // Broadcast kill message, spectators get it in the next kill feed summary
+        broadcast(battle, ChatColor.YELLOW + killer.getName() + " killed " + victim.getName() + "!", false);
+        plugin.getSpectatorManager().recordKill(battle, killer.getName(), victim.getName());
+        
+        killCount.increment();
+        killTimer.record(System.nanoTime() - start);
     }
     
     public List<BattleRequest> getPendingBattleRequests() {
@@ -851,6 +1363,29 @@ public class BattleManager {
         return new HashMap<>(activeBattles);
     }
     
+    public int getActiveBattleCount() {
+        return activeBattles.size();
+    }
+    
+    private int countRequests(BattleRequestStatus status) {
+        int count = 0;
+        for (BattleRequest request : battleRequests.values()) {
+            if (request.getStatus() == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    // Clans with a pending or approved battle overlapping the given start time
+    public Set<String> getClansBookedAt(long scheduledTime) {
+        return scheduleIndex.getClansBookedAt(scheduledTime);
+    }
+    
+    public ScheduleIndex getScheduleIndex() {
+        return scheduleIndex;
+    }
+    
     public BattleRequest getBattleRequest(String requestId) {
         return battleRequests.get(requestId);
     }
@@ -0,0 +1,49 @@
+package com.minecraft.clanwars.managers;
+
+import org.bukkit.entity.Player;
+
+import java.util.*;
+
+// Bitmap of the entity IDs of players currently in a battle. Listeners see every combat, move
+// and quit event on the server, most of them from players who are not fighting, and this lets
+// them drop those with one bit test before any map lookup. Entity IDs are handed out per
+// session, so a battle player who rejoins is mapped to their new ID. Main thread only.
+public class BattleMembershipIndex {
+    private final BitSet members;
+    private final Map<UUID, Integer> entityIds; // player UUID -> entity ID in the bitmap
+    
+    public BattleMembershipIndex() {
+        this.members = new BitSet();
+        this.entityIds = new HashMap<>();
+    }
+    
+    public void add(Player player) {
+        Integer previous = entityIds.put(player.getUniqueId(), player.getEntityId());
+        if (previous != null) {
+            members.clear(previous);
+        }
+        members.set(player.getEntityId());
+    }
+    
+    public void remove(UUID playerId) {
+        Integer entityId = entityIds.remove(playerId);
+        if (entityId != null) {
+            members.clear(entityId);
+        }
+    }
+    
+    // A battle player came back with a fresh entity ID
+    public void rejoined(Player player) {
+        if (entityIds.containsKey(player.getUniqueId())) {
+            add(player);
+        }
+    }
+    
+    public boolean contains(Player player) {
+        return members.get(player.getEntityId());
+    }
+    
+    public int size() {
+        return entityIds.size();
+    }
+}
\ No newline at end of file
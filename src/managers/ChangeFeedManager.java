@@ -0,0 +1,227 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.BattleRequestStatus;
+import com.minecraft.clanwars.utils.Config;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+// Keeps clan and battle request caches coherent across nodes. Every mutation appends a
+// row to cw_changelog, and every node polls the rows after the last sequence it applied
+// and reloads only the entries they name.
+public class ChangeFeedManager {
+    public enum EntityType {
+        CLAN,
+        BATTLE_REQUEST
+    }
+    
+    private static final int POLL_LIMIT = 500;
+    private static final long GAP_TIMEOUT_MS = 10_000; // rolled back inserts leave permanent gaps
+    private static final int POLLS_PER_PRUNE = 900;
+    
+    private final ClanWarsPlugin plugin;
+    private final String nodeId;
+    private final Set<Long> appliedAboveCursor; // sequences applied past a gap, main thread only
+    private final AtomicBoolean polling;
+    private long cursor; // every sequence up to here has been applied, main thread only
+    private long gapSince;
+    private int pollsSincePrune;
+    private BukkitTask pollTask;
+    
+    public ChangeFeedManager(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.nodeId = Config.NODE_ID;
+        this.appliedAboveCursor = new HashSet<>();
+        this.polling = new AtomicBoolean();
+        
+        // Start from the current end of the feed, the caches are about to be loaded fresh
+        try (Connection conn = connection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT COALESCE(MAX(seq), 0) FROM cw_changelog");
+            ResultSet rs = ps.executeQuery();
+            cursor = rs.next() ? rs.getLong(1) : 0;
+            rs.close();
+            ps.close();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error reading change feed position from database", e);
+        }
+    }
+    
+    public void startTasks() {
+        long period = 20L * Config.CHANGE_FEED_POLL_SECONDS;
+        pollTask = Bukkit.getScheduler().runTaskTimer(plugin, this::poll, period, period);
+    }
+    
+    public void shutdown() {
+        if (pollTask != null) {
+            pollTask.cancel();
+        }
+    }
+    
+    public void publish(EntityType type, String key) {
+        publish(type, Collections.singletonList(key));
+    }
+    
+    public void publish(EntityType type, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        
+        List<String> changedKeys = new ArrayList<>(keys);
+        long now = System.currentTimeMillis();
+        plugin.getIOExecutor().run(() -> {
+            try (Connection conn = connection()) {
+                PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO cw_changelog (entity_type, entity_key, origin_node, created_at) VALUES (?, ?, ?, ?)");
+                for (String key : changedKeys) {
+                    ps.setString(1, type.name());
+                    ps.setString(2, key);
+                    ps.setString(3, nodeId);
+                    ps.setLong(4, now);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                ps.close();
+            }
+        }).exceptionally(error -> {
+            plugin.getLogger().log(Level.WARNING, "Error publishing " + type + " changes to the change feed", error);
+            return null;
+        });
+    }
+    
+    private void poll() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+        
+        long from = cursor;
+        boolean prune = ++pollsSincePrune >= POLLS_PER_PRUNE;
+        if (prune) {
+            pollsSincePrune = 0;
+        }
+        
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.supply(() -> {
+            try (Connection conn = connection()) {
+                if (prune) {
+                    PreparedStatement ps = conn.prepareStatement("DELETE FROM cw_changelog WHERE created_at < ?");
+                    ps.setLong(1, System.currentTimeMillis() - Config.CHANGE_FEED_RETENTION_MINUTES * 60L * 1000L);
+                    ps.executeUpdate();
+                    ps.close();
+                }
+                
+                // Primary key range scan, nothing to read on a quiet fleet
+                PreparedStatement ps = conn.prepareStatement(
+                    "SELECT seq, entity_type, entity_key, origin_node FROM cw_changelog WHERE seq > ? ORDER BY seq LIMIT ?");
+                ps.setLong(1, from);
+                ps.setInt(2, POLL_LIMIT);
+                ResultSet rs = ps.executeQuery();
+                
+                List<Change> changes = new ArrayList<>();
+                while (rs.next()) {
+                    changes.add(new Change(rs.getLong("seq"), rs.getString("entity_type"), rs.getString("entity_key"), rs.getString("origin_node")));
+                }
+                rs.close();
+                ps.close();
+                return changes;
+            }
+        }), changes -> {
+            apply(changes);
+            polling.set(false);
+        }, error -> {
+            polling.set(false);
+            plugin.getLogger().log(Level.WARNING, "Error polling the change feed", error);
+        });
+    }
+    
+    private void apply(List<Change> changes) {
+        Set<String> clans = new LinkedHashSet<>();
+        Set<String> requests = new LinkedHashSet<>();
+        
+        for (Change change : changes) {
+            if (change.seq <= cursor || !appliedAboveCursor.add(change.seq)) {
+                continue;
+            }
+            // This node already has its own changes
+            if (nodeId.equals(change.originNode)) {
+                continue;
+            }
+            if (EntityType.CLAN.name().equals(change.entityType)) {
+                clans.add(change.entityKey);
+            } else if (EntityType.BATTLE_REQUEST.name().equals(change.entityType)) {
+                requests.add(change.entityKey);
+            }
+        }
+        
+        advanceCursor();
+        
+        for (String clanTag : clans) {
+            plugin.getClanManager().reloadClan(clanTag);
+            plugin.getRatingManager().reloadRatingState(clanTag);
+        }
+        for (String requestId : requests) {
+            reloadBattleRequest(requestId);
+        }
+    }
+    
+    // Sequences can become visible out of order, so the cursor only moves past a gap once
+    // the missing rows had time to commit
+    private void advanceCursor() {
+        while (appliedAboveCursor.remove(cursor + 1)) {
+            cursor++;
+        }
+        
+        if (appliedAboveCursor.isEmpty()) {
+            gapSince = 0;
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        if (gapSince == 0) {
+            gapSince = now;
+        } else if (now - gapSince > GAP_TIMEOUT_MS) {
+            cursor = Collections.min(appliedAboveCursor) - 1;
+            gapSince = 0;
+            advanceCursor();
+        }
+    }
+    
+    private void reloadBattleRequest(String requestId) {
+        plugin.getBattleManager().reloadBattleRequest(requestId, request -> {
+            ScheduleManager scheduleManager = plugin.getScheduleManager();
+            if (request != null && request.getStatus() == BattleRequestStatus.APPROVED) {
+                // Approved elsewhere, the lease decides which node actually starts it
+                if (!scheduleManager.hasScheduledStart(requestId)) {
+                    scheduleManager.scheduleServerStart(request.getScheduledTime(), requestId);
+                }
+            } else {
+                scheduleManager.cancelScheduledStart(requestId);
+            }
+        });
+    }
+    
+    private Connection connection() throws SQLException {
+        return plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection());
+    }
+    
+    private static class Change {
+        private final long seq;
+        private final String entityType;
+        private final String entityKey;
+        private final String originNode;
+        
+        Change(long seq, String entityType, String entityKey, String originNode) {
+            this.seq = seq;
+            this.entityType = entityType;
+            this.entityKey = entityKey;
+            this.originNode = originNode;
+        }
+    }
+}
\ No newline at end of file
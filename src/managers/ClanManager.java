@@ -17,25 +17,85 @@ clan.setLeaderUuid(newLeaderUuid);
 ClanMember oldLeader = clan.getMember(oldLeaderUuid);
 ClanMember newLeader = clan.getMember(newLeaderUuid);
 
-oldLeader.setRole("OFFICER");
-newLeader.setRole("LEADER");
+oldLeader.setRole(ClanRole.OFFICER.name());
+newLeader.setRole(ClanRole.LEADER.name());
 
-// Save clan to persist changes
-saveClan(clan);
+// Persist, other nodes hear about it once the rows are committed
+String clanTag = clan.getTag();
+IOExecutor io = plugin.getIOExecutor();
+io.thenSync(io.supply(() -> saveLeadership(clanTag, oldLeaderUuid, newLeaderUuid)), version -> {
+    if (version > clanVersions.getOrDefault(clanTag, -1L)) {
+        clanVersions.put(clanTag, version);
+    }
+    plugin.getChangeFeedManager().publish(ChangeFeedManager.EntityType.CLAN, clanTag);
+}, error ->
+    plugin.getLogger().log(Level.SEVERE, "Error saving leadership transfer of clan " + clanTag, error));
 
 return true;
 }
 
+// Leader and both roles in one transaction, returns the clan's version after the change
+private long saveLeadership(String clanTag, UUID oldLeaderUuid, UUID newLeaderUuid) throws SQLException {
+try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+    conn.setAutoCommit(false);
+    try {
+        PreparedStatement ps = conn.prepareStatement("UPDATE clans SET leader_uuid = ?, version = version + 1 WHERE tag = ?");
+        ps.setString(1, newLeaderUuid.toString());
+        ps.setString(2, clanTag);
+        ps.executeUpdate();
+        ps.close();
+
+        ps = conn.prepareStatement("UPDATE clan_members SET role = ? WHERE clan_tag = ? AND player_uuid = ?");
+        ps.setString(1, ClanRole.OFFICER.name());
+        ps.setString(2, clanTag);
+        ps.setString(3, oldLeaderUuid.toString());
+        ps.addBatch();
+        ps.setString(1, ClanRole.LEADER.name());
+        ps.setString(2, clanTag);
+        ps.setString(3, newLeaderUuid.toString());
+        ps.addBatch();
+        ps.executeBatch();
+        ps.close();
+
+        ps = conn.prepareStatement("SELECT version FROM clans WHERE tag = ?");
+        ps.setString(1, clanTag);
+        ResultSet rs = ps.executeQuery();
+        long version = rs.next() ? rs.getLong("version") : -1L;
+        rs.close();
+        ps.close();
+
+        conn.commit();
+        return version;
+    } catch (SQLException e) {
+        conn.rollback();
+        throw e;
+    } finally {
+        conn.setAutoCommit(true);
+    }
+}
+}
+
+// Looked up once at construction, the lookups below run on every event that touches a clan.
+// Field initializers run before the constructor assigns plugin, so they go through the
+// instance onEnable sets before any manager is built.
+private final com.minecraft.clanwars.utils.LatencyHistogram lookupTimer =
+    ClanWarsPlugin.getInstance().getMetricsManager().timer("clan_lookup");
+private final com.minecraft.clanwars.utils.LatencyHistogram playerLookupTimer =
+    ClanWarsPlugin.getInstance().getMetricsManager().timer("clan_player_lookup");
+
 public Clan getClan(String clanTag) {
-return clans.get(clanTag);
+long start = System.nanoTime();
+Clan clan = clans.get(clanTag);
+lookupTimer.record(System.nanoTime() - start);
+return clan;
 }
 
 public Clan getPlayerClan(UUID playerUuid) {
+long start = System.nanoTime();
 String clanTag = playerClanMap.get(playerUuid);
-if (clanTag == null) {
-    return null;
-}
-return getClan(clanTag);
+Clan clan = clanTag != null ? clans.get(clanTag) : null;
+playerLookupTimer.record(System.nanoTime() - start);
+return clan;
 }
 
 public List<Clan> getAllClans() {
@@ -88,37 +148,205 @@ for (ClanMember member : clan.getMembers()) {
 return onlineMembers;
 }
 
+// Main thread only. Versions are the clans.version last applied here, pending counts are
+// this node's stat writes still in flight per clan.
+private final Map<String, Long> clanVersions = new HashMap<>();
+private final Map<String, Integer> pendingStatWrites = new HashMap<>();
+private final Set<String> deferredReloads = new HashSet<>();
+
 public void updateClanStats(String winnerTag, String loserTag) {
 Clan winner = getClan(winnerTag);
 Clan loser = getClan(loserTag);
 
 if (winner != null) {
     winner.setWins(winner.getWins() + 1);
-    updateClanRating(winner, true);
-    saveClan(winner);
 }
 
 if (loser != null) {
     loser.setLosses(loser.getLosses() + 1);
-    updateClanRating(loser, false);
-    saveClan(loser);
 }
+
+// Rate both sides against each other with the configured rating engine
+plugin.getRatingManager().applyResult(winnerTag, loserTag);
+
+// Relative updates, so results recorded on other nodes at the same time are not overwritten
+pendingStatWrites.merge(winnerTag, 1, Integer::sum);
+pendingStatWrites.merge(loserTag, 1, Integer::sum);
+// Ratings come from the rating engine and are written as they are, a missing clan updates no row
+int winnerRating = winner != null ? winner.getRating() : 0;
+int loserRating = loser != null ? loser.getRating() : 0;
+IOExecutor io = plugin.getIOExecutor();
+io.thenSync(io.supply(() -> saveClanResult(winnerTag, winnerRating, loserTag, loserRating)), records -> {
+    finishStatWrite(winnerTag, records.get(winnerTag));
+    finishStatWrite(loserTag, records.get(loserTag));
+    // Only once committed, a node reloading earlier would read the old row
+    plugin.getChangeFeedManager().publish(ChangeFeedManager.EntityType.CLAN, Arrays.asList(winnerTag, loserTag));
+}, error -> {
+    plugin.getLogger().log(Level.SEVERE, "Error saving battle result of " + winnerTag + " and " + loserTag, error);
+    finishStatWrite(winnerTag, null);
+    finishStatWrite(loserTag, null);
+});
 }
 
-private void updateClanRating(Clan clan, boolean isWinner) {
-int currentRating = clan.getRating();
-int ratingChange;
+// Returns the counters and version each row has after the update, including other nodes' writes
+private Map<String, ClanRecord> saveClanResult(String winnerTag, int winnerRating, String loserTag, int loserRating) throws SQLException {
+try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+    PreparedStatement ps = conn.prepareStatement("UPDATE clans SET wins = wins + 1, rating = ?, version = version + 1 WHERE tag = ?");
+    ps.setInt(1, winnerRating);
+    ps.setString(2, winnerTag);
+    ps.executeUpdate();
+    ps.close();
 
-if (isWinner) {
-    ratingChange = Config.RATING_WIN_POINTS;
-} else {
-    ratingChange = -Config.RATING_LOSS_POINTS;
-    // Make sure rating doesn't go below 0
-    if (currentRating + ratingChange < 0) {
-        ratingChange = -currentRating;
+    ps = conn.prepareStatement("UPDATE clans SET losses = losses + 1, rating = ?, version = version + 1 WHERE tag = ?");
+    ps.setInt(1, loserRating);
+    ps.setString(2, loserTag);
+    ps.executeUpdate();
+    ps.close();
+
+    Map<String, ClanRecord> records = new HashMap<>();
+    ps = conn.prepareStatement("SELECT tag, name, leader_uuid, rating, wins, losses, version FROM clans WHERE tag IN (?, ?)");
+    ps.setString(1, winnerTag);
+    ps.setString(2, loserTag);
+    ResultSet rs = ps.executeQuery();
+    while (rs.next()) {
+        records.put(rs.getString("tag"), readClanRecord(rs));
+    }
+    rs.close();
+    ps.close();
+    return records;
+}
+}
+
+private void finishStatWrite(String clanTag, ClanRecord record) {
+Clan clan = clans.get(clanTag);
+if (clan != null && record != null && record.version > clanVersions.getOrDefault(clanTag, -1L)) {
+    clan.setWins(record.wins);
+    clan.setLosses(record.losses);
+    clanVersions.put(clanTag, record.version);
+}
+if (pendingStatWrites.merge(clanTag, -1, Integer::sum) <= 0) {
+    pendingStatWrites.remove(clanTag);
+    if (deferredReloads.remove(clanTag)) {
+        reloadClan(clanTag);
     }
 }
+}
+
+// Patches one clan from the database after another node changed it
+public void reloadClan(String clanTag) {
+IOExecutor io = plugin.getIOExecutor();
+io.thenSync(io.supply(() -> loadClanRecord(clanTag)), record -> applyClanRecord(clanTag, record), error ->
+    plugin.getLogger().log(Level.SEVERE, "Error reloading clan " + clanTag + " from database", error));
+}
+
+private ClanRecord loadClanRecord(String clanTag) throws SQLException {
+try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+    PreparedStatement ps = conn.prepareStatement("SELECT name, leader_uuid, rating, wins, losses, version FROM clans WHERE tag = ?");
+    ps.setString(1, clanTag);
+    ResultSet rs = ps.executeQuery();
+    if (!rs.next()) {
+        rs.close();
+        ps.close();
+        return null;
+    }
+
+    ClanRecord record = readClanRecord(rs);
+    rs.close();
+    ps.close();
 
-clan.setRating(currentRating + ratingChange);
+    ps = conn.prepareStatement("SELECT player_uuid, role FROM clan_members WHERE clan_tag = ?");
+    ps.setString(1, clanTag);
+    rs = ps.executeQuery();
+    while (rs.next()) {
+        record.members.put(UUID.fromString(rs.getString("player_uuid")), ClanRole.of(rs.getString("role")));
+    }
+    rs.close();
+    ps.close();
+    return record;
+}
+}
+
+private static ClanRecord readClanRecord(ResultSet rs) throws SQLException {
+return new ClanRecord(rs.getString("name"), UUID.fromString(rs.getString("leader_uuid")),
+    rs.getInt("rating"), rs.getInt("wins"), rs.getInt("losses"), rs.getLong("version"));
+}
+
+private void applyClanRecord(String clanTag, ClanRecord record) {
+Clan clan = clans.get(clanTag);
+MatchmakingManager matchmakingManager = plugin.getMatchmakingManager();
+
+if (record == null) {
+    // Disbanded on another node, ClanTags lets go of the tag once nothing refers to it
+    if (clan != null) {
+        clans.remove(clanTag);
+        for (ClanMember member : clan.getMembers()) {
+            playerClanMap.remove(member.getPlayerUuid(), clanTag);
+        }
+        matchmakingManager.removeClan(clanTag);
+    }
+    return;
+}
+
+if (pendingStatWrites.containsKey(clanTag)) {
+    // Read before this node's own result landed, reloaded again once it has
+    deferredReloads.add(clanTag);
+    return;
+}
+if (record.version < clanVersions.getOrDefault(clanTag, -1L)) {
+    return; // Older than what was already applied
+}
+clanVersions.put(clanTag, record.version);
+
+if (clan == null) {
+    clan = new Clan(clanTag, record.name, record.leaderUuid);
+    clans.put(clanTag, clan);
+}
+
+// Patch the existing object in place, battles and the matchmaking index hold references to it
+clan.setLeaderUuid(record.leaderUuid);
+clan.setRating(record.rating);
+clan.setWins(record.wins);
+clan.setLosses(record.losses);
+
+for (ClanMember member : new ArrayList<>(clan.getMembers())) {
+    if (!record.members.contains(member.getPlayerUuid())) {
+        clan.removeMember(member.getPlayerUuid());
+        playerClanMap.remove(member.getPlayerUuid(), clanTag);
+    }
+}
+// ClanMember keeps its role by name, the enum's name strings are shared by every member
+Clan patched = clan;
+record.members.forEach((playerId, role) -> {
+    // ClanMember keeps its role as a String and isn't in this source tree, so the enum is
+    // turned back into its name here instead of being stored
+    ClanMember member = patched.getMember(playerId);
+    if (member == null) {
+        patched.addMember(new ClanMember(playerId, role.name()));
+    } else {
+        member.setRole(role.name());
+    }
+    playerClanMap.put(playerId, clanTag);
+});
+
+matchmakingManager.updateClanRating(clan);
+}
+
+private static class ClanRecord {
+private final String name;
+private final UUID leaderUuid;
+private final int rating;
+private final int wins;
+private final int losses;
+private final long version;
+private final MemberRoster members = new MemberRoster();
+
+ClanRecord(String name, UUID leaderUuid, int rating, int wins, int losses, long version) {
+    this.name = name;
+    this.leaderUuid = leaderUuid;
+    this.rating = rating;
+    this.wins = wins;
+    this.losses = losses;
+    this.version = version;
+}
 }
 }
\ No newline at end of file
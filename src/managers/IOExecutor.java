@@ -0,0 +1,173 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.utils.Config;
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// Runs blocking JDBC and file work on virtual threads. At most DATABASE_POOL_SIZE tasks
+// hold a connection at once, so a burst queues on the semaphore instead of the pool.
+public class IOExecutor {
+    private final ClanWarsPlugin plugin;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private volatile boolean closed;
+    
+    public IOExecutor(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ClanWars-IO-", 0).factory());
+        this.permits = new Semaphore(Math.max(1, Config.DATABASE_POOL_SIZE), true);
+        
+        plugin.getMetricsManager().gauge("io_waiting", permits::getQueueLength);
+        plugin.getMetricsManager().gauge("io_active", () -> Math.max(1, Config.DATABASE_POOL_SIZE) - permits.availablePermits());
+    }
+    
+    // Waits for in-flight work, afterwards tasks run inline so shutdown saves still happen
+    public void shutdown() {
+        closed = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for database work to finish.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public <T> CompletableFuture<T> supply(IOTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (closed) {
+            complete(future, task);
+            return future;
+        }
+        
+        executor.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            try {
+                // Cancelled while queued, e.g. a sibling fork already failed
+                if (!future.isDone()) {
+                    complete(future, task);
+                }
+            } finally {
+                permits.release();
+            }
+        });
+        return future;
+    }
+    
+    public CompletableFuture<Void> run(IORunnable task) {
+        return supply(() -> {
+            task.run();
+            return null;
+        });
+    }
+    
+    // Runs body on a virtual thread without holding a permit, the body forks bounded
+    // subtasks and joins them. The first failure cancels subtasks that have not started yet.
+    public <T> CompletableFuture<T> structured(ScopeBody<T> body) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable scoped = () -> {
+            Scope scope = new Scope();
+            try {
+                future.complete(body.run(scope));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                scope.cancelAll();
+            }
+        };
+        
+        if (closed) {
+            scoped.run();
+        } else {
+            executor.execute(scoped);
+        }
+        return future;
+    }
+    
+    // Hands the result back to the main thread, where Bukkit APIs are safe to use
+    public <T> void thenSync(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        future.whenComplete((result, error) -> runOnMain(() -> {
+            if (error == null) {
+                onSuccess.accept(result);
+            } else {
+                onFailure.accept(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        }));
+    }
+    
+    public void runOnMain(Runnable action) {
+        if (Bukkit.isPrimaryThread()) {
+            action.run();
+        } else if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, action);
+        } else {
+            // The battle journal covers work dropped here, it is replayed on the next start
+            plugin.getLogger().warning("Dropped main-thread callback after the plugin was disabled.");
+        }
+    }
+    
+    private static <T> void complete(CompletableFuture<T> future, IOTask<T> task) {
+        try {
+            future.complete(task.call());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+    
+    public interface IOTask<T> {
+        T call() throws Exception;
+    }
+    
+    public interface IORunnable {
+        void run() throws Exception;
+    }
+    
+    public interface ScopeBody<T> {
+        T run(Scope scope) throws Exception;
+    }
+    
+    // Minimal stand-in for StructuredTaskScope.ShutdownOnFailure, which is still a preview API
+    public class Scope {
+        private final List<CompletableFuture<?>> forks = new ArrayList<>();
+        private final CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        
+        public <T> CompletableFuture<T> fork(IOTask<T> task) {
+            CompletableFuture<T> fork = supply(task);
+            fork.whenComplete((result, error) -> {
+                if (error != null) {
+                    firstFailure.completeExceptionally(error);
+                }
+            });
+            forks.add(fork);
+            return fork;
+        }
+        
+        // Waits for every fork, or rethrows as soon as one of them fails
+        public void join() throws Exception {
+            try {
+                CompletableFuture.anyOf(CompletableFuture.allOf(forks.toArray(new CompletableFuture<?>[0])), firstFailure).join();
+            } catch (CompletionException e) {
+                cancelAll();
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+        
+        private void cancelAll() {
+            for (CompletableFuture<?> fork : forks) {
+                fork.cancel(true);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,352 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.BattleRequest;
+import com.minecraft.clanwars.models.Clan;
+import com.minecraft.clanwars.models.MatchSuggestion;
+import com.minecraft.clanwars.utils.ClanTags;
+import com.minecraft.clanwars.utils.Config;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.logging.Level;
+
+public class MatchmakingManager {
+    private static final int BUCKET_WIDTH = 50; // rating points per index bucket
+    private static final int CANDIDATE_POOL = 64; // closest clans scored in detail per query
+    private static final int RECENT_OPPONENT_LIMIT = 5;
+    private static final double RECENT_OPPONENT_PENALTY = 200;
+    private static final double MISSING_MEMBER_PENALTY = 50;
+    private static final long IMMEDIATE_WINDOW = 15 * 60 * 1000L; // online members only matter for battles this soon
+    
+    private final ClanWarsPlugin plugin;
+    private final Map<Integer, List<Clan>> ratingBuckets; // bucket -> clans
+    private final Map<String, Integer> clanBuckets; // clan tag -> bucket
+    private final Map<String, Deque<String>> recentOpponents; // clan tag -> most recent opponent first
+    private final Map<String, QueueEntry> queue; // clan tag -> queue entry, in join order
+    private BukkitTask queueTask;
+    private BukkitTask reindexTask;
+    
+    public MatchmakingManager(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.ratingBuckets = new HashMap<>();
+        this.clanBuckets = new HashMap<>();
+        this.recentOpponents = new HashMap<>();
+        this.queue = new LinkedHashMap<>();
+        
+        rebuildIndex();
+        loadRecentOpponents();
+    }
+    
+    public void startTasks() {
+        // Pair queued clans every 5 seconds
+        queueTask = Bukkit.getScheduler().runTaskTimer(plugin, this::pairQueuedClans, 100L, 100L);
+        
+        // Pick up clans created or disbanded since the last rebuild
+        reindexTask = Bukkit.getScheduler().runTaskTimer(plugin, this::rebuildIndex, 20L * 60 * 5, 20L * 60 * 5);
+    }
+    
+    public void shutdown() {
+        if (queueTask != null) {
+            queueTask.cancel();
+        }
+        if (reindexTask != null) {
+            reindexTask.cancel();
+        }
+        queue.clear();
+    }
+    
+    private void loadRecentOpponents() {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            PreparedStatement ps = conn.prepareStatement(
+                "SELECT clan1_tag, clan2_tag FROM battles WHERE status = 'ENDED' ORDER BY end_time DESC LIMIT 1000");
+            ResultSet rs = ps.executeQuery();
+            
+            // Rows arrive newest first, so append to keep the most recent opponent at the head
+            while (rs.next()) {
+                String clan1Tag = ClanTags.canonical(rs.getString("clan1_tag"));
+                String clan2Tag = ClanTags.canonical(rs.getString("clan2_tag"));
+                appendOpponent(clan1Tag, clan2Tag);
+                appendOpponent(clan2Tag, clan1Tag);
+            }
+            rs.close();
+            ps.close();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error loading recent opponents from database", e);
+        }
+    }
+    
+    private void appendOpponent(String clanTag, String opponentTag) {
+        Deque<String> opponents = recentOpponents.computeIfAbsent(clanTag, tag -> new ArrayDeque<>());
+        if (opponents.size() < RECENT_OPPONENT_LIMIT) {
+            opponents.addLast(opponentTag);
+        }
+    }
+    
+    public void recordBattle(String clan1Tag, String clan2Tag) {
+        pushOpponent(clan1Tag, clan2Tag);
+        pushOpponent(clan2Tag, clan1Tag);
+    }
+    
+    private void pushOpponent(String clanTag, String opponentTag) {
+        Deque<String> opponents = recentOpponents.computeIfAbsent(clanTag, tag -> new ArrayDeque<>());
+        opponents.remove(opponentTag);
+        opponents.addFirst(opponentTag);
+        if (opponents.size() > RECENT_OPPONENT_LIMIT) {
+            opponents.removeLast();
+        }
+    }
+    
+    public void rebuildIndex() {
+        ratingBuckets.clear();
+        clanBuckets.clear();
+        for (Clan clan : plugin.getClanManager().getAllClans()) {
+            index(clan);
+        }
+    }
+    
+    // Called whenever a clan's rating changes so the clan moves to its new bucket
+    public void updateClanRating(Clan clan) {
+        int bucket = bucketOf(clan.getRating());
+        Integer current = clanBuckets.get(clan.getTag());
+        if (current != null && current == bucket) {
+            return;
+        }
+        
+        unindex(clan.getTag());
+        index(clan);
+    }
+    
+    public void removeClan(String clanTag) {
+        unindex(clanTag);
+        recentOpponents.remove(clanTag);
+        queue.remove(clanTag);
+    }
+    
+    private void index(Clan clan) {
+        int bucket = bucketOf(clan.getRating());
+        ratingBuckets.computeIfAbsent(bucket, b -> new ArrayList<>()).add(clan);
+        clanBuckets.put(clan.getTag(), bucket);
+    }
+    
+    private void unindex(String clanTag) {
+        Integer bucket = clanBuckets.remove(clanTag);
+        if (bucket == null) {
+            return;
+        }
+        
+        List<Clan> clans = ratingBuckets.get(bucket);
+        if (clans != null) {
+            clans.removeIf(clan -> clan.getTag().equals(clanTag));
+            if (clans.isEmpty()) {
+                ratingBuckets.remove(bucket);
+            }
+        }
+    }
+    
+    private static int bucketOf(int rating) {
+        return Math.floorDiv(rating, BUCKET_WIDTH);
+    }
+    
+    public List<MatchSuggestion> findOpponents(String clanTag, long scheduledTime, int limit) {
+        ClanManager clanManager = plugin.getClanManager();
+        Clan clan = clanManager.getClan(clanTag);
+        if (clan == null) {
+            return Collections.emptyList();
+        }
+        if (!clanBuckets.containsKey(clanTag)) {
+            index(clan);
+        }
+        
+        Set<String> bookedClans = plugin.getBattleManager().getClansBookedAt(scheduledTime);
+        if (bookedClans.contains(clanTag)) {
+            return Collections.emptyList();
+        }
+        
+        // Walk buckets outwards from the clan's own rating until enough candidates are found
+        List<Clan> candidates = new ArrayList<>();
+        int center = bucketOf(clan.getRating());
+        int maxDistance = Config.MATCHMAKING_MAX_RATING_GAP / BUCKET_WIDTH + 1;
+        for (int distance = 0; distance <= maxDistance && candidates.size() < CANDIDATE_POOL; distance++) {
+            collectCandidates(center - distance, clan, bookedClans, candidates);
+            if (distance > 0) {
+                collectCandidates(center + distance, clan, bookedClans, candidates);
+            }
+        }
+        
+        // Score only the shortlist, online counts are the expensive part
+        boolean immediate = scheduledTime - System.currentTimeMillis() < IMMEDIATE_WINDOW;
+        Deque<String> recent = recentOpponents.getOrDefault(clanTag, new ArrayDeque<>());
+        List<MatchSuggestion> suggestions = new ArrayList<>(candidates.size());
+        
+        for (Clan candidate : candidates) {
+            int onlineMembers = clanManager.getOnlineMembersCount(candidate);
+            if (immediate && onlineMembers < Config.MIN_PLAYERS_PER_CLAN) {
+                continue;
+            }
+            
+            double score = Math.abs(candidate.getRating() - clan.getRating());
+            score += Math.max(0, Config.MIN_PLAYERS_PER_CLAN - onlineMembers) * MISSING_MEMBER_PENALTY;
+            score += recentOpponentPenalty(recent, candidate.getTag());
+            
+            suggestions.add(new MatchSuggestion(candidate.getTag(), candidate.getRating(), onlineMembers, score));
+        }
+        
+        suggestions.sort(Comparator.comparingDouble(MatchSuggestion::getScore));
+        return suggestions.size() <= limit ? suggestions : new ArrayList<>(suggestions.subList(0, limit));
+    }
+    
+    private void collectCandidates(int bucket, Clan clan, Set<String> bookedClans, List<Clan> candidates) {
+        List<Clan> clans = ratingBuckets.get(bucket);
+        if (clans == null) {
+            return;
+        }
+        
+        for (Clan candidate : clans) {
+            if (candidates.size() >= CANDIDATE_POOL) {
+                return;
+            }
+            if (candidate != clan && !bookedClans.contains(candidate.getTag())) {
+                candidates.add(candidate);
+            }
+        }
+    }
+    
+    private static double recentOpponentPenalty(Deque<String> recent, String opponentTag) {
+        // The more recent the last battle against this clan, the larger the penalty
+        int position = 0;
+        for (String tag : recent) {
+            if (tag.equals(opponentTag)) {
+                return RECENT_OPPONENT_PENALTY * (RECENT_OPPONENT_LIMIT - position) / RECENT_OPPONENT_LIMIT;
+            }
+            position++;
+        }
+        return 0;
+    }
+    
+    public boolean joinQueue(String clanTag, String gameMode) {
+        if (queue.containsKey(clanTag) || !plugin.getClanManager().canClanParticipateInBattle(clanTag)) {
+            return false;
+        }
+        
+        queue.put(clanTag, new QueueEntry(clanTag, gameMode, System.currentTimeMillis()));
+        return true;
+    }
+    
+    public boolean leaveQueue(String clanTag) {
+        return queue.remove(clanTag) != null;
+    }
+    
+    public boolean isQueued(String clanTag) {
+        return queue.containsKey(clanTag);
+    }
+    
+    public int getQueueSize() {
+        return queue.size();
+    }
+    
+    private void pairQueuedClans() {
+        if (queue.size() < 2) {
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        ClanManager clanManager = plugin.getClanManager();
+        Map<String, List<QueueEntry>> byGameMode = new HashMap<>();
+        
+        Iterator<QueueEntry> iterator = queue.values().iterator();
+        while (iterator.hasNext()) {
+            QueueEntry entry = iterator.next();
+            Clan clan = clanManager.getClan(entry.clanTag);
+            // Drop clans that were disbanded or no longer have enough members online
+            if (clan == null || !clanManager.canClanParticipateInBattle(entry.clanTag)) {
+                iterator.remove();
+                continue;
+            }
+            entry.rating = clan.getRating();
+            byGameMode.computeIfAbsent(entry.gameMode, mode -> new ArrayList<>()).add(entry);
+        }
+        
+        for (List<QueueEntry> entries : byGameMode.values()) {
+            entries.sort(Comparator.comparingInt(entry -> entry.rating));
+            
+            // Neighbours in rating order are paired once their allowed gap covers each other
+            for (int i = 0; i + 1 < entries.size(); i++) {
+                QueueEntry first = entries.get(i);
+                QueueEntry second = entries.get(i + 1);
+                int tolerance = Math.min(first.tolerance(now), second.tolerance(now));
+                boolean rematch = second.clanTag.equals(peekRecentOpponent(first.clanTag));
+                
+                if (Math.abs(first.rating - second.rating) <= tolerance && (!rematch || tolerance >= Config.MATCHMAKING_MAX_RATING_GAP)) {
+                    createQueuedBattle(first, second, now);
+                    i++;
+                }
+            }
+        }
+    }
+    
+    private String peekRecentOpponent(String clanTag) {
+        Deque<String> recent = recentOpponents.get(clanTag);
+        return recent != null ? recent.peekFirst() : null;
+    }
+    
+    private void createQueuedBattle(QueueEntry first, QueueEntry second, long now) {
+        long scheduledTime = now + Config.MATCHMAKING_START_DELAY_MINUTES * 60L * 1000L;
+        BattleRequest request = plugin.getBattleManager().createBattleRequest(
+            first.clanTag,
+            second.clanTag,
+            UUID.fromString(Config.SYSTEM_UUID),
+            first.gameMode,
+            scheduledTime
+        );
+        if (request == null) {
+            return;
+        }
+        
+        queue.remove(first.clanTag);
+        queue.remove(second.clanTag);
+        
+        String message = ChatColor.GOLD + "[ClanWars] " + ChatColor.YELLOW + "Matchmaking found a battle: " +
+            first.clanTag + " vs " + second.clanTag + " (" + first.gameMode + "), awaiting admin approval.";
+        notifyClan(first.clanTag, message);
+        notifyClan(second.clanTag, message);
+    }
+    
+    private void notifyClan(String clanTag, String message) {
+        ClanManager clanManager = plugin.getClanManager();
+        Clan clan = clanManager.getClan(clanTag);
+        if (clan == null) {
+            return;
+        }
+        for (Player player : clanManager.getOnlineMembers(clan)) {
+            player.sendMessage(message);
+        }
+    }
+    
+    private static class QueueEntry {
+        private final String clanTag;
+        private final String gameMode;
+        private final long joinTime;
+        private int rating;
+        
+        QueueEntry(String clanTag, String gameMode, long joinTime) {
+            this.clanTag = clanTag;
+            this.gameMode = gameMode;
+            this.joinTime = joinTime;
+        }
+        
+        // The accepted rating gap widens the longer a clan waits
+        int tolerance(long now) {
+            long waitedSeconds = (now - joinTime) / 1000;
+            long tolerance = Config.MATCHMAKING_BASE_RATING_GAP + waitedSeconds * Config.MATCHMAKING_GAP_GROWTH_PER_SECOND;
+            return (int) Math.min(tolerance, Config.MATCHMAKING_MAX_RATING_GAP);
+        }
+    }
+}
\ No newline at end of file
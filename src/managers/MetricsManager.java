@@ -0,0 +1,314 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.LatencyHistogram;
+import com.sun.net.httpserver.HttpServer;
+import org.bukkit.ChatColor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+
+public class MetricsManager {
+    private static final String PREFIX = "clanwars_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final int MAX_STATEMENT_NAMES = 512;
+    
+    private final ClanWarsPlugin plugin;
+    private final Map<String, LatencyHistogram> timers; // metric name -> latency in nanoseconds
+    private final Map<String, LongAdder> counters;
+    private final Map<String, LongSupplier> gauges;
+    private final Map<String, String> statementNames; // SQL text -> timer name
+    private HttpServer httpServer;
+    private ExecutorService httpExecutor;
+    
+    public MetricsManager(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.timers = new ConcurrentHashMap<>();
+        this.counters = new ConcurrentHashMap<>();
+        this.gauges = new ConcurrentHashMap<>();
+        this.statementNames = new ConcurrentHashMap<>();
+    }
+    
+    public void startHttpServer() {
+        if (!Config.METRICS_ENABLED) {
+            return;
+        }
+        
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(Config.METRICS_BIND_ADDRESS, Config.METRICS_PORT), 0);
+            httpServer.createContext("/metrics", exchange -> {
+                byte[] body = exportPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            // Scrapes are served on their own thread so they never touch the main thread
+            httpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ClanWars-Metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            httpServer.setExecutor(httpExecutor);
+            httpServer.start();
+            plugin.getLogger().info("Metrics endpoint listening on " + Config.METRICS_BIND_ADDRESS + ":" + Config.METRICS_PORT + "/metrics");
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not start metrics endpoint", e);
+        }
+    }
+    
+    public void shutdown() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        // HttpServer.stop leaves a caller supplied executor running
+        if (httpExecutor != null) {
+            httpExecutor.shutdownNow();
+            httpExecutor = null;
+        }
+    }
+    
+    // Callers on hot paths should keep the returned histogram instead of looking it up every time
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+    
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+    
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+    
+    public void record(String name, long startNanos) {
+        timer(name).record(System.nanoTime() - startNanos);
+    }
+    
+    // Sorted snapshot, used by the load test report
+    public Map<String, LatencyHistogram> getTimers() {
+        return new TreeMap<>(timers);
+    }
+    
+    public String exportPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(timers).entrySet()) {
+            String name = PREFIX + entry.getKey() + "_seconds";
+            LatencyHistogram histogram = entry.getValue();
+            
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(toSeconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            out.append(name).append("_sum ").append(toSeconds(histogram.getSum())).append('\n');
+            out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        }
+        
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            String name = PREFIX + entry.getKey() + "_total";
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            String name = PREFIX + entry.getKey();
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(entry.getValue().getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+    
+    // Chat-friendly dump for /cwaradmin metrics
+    public List<String> getSummaryLines() {
+        List<String> lines = new ArrayList<>();
+        lines.add(ChatColor.GOLD + "=== ClanWars Metrics ===");
+        
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(timers).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            lines.add(ChatColor.YELLOW + entry.getKey() + ChatColor.GRAY +
+                " n=" + histogram.getCount() +
+                " p50=" + toMillis(histogram.getValueAtPercentile(50)) +
+                " p99=" + toMillis(histogram.getValueAtPercentile(99)) +
+                " max=" + toMillis(histogram.getMax()));
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            lines.add(ChatColor.YELLOW + entry.getKey() + ChatColor.GRAY + " " + entry.getValue().sum());
+        }
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            lines.add(ChatColor.YELLOW + entry.getKey() + ChatColor.GRAY + " " + entry.getValue().getAsLong());
+        }
+        return lines;
+    }
+    
+    private static double toSeconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+    
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000.0);
+    }
+    
+    // Wraps a connection so every statement execution is timed as db_<verb>_<table>
+    public Connection instrument(Connection conn) {
+        if (conn == null || (Proxy.isProxyClass(conn.getClass()) && Proxy.getInvocationHandler(conn) instanceof ConnectionHandler)) {
+            return conn;
+        }
+        return (Connection) Proxy.newProxyInstance(plugin.getClass().getClassLoader(), new Class<?>[] {Connection.class},
+            new ConnectionHandler(conn));
+    }
+    
+    private String statementName(String sql) {
+        String name = statementNames.get(sql);
+        if (name == null) {
+            name = describeStatement(sql);
+            // Generated SQL must not grow the cache without bound
+            if (statementNames.size() < MAX_STATEMENT_NAMES) {
+                statementNames.put(sql, name);
+            }
+        }
+        return name;
+    }
+    
+    private static String describeStatement(String sql) {
+        String[] words = sql.trim().split("[\\s(),]+");
+        if (words.length == 0 || words[0].isEmpty()) {
+            return "db_other";
+        }
+        
+        String verb = words[0].toLowerCase(Locale.ROOT);
+        String keyword;
+        switch (verb) {
+            case "select":
+            case "delete":
+                keyword = "from";
+                break;
+            case "insert":
+            case "replace":
+                keyword = "into";
+                break;
+            case "update":
+                return words.length > 1 ? "db_update_" + tableName(words[1]) : "db_update";
+            case "create":
+            case "alter":
+            case "drop":
+                keyword = "table";
+                break;
+            default:
+                return "db_" + tableName(verb);
+        }
+        
+        for (int i = 1; i < words.length - 1; i++) {
+            if (!words[i].equalsIgnoreCase(keyword)) {
+                continue;
+            }
+            // Skip IF NOT EXISTS, derived tables are named after the table they select from
+            int next = i + 1;
+            while (next < words.length - 1 && isSkippedWord(words[next])) {
+                next++;
+            }
+            if (!words[next].equalsIgnoreCase("select")) {
+                return "db_" + verb + "_" + tableName(words[next]);
+            }
+        }
+        return "db_" + verb;
+    }
+    
+    private static boolean isSkippedWord(String word) {
+        return word.equalsIgnoreCase("if") || word.equalsIgnoreCase("not") || word.equalsIgnoreCase("exists");
+    }
+    
+    private static String tableName(String word) {
+        return word.replaceAll("[^A-Za-z0-9_]", "").toLowerCase(Locale.ROOT);
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = MetricsManager.invoke(target, method, args);
+            
+            if (result instanceof PreparedStatement && args != null && args.length > 0 && args[0] instanceof String) {
+                String name = statementName((String) args[0]);
+                Class<?> type = method.getReturnType().isInterface() ? method.getReturnType() : PreparedStatement.class;
+                return Proxy.newProxyInstance(plugin.getClass().getClassLoader(), new Class<?>[] {type},
+                    new StatementHandler(result, name));
+            }
+            if (result instanceof Statement && method.getName().equals("createStatement")) {
+                return Proxy.newProxyInstance(plugin.getClass().getClassLoader(), new Class<?>[] {Statement.class},
+                    new StatementHandler(result, null));
+            }
+            return result;
+        }
+    }
+    
+    private class StatementHandler implements InvocationHandler {
+        private final Object target;
+        private final String name; // null for plain statements, which carry the SQL per call
+        
+        StatementHandler(Object target, String name) {
+            this.target = target;
+            this.name = name;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return MetricsManager.invoke(target, method, args);
+            }
+            
+            String timerName = name;
+            if (timerName == null) {
+                timerName = args != null && args.length > 0 && args[0] instanceof String ? statementName((String) args[0]) : "db_batch";
+            }
+            
+            long start = System.nanoTime();
+            try {
+                return MetricsManager.invoke(target, method, args);
+            } catch (SQLException e) {
+                counter("db_errors").increment();
+                throw e;
+            } finally {
+                record(timerName, start);
+                counter("db_calls").increment();
+            }
+        }
+    }
+}
\ No newline at end of file
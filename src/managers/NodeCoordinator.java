@@ -0,0 +1,423 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.utils.Config;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+// Decides which battle server starts each approved battle. The shared database is the
+// only coordination medium: every node heartbeats into cw_nodes, and a battle belongs to
+// the node holding its row in battle_leases. Leases are renewed with the heartbeat, so a
+// dead node's leases expire and another node takes the battle over. A node only renews the
+// leases it holds, and stops a battle whose renewal finds the lease gone, so a node that
+// stalled past its lease does not keep fighting a battle that was taken over. Each node also
+// holds its IdGenerator node number in cw_nodes, whose unique index keeps two live nodes from
+// minting the same IDs.
+public class NodeCoordinator {
+    private final ClanWarsPlugin plugin;
+    private final String nodeId;
+    private final int nodeNumber;
+    private final Map<String, String> leasedBattles; // battle ID -> request ID, battles this node runs
+    private final Set<String> pendingLeases; // request IDs claimed by this node whose battle has not started yet
+    private final AtomicBoolean heartbeating;
+    private BukkitTask heartbeatTask;
+    
+    public NodeCoordinator(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.nodeId = Config.NODE_ID;
+        this.nodeNumber = Config.NODE_NUMBER;
+        this.leasedBattles = new ConcurrentHashMap<>();
+        this.pendingLeases = ConcurrentHashMap.newKeySet();
+        this.heartbeating = new AtomicBoolean();
+    }
+    
+    public void startTasks() {
+        long period = 20L * Config.NODE_HEARTBEAT_SECONDS;
+        heartbeatTask = Bukkit.getScheduler().runTaskTimer(plugin, this::heartbeat, 0L, period);
+    }
+    
+    // Leaves the fleet, running battles were already ended and their leases finished
+    public void shutdown() {
+        if (heartbeatTask != null) {
+            heartbeatTask.cancel();
+        }
+        
+        try (Connection conn = connection()) {
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM cw_nodes WHERE node_id = ?");
+            ps.setString(1, nodeId);
+            ps.executeUpdate();
+            ps.close();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Error removing node " + nodeId + " from the fleet", e);
+        }
+    }
+    
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    // Startup fails when a live node already uses the configured node number. A number left
+    // behind by a node whose heartbeat expired is taken over.
+    public void claimNodeNumber() {
+        try (Connection conn = connection()) {
+            long now = System.currentTimeMillis();
+            PreparedStatement ps = conn.prepareStatement(
+                "DELETE FROM cw_nodes WHERE node_number = ? AND node_id <> ? AND heartbeat_time <= ?");
+            ps.setInt(1, nodeNumber);
+            ps.setString(2, nodeId);
+            ps.setLong(3, now - Config.NODE_LEASE_SECONDS * 1000L);
+            ps.executeUpdate();
+            ps.close();
+            
+            ps = conn.prepareStatement("UPDATE cw_nodes SET node_number = ?, heartbeat_time = ? WHERE node_id = ?");
+            ps.setInt(1, nodeNumber);
+            ps.setLong(2, now);
+            ps.setString(3, nodeId);
+            boolean updated = ps.executeUpdate() > 0;
+            ps.close();
+            if (!updated) {
+                insertNode(conn, nodeNumber, 0, now);
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new IllegalStateException("Node number " + nodeNumber + " is already used by another live node, " +
+                "give every node a unique node number", e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not claim node number " + nodeNumber, e);
+        }
+    }
+    
+    // Runs onAcquired on the main thread once this node owns the battle. The least loaded
+    // node claims right away, the others only after a grace period in case it does not.
+    public void acquire(String requestId, Runnable onAcquired) {
+        attempt(requestId, onAcquired, false);
+    }
+    
+    private void attempt(String requestId, Runnable onAcquired, boolean fallback) {
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.supply(() -> {
+            try (Connection conn = connection()) {
+                if (!fallback && !isPreferredNode(conn)) {
+                    return ClaimResult.DEFERRED;
+                }
+                if (!claimLease(conn, requestId)) {
+                    return ClaimResult.TAKEN;
+                }
+                pendingLeases.add(requestId);
+                return ClaimResult.ACQUIRED;
+            }
+        }), result -> {
+            switch (result) {
+                case ACQUIRED:
+                    onAcquired.run();
+                    break;
+                case DEFERRED:
+                    Bukkit.getScheduler().runTaskLater(plugin, () -> attempt(requestId, onAcquired, true),
+                        20L * Config.NODE_CLAIM_GRACE_SECONDS);
+                    break;
+                default:
+                    plugin.getLogger().info("Battle " + requestId + " is handled by another node.");
+            }
+        }, error -> plugin.getLogger().log(Level.SEVERE, "Error claiming battle " + requestId, error));
+    }
+    
+    // False once the lease was lost, e.g. this node stalled and another one took the battle over
+    public boolean holdsLease(String requestId) {
+        return pendingLeases.contains(requestId);
+    }
+    
+    public void battleStarted(String requestId, String battleId) {
+        pendingLeases.remove(requestId);
+        leasedBattles.put(battleId, requestId);
+        plugin.getIOExecutor().run(() -> {
+            try (Connection conn = connection()) {
+                PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE battle_leases SET battle_id = ? WHERE request_id = ? AND node_id = ?");
+                ps.setString(1, battleId);
+                ps.setString(2, requestId);
+                ps.setString(3, nodeId);
+                ps.executeUpdate();
+                ps.close();
+            }
+        }).exceptionally(error -> {
+            plugin.getLogger().log(Level.WARNING, "Error recording battle " + battleId + " on its lease", error);
+            return null;
+        });
+    }
+    
+    // The battle could not start here, let another node try
+    public void release(String requestId) {
+        pendingLeases.remove(requestId);
+        plugin.getIOExecutor().run(() -> {
+            try (Connection conn = connection()) {
+                PreparedStatement ps = conn.prepareStatement(
+                    "DELETE FROM battle_leases WHERE request_id = ? AND node_id = ? AND finished_time IS NULL");
+                ps.setString(1, requestId);
+                ps.setString(2, nodeId);
+                ps.executeUpdate();
+                ps.close();
+            }
+        }).exceptionally(error -> {
+            plugin.getLogger().log(Level.WARNING, "Error releasing lease for battle " + requestId, error);
+            return null;
+        });
+    }
+    
+    // Finished leases stay behind so no node starts the same request again
+    public void battleEnded(String battleId) {
+        String requestId = leasedBattles.remove(battleId);
+        if (requestId != null) {
+            finishLease(requestId);
+        }
+    }
+    
+    // Also used by crash recovery, whose battles are no longer in leasedBattles
+    public void finishLease(String requestId) {
+        plugin.getIOExecutor().run(() -> {
+            try (Connection conn = connection()) {
+                PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE battle_leases SET finished_time = ? WHERE request_id = ? AND node_id = ?");
+                ps.setLong(1, System.currentTimeMillis());
+                ps.setString(2, requestId);
+                ps.setString(3, nodeId);
+                ps.executeUpdate();
+                ps.close();
+            }
+        }).exceptionally(error -> {
+            plugin.getLogger().log(Level.WARNING, "Error finishing lease for battle " + requestId, error);
+            return null;
+        });
+    }
+    
+    // Used on startup so a journaled battle that another node took over is not finalized twice
+    public boolean isLeasedElsewhere(String requestId) {
+        try (Connection conn = connection()) {
+            PreparedStatement ps = conn.prepareStatement(
+                "SELECT node_id FROM battle_leases WHERE request_id = ?");
+            ps.setString(1, requestId);
+            ResultSet rs = ps.executeQuery();
+            boolean elsewhere = rs.next() && !nodeId.equals(rs.getString("node_id"));
+            rs.close();
+            ps.close();
+            return elsewhere;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Error checking lease for battle " + requestId, e);
+            return false;
+        }
+    }
+    
+    private void heartbeat() {
+        if (!heartbeating.compareAndSet(false, true)) {
+            return;
+        }
+        
+        // Only leases this node knows it holds are renewed, request ID -> battle ID or null before the start
+        Map<String, String> held = new HashMap<>();
+        for (String requestId : pendingLeases) {
+            held.put(requestId, null);
+        }
+        for (Map.Entry<String, String> entry : leasedBattles.entrySet()) {
+            held.put(entry.getValue(), entry.getKey());
+        }
+        
+        int activeBattles = plugin.getBattleManager().getActiveBattleCount();
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.supply(() -> {
+            try (Connection conn = connection()) {
+                long now = System.currentTimeMillis();
+                
+                HeartbeatResult result = new HeartbeatResult();
+                PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE cw_nodes SET active_battles = ?, heartbeat_time = ? WHERE node_id = ?");
+                ps.setInt(1, activeBattles);
+                ps.setLong(2, now);
+                ps.setString(3, nodeId);
+                boolean updated = ps.executeUpdate() > 0;
+                ps.close();
+                if (!updated) {
+                    // Our row was removed as stale, e.g. after a long stall, so the number may be gone too
+                    try {
+                        insertNode(conn, nodeNumber, activeBattles, now);
+                    } catch (SQLIntegrityConstraintViolationException e) {
+                        insertNode(conn, null, activeBattles, now);
+                        result.nodeNumberLost = true;
+                    }
+                }
+                
+                if (!held.isEmpty()) {
+                    // A renewal that matches no row means another node owns the lease now
+                    List<String> requestIds = new ArrayList<>(held.keySet());
+                    ps = conn.prepareStatement(
+                        "UPDATE battle_leases SET expires_at = ? WHERE request_id = ? AND node_id = ? AND finished_time IS NULL");
+                    for (String requestId : requestIds) {
+                        ps.setLong(1, now + Config.NODE_LEASE_SECONDS * 1000L);
+                        ps.setString(2, requestId);
+                        ps.setString(3, nodeId);
+                        ps.addBatch();
+                    }
+                    int[] renewed = ps.executeBatch();
+                    ps.close();
+                    for (int i = 0; i < renewed.length; i++) {
+                        if (renewed[i] == 0) {
+                            result.lost.put(requestIds.get(i), held.get(requestIds.get(i)));
+                        }
+                    }
+                }
+                
+                result.takenOver.addAll(takeOverExpiredLeases(conn, now));
+                return result;
+            }
+        }), result -> {
+            heartbeating.set(false);
+            if (result.nodeNumberLost) {
+                plugin.getLogger().severe("Node number " + nodeNumber + " was taken over by another node while this one stalled. " +
+                    "New IDs may collide with it, restart this node with a free node number.");
+            }
+            for (Map.Entry<String, String> entry : result.lost.entrySet()) {
+                String requestId = entry.getKey();
+                String battleId = entry.getValue();
+                pendingLeases.remove(requestId);
+                if (battleId == null) {
+                    plugin.getLogger().warning("Lost the lease for battle " + requestId + " before it started, another node runs it.");
+                } else if (leasedBattles.remove(battleId) != null) {
+                    plugin.getLogger().warning("Lost the lease for battle " + battleId + ", another node took it over. Stopping it here.");
+                    Battle battle = plugin.getBattleManager().getBattle(battleId);
+                    if (battle != null) {
+                        plugin.getBattleManager().abandonBattle(battle);
+                    }
+                }
+            }
+            for (String requestId : result.takenOver) {
+                plugin.getLogger().warning("Taking over battle " + requestId + " from a node that stopped responding.");
+                plugin.getChangeFeedManager().publish(ChangeFeedManager.EntityType.BATTLE_REQUEST, requestId);
+                plugin.getBattleManager().reloadBattleRequest(requestId, request -> {
+                    if (request != null) {
+                        plugin.getScheduleManager().scheduleServerStart(request.getScheduledTime(), request.getId());
+                    }
+                });
+            }
+        }, error -> {
+            heartbeating.set(false);
+            plugin.getLogger().log(Level.WARNING, "Error sending node heartbeat", error);
+        });
+    }
+    
+    // Claims leases whose node stopped renewing them and resets their requests to APPROVED
+    private List<String> takeOverExpiredLeases(Connection conn, long now) throws SQLException {
+        List<String> expired = new ArrayList<>();
+        PreparedStatement ps = conn.prepareStatement(
+            "SELECT request_id FROM battle_leases WHERE finished_time IS NULL AND expires_at < ? AND node_id <> ?");
+        ps.setLong(1, now);
+        ps.setString(2, nodeId);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            expired.add(rs.getString("request_id"));
+        }
+        rs.close();
+        ps.close();
+        
+        List<String> takenOver = new ArrayList<>();
+        for (String requestId : expired) {
+            if (!claimLease(conn, requestId)) {
+                continue; // Another node was faster
+            }
+            pendingLeases.add(requestId);
+            
+            ps = conn.prepareStatement("UPDATE battle_requests SET status = 'APPROVED' WHERE id = ?");
+            ps.setString(1, requestId);
+            ps.executeUpdate();
+            ps.close();
+            
+            // The battle never finished on the dead node, it is fought again from the start
+            ps = conn.prepareStatement("DELETE FROM battles WHERE request_id = ? AND status <> 'ENDED'");
+            ps.setString(1, requestId);
+            ps.executeUpdate();
+            ps.close();
+            
+            takenOver.add(requestId);
+        }
+        return takenOver;
+    }
+    
+    private boolean isPreferredNode(Connection conn) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "SELECT node_id FROM cw_nodes WHERE heartbeat_time > ? ORDER BY active_battles, node_id LIMIT 1");
+        ps.setLong(1, System.currentTimeMillis() - Config.NODE_LEASE_SECONDS * 1000L);
+        ResultSet rs = ps.executeQuery();
+        boolean preferred = !rs.next() || nodeId.equals(rs.getString("node_id"));
+        rs.close();
+        ps.close();
+        return preferred;
+    }
+    
+    // Exactly one node wins: either the insert creates the lease, or the conditional
+    // update takes over an expired one. A lease this node already holds is simply renewed.
+    private boolean claimLease(Connection conn, String requestId) throws SQLException {
+        long expiresAt = System.currentTimeMillis() + Config.NODE_LEASE_SECONDS * 1000L;
+        
+        PreparedStatement ps = conn.prepareStatement(
+            "INSERT IGNORE INTO battle_leases (request_id, node_id, expires_at) VALUES (?, ?, ?)");
+        ps.setString(1, requestId);
+        ps.setString(2, nodeId);
+        ps.setLong(3, expiresAt);
+        boolean inserted = ps.executeUpdate() > 0;
+        ps.close();
+        if (inserted) {
+            return true;
+        }
+        
+        ps = conn.prepareStatement(
+            "UPDATE battle_leases SET node_id = ?, expires_at = ?, battle_id = NULL " +
+            "WHERE request_id = ? AND finished_time IS NULL AND (node_id = ? OR expires_at < ?)");
+        ps.setString(1, nodeId);
+        ps.setLong(2, expiresAt);
+        ps.setString(3, requestId);
+        ps.setString(4, nodeId);
+        ps.setLong(5, System.currentTimeMillis());
+        boolean claimed = ps.executeUpdate() > 0;
+        ps.close();
+        return claimed;
+    }
+    
+    private void insertNode(Connection conn, Integer number, int activeBattles, long now) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "INSERT INTO cw_nodes (node_id, node_number, active_battles, heartbeat_time) VALUES (?, ?, ?, ?)");
+        ps.setString(1, nodeId);
+        if (number != null) {
+            ps.setInt(2, number);
+        } else {
+            ps.setNull(2, Types.INTEGER);
+        }
+        ps.setInt(3, activeBattles);
+        ps.setLong(4, now);
+        ps.executeUpdate();
+        ps.close();
+    }
+    
+    private Connection connection() throws SQLException {
+        return plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection());
+    }
+    
+    private static class HeartbeatResult {
+        private final Map<String, String> lost = new HashMap<>(); // request ID -> battle ID or null
+        private final List<String> takenOver = new ArrayList<>();
+        private boolean nodeNumberLost;
+    }
+    
+    private enum ClaimResult {
+        ACQUIRED,
+        DEFERRED,
+        TAKEN
+    }
+}
\ No newline at end of file
@@ -0,0 +1,447 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.models.BattleGameMode;
+import com.minecraft.clanwars.models.CaptureZone;
+import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.LatencyHistogram;
+import com.minecraft.clanwars.utils.SpatialGrid;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Scores CONTROL_POINT and CAPTURE_THE_FLAG battles. Each arena's zones sit in a uniform grid,
+// so every evaluation looks each player up once instead of testing every player against
+// every zone. Zones come from the "objectives" section of the config:
+//   objectives.<arena>.control-points.<id>: {x, y, z, radius}
+//   objectives.<arena>.flags.team1 / team2: {x, y, z, radius}
+// Battles on arenas without zones for their mode keep scoring kills.
+public class ObjectiveManager {
+    private static final double CELL_SIZE = 8.0;
+    private static final int MAX_CAPTURERS = 3;
+    private static final double FLAG_PICKUP_RADIUS = 1.5;
+    
+    private final ClanWarsPlugin plugin;
+    private final Map<String, List<CaptureZone>> layouts; // arena ID -> zones
+    private final Map<String, BattleObjectives> objectives; // battle ID -> objective state
+    private final LatencyHistogram evaluateTimer;
+    
+    public ObjectiveManager(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.layouts = new HashMap<>();
+        this.objectives = new ConcurrentHashMap<>();
+        this.evaluateTimer = plugin.getMetricsManager().timer("objective_evaluate");
+        plugin.getMetricsManager().gauge("objective_battles", objectives::size);
+        
+        loadLayouts();
+    }
+    
+    private void loadLayouts() {
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("objectives");
+        if (section == null) {
+            return;
+        }
+        
+        for (String arenaId : section.getKeys(false)) {
+            List<CaptureZone> zones = new ArrayList<>();
+            
+            ConfigurationSection points = section.getConfigurationSection(arenaId + ".control-points");
+            if (points != null) {
+                for (String pointId : points.getKeys(false)) {
+                    zones.add(readZone(points.getConfigurationSection(pointId), pointId, zones.size(), CaptureZone.Kind.CONTROL_POINT, -1));
+                }
+            }
+            
+            ConfigurationSection flags = section.getConfigurationSection(arenaId + ".flags");
+            if (flags != null) {
+                if (flags.isConfigurationSection("team1")) {
+                    zones.add(readZone(flags.getConfigurationSection("team1"), "team1", zones.size(), CaptureZone.Kind.FLAG_BASE, 0));
+                }
+                if (flags.isConfigurationSection("team2")) {
+                    zones.add(readZone(flags.getConfigurationSection("team2"), "team2", zones.size(), CaptureZone.Kind.FLAG_BASE, 1));
+                }
+            }
+            
+            layouts.put(arenaId, zones);
+        }
+        plugin.getLogger().info("Loaded objective zones for " + layouts.size() + " arenas");
+    }
+    
+    private CaptureZone readZone(ConfigurationSection section, String id, int index, CaptureZone.Kind kind, int side) {
+        return new CaptureZone(id, index, kind, side, section.getDouble("x"), section.getDouble("y"),
+            section.getDouble("z"), section.getDouble("radius", 4.0));
+    }
+    
+    public void start(Battle battle) {
+        BattleGameMode gameMode = BattleGameMode.of(battle.getGameMode());
+        if (gameMode == null || !gameMode.hasObjectives()) {
+            return;
+        }
+        boolean controlPoints = gameMode == BattleGameMode.CONTROL_POINT;
+        
+        CaptureZone.Kind kind = controlPoints ? CaptureZone.Kind.CONTROL_POINT : CaptureZone.Kind.FLAG_BASE;
+        List<CaptureZone> zones = new ArrayList<>();
+        for (CaptureZone zone : layouts.getOrDefault(battle.getArenaId(), Collections.emptyList())) {
+            if (zone.getKind() == kind) {
+                zones.add(new CaptureZone(zone.getId(), zones.size(), kind, zone.getSide(), zone.getX(), zone.getY(),
+                    zone.getZ(), zone.getRadius()));
+            }
+        }
+        if (zones.isEmpty() || (!controlPoints && zones.size() != 2)) {
+            plugin.getLogger().warning("Arena " + battle.getArenaId() + " has no " + battle.getGameMode() +
+                " zones configured, battle " + battle.getId() + " scores kills instead");
+            return;
+        }
+        
+        BattleObjectives state = new BattleObjectives(battle, zones, controlPoints,
+            plugin.getArenaManager().getArena(battle.getArenaId()).getTeam1SpawnPoint().getWorld());
+        objectives.put(battle.getId(), state);
+        
+        long period = Math.max(1, Config.OBJECTIVE_EVALUATION_TICKS);
+        state.task = Bukkit.getScheduler().runTaskTimer(plugin, () -> evaluate(state, period), period, period);
+    }
+    
+    public void stop(Battle battle) {
+        BattleObjectives state = objectives.remove(battle.getId());
+        if (state == null) {
+            return;
+        }
+        if (state.task != null) {
+            state.task.cancel();
+        }
+        for (FlagState flag : state.flags) {
+            if (flag != null) {
+                setCarrierGlowing(flag, false);
+            }
+        }
+    }
+    
+    // Kills only count towards the score when no objective engine runs the battle
+    public boolean isScoringObjectives(Battle battle) {
+        return objectives.containsKey(battle.getId());
+    }
+    
+    // A flag carrier dying of any cause or disconnecting drops the flag where they were, see ObjectiveListener
+    public void playerDied(Battle battle, Player victim) {
+        BattleObjectives state = objectives.get(battle.getId());
+        if (state == null || state.controlPoints) {
+            return;
+        }
+        for (int side = 0; side < 2; side++) {
+            FlagState flag = state.flags[side];
+            if (victim.getUniqueId().equals(flag.carrier)) {
+                dropFlag(state, side, victim.getLocation());
+            }
+        }
+    }
+    
+    // Zone index for each position, -1 outside every zone. Zones are not expected to overlap.
+    public static int[] locate(SpatialGrid<CaptureZone> grid, double[] x, double[] y, double[] z, int count, int[] zoneOf) {
+        for (int i = 0; i < count; i++) {
+            zoneOf[i] = -1;
+            for (CaptureZone zone : grid.candidates(x[i], z[i])) {
+                if (zone.contains(x[i], y[i], z[i])) {
+                    zoneOf[i] = zone.getIndex();
+                    break;
+                }
+            }
+        }
+        return zoneOf;
+    }
+    
+    public static SpatialGrid<CaptureZone> buildGrid(List<CaptureZone> zones) {
+        double minX = Double.MAX_VALUE;
+        double minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxZ = -Double.MAX_VALUE;
+        for (CaptureZone zone : zones) {
+            minX = Math.min(minX, zone.getX() - zone.getRadius());
+            minZ = Math.min(minZ, zone.getZ() - zone.getRadius());
+            maxX = Math.max(maxX, zone.getX() + zone.getRadius());
+            maxZ = Math.max(maxZ, zone.getZ() + zone.getRadius());
+        }
+        
+        SpatialGrid<CaptureZone> grid = new SpatialGrid<>(CELL_SIZE, minX, minZ, maxX, maxZ);
+        for (CaptureZone zone : zones) {
+            grid.insert(zone, zone.getX() - zone.getRadius(), zone.getZ() - zone.getRadius(),
+                zone.getX() + zone.getRadius(), zone.getZ() + zone.getRadius());
+        }
+        return grid;
+    }
+    
+    private void evaluate(BattleObjectives state, long periodTicks) {
+        Battle battle = state.battle;
+        if (plugin.getBattleManager().isBattlePaused(battle)) {
+            return;
+        }
+        long start = System.nanoTime();
+        
+        // Bucket every fighting player once
+        int count = 0;
+        state.ensureCapacity(battle.getParticipants().size());
+        for (UUID playerId : battle.getParticipants()) {
+            Player player = Bukkit.getPlayer(playerId);
+            if (player == null || !player.isOnline() || player.isDead() || player.getWorld() != state.world) {
+                continue;
+            }
+            Location location = player.getLocation();
+            state.players[count] = player;
+            state.sides[count] = battle.getClan1Tag().equals(battle.getPlayerClanTag(playerId)) ? 0 : 1;
+            state.xs[count] = location.getX();
+            state.ys[count] = location.getY();
+            state.zs[count] = location.getZ();
+            count++;
+        }
+        locate(state.grid, state.xs, state.ys, state.zs, count, state.zoneOf);
+        
+        boolean scoreChanged = state.controlPoints
+            ? updateControlPoints(state, count, periodTicks)
+            : updateFlags(state, count);
+        if (scoreChanged) {
+            plugin.getBattleJournal().scoreChanged(battle);
+            plugin.getReplayRecorder().scoreChanged(battle);
+        }
+        
+        Arrays.fill(state.players, 0, count, null);
+        evaluateTimer.record(System.nanoTime() - start);
+    }
+    
+    private boolean updateControlPoints(BattleObjectives state, int count, long periodTicks) {
+        int[][] occupancy = state.occupancy;
+        for (int[] zoneCount : occupancy) {
+            zoneCount[0] = 0;
+            zoneCount[1] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            if (state.zoneOf[i] >= 0) {
+                occupancy[state.zoneOf[i]][state.sides[i]]++;
+            }
+        }
+        
+        // Progress runs from -1 (clan 2 owns the point) to 1 (clan 1 owns it), more capturers
+        // push it faster up to a cap, and a contested point does not move
+        double step = periodTicks / 20.0 / Math.max(1, Config.CAPTURE_SECONDS);
+        for (CaptureZone zone : state.zones) {
+            int i = zone.getIndex();
+            int team1 = occupancy[i][0];
+            int team2 = occupancy[i][1];
+            if ((team1 > 0) == (team2 > 0)) {
+                continue;
+            }
+            
+            int side = team1 > 0 ? 0 : 1;
+            double direction = side == 0 ? 1 : -1;
+            double progress = state.progress[i] + direction * step * Math.min(Math.max(team1, team2), MAX_CAPTURERS);
+            state.progress[i] = Math.max(-1, Math.min(1, progress));
+            
+            if (state.owners[i] == 1 - side && state.progress[i] * direction >= 0) {
+                state.owners[i] = -1;
+                announce(state, side, "neutralized point " + zone.getId());
+            }
+            if (state.owners[i] != side && state.progress[i] * direction >= 1) {
+                state.owners[i] = side;
+                announce(state, side, "captured point " + zone.getId());
+            }
+        }
+        
+        // Every held point scores once per interval
+        boolean changed = false;
+        long scoreTicks = 20L * Math.max(1, Config.CONTROL_POINT_SCORE_SECONDS);
+        for (int owner : state.owners) {
+            if (owner >= 0) {
+                state.heldTicks[owner] += periodTicks;
+            }
+        }
+        for (int side = 0; side < 2; side++) {
+            while (state.heldTicks[side] >= scoreTicks) {
+                state.heldTicks[side] -= scoreTicks;
+                addScore(state.battle, side);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+    
+    private boolean updateFlags(BattleObjectives state, int count) {
+        boolean changed = false;
+        long now = System.currentTimeMillis();
+        
+        // Carriers who left the battle lose the flag back to its base
+        for (int side = 0; side < 2; side++) {
+            FlagState flag = state.flags[side];
+            if (flag.carrier != null) {
+                Player carrier = Bukkit.getPlayer(flag.carrier);
+                if (carrier == null || !carrier.isOnline() || carrier.getWorld() != state.world) {
+                    returnFlag(state, side, "returned to base");
+                }
+            } else if (flag.dropped != null && now - flag.droppedAt >= Config.FLAG_RETURN_SECONDS * 1000L) {
+                returnFlag(state, side, "returned to base");
+            }
+        }
+        
+        for (int i = 0; i < count; i++) {
+            Player player = state.players[i];
+            int side = state.sides[i];
+            int enemy = 1 - side;
+            
+            // Dropped flags are touched directly, there are at most two of them
+            for (int flagSide = 0; flagSide < 2; flagSide++) {
+                FlagState flag = state.flags[flagSide];
+                if (flag.dropped == null || flag.dropped.getWorld() != state.world) {
+                    continue;
+                }
+                double dx = state.xs[i] - flag.dropped.getX();
+                double dy = state.ys[i] - flag.dropped.getY();
+                double dz = state.zs[i] - flag.dropped.getZ();
+                if (dx * dx + dy * dy + dz * dz > FLAG_PICKUP_RADIUS * FLAG_PICKUP_RADIUS) {
+                    continue;
+                }
+                if (flagSide == side) {
+                    returnFlag(state, flagSide, "returned by " + player.getName());
+                } else {
+                    pickUpFlag(state, flagSide, player);
+                }
+            }
+            
+            if (state.zoneOf[i] < 0) {
+                continue;
+            }
+            int baseSide = state.zones.get(state.zoneOf[i]).getSide();
+            FlagState enemyFlag = state.flags[enemy];
+            
+            if (baseSide == enemy && enemyFlag.isAtBase()) {
+                pickUpFlag(state, enemy, player);
+            } else if (baseSide == side && player.getUniqueId().equals(enemyFlag.carrier) && state.flags[side].isAtBase()) {
+                setCarrierGlowing(enemyFlag, false);
+                enemyFlag.reset();
+                addScore(state.battle, side);
+                announce(state, side, player.getName() + " captured the " + clanTag(state.battle, enemy) + " flag");
+                changed = true;
+            }
+        }
+        return changed;
+    }
+    
+    private void pickUpFlag(BattleObjectives state, int flagSide, Player player) {
+        FlagState flag = state.flags[flagSide];
+        flag.carrier = player.getUniqueId();
+        flag.dropped = null;
+        setCarrierGlowing(flag, true);
+        announce(state, 1 - flagSide, player.getName() + " took the " + clanTag(state.battle, flagSide) + " flag");
+    }
+    
+    private void dropFlag(BattleObjectives state, int flagSide, Location location) {
+        FlagState flag = state.flags[flagSide];
+        setCarrierGlowing(flag, false);
+        flag.carrier = null;
+        flag.dropped = location;
+        flag.droppedAt = System.currentTimeMillis();
+        announce(state, 1 - flagSide, "dropped the " + clanTag(state.battle, flagSide) + " flag");
+    }
+    
+    private void returnFlag(BattleObjectives state, int flagSide, String how) {
+        FlagState flag = state.flags[flagSide];
+        setCarrierGlowing(flag, false);
+        flag.reset();
+        announce(state, flagSide, "flag " + how);
+    }
+    
+    private void setCarrierGlowing(FlagState flag, boolean glowing) {
+        if (flag.carrier != null) {
+            Player carrier = Bukkit.getPlayer(flag.carrier);
+            if (carrier != null) {
+                carrier.setGlowing(glowing);
+            }
+        }
+    }
+    
+    private void addScore(Battle battle, int side) {
+        if (side == 0) {
+            battle.setTeam1Score(battle.getTeam1Score() + 1);
+        } else {
+            battle.setTeam2Score(battle.getTeam2Score() + 1);
+        }
+    }
+    
+    private void announce(BattleObjectives state, int side, String description) {
+        String clanTag = clanTag(state.battle, side);
+        plugin.getBattleManager().broadcastToBattle(state.battle, ChatColor.AQUA + "[" + clanTag + "] " + description);
+        plugin.getReplayRecorder().objectiveEvent(state.battle, clanTag, description);
+    }
+    
+    private static String clanTag(Battle battle, int side) {
+        return side == 0 ? battle.getClan1Tag() : battle.getClan2Tag();
+    }
+    
+    private static class BattleObjectives {
+        private final Battle battle;
+        private final List<CaptureZone> zones;
+        private final SpatialGrid<CaptureZone> grid;
+        private final boolean controlPoints;
+        private final World world;
+        private final double[] progress;
+        private final int[] owners;
+        private final int[][] occupancy;
+        private final long[] heldTicks;
+        private final FlagState[] flags;
+        private BukkitTask task;
+        
+        // Per-evaluation buffers, reused between ticks
+        private Player[] players;
+        private int[] sides;
+        private double[] xs;
+        private double[] ys;
+        private double[] zs;
+        private int[] zoneOf;
+        
+        private BattleObjectives(Battle battle, List<CaptureZone> zones, boolean controlPoints, World world) {
+            this.battle = battle;
+            this.zones = zones;
+            this.grid = buildGrid(zones);
+            this.controlPoints = controlPoints;
+            this.world = world;
+            this.progress = new double[zones.size()];
+            this.owners = new int[zones.size()];
+            Arrays.fill(owners, -1);
+            this.occupancy = new int[zones.size()][2];
+            this.heldTicks = new long[2];
+            this.flags = controlPoints ? new FlagState[2] : new FlagState[] {new FlagState(), new FlagState()};
+            ensureCapacity(16);
+        }
+        
+        private void ensureCapacity(int size) {
+            if (players != null && players.length >= size) {
+                return;
+            }
+            players = new Player[size];
+            sides = new int[size];
+            xs = new double[size];
+            ys = new double[size];
+            zs = new double[size];
+            zoneOf = new int[size];
+        }
+    }
+    
+    private static class FlagState {
+        private UUID carrier;
+        private Location dropped;
+        private long droppedAt;
+        
+        private boolean isAtBase() {
+            return carrier == null && dropped == null;
+        }
+        
+        private void reset() {
+            carrier = null;
+            dropped = null;
+        }
+    }
+}
\ No newline at end of file
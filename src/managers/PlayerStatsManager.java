@@ -0,0 +1,304 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.models.BattlePlayerStats;
+import com.minecraft.clanwars.models.LifetimeStats;
+import com.minecraft.clanwars.utils.ClanTags;
+import com.minecraft.clanwars.utils.Config;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+
+public class PlayerStatsManager {
+    // Priors so players with few battles are rated close to average
+    private static final double PRIOR_KILLS = 5;
+    private static final double PRIOR_BATTLES = 4;
+    private static final double BASE_SKILL = 100;
+    private static final int LEADERBOARD_SIZE = 100;
+    
+    private final ClanWarsPlugin plugin;
+    private volatile Map<UUID, LifetimeStats> playerStats; // player UUID -> lifetime stats
+    private volatile Map<String, LifetimeStats> clanStats; // clan tag -> lifetime stats
+    private volatile List<UUID> topPlayersByKillDeath;
+    private volatile List<String> topClansByKillDeath;
+    private final AtomicBoolean refreshing;
+    private final ReadWriteLock snapshotLock; // battle saves hold the read side, snapshot loads the write side
+    private final Map<Long, StatsDelta> unsavedDeltas; // sequence -> battle not yet in the tables
+    private final List<StatsDelta> refreshDeltas; // battles recorded while a refresh runs, main thread only
+    private long deltaSequence;
+    private BukkitTask refreshTask;
+    
+    public PlayerStatsManager(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.playerStats = new ConcurrentHashMap<>();
+        this.clanStats = new ConcurrentHashMap<>();
+        this.topPlayersByKillDeath = Collections.emptyList();
+        this.topClansByKillDeath = Collections.emptyList();
+        this.refreshing = new AtomicBoolean();
+        this.snapshotLock = new ReentrantReadWriteLock();
+        this.unsavedDeltas = new TreeMap<>();
+        this.refreshDeltas = new ArrayList<>();
+        
+        // Load lifetime stats from the materialized tables
+        try {
+            applySnapshot(loadSnapshot());
+            plugin.getLogger().info("Loaded lifetime stats for " + playerStats.size() + " players and " + clanStats.size() + " clans.");
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error loading lifetime stats from database", e);
+        }
+    }
+    
+    public void startRefreshTask() {
+        // Pick up stats written by other servers and rebuild the leaderboards
+        long period = 20L * 60 * Config.STATS_REFRESH_MINUTES;
+        refreshTask = Bukkit.getScheduler().runTaskTimer(plugin, this::refreshAsync, period, period);
+    }
+    
+    public void shutdown() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+        }
+    }
+    
+    public void refreshAsync() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.supply(this::loadSnapshot), snapshot -> {
+            applySnapshot(snapshot);
+            refreshing.set(false);
+        }, error -> {
+            plugin.getLogger().log(Level.WARNING, "Error refreshing lifetime stats from database", error);
+            refreshDeltas.clear();
+            refreshing.set(false);
+        });
+    }
+    
+    // Battle saves wait while the tables are read, so every battle recorded so far is either
+    // in the tables or still unsaved, and the unsaved ones are added on top of what was read
+    private Snapshot loadSnapshot() throws SQLException {
+        Snapshot snapshot = new Snapshot();
+        List<StatsDelta> unsaved;
+        snapshotLock.writeLock().lock();
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            PreparedStatement ps = conn.prepareStatement(
+                "SELECT player_uuid, kills, deaths, score, battles, wins FROM player_lifetime_stats");
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                snapshot.players.put(UUID.fromString(rs.getString("player_uuid")), readStats(rs));
+            }
+            rs.close();
+            ps.close();
+            
+            ps = conn.prepareStatement(
+                "SELECT clan_tag, kills, deaths, score, battles, wins FROM clan_lifetime_stats");
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                snapshot.clans.put(ClanTags.canonical(rs.getString("clan_tag")), readStats(rs));
+            }
+            rs.close();
+            ps.close();
+            
+            synchronized (unsavedDeltas) {
+                snapshot.sequence = deltaSequence;
+                unsaved = new ArrayList<>(unsavedDeltas.values());
+            }
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        for (StatsDelta delta : unsaved) {
+            delta.applyTo(snapshot.players, snapshot.clans);
+        }
+        
+        snapshot.topPlayers = rankByKillDeath(snapshot.players);
+        snapshot.topClans = rankByKillDeath(snapshot.clans);
+        return snapshot;
+    }
+    
+    private static LifetimeStats readStats(ResultSet rs) throws SQLException {
+        return new LifetimeStats(
+            rs.getInt("kills"),
+            rs.getInt("deaths"),
+            rs.getInt("score"),
+            rs.getInt("battles"),
+            rs.getInt("wins"));
+    }
+    
+    private void applySnapshot(Snapshot snapshot) {
+        // Battles recorded after the tables were read, the leaderboards catch up on the next refresh
+        for (StatsDelta delta : refreshDeltas) {
+            if (delta.sequence > snapshot.sequence) {
+                delta.applyTo(snapshot.players, snapshot.clans);
+            }
+        }
+        refreshDeltas.clear();
+        
+        playerStats = snapshot.players;
+        clanStats = snapshot.clans;
+        topPlayersByKillDeath = snapshot.topPlayers;
+        topClansByKillDeath = snapshot.topClans;
+    }
+    
+    private static <K> List<K> rankByKillDeath(Map<K, LifetimeStats> stats) {
+        List<Map.Entry<K, LifetimeStats>> eligible = new ArrayList<>();
+        for (Map.Entry<K, LifetimeStats> entry : stats.entrySet()) {
+            if (entry.getValue().getBattles() >= Config.LEADERBOARD_MIN_BATTLES) {
+                eligible.add(entry);
+            }
+        }
+        eligible.sort(Comparator.comparingDouble((Map.Entry<K, LifetimeStats> entry) -> entry.getValue().getKillDeathRatio()).reversed());
+        
+        List<K> ranking = new ArrayList<>(Math.min(LEADERBOARD_SIZE, eligible.size()));
+        for (int i = 0; i < eligible.size() && i < LEADERBOARD_SIZE; i++) {
+            ranking.add(eligible.get(i).getKey());
+        }
+        return Collections.unmodifiableList(ranking);
+    }
+    
+    // Folds a finished battle into the in-memory aggregates, the materialized tables
+    // are updated off the main thread
+    public void recordBattle(Battle battle) {
+        StatsDelta delta = new StatsDelta();
+        delta.clans.put(battle.getClan1Tag(), new LifetimeStats(0, 0, 0, 1, battle.getClan1Tag().equals(battle.getWinnerTag()) ? 1 : 0));
+        delta.clans.put(battle.getClan2Tag(), new LifetimeStats(0, 0, 0, 1, battle.getClan2Tag().equals(battle.getWinnerTag()) ? 1 : 0));
+        
+        for (Map.Entry<UUID, BattlePlayerStats> entry : battle.getPlayerStats().entrySet()) {
+            BattlePlayerStats stats = entry.getValue();
+            String clanTag = battle.getPlayerClanTag(entry.getKey());
+            
+            LifetimeStats playerDelta = new LifetimeStats(0, 0, 0, 0, 0);
+            playerDelta.add(stats.getKills(), stats.getDeaths(), stats.getScore(), clanTag.equals(battle.getWinnerTag()));
+            delta.players.put(entry.getKey(), playerDelta);
+            delta.clans.computeIfAbsent(clanTag, tag -> new LifetimeStats(0, 0, 0, 0, 0))
+                .addTotals(stats.getKills(), stats.getDeaths(), stats.getScore());
+        }
+        delta.applyTo(playerStats, clanStats);
+        
+        synchronized (unsavedDeltas) {
+            delta.sequence = ++deltaSequence;
+            unsavedDeltas.put(delta.sequence, delta);
+        }
+        if (refreshing.get()) {
+            refreshDeltas.add(delta);
+        }
+        
+        plugin.getIOExecutor().run(() -> saveBattleStats(delta)).exceptionally(error -> {
+            plugin.getLogger().log(Level.SEVERE, "Error updating lifetime stats in database", error);
+            return null;
+        });
+    }
+    
+    private void saveBattleStats(StatsDelta delta) throws SQLException {
+        snapshotLock.readLock().lock();
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO player_lifetime_stats (player_uuid, kills, deaths, score, battles, wins) VALUES (?, ?, ?, ?, 1, ?) " +
+                "ON DUPLICATE KEY UPDATE kills = kills + VALUES(kills), deaths = deaths + VALUES(deaths), " +
+                "score = score + VALUES(score), battles = battles + 1, wins = wins + VALUES(wins)");
+            
+            for (Map.Entry<UUID, LifetimeStats> entry : delta.players.entrySet()) {
+                LifetimeStats stats = entry.getValue();
+                ps.setString(1, entry.getKey().toString());
+                ps.setInt(2, stats.getKills());
+                ps.setInt(3, stats.getDeaths());
+                ps.setInt(4, stats.getScore());
+                ps.setInt(5, stats.getWins());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ps.close();
+            
+            ps = conn.prepareStatement(
+                "INSERT INTO clan_lifetime_stats (clan_tag, kills, deaths, score, battles, wins) VALUES (?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE kills = kills + VALUES(kills), deaths = deaths + VALUES(deaths), " +
+                "score = score + VALUES(score), battles = battles + VALUES(battles), wins = wins + VALUES(wins)");
+            
+            for (Map.Entry<String, LifetimeStats> entry : delta.clans.entrySet()) {
+                LifetimeStats stats = entry.getValue();
+                ps.setString(1, entry.getKey());
+                ps.setInt(2, stats.getKills());
+                ps.setInt(3, stats.getDeaths());
+                ps.setInt(4, stats.getScore());
+                ps.setInt(5, stats.getBattles());
+                ps.setInt(6, stats.getWins());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ps.close();
+        } finally {
+            // A failed save is dropped, the next refresh brings memory back in line with the tables
+            synchronized (unsavedDeltas) {
+                unsavedDeltas.remove(delta.sequence);
+            }
+            snapshotLock.readLock().unlock();
+        }
+    }
+    
+    public LifetimeStats getPlayerStats(UUID playerId) {
+        return playerStats.get(playerId);
+    }
+    
+    public LifetimeStats getClanStats(String clanTag) {
+        return clanStats.get(clanTag);
+    }
+    
+    // Leaderboards are rebuilt on every refresh, reads never sort
+    public List<UUID> getTopPlayersByKillDeath(int limit) {
+        List<UUID> ranking = topPlayersByKillDeath;
+        return ranking.size() <= limit ? ranking : ranking.subList(0, limit);
+    }
+    
+    public List<String> getTopClansByKillDeath(int limit) {
+        List<String> ranking = topClansByKillDeath;
+        return ranking.size() <= limit ? ranking : ranking.subList(0, limit);
+    }
+    
+    // Skill estimate used for team balancing, 100 is an average player
+    public double getSkill(UUID playerId) {
+        LifetimeStats stats = playerStats.get(playerId);
+        if (stats == null) {
+            return BASE_SKILL;
+        }
+        
+        double killDeath = (stats.getKills() + PRIOR_KILLS) / (stats.getDeaths() + PRIOR_KILLS);
+        double winRate = (stats.getWins() + PRIOR_BATTLES / 2) / (stats.getBattles() + PRIOR_BATTLES);
+        return BASE_SKILL * killDeath * (0.5 + winRate);
+    }
+    
+    private static class Snapshot {
+        private final Map<UUID, LifetimeStats> players = new ConcurrentHashMap<>();
+        private final Map<String, LifetimeStats> clans = new ConcurrentHashMap<>();
+        private List<UUID> topPlayers;
+        private List<String> topClans;
+        private long sequence; // last battle recorded when the tables were read
+    }
+    
+    // What one battle adds to the lifetime stats, never changed once recorded
+    private static class StatsDelta {
+        private final Map<UUID, LifetimeStats> players = new HashMap<>();
+        private final Map<String, LifetimeStats> clans = new HashMap<>();
+        private long sequence;
+        
+        void applyTo(Map<UUID, LifetimeStats> playerStats, Map<String, LifetimeStats> clanStats) {
+            for (Map.Entry<UUID, LifetimeStats> entry : players.entrySet()) {
+                playerStats.computeIfAbsent(entry.getKey(), id -> new LifetimeStats(0, 0, 0, 0, 0)).merge(entry.getValue());
+            }
+            for (Map.Entry<String, LifetimeStats> entry : clans.entrySet()) {
+                clanStats.computeIfAbsent(entry.getKey(), tag -> new LifetimeStats(0, 0, 0, 0, 0)).merge(entry.getValue());
+            }
+        }
+    }
+}
\ No newline at end of file
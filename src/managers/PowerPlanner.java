@@ -0,0 +1,148 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.models.BattleRequest;
+import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.IdGenerator;
+import org.bukkit.ChatColor;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+// Plans server uptime from the whole battle calendar instead of battle by battle. Every
+// approved or running battle needs the server from its prep time until it ends, and two
+// such intervals are merged into one keep-alive window when the gap between them costs
+// less to idle through than a shutdown and boot. Gaps are independent, so deciding each
+// one this way gives the cheapest on/off plan.
+public class PowerPlanner {
+    private final ClanWarsPlugin plugin;
+    
+    public PowerPlanner(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    // Windows in start order, the first one may already be open
+    public List<Window> getPlan(long now) {
+        long battleLength = Config.BATTLE_COUNTDOWN_SECONDS * 1000L + Config.BATTLE_DURATION_MINUTES * 60L * 1000L;
+        long bootCost = Config.POWER_BOOT_COST_MINUTES * 60L * 1000L;
+        
+        // Time index of everything that needs the server, start -> end
+        TreeMap<Long, List<Interval>> index = new TreeMap<>();
+        for (Battle battle : plugin.getBattleManager().getActiveBattles().values()) {
+            long end = Math.max(now, battle.getStartTime() + battleLength);
+            index.computeIfAbsent(now, k -> new ArrayList<>()).add(new Interval(battle.getId(), end));
+        }
+        for (BattleRequest request : plugin.getBattleManager().getApprovedBattleRequests()) {
+            long end = request.getScheduledTime() + battleLength;
+            if (end < now) {
+                continue; // Missed, the auto-decline check cleans it up
+            }
+            long start = Math.max(now, request.getScheduledTime() - Config.SERVER_PREP_TIME);
+            index.computeIfAbsent(start, k -> new ArrayList<>()).add(new Interval(request.getId(), end));
+        }
+        
+        List<Window> plan = new ArrayList<>();
+        Window current = null;
+        for (Map.Entry<Long, List<Interval>> entry : index.entrySet()) {
+            for (Interval interval : entry.getValue()) {
+                if (current == null || entry.getKey() - current.end > bootCost) {
+                    current = new Window(entry.getKey());
+                    plan.add(current);
+                }
+                current.end = Math.max(current.end, interval.end);
+                current.battleIds.add(interval.id);
+            }
+        }
+        return plan;
+    }
+    
+    public boolean shouldBeRunning(long now) {
+        return getWindowAt(now) != null;
+    }
+    
+    // Called when a battle ends, true when the next battle is close enough that staying up is cheaper
+    public boolean shouldKeepAlive(long now) {
+        for (Window window : getPlan(now)) {
+            if (window.start <= now + Config.POWER_BOOT_COST_MINUTES * 60L * 1000L) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public Window getWindowAt(long now) {
+        for (Window window : getPlan(now)) {
+            if (window.start <= now && now <= window.end) {
+                return window;
+            }
+        }
+        return null;
+    }
+    
+    public List<String> getTimelineLines() {
+        long now = System.currentTimeMillis();
+        SimpleDateFormat format = new SimpleDateFormat("MM/dd HH:mm");
+        List<String> lines = new ArrayList<>();
+        lines.add(ChatColor.GOLD + "=== ClanWars Power Plan ===");
+        
+        List<Window> plan = getPlan(now);
+        if (plan.isEmpty()) {
+            lines.add(ChatColor.GRAY + "No battles planned, the server can stay off.");
+            return lines;
+        }
+        
+        long uptime = 0;
+        for (Window window : plan) {
+            uptime += window.end - window.start;
+            String state = window.start <= now ? ChatColor.GREEN + "ON NOW " : ChatColor.YELLOW + "ON ";
+            lines.add(state + ChatColor.WHITE + format.format(new Date(window.start)) + " - " +
+                format.format(new Date(window.end)) + ChatColor.GRAY + " (" + window.battleIds.size() + " battles: " + shortForms(window.battleIds) + ")");
+        }
+        lines.add(ChatColor.GRAY + "Planned uptime: " + (uptime / 60000) + " minutes in " + plan.size() + " boots");
+        return lines;
+    }
+    
+    private static String shortForms(List<String> ids) {
+        List<String> shortIds = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            shortIds.add(IdGenerator.shortForm(id));
+        }
+        return String.join(", ", shortIds);
+    }
+    
+    public static class Window {
+        private final long start;
+        private long end;
+        private final List<String> battleIds;
+        
+        Window(long start) {
+            this.start = start;
+            this.end = start;
+            this.battleIds = new ArrayList<>();
+        }
+        
+        public long getStart() {
+            return start;
+        }
+        
+        public long getEnd() {
+            return end;
+        }
+        
+        // Request IDs of planned battles and battle IDs of running ones
+        public List<String> getBattleIds() {
+            return battleIds;
+        }
+    }
+    
+    private static class Interval {
+        private final String id;
+        private final long end;
+        
+        Interval(String id, long end) {
+            this.id = id;
+            this.end = end;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,305 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.BattleSummary;
+import com.minecraft.clanwars.models.Clan;
+import com.minecraft.clanwars.models.RatingState;
+import com.minecraft.clanwars.utils.ClanTags;
+import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.EloRatingEngine;
+import com.minecraft.clanwars.utils.FixedRatingEngine;
+import com.minecraft.clanwars.utils.Glicko2RatingEngine;
+import com.minecraft.clanwars.utils.RatingEngine;
+import com.minecraft.clanwars.utils.RatingReplay;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+public class RatingManager {
+    private final ClanWarsPlugin plugin;
+    private final RatingEngine engine;
+    private final Map<String, RatingState> ratingStates; // clan tag -> rating state
+    private final AtomicBoolean recomputing;
+    private final List<String[]> deferredResults; // winner and loser of battles ended during a recomputation
+    private final Map<String, RatingState> pendingSaves; // clan tag -> newest state not yet written
+    private final AtomicBoolean saving;
+    
+    public RatingManager(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.engine = createEngine(Config.RATING_ENGINE);
+        this.ratingStates = new ConcurrentHashMap<>();
+        this.recomputing = new AtomicBoolean();
+        this.deferredResults = new ArrayList<>();
+        this.pendingSaves = new ConcurrentHashMap<>();
+        this.saving = new AtomicBoolean();
+        
+        // Load rating deviation and volatility from database
+        loadRatingStates();
+    }
+    
+    private RatingEngine createEngine(String name) {
+        switch (name.toUpperCase()) {
+            case "ELO":
+                return new EloRatingEngine(Config.RATING_ELO_K_FACTOR);
+            case "GLICKO2":
+                return new Glicko2RatingEngine(Config.RATING_GLICKO_INITIAL_DEVIATION, Config.RATING_GLICKO_INITIAL_VOLATILITY, Config.RATING_GLICKO_TAU);
+            default:
+                return new FixedRatingEngine(Config.RATING_WIN_POINTS, Config.RATING_LOSS_POINTS);
+        }
+    }
+    
+    private void loadRatingStates() {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            PreparedStatement ps = conn.prepareStatement(
+                "SELECT clan_tag, rating, deviation, volatility FROM clan_ratings");
+            ResultSet rs = ps.executeQuery();
+            
+            while (rs.next()) {
+                ratingStates.put(ClanTags.canonical(rs.getString("clan_tag")), new RatingState(
+                    rs.getDouble("rating"),
+                    rs.getDouble("deviation"),
+                    rs.getDouble("volatility")));
+            }
+            rs.close();
+            ps.close();
+            
+            plugin.getLogger().info("Loaded " + ratingStates.size() + " clan rating states (" + engine.getName() + " engine).");
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error loading clan rating states from database", e);
+        }
+    }
+    
+    // Picks up deviation and volatility written by another node
+    public void reloadRatingState(String clanTag) {
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.supply(() -> {
+            try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+                PreparedStatement ps = conn.prepareStatement(
+                    "SELECT rating, deviation, volatility FROM clan_ratings WHERE clan_tag = ?");
+                ps.setString(1, clanTag);
+                ResultSet rs = ps.executeQuery();
+                
+                RatingState state = rs.next() ? new RatingState(rs.getDouble("rating"), rs.getDouble("deviation"), rs.getDouble("volatility")) : null;
+                rs.close();
+                ps.close();
+                return state;
+            }
+        }), state -> {
+            if (state != null) {
+                ratingStates.put(clanTag, state);
+            }
+        }, error -> plugin.getLogger().log(Level.WARNING, "Error reloading rating state for clan " + clanTag, error));
+    }
+    
+    public RatingEngine getEngine() {
+        return engine;
+    }
+    
+    public RatingState getRatingState(String clanTag) {
+        return ratingStates.get(clanTag);
+    }
+    
+    public void applyResult(String winnerTag, String loserTag) {
+        if (recomputing.get()) {
+            // The recomputation only reads battles that ended before it started, this one is
+            // rated on top of its result instead of being overwritten by it
+            deferredResults.add(new String[] {winnerTag, loserTag});
+            return;
+        }
+        
+        ClanManager clanManager = plugin.getClanManager();
+        Clan winner = clanManager.getClan(winnerTag);
+        Clan loser = clanManager.getClan(loserTag);
+        
+        RatingState winnerState = getOrCreateState(winnerTag, winner);
+        RatingState loserState = getOrCreateState(loserTag, loser);
+        engine.applyResult(winnerState, loserState);
+        
+        MatchmakingManager matchmakingManager = plugin.getMatchmakingManager();
+        if (winner != null) {
+            winner.setRating((int) Math.round(winnerState.getRating()));
+            if (matchmakingManager != null) {
+                matchmakingManager.updateClanRating(winner);
+            }
+        }
+        if (loser != null) {
+            loser.setRating((int) Math.round(loserState.getRating()));
+            if (matchmakingManager != null) {
+                matchmakingManager.updateClanRating(loser);
+            }
+        }
+        
+        saveRatingStates(Arrays.asList(winnerTag, loserTag));
+    }
+    
+    private RatingState getOrCreateState(String clanTag, Clan clan) {
+        // Clans rated before the engine existed start from their current rating
+        return ratingStates.computeIfAbsent(clanTag, tag -> engine.newState(clan != null ? clan.getRating() : Config.RATING_INITIAL));
+    }
+    
+    // Writes copies of the states so the main thread can keep rating while the batch runs. Writes go
+    // out one batch at a time with the newest copy per clan, so an older state never lands last.
+    private void saveRatingStates(Collection<String> clanTags) {
+        for (String clanTag : clanTags) {
+            RatingState state = ratingStates.get(clanTag);
+            if (state != null) {
+                pendingSaves.put(clanTag, state.copy());
+            }
+        }
+        flushRatingStates();
+    }
+    
+    private void flushRatingStates() {
+        if (pendingSaves.isEmpty() || !saving.compareAndSet(false, true)) {
+            return;
+        }
+        
+        Map<String, RatingState> states = new HashMap<>(pendingSaves);
+        states.forEach(pendingSaves::remove);
+        plugin.getIOExecutor().run(() -> {
+            try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+                PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO clan_ratings (clan_tag, rating, deviation, volatility) VALUES (?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE rating = VALUES(rating), deviation = VALUES(deviation), volatility = VALUES(volatility)");
+                
+                for (Map.Entry<String, RatingState> entry : states.entrySet()) {
+                    ps.setString(1, entry.getKey());
+                    ps.setDouble(2, entry.getValue().getRating());
+                    ps.setDouble(3, entry.getValue().getDeviation());
+                    ps.setDouble(4, entry.getValue().getVolatility());
+                    ps.addBatch();
+                }
+                
+                ps.executeBatch();
+                ps.close();
+            }
+        }).whenComplete((ignored, error) -> {
+            saving.set(false);
+            if (error != null) {
+                // Kept for the next save unless a newer state is already waiting
+                states.forEach(pendingSaves::putIfAbsent);
+                plugin.getLogger().log(Level.SEVERE, "Error saving clan rating states to database", error);
+            } else {
+                flushRatingStates();
+            }
+        });
+    }
+    
+    public boolean isRecomputing() {
+        return recomputing.get();
+    }
+    
+    // Replays the whole battle history off the main thread and replaces every clan rating
+    public boolean recomputeAllRatings() {
+        if (!recomputing.compareAndSet(false, true)) {
+            return false;
+        }
+        
+        // The result is applied on the main thread, clan objects are only touched there
+        long cutoff = System.currentTimeMillis();
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.supply(() -> {
+            long start = System.currentTimeMillis();
+            RatingReplay replay = replayBattleHistory(cutoff);
+            long elapsed = System.currentTimeMillis() - start;
+            
+            plugin.getLogger().info("Recomputed " + engine.getName() + " ratings for " + replay.getClanCount() + " clans from " +
+                replay.getBattleCount() + " battles in " + replay.getPeriodCount() + " rating periods (" + elapsed + " ms)");
+            return replay;
+        }), this::applyRecomputation, error -> {
+            plugin.getLogger().log(Level.SEVERE, "Error recomputing clan ratings from battle history", error);
+            if (finishRecomputation()) {
+                plugin.getClanManager().saveAllClans();
+            }
+        });
+        return true;
+    }
+    
+    private RatingReplay replayBattleHistory(long cutoff) throws SQLException, IOException {
+        RatingReplay replay = new RatingReplay(engine, Config.RATING_INITIAL, Config.RATING_PERIOD_HOURS * 60L * 60L * 1000L);
+        
+        // Archived and live battles overlap in end time, battles held back for unpaid rewards stay
+        // live past newer archived ones, so both are merged by end time
+        List<BattleSummary> archived = plugin.getArchiveManager().findDecidedBattles(cutoff);
+        int next = 0;
+        
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            PreparedStatement ps = conn.prepareStatement(
+                "SELECT clan1_tag, clan2_tag, winner_tag, end_time FROM battles " +
+                "WHERE status = 'ENDED' AND winner_tag IS NOT NULL AND end_time < ? ORDER BY end_time",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setLong(1, cutoff);
+            // Stream rows instead of buffering the whole history in the driver
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ResultSet rs = ps.executeQuery();
+            
+            while (rs.next()) {
+                long endTime = rs.getLong("end_time");
+                while (next < archived.size() && archived.get(next).getEndTime() <= endTime) {
+                    BattleSummary battle = archived.get(next++);
+                    replay.addGame(battle.getClan1Tag(), battle.getClan2Tag(), battle.getWinnerTag(), battle.getEndTime());
+                }
+                replay.addGame(rs.getString("clan1_tag"), rs.getString("clan2_tag"), rs.getString("winner_tag"), endTime);
+            }
+            rs.close();
+            ps.close();
+            
+            while (next < archived.size()) {
+                BattleSummary battle = archived.get(next++);
+                replay.addGame(battle.getClan1Tag(), battle.getClan2Tag(), battle.getWinnerTag(), battle.getEndTime());
+            }
+            replay.finish();
+            return replay;
+        }
+    }
+    
+    private void applyRecomputation(RatingReplay replay) {
+        ClanManager clanManager = plugin.getClanManager();
+        Map<String, RatingState> states = replay.getStates();
+        
+        // Clans without battles in the history start over like new clans
+        Set<String> clanTags = new HashSet<>(states.keySet());
+        clanTags.addAll(ratingStates.keySet());
+        for (Clan clan : clanManager.getAllClans()) {
+            clanTags.add(clan.getTag());
+        }
+        
+        for (String clanTag : clanTags) {
+            RatingState state = states.get(clanTag);
+            if (state == null) {
+                state = engine.newState(Config.RATING_INITIAL);
+            }
+            ratingStates.put(clanTag, state);
+            
+            Clan clan = clanManager.getClan(clanTag);
+            if (clan != null) {
+                clan.setRating((int) Math.round(state.getRating()));
+            }
+        }
+        finishRecomputation();
+        
+        saveRatingStates(clanTags);
+        clanManager.saveAllClans();
+        plugin.getMatchmakingManager().rebuildIndex();
+        plugin.getChangeFeedManager().publish(ChangeFeedManager.EntityType.CLAN, clanTags);
+    }
+    
+    // Rates the battles that ended while the recomputation ran, in the order they ended, and
+    // returns whether there were any
+    private boolean finishRecomputation() {
+        recomputing.set(false);
+        List<String[]> deferred = new ArrayList<>(deferredResults);
+        deferredResults.clear();
+        for (String[] result : deferred) {
+            applyResult(result[0], result[1]);
+        }
+        return !deferred.isEmpty();
+    }
+}
\ No newline at end of file
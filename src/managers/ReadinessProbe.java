@@ -0,0 +1,217 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Arena;
+import com.minecraft.clanwars.models.BattleRequest;
+import com.minecraft.clanwars.utils.Config;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+// Replaces fixed waits with real readiness signals, checked once per second. Work
+// continues as soon as every signal passes, or once the configured ceiling is reached.
+public class ReadinessProbe {
+    public static final int IDLE_SHUTDOWN_GRACE_SECONDS = 30;
+    
+    private final ClanWarsPlugin plugin;
+    private final AtomicBoolean databaseReady;
+    private final AtomicBoolean pinging;
+    private final Set<String> warmingChunks; // world:x:z of async loads in flight, main thread only
+    private Method asyncChunkLoader;
+    private boolean asyncChunkLoaderResolved;
+    
+    public ReadinessProbe(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.databaseReady = new AtomicBoolean();
+        this.pinging = new AtomicBoolean();
+        this.warmingChunks = new HashSet<>();
+    }
+    
+    // Runs onReady on the main thread once the battle can start, with the arena that was warmed
+    // (null if none could be selected before the ceiling). Chunk loads re-check as they arrive
+    public void awaitBattleReady(BattleRequest request, Consumer<Arena> onReady) {
+        long start = System.nanoTime();
+        long deadline = System.currentTimeMillis() + Config.READINESS_MAX_WAIT_SECONDS * 1000L;
+        BukkitTask[] task = new BukkitTask[1];
+        Arena[] arena = new Arena[1];
+        boolean[] done = new boolean[1];
+        Runnable[] check = new Runnable[1];
+        
+        check[0] = () -> {
+            if (done[0]) {
+                return;
+            }
+            if (arena[0] == null) {
+                arena[0] = plugin.getArenaManager().selectArena(request.getGameMode());
+            }
+            List<String> missing = checkBattleSignals(request, arena[0], check[0]);
+            boolean timedOut = System.currentTimeMillis() >= deadline;
+            if (!missing.isEmpty() && !timedOut) {
+                return;
+            }
+            
+            done[0] = true;
+            task[0].cancel();
+            if (!missing.isEmpty()) {
+                plugin.getLogger().warning("Starting battle " + request.getId() + " without readiness: " + String.join(", ", missing));
+            }
+            plugin.getMetricsManager().record("battle_time_to_ready", start);
+            onReady.accept(arena[0]);
+        };
+        task[0] = Bukkit.getScheduler().runTaskTimer(plugin, check[0], 0L, 20L);
+    }
+    
+    // Like the fixed 30 second wait it replaces, an idle server always gets the grace period
+    // for an admin override. After that it shuts down once the schedule is confirmed and
+    // nobody can override it, while staff online keep it up until the configured ceiling
+    public void awaitIdleShutdown() {
+        long now = System.currentTimeMillis();
+        long graceEnd = now + IDLE_SHUTDOWN_GRACE_SECONDS * 1000L;
+        long deadline = Math.max(graceEnd, now + Config.READINESS_MAX_WAIT_SECONDS * 1000L);
+        BukkitTask[] task = new BukkitTask[1];
+        
+        task[0] = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+            ServerManager serverManager = plugin.getServerManager();
+            if (serverManager.isAdminOverride() || serverManager.shouldServerBeRunning()
+                || plugin.getPowerPlanner().shouldKeepAlive(System.currentTimeMillis())) {
+                task[0].cancel();
+                return;
+            }
+            
+            // The schedule is only trustworthy once the database answered
+            boolean unattended = isDatabaseReady() && !plugin.getStaffCache().isAdminOnline();
+            long time = System.currentTimeMillis();
+            if ((unattended && time >= graceEnd) || time >= deadline) {
+                task[0].cancel();
+                serverManager.shutdownServer();
+            }
+        }, 20L, 20L);
+    }
+    
+    private List<String> checkBattleSignals(BattleRequest request, Arena arena, Runnable recheck) {
+        List<String> missing = new ArrayList<>();
+        
+        if (!isDatabaseReady()) {
+            missing.add("database");
+        }
+        if (!areArenaChunksLoaded(arena, recheck)) {
+            missing.add("arena");
+        }
+        if (Config.REQUIRE_STAFF_ONLINE && !plugin.getStaffCache().isStaffOnline()) {
+            missing.add("staff");
+        }
+        
+        ClanManager clanManager = plugin.getClanManager();
+        if (!clanManager.canClanParticipateInBattle(request.getClan1Tag())) {
+            missing.add(request.getClan1Tag() + " members");
+        }
+        if (!clanManager.canClanParticipateInBattle(request.getClan2Tag())) {
+            missing.add(request.getClan2Tag() + " members");
+        }
+        return missing;
+    }
+    
+    // Cheap round trip through the pool, repeated until one succeeds
+    private boolean isDatabaseReady() {
+        if (databaseReady.get() || !pinging.compareAndSet(false, true)) {
+            return databaseReady.get();
+        }
+        
+        plugin.getIOExecutor().run(() -> {
+            try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+                PreparedStatement ps = conn.prepareStatement("SELECT 1");
+                ResultSet rs = ps.executeQuery();
+                databaseReady.set(rs.next());
+                rs.close();
+                ps.close();
+            } finally {
+                pinging.set(false);
+            }
+        }).exceptionally(error -> {
+            plugin.getLogger().log(Level.FINE, "Database not ready yet", error);
+            return null;
+        });
+        return false;
+    }
+    
+    // Requests every missing chunk asynchronously and re-checks as each one arrives. Servers
+    // without async loading fall back to one synchronous load per check to keep ticks flat
+    private boolean areArenaChunksLoaded(Arena arena, Runnable recheck) {
+        if (arena == null) {
+            return false;
+        }
+        
+        boolean loaded = true;
+        for (Location location : new Location[] {arena.getTeam1SpawnPoint(), arena.getTeam2SpawnPoint(), arena.getSpectatorSpawnPoint()}) {
+            World world = location != null ? location.getWorld() : null;
+            if (world == null) {
+                return false;
+            }
+            int chunkX = location.getBlockX() >> 4;
+            int chunkZ = location.getBlockZ() >> 4;
+            if (world.isChunkLoaded(chunkX, chunkZ)) {
+                continue;
+            }
+            
+            loaded = false;
+            String key = world.getName() + ":" + chunkX + ":" + chunkZ;
+            if (warmingChunks.add(key) && !loadChunkAsync(world, chunkX, chunkZ, key, recheck)) {
+                warmingChunks.remove(key);
+                world.loadChunk(chunkX, chunkZ, false);
+                return false;
+            }
+        }
+        return loaded;
+    }
+    
+    private boolean loadChunkAsync(World world, int chunkX, int chunkZ, String key, Runnable recheck) {
+        Method loader = getAsyncChunkLoader();
+        if (loader == null) {
+            return false;
+        }
+        
+        CompletableFuture<?> future;
+        try {
+            future = (CompletableFuture<?>) loader.invoke(world, chunkX, chunkZ, false);
+        } catch (ReflectiveOperationException e) {
+            plugin.getLogger().log(Level.FINE, "Async chunk load failed, loading synchronously", e);
+            return false;
+        }
+        future.whenComplete((chunk, error) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            warmingChunks.remove(key);
+            if (error != null) {
+                plugin.getLogger().log(Level.FINE, "Could not load arena chunk " + key, error);
+            }
+            recheck.run();
+        }));
+        return true;
+    }
+    
+    // Paper's World#getChunkAtAsync, which the Spigot API we compile against does not declare
+    private Method getAsyncChunkLoader() {
+        if (!asyncChunkLoaderResolved) {
+            asyncChunkLoaderResolved = true;
+            try {
+                Method method = World.class.getMethod("getChunkAtAsync", int.class, int.class, boolean.class);
+                asyncChunkLoader = CompletableFuture.class.isAssignableFrom(method.getReturnType()) ? method : null;
+            } catch (NoSuchMethodException e) {
+                asyncChunkLoader = null;
+            }
+        }
+        return asyncChunkLoader;
+    }
+}
\ No newline at end of file
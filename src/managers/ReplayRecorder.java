@@ -0,0 +1,508 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.models.BattleEndReason;
+import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.LatencyHistogram;
+import com.minecraft.clanwars.utils.ReplayReader;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+
+// Records battles for dispute reviews. The main thread only samples positions and encodes
+// small delta records into a ring buffer, a writer thread compresses them into
+// replays/<battle ID>.replay.gz. When the ring fills up, position samples are dropped
+// before events and the main thread never waits for the disk. Structural records (battle,
+// player, end) are never dropped, they wait in a spill queue until the ring has room again.
+// See ReplayReader for the format.
+public class ReplayRecorder {
+    private static final int POSITION_HEADROOM = 4; // positions may use at most 3/4 of the ring
+    private static final long WRITER_IDLE_NANOS = 10_000_000L;
+    
+    private final ClanWarsPlugin plugin;
+    private final File directory;
+    private final Map<String, Recording> recordings; // battle ID -> recording, main thread only
+    private final Map<Integer, String> streamNames; // stream ID -> file name, read by the writer
+    private final ByteRing ring;
+    private final Encoder encoder;
+    private final Encoder playerEncoder; // player records can be written while a frame is being encoded
+    private final Deque<byte[]> spill; // structural entries waiting for ring space, main thread only
+    private final LatencyHistogram sampleTimer;
+    private final LongAdder dropped;
+    private final LongAdder bytesWritten;
+    private final Thread writer;
+    private volatile boolean running;
+    private int nextStreamId;
+    private BukkitTask sampleTask;
+    
+    public ReplayRecorder(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), "replays");
+        this.recordings = new HashMap<>();
+        this.streamNames = new ConcurrentHashMap<>();
+        this.ring = new ByteRing(Integer.highestOneBit(Math.max(64, Config.REPLAY_BUFFER_KB) * 1024));
+        this.encoder = new Encoder();
+        this.playerEncoder = new Encoder();
+        this.spill = new ArrayDeque<>();
+        
+        MetricsManager metrics = plugin.getMetricsManager();
+        this.sampleTimer = metrics.timer("replay_sample");
+        this.dropped = metrics.counter("replay_records_dropped");
+        this.bytesWritten = metrics.counter("replay_bytes");
+        metrics.gauge("replay_buffer_used", ring::size);
+        
+        this.writer = new Thread(this::writeLoop, "ClanWars-Replay");
+        this.writer.setDaemon(true);
+    }
+    
+    public void start() {
+        if (!Config.REPLAY_ENABLED) {
+            return;
+        }
+        directory.mkdirs();
+        running = true;
+        writer.start();
+        
+        long period = Math.max(1, Config.REPLAY_SAMPLE_TICKS);
+        sampleTask = Bukkit.getScheduler().runTaskTimer(plugin, this::samplePositions, period, period);
+    }
+    
+    // Battles were already ended, so their END records are queued; the writer drains them first
+    public void shutdown() {
+        if (sampleTask != null) {
+            sampleTask.cancel();
+        }
+        if (!running) {
+            return;
+        }
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!drainSpill() && writer.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(WRITER_IDLE_NANOS);
+        }
+        if (!spill.isEmpty()) {
+            plugin.getLogger().warning("Discarding " + spill.size() + " replay records, the writer did not catch up");
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public void battleStarted(Battle battle) {
+        if (!running) {
+            return;
+        }
+        
+        Recording recording = new Recording(battle, nextStreamId++);
+        recordings.put(battle.getId(), recording);
+        streamNames.put(recording.streamId, battle.getId() + ".replay.gz");
+        
+        encoder.begin(recording.streamId, ReplayReader.BATTLE);
+        encoder.putString(battle.getId());
+        encoder.putString(battle.getClan1Tag());
+        encoder.putString(battle.getClan2Tag());
+        encoder.putString(battle.getGameMode());
+        encoder.putLong(System.currentTimeMillis());
+        offer(encoder, null);
+    }
+    
+    public void killRecorded(Battle battle, UUID killerId, UUID victimId) {
+        Recording recording = recordings.get(battle.getId());
+        if (recording == null) {
+            return;
+        }
+        int killer = playerIndex(battle, recording, killerId);
+        int victim = playerIndex(battle, recording, victimId);
+        
+        encoder.begin(recording.streamId, ReplayReader.KILL);
+        encoder.putSignedVarint(recording.elapsed());
+        encoder.putVarint(killer);
+        encoder.putVarint(victim);
+        offer(encoder, recording);
+        scoreChanged(battle);
+    }
+    
+    public void scoreChanged(Battle battle) {
+        Recording recording = recordings.get(battle.getId());
+        if (recording == null) {
+            return;
+        }
+        encoder.begin(recording.streamId, ReplayReader.SCORE);
+        encoder.putSignedVarint(recording.elapsed());
+        encoder.putVarint(battle.getTeam1Score());
+        encoder.putVarint(battle.getTeam2Score());
+        offer(encoder, recording);
+    }
+    
+    // Objective events such as captures, described by the game mode that produced them
+    public void objectiveEvent(Battle battle, String clanTag, String description) {
+        Recording recording = recordings.get(battle.getId());
+        if (recording == null) {
+            return;
+        }
+        encoder.begin(recording.streamId, ReplayReader.OBJECTIVE);
+        encoder.putSignedVarint(recording.elapsed());
+        encoder.putString(clanTag);
+        encoder.putString(description);
+        offer(encoder, recording);
+    }
+    
+    public void battleEnded(Battle battle, String winnerTag, BattleEndReason reason) {
+        Recording recording = recordings.remove(battle.getId());
+        if (recording == null) {
+            return;
+        }
+        encoder.begin(recording.streamId, ReplayReader.END);
+        encoder.putSignedVarint(recording.elapsed());
+        encoder.putString(winnerTag);
+        encoder.putString(reason.toString());
+        offer(encoder, recording);
+    }
+    
+    public File getReplayFile(String battleId) {
+        return new File(directory, battleId + ".replay.gz");
+    }
+    
+    private void samplePositions() {
+        long start = System.nanoTime();
+        drainSpill();
+        for (Recording recording : recordings.values()) {
+            Battle battle = recording.battle;
+            
+            // Player records go out before the frame that first references them
+            List<Player> players = new ArrayList<>();
+            List<Integer> indexes = new ArrayList<>();
+            for (UUID playerId : battle.getParticipants()) {
+                Player player = Bukkit.getPlayer(playerId);
+                if (player != null && player.isOnline() && !player.isDead()) {
+                    players.add(player);
+                    indexes.add(playerIndex(battle, recording, playerId));
+                }
+            }
+            
+            encoder.begin(recording.streamId, ReplayReader.POSITIONS);
+            encoder.putSignedVarint(recording.elapsed());
+            encoder.putVarint(players.size());
+            for (int i = 0; i < players.size(); i++) {
+                Location location = players.get(i).getLocation();
+                int index = indexes.get(i);
+                int x = (int) Math.round(location.getX() * ReplayReader.POSITION_SCALE);
+                int y = (int) Math.round(location.getY() * ReplayReader.POSITION_SCALE);
+                int z = (int) Math.round(location.getZ() * ReplayReader.POSITION_SCALE);
+                int[] last = recording.lastPositions.get(index);
+                
+                encoder.putVarint(index);
+                encoder.putSignedVarint(x - last[0]);
+                encoder.putSignedVarint(y - last[1]);
+                encoder.putSignedVarint(z - last[2]);
+                encoder.putByte((byte) Math.floorMod(Math.round(location.getYaw() * 256f / 360f), 256));
+                recording.pendingPositions.add(new int[] {index, x, y, z});
+            }
+            
+            // Only advance the baselines once the frame is actually queued
+            if (offer(encoder, recording)) {
+                for (int[] position : recording.pendingPositions) {
+                    int[] last = recording.lastPositions.get(position[0]);
+                    last[0] = position[1];
+                    last[1] = position[2];
+                    last[2] = position[3];
+                }
+            }
+            recording.pendingPositions.clear();
+        }
+        sampleTimer.record(System.nanoTime() - start);
+    }
+    
+    private int playerIndex(Battle battle, Recording recording, UUID playerId) {
+        Integer index = recording.playerIndexes.get(playerId);
+        if (index != null) {
+            return index;
+        }
+        
+        index = recording.lastPositions.size();
+        recording.playerIndexes.put(playerId, index);
+        recording.lastPositions.add(new int[3]);
+        
+        playerEncoder.begin(recording.streamId, ReplayReader.PLAYER);
+        playerEncoder.putVarint(index);
+        playerEncoder.putLong(playerId.getMostSignificantBits());
+        playerEncoder.putLong(playerId.getLeastSignificantBits());
+        String clanTag = battle.getPlayerClanTag(playerId);
+        playerEncoder.putString(clanTag != null ? clanTag : "");
+        offer(playerEncoder, null);
+        return index;
+    }
+    
+    // Queues the encoded record, returns false if it was dropped. Timed records pass their
+    // recording, whose clock only moves on once they are queued, so the next delta still
+    // covers a dropped record's time.
+    // While structural records are spilled everything after them waits or is dropped, which
+    // keeps every stream in order.
+    private boolean offer(Encoder source, Recording recording) {
+        int limit = source.type == ReplayReader.POSITIONS ? ring.capacity() - ring.capacity() / POSITION_HEADROOM : ring.capacity();
+        if (drainSpill() && ring.offer(source.data, source.length, limit)) {
+            LockSupport.unpark(writer);
+        } else if (source.isStructural()) {
+            spill.add(Arrays.copyOf(source.data, source.length));
+        } else {
+            dropped.increment();
+            return false;
+        }
+        if (recording != null) {
+            recording.advanceClock();
+        }
+        return true;
+    }
+    
+    // Moves spilled entries into the ring in order, true once the spill is empty
+    private boolean drainSpill() {
+        while (!spill.isEmpty()) {
+            byte[] entry = spill.peek();
+            if (!ring.offer(entry, entry.length, ring.capacity())) {
+                return false;
+            }
+            spill.poll();
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+    
+    private void writeLoop() {
+        Map<Integer, DataOutputStream> streams = new HashMap<>();
+        byte[] entry = new byte[1024];
+        
+        while (true) {
+            int length = ring.poll(entry);
+            if (length > entry.length) {
+                entry = new byte[Integer.highestOneBit(length) << 1];
+                continue; // Left in the ring, polled again with the bigger array
+            }
+            if (length < 0) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(WRITER_IDLE_NANOS);
+                continue;
+            }
+            
+            // Entry is the stream ID followed by the record
+            int streamId = 0;
+            int offset = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = entry[offset++];
+                streamId |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            
+            boolean end = entry[offset] == ReplayReader.END;
+            try {
+                DataOutputStream out = streams.get(streamId);
+                if (out == null) {
+                    out = open(streamNames.get(streamId));
+                    streams.put(streamId, out);
+                }
+                writeVarint(out, length - offset);
+                out.write(entry, offset, length - offset);
+                bytesWritten.add(length - offset);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Error writing replay " + streamNames.get(streamId), e);
+            }
+            
+            // Finish the GZIP stream and forget the name even when the write failed
+            if (end) {
+                DataOutputStream out = streams.remove(streamId);
+                try {
+                    if (out != null) {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Error closing replay " + streamNames.get(streamId), e);
+                }
+                streamNames.remove(streamId);
+            }
+        }
+        
+        for (DataOutputStream out : streams.values()) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Error closing replay file", e);
+            }
+        }
+    }
+    
+    private DataOutputStream open(String name) throws IOException {
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+            new BufferedOutputStream(new FileOutputStream(new File(directory, name))), 8192));
+        out.writeInt(ReplayReader.MAGIC);
+        out.writeInt(ReplayReader.VERSION);
+        return out;
+    }
+    
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    private static class Recording {
+        private final Battle battle;
+        private final int streamId;
+        private final Map<UUID, Integer> playerIndexes;
+        private final List<int[]> lastPositions; // player index -> last written x, y, z
+        private final List<int[]> pendingPositions;
+        private long lastTime;
+        private long pendingTime;
+        
+        Recording(Battle battle, int streamId) {
+            this.battle = battle;
+            this.streamId = streamId;
+            this.playerIndexes = new HashMap<>();
+            this.lastPositions = new ArrayList<>();
+            this.pendingPositions = new ArrayList<>();
+            this.lastTime = System.currentTimeMillis();
+            this.pendingTime = lastTime;
+        }
+        
+        // Milliseconds since the previous queued record of this battle
+        int elapsed() {
+            pendingTime = System.currentTimeMillis();
+            return (int) (pendingTime - lastTime);
+        }
+        
+        // The record that took the elapsed time was queued
+        void advanceClock() {
+            lastTime = pendingTime;
+        }
+    }
+    
+    // Builds one ring entry: stream ID, record type, fields
+    private static class Encoder {
+        private byte[] data = new byte[1024];
+        private int length;
+        private byte type;
+        
+        void begin(int streamId, byte type) {
+            this.type = type;
+            length = 0;
+            putVarint(streamId);
+            putByte(type);
+        }
+        
+        // Records a replay cannot be read without
+        boolean isStructural() {
+            return type == ReplayReader.BATTLE || type == ReplayReader.PLAYER || type == ReplayReader.END;
+        }
+        
+        void putByte(byte value) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[length++] = value;
+        }
+        
+        void putVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                putByte((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            putByte((byte) value);
+        }
+        
+        // Zigzag, small negative deltas stay small
+        void putSignedVarint(int value) {
+            putVarint((value << 1) ^ (value >> 31));
+        }
+        
+        void putLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                putByte((byte) (value >>> shift));
+            }
+        }
+        
+        void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putVarint(bytes.length);
+            for (byte b : bytes) {
+                putByte(b);
+            }
+        }
+    }
+    
+    // Single producer, single consumer ring of length-prefixed entries. The producer
+    // publishes with the volatile tail, the consumer frees space with the volatile head.
+    private static class ByteRing {
+        private final byte[] buffer;
+        private final int mask;
+        private volatile long head;
+        private volatile long tail;
+        
+        ByteRing(int capacity) {
+            this.buffer = new byte[capacity];
+            this.mask = capacity - 1;
+        }
+        
+        int capacity() {
+            return buffer.length;
+        }
+        
+        long size() {
+            return tail - head;
+        }
+        
+        // Main thread, fails instead of waiting when the entry would pass the limit
+        boolean offer(byte[] data, int length, int limit) {
+            long position = tail;
+            if (position - head + 4 + length > limit) {
+                return false;
+            }
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[(int) (position++ & mask)] = (byte) (length >>> shift);
+            }
+            for (int i = 0; i < length; i++) {
+                buffer[(int) (position++ & mask)] = data[i];
+            }
+            tail = position;
+            return true;
+        }
+        
+        // Writer thread, returns the entry length or -1 when empty. An entry larger than
+        // the target is left in place and its length returned.
+        int poll(byte[] target) {
+            long position = head;
+            if (position == tail) {
+                return -1;
+            }
+            int length = 0;
+            for (int i = 0; i < 4; i++) {
+                length = (length << 8) | (buffer[(int) (position++ & mask)] & 0xFF);
+            }
+            if (length > target.length) {
+                return length;
+            }
+            for (int i = 0; i < length; i++) {
+                target[i] = buffer[(int) (position++ & mask)];
+            }
+            head = position;
+            return length;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,252 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.models.BattleGameMode;
+import com.minecraft.clanwars.models.BattleStatus;
+import com.minecraft.clanwars.utils.ClanTags;
+import com.minecraft.clanwars.utils.Config;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.logging.Level;
+
+// Battle rewards as rows in reward_ledger, one per battle and player. Entitlements are written
+// in one batch when a battle ends; (battle_id, player_uuid) is the key, so writing them twice
+// changes nothing. Delivery claims a player's open rows with a unique token, then marks the rows
+// holding that token delivered and only grants if that update hit them. A claim that timed out and
+// was taken over by another node or join no longer matches its token, so a row is handed out once
+// at most. Players who were offline get their rewards the next time they join.
+public class RewardLedger {
+    public static final String WINNER = "WINNER";
+    public static final String PARTICIPATION = "PARTICIPATION";
+    private static final int RECENT_BATTLES = 32;
+    
+    private final ClanWarsPlugin plugin;
+    private final Set<UUID> delivering;
+    private final Map<String, Battle> recentBattles; // battle ID -> ended battle, skips a reload
+    
+    public RewardLedger(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.delivering = Collections.synchronizedSet(new HashSet<>());
+        this.recentBattles = Collections.synchronizedMap(new LinkedHashMap<String, Battle>(RECENT_BATTLES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Battle> eldest) {
+                return size() > RECENT_BATTLES;
+            }
+        });
+    }
+    
+    // Writes the battle's entitlements off the main thread, then pays the players still online
+    public void recordEntitlements(Battle battle) {
+        recentBattles.put(battle.getId(), battle);
+        
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.run(() -> writeEntitlements(battle)), ignored -> {
+            for (UUID playerId : battle.getParticipants()) {
+                Player player = Bukkit.getPlayer(playerId);
+                if (player != null && player.isOnline()) {
+                    deliver(player);
+                }
+            }
+        }, error -> plugin.getLogger().log(Level.SEVERE, "Error recording rewards for battle " + battle.getId(), error));
+    }
+    
+    private void writeEntitlements(Battle battle) throws SQLException {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            PreparedStatement ps = conn.prepareStatement(
+                "INSERT IGNORE INTO reward_ledger (battle_id, player_uuid, clan_tag, reward_type, created_at) VALUES (?, ?, ?, ?, ?)");
+            long now = System.currentTimeMillis();
+            for (UUID playerId : battle.getParticipants()) {
+                String clanTag = battle.getPlayerClanTag(playerId);
+                ps.setString(1, battle.getId());
+                ps.setString(2, playerId.toString());
+                ps.setString(3, clanTag);
+                ps.setString(4, clanTag.equals(battle.getWinnerTag()) ? WINNER : PARTICIPATION);
+                ps.setLong(5, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ps.close();
+        }
+    }
+    
+    // Claims and grants everything still owed to the player, called on join and after battles
+    public void deliver(Player player) {
+        UUID playerId = player.getUniqueId();
+        if (!delivering.add(playerId)) {
+            return;
+        }
+        
+        IOExecutor io = plugin.getIOExecutor();
+        String claimToken = plugin.getIdGenerator().next();
+        io.thenSync(io.supply(() -> claim(playerId, claimToken)), rewards -> {
+            if (rewards.isEmpty()) {
+                delivering.remove(playerId);
+                return;
+            }
+            // All of a player's rewards are granted in one main-thread task
+            plugin.getTickScheduler().submit(TickScheduler.Priority.NORMAL, () -> grant(playerId, claimToken, rewards));
+        }, error -> {
+            delivering.remove(playerId);
+            plugin.getLogger().log(Level.SEVERE, "Error claiming rewards for " + player.getName(), error);
+        });
+    }
+    
+    private List<Reward> claim(UUID playerId, String claimToken) throws SQLException {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            long now = System.currentTimeMillis();
+            
+            // Claims that never got delivered, e.g. the server died while granting, are reopened
+            PreparedStatement ps = conn.prepareStatement(
+                "UPDATE reward_ledger SET claim_token = ?, claimed_at = ? WHERE player_uuid = ? AND delivered_at IS NULL " +
+                "AND (claim_token IS NULL OR claimed_at < ?)");
+            ps.setString(1, claimToken);
+            ps.setLong(2, now);
+            ps.setString(3, playerId.toString());
+            ps.setLong(4, now - Config.REWARD_CLAIM_TIMEOUT_SECONDS * 1000L);
+            int claimed = ps.executeUpdate();
+            ps.close();
+            if (claimed == 0) {
+                return Collections.emptyList();
+            }
+            
+            ps = conn.prepareStatement("SELECT battle_id, clan_tag, reward_type FROM reward_ledger WHERE claim_token = ?");
+            ps.setString(1, claimToken);
+            ResultSet rs = ps.executeQuery();
+            List<Reward> rewards = new ArrayList<>();
+            while (rs.next()) {
+                rewards.add(new Reward(rs.getString("battle_id"), ClanTags.canonical(rs.getString("clan_tag")), rs.getString("reward_type")));
+            }
+            rs.close();
+            ps.close();
+            
+            for (Reward reward : rewards) {
+                reward.battle = recentBattles.get(reward.battleId);
+                if (reward.battle == null) {
+                    reward.battle = loadBattle(conn, reward.battleId);
+                    reward.battle.addParticipant(playerId, reward.clanTag);
+                }
+            }
+            return rewards;
+        }
+    }
+    
+    private Battle loadBattle(Connection conn, String battleId) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "SELECT id, clan1_tag, clan2_tag, game_mode, arena_id, start_time, end_time, winner_tag, team1_score, team2_score " +
+            "FROM battles WHERE id = ?");
+        ps.setString(1, battleId);
+        ResultSet rs = ps.executeQuery();
+        if (!rs.next()) {
+            rs.close();
+            ps.close();
+            throw new SQLException("Battle " + battleId + " in the reward ledger does not exist");
+        }
+        
+        Battle battle = new Battle(rs.getString("id"), ClanTags.canonical(rs.getString("clan1_tag")), ClanTags.canonical(rs.getString("clan2_tag")),
+            BattleGameMode.canonicalName(rs.getString("game_mode")), rs.getString("arena_id"), rs.getLong("start_time"));
+        battle.setStatus(BattleStatus.ENDED);
+        battle.setEndTime(rs.getLong("end_time"));
+        battle.setWinnerTag(ClanTags.canonical(rs.getString("winner_tag")));
+        battle.setTeam1Score(rs.getInt("team1_score"));
+        battle.setTeam2Score(rs.getInt("team2_score"));
+        rs.close();
+        ps.close();
+        return battle;
+    }
+    
+    private void grant(UUID playerId, String claimToken, List<Reward> rewards) {
+        Player player = Bukkit.getPlayer(playerId);
+        if (player == null || !player.isOnline()) {
+            // The claim expires and the rewards wait for the next join
+            delivering.remove(playerId);
+            return;
+        }
+        
+        // Rows are marked before anything is given. A claim covers all of the player's open rows at
+        // once, so the update hits all of them or, when the claim was taken over, none
+        IOExecutor io = plugin.getIOExecutor();
+        io.thenSync(io.supply(() -> markDelivered(claimToken)), marked -> {
+            if (marked == 0) {
+                delivering.remove(playerId);
+                plugin.getLogger().info("Reward claim " + claimToken + " for " + playerId + " was taken over, not granting it");
+                return;
+            }
+            giveRewards(playerId, claimToken, rewards);
+        }, error -> {
+            delivering.remove(playerId);
+            plugin.getLogger().log(Level.SEVERE, "Error marking rewards delivered for " + playerId, error);
+        });
+    }
+    
+    private int markDelivered(String claimToken) throws SQLException {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            PreparedStatement ps = conn.prepareStatement(
+                "UPDATE reward_ledger SET delivered_at = ? WHERE claim_token = ? AND delivered_at IS NULL");
+            ps.setLong(1, System.currentTimeMillis());
+            ps.setString(2, claimToken);
+            int marked = ps.executeUpdate();
+            ps.close();
+            return marked;
+        }
+    }
+    
+    private void giveRewards(UUID playerId, String claimToken, List<Reward> rewards) {
+        Player player = Bukkit.getPlayer(playerId);
+        if (player == null || !player.isOnline()) {
+            // Left while the rows were being marked, hand them back for the next join
+            reopen(playerId, claimToken);
+            return;
+        }
+        
+        RewardManager rewardManager = plugin.getRewardManager();
+        for (Reward reward : rewards) {
+            if (WINNER.equals(reward.type)) {
+                rewardManager.giveWinnerRewards(player, reward.battle);
+            } else {
+                rewardManager.giveParticipationRewards(player, reward.battle);
+            }
+        }
+        player.sendMessage(ChatColor.GOLD + "You received rewards for " + rewards.size() + (rewards.size() == 1 ? " battle." : " battles."));
+        plugin.getMetricsManager().counter("rewards_delivered").add(rewards.size());
+        delivering.remove(playerId);
+    }
+    
+    private void reopen(UUID playerId, String claimToken) {
+        IOExecutor io = plugin.getIOExecutor();
+        io.run(() -> {
+            try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+                PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE reward_ledger SET delivered_at = NULL, claim_token = NULL, claimed_at = NULL WHERE claim_token = ?");
+                ps.setString(1, claimToken);
+                ps.executeUpdate();
+                ps.close();
+            }
+        }).whenComplete((ignored, error) -> {
+            delivering.remove(playerId);
+            if (error != null) {
+                plugin.getLogger().log(Level.SEVERE, "Error reopening rewards for " + playerId, error);
+            }
+        });
+    }
+    
+    private static class Reward {
+        private final String battleId;
+        private final String clanTag;
+        private final String type;
+        private Battle battle;
+        
+        private Reward(String battleId, String clanTag, String type) {
+            this.battleId = battleId;
+            this.clanTag = clanTag;
+            this.type = type;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,288 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.BattleRequest;
+import com.minecraft.clanwars.models.BattleRequestStatus;
+import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.IntervalTree;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.logging.Level;
+
+// Bookings as time intervals: one tree per clan for pending and approved requests, one for
+// the approved and started battles that hold an arena, and one over every open request for
+// "who is busy then" questions. BattleManager keeps it in step with its request cache, so
+// conflict checks stay O(log n) however many future battles are booked. Arenas are one pool
+// shared by every mode they offer, so a multi-mode arena holds one battle at a time.
+public class ScheduleIndex {
+    private static final int MAX_SUGGESTION_STEPS = 7 * 24 * 4; // a week each way with 15 minute slots
+    
+    private final ClanWarsPlugin plugin;
+    private final Map<String, IntervalTree<String>> clanBookings; // clan tag -> request IDs
+    private final IntervalTree<String> arenaBookings; // request IDs of battles holding an arena
+    private final IntervalTree<BattleRequest> openRequests;
+    private final Map<String, Booking> bookings; // request ID -> indexed booking
+    private final List<Set<String>> arenaModes; // game modes of each enabled arena
+    
+    public ScheduleIndex(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.clanBookings = new HashMap<>();
+        this.arenaBookings = new IntervalTree<>();
+        this.openRequests = new IntervalTree<>();
+        this.bookings = new HashMap<>();
+        this.arenaModes = new ArrayList<>();
+        plugin.getMetricsManager().gauge("schedule_bookings", this::size);
+    }
+    
+    public void loadArenaCapacity() {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            PreparedStatement ps = conn.prepareStatement("SELECT game_modes FROM arenas WHERE enabled = ?");
+            ps.setBoolean(1, true);
+            ResultSet rs = ps.executeQuery();
+            
+            synchronized (this) {
+                arenaModes.clear();
+                while (rs.next()) {
+                    String gameModes = rs.getString("game_modes");
+                    if (gameModes == null) {
+                        continue;
+                    }
+                    Set<String> modes = new HashSet<>();
+                    for (String gameMode : gameModes.split(",")) {
+                        modes.add(gameMode.trim().toUpperCase(Locale.ROOT));
+                    }
+                    arenaModes.add(modes);
+                }
+            }
+            rs.close();
+            ps.close();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error loading arena capacity from database", e);
+        }
+    }
+    
+    public static long battleLength() {
+        return Config.BATTLE_COUNTDOWN_SECONDS * 1000L + Config.BATTLE_DURATION_MINUTES * 60L * 1000L;
+    }
+    
+    // Re-indexes a request after it was added or its status changed
+    public synchronized void update(BattleRequest request) {
+        remove(request.getId());
+        
+        BattleRequestStatus status = request.getStatus();
+        boolean open = status == BattleRequestStatus.PENDING || status == BattleRequestStatus.APPROVED;
+        boolean holdsArena = status == BattleRequestStatus.APPROVED || status == BattleRequestStatus.STARTED;
+        if (!open && !holdsArena) {
+            return;
+        }
+        
+        long start = request.getScheduledTime();
+        long end = start + battleLength();
+        if (end <= System.currentTimeMillis()) {
+            return;
+        }
+        Booking booking = new Booking(request, start, end, open, holdsArena);
+        if (open) {
+            clanTree(request.getClan1Tag()).insert(start, end, request.getId());
+            clanTree(request.getClan2Tag()).insert(start, end, request.getId());
+            openRequests.insert(start, end, request);
+        }
+        if (holdsArena) {
+            arenaBookings.insert(start, end, request.getId());
+        }
+        bookings.put(request.getId(), booking);
+    }
+    
+    public synchronized void remove(String requestId) {
+        Booking booking = bookings.remove(requestId);
+        if (booking == null) {
+            return;
+        }
+        BattleRequest request = booking.request;
+        if (booking.open) {
+            removeFromClan(request.getClan1Tag(), booking);
+            removeFromClan(request.getClan2Tag(), booking);
+            openRequests.remove(booking.start, booking.end, request);
+        }
+        if (booking.holdsArena) {
+            arenaBookings.remove(booking.start, booking.end, requestId);
+        }
+    }
+    
+    // Open requests of either clan overlapping a battle starting at the given time
+    public synchronized List<String> findClanConflicts(String clan1Tag, String clan2Tag, long scheduledTime) {
+        long end = scheduledTime + battleLength();
+        Set<String> conflicts = new LinkedHashSet<>();
+        for (String clanTag : new String[] {clan1Tag, clan2Tag}) {
+            IntervalTree<String> tree = clanBookings.get(clanTag);
+            if (tree != null) {
+                for (IntervalTree.Interval<String> interval : tree.overlapping(scheduledTime, end)) {
+                    conflicts.add(interval.getValue());
+                }
+            }
+        }
+        return new ArrayList<>(conflicts);
+    }
+    
+    public synchronized Set<String> getClansBookedAt(long scheduledTime) {
+        Set<String> bookedClans = new HashSet<>();
+        for (IntervalTree.Interval<BattleRequest> interval : openRequests.overlapping(scheduledTime, scheduledTime + battleLength())) {
+            bookedClans.add(interval.getValue().getClan1Tag());
+            bookedClans.add(interval.getValue().getClan2Tag());
+        }
+        return bookedClans;
+    }
+    
+    // Whether one more battle of this mode fits at the given time, ignoring the request
+    // itself so approving an already counted booking is not rejected by its own interval.
+    // It fits if at every moment of the slot each running battle, the new one included, can
+    // have an arena of its own that offers its mode.
+    public synchronized boolean hasArenaCapacity(String gameMode, long scheduledTime, String ignoredRequestId) {
+        if (arenaModes.isEmpty()) {
+            // Capacity could not be loaded at all
+            return true;
+        }
+        if (arenaModes.stream().noneMatch(modes -> modes.contains(gameMode))) {
+            return false;
+        }
+        
+        long end = scheduledTime + battleLength();
+        List<IntervalTree.Interval<String>> overlapping = arenaBookings.overlapping(scheduledTime, end);
+        overlapping.removeIf(interval -> interval.getValue().equals(ignoredRequestId));
+        if (overlapping.isEmpty()) {
+            return true;
+        }
+        
+        // The set of running battles only grows when one starts, so those moments are the ones to check
+        List<Long> moments = new ArrayList<>();
+        moments.add(scheduledTime);
+        for (IntervalTree.Interval<String> interval : overlapping) {
+            if (interval.getStart() > scheduledTime && interval.getStart() < end) {
+                moments.add(interval.getStart());
+            }
+        }
+        for (long moment : moments) {
+            List<String> running = new ArrayList<>();
+            running.add(gameMode);
+            for (IntervalTree.Interval<String> interval : overlapping) {
+                // A battle ending at this moment has already freed its arena
+                Booking booking = bookings.get(interval.getValue());
+                if (booking != null && interval.getStart() <= moment && interval.getEnd() > moment) {
+                    running.add(booking.request.getGameMode());
+                }
+            }
+            if (running.size() > arenaModes.size() || !assignArenas(running)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Nearest start times, before or after the preferred one, where both clans are free and an
+    // arena of the mode is available
+    public synchronized List<Long> suggestSlots(String clan1Tag, String clan2Tag, String gameMode, long preferredTime, int limit) {
+        List<Long> slots = new ArrayList<>(limit);
+        long step = Math.max(1, Config.SCHEDULE_SLOT_MINUTES) * 60L * 1000L;
+        long earliest = System.currentTimeMillis();
+        
+        for (int i = 0; i <= MAX_SUGGESTION_STEPS && slots.size() < limit; i++) {
+            long later = preferredTime + i * step;
+            if (isFree(clan1Tag, clan2Tag, gameMode, later)) {
+                slots.add(later);
+            }
+            long earlier = preferredTime - i * step;
+            if (i > 0 && earlier >= earliest && slots.size() < limit && isFree(clan1Tag, clan2Tag, gameMode, earlier)) {
+                slots.add(earlier);
+            }
+        }
+        return slots;
+    }
+    
+    public synchronized int size() {
+        return bookings.size();
+    }
+    
+    // Drops bookings whose time has passed. Started battles keep theirs until cleanup, or a
+    // full battle length past the slot in case the battle ended without one, e.g. on a node
+    // that went away.
+    public synchronized int pruneExpired(long now) {
+        List<String> expired = new ArrayList<>();
+        for (Map.Entry<String, Booking> entry : bookings.entrySet()) {
+            Booking booking = entry.getValue();
+            long expiry = booking.open ? booking.end : booking.end + battleLength();
+            if (expiry <= now) {
+                expired.add(entry.getKey());
+            }
+        }
+        for (String requestId : expired) {
+            remove(requestId);
+        }
+        return expired.size();
+    }
+    
+    private boolean isFree(String clan1Tag, String clan2Tag, String gameMode, long scheduledTime) {
+        return findClanConflicts(clan1Tag, clan2Tag, scheduledTime).isEmpty() && hasArenaCapacity(gameMode, scheduledTime, null);
+    }
+    
+    // Whether every battle, given by its mode, gets a distinct arena offering that mode. A
+    // bipartite matching by augmenting paths, battles and arenas at one moment are a handful.
+    private boolean assignArenas(List<String> gameModes) {
+        int[] arenaBattle = new int[arenaModes.size()];
+        Arrays.fill(arenaBattle, -1);
+        for (int battle = 0; battle < gameModes.size(); battle++) {
+            if (!augment(battle, gameModes, arenaBattle, new boolean[arenaModes.size()])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean augment(int battle, List<String> gameModes, int[] arenaBattle, boolean[] visited) {
+        for (int arena = 0; arena < arenaModes.size(); arena++) {
+            if (visited[arena] || !arenaModes.get(arena).contains(gameModes.get(battle))) {
+                continue;
+            }
+            visited[arena] = true;
+            // Free arena, or its battle can move to another one
+            if (arenaBattle[arena] < 0 || augment(arenaBattle[arena], gameModes, arenaBattle, visited)) {
+                arenaBattle[arena] = battle;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private IntervalTree<String> clanTree(String clanTag) {
+        return clanBookings.computeIfAbsent(clanTag, tag -> new IntervalTree<>());
+    }
+    
+    private void removeFromClan(String clanTag, Booking booking) {
+        IntervalTree<String> tree = clanBookings.get(clanTag);
+        if (tree != null) {
+            tree.remove(booking.start, booking.end, booking.request.getId());
+            if (tree.size() == 0) {
+                clanBookings.remove(clanTag);
+            }
+        }
+    }
+    
+    private static class Booking {
+        private final BattleRequest request;
+        private final long start;
+        private final long end;
+        private final boolean open;
+        private final boolean holdsArena;
+        
+        private Booking(BattleRequest request, long start, long end, boolean open, boolean holdsArena) {
+            this.request = request;
+            this.start = start;
+            this.end = end;
+            this.open = open;
+            this.holdsArena = holdsArena;
+        }
+    }
+}
\ No newline at end of file
@@ -1,11 +1,14 @@
 package com.minecraft.clanwars.managers;
 
 import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Arena;
 import com.minecraft.clanwars.models.Battle;
 import com.minecraft.clanwars.models.BattleRequest;
 import com.minecraft.clanwars.models.BattleRequestStatus;
 import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.IdGenerator;
 import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.util.Calendar;
@@ -77,10 +80,15 @@ public class ScheduleManager {
         // Remove from scheduled starts
         scheduledStarts.remove(requestId);
         
+        // Only the node that wins the lease boots a server and starts the battle
+        plugin.getNodeCoordinator().acquire(requestId, () -> bootServerForBattle(requestId));
+    }
+    
+    private void bootServerForBattle(String requestId) {
         // Check if server is already running
         if (plugin.getServerManager().isServerRunning()) {
-            plugin.getLogger().info("Server is already running. Starting battle " + requestId);
-            startBattle(requestId);
+            plugin.getLogger().info("Server is already running. Starting battle " + requestId + " once it is ready");
+            startBattleWhenReady(requestId);
             return;
         }
         
@@ -90,38 +98,54 @@ public class ScheduleManager {
         if (success) {
             plugin.getLogger().info("Server started successfully for battle " + requestId);
             
-            // Schedule the battle to start after server is fully up
-            Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                startBattle(requestId);
-            }, 20 * 30); // 30 seconds delay to ensure server is ready
+            // Start the battle as soon as the server is actually ready instead of after a fixed delay
+            startBattleWhenReady(requestId);
         } else {
             plugin.getLogger().severe("Failed to start server for battle " + requestId);
         }
     }
     
-    private void startBattle(String requestId) {
+    private void startBattleWhenReady(String requestId) {
+        BattleRequest request = plugin.getBattleManager().getBattleRequest(requestId);
+        if (request == null) {
+            startBattle(requestId, null); // Reports the missing request and releases the lease
+            return;
+        }
+        plugin.getReadinessProbe().awaitBattleReady(request, arena -> startBattle(requestId, arena));
+    }
+    
+    private void startBattle(String requestId, Arena arena) {
         BattleManager battleManager = plugin.getBattleManager();
         BattleRequest request = battleManager.getBattleRequest(requestId);
         
+        if (!plugin.getNodeCoordinator().holdsLease(requestId)) {
+            plugin.getLogger().warning("Not starting battle " + requestId + ": another node took its lease over");
+            return;
+        }
         if (request == null || request.getStatus() != BattleRequestStatus.APPROVED) {
             plugin.getLogger().warning("Cannot start battle " + requestId + ": request not found or not approved");
+            plugin.getNodeCoordinator().release(requestId);
             return;
         }
         
         // Start the battle
-        Battle battle = battleManager.startBattle(requestId);
+        Battle battle = battleManager.startBattle(requestId, arena);
         
         if (battle == null) {
             plugin.getLogger().severe("Failed to start battle " + requestId);
+            plugin.getNodeCoordinator().release(requestId);
         } else {
             plugin.getLogger().info("Battle " + battle.getId() + " started successfully");
+            plugin.getNodeCoordinator().battleStarted(requestId, battle.getId());
         }
     }
     
     private void checkScheduledBattles() {
+        long start = System.nanoTime();
         try {
             long currentTime = System.currentTimeMillis();
             BattleManager battleManager = plugin.getBattleManager();
+            battleManager.getScheduleIndex().pruneExpired(currentTime);
             List<BattleRequest> pendingRequests = battleManager.getPendingBattleRequests();
             
             for (BattleRequest request : pendingRequests) {
@@ -151,22 +175,23 @@ public class ScheduleManager {
             }
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Error checking scheduled battles", e);
+        } finally {
+            plugin.getMetricsManager().record("schedule_check", start);
         }
     }
     
     private void notifyAdminsOfPendingBattle(BattleRequest request) {
         String message = String.format(
-            "§c[ClanWars] §ePending battle request needs approval: %s vs %s (Scheduled for: %s)",
+            "§c[ClanWars] §ePending battle request %s needs approval: %s vs %s (Scheduled for: %s)",
+            IdGenerator.shortForm(request.getId()),
             request.getClan1Tag(),
             request.getClan2Tag(),
             formatTime(request.getScheduledTime())
         );
         
-        Bukkit.getOnlinePlayers().forEach(player -> {
-            if (player.hasPermission("clanwars.admin")) {
-                player.sendMessage(message);
-            }
-        });
+        for (Player admin : plugin.getStaffCache().getOnlineAdmins()) {
+            admin.sendMessage(message);
+        }
     }
     
     private void autoDeclineBattle(BattleRequest request) {
@@ -184,7 +209,7 @@ public class ScheduleManager {
         }
     }
     
-    private String formatTime(long timestamp) {
+    static String formatTime(long timestamp) {
         Calendar cal = Calendar.getInstance();
         cal.setTimeInMillis(timestamp);
         return String.format(
@@ -0,0 +1,226 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+public class SchemaManager {
+    private final ClanWarsPlugin plugin;
+    private final List<Migration> migrations;
+    
+    public SchemaManager(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.migrations = new ArrayList<>();
+        
+        // Migrations are applied in order and must never be edited once released
+        register(1, "clan rating state",
+            "CREATE TABLE IF NOT EXISTS clan_ratings (" +
+            "clan_tag VARCHAR(32) NOT NULL PRIMARY KEY, " +
+            "rating DOUBLE NOT NULL, " +
+            "deviation DOUBLE NOT NULL, " +
+            "volatility DOUBLE NOT NULL)");
+        
+        register(2, "lifetime player and clan stats",
+            "CREATE TABLE IF NOT EXISTS player_lifetime_stats (" +
+            "player_uuid CHAR(36) NOT NULL PRIMARY KEY, " +
+            "kills INT NOT NULL DEFAULT 0, " +
+            "deaths INT NOT NULL DEFAULT 0, " +
+            "score INT NOT NULL DEFAULT 0, " +
+            "battles INT NOT NULL DEFAULT 0, " +
+            "wins INT NOT NULL DEFAULT 0)",
+            "CREATE TABLE IF NOT EXISTS clan_lifetime_stats (" +
+            "clan_tag VARCHAR(32) NOT NULL PRIMARY KEY, " +
+            "kills INT NOT NULL DEFAULT 0, " +
+            "deaths INT NOT NULL DEFAULT 0, " +
+            "score INT NOT NULL DEFAULT 0, " +
+            "battles INT NOT NULL DEFAULT 0, " +
+            "wins INT NOT NULL DEFAULT 0)",
+            // Backfill once from the per-battle rows, afterwards both tables are maintained incrementally
+            "INSERT INTO player_lifetime_stats (player_uuid, kills, deaths, score, battles, wins) " +
+            "SELECT player_uuid, SUM(kills), SUM(deaths), SUM(score), COUNT(*), SUM(winner) " +
+            "FROM player_battle_stats GROUP BY player_uuid",
+            "INSERT INTO clan_lifetime_stats (clan_tag, kills, deaths, score, battles, wins) " +
+            "SELECT clan_tag, SUM(kills), SUM(deaths), SUM(score), COUNT(DISTINCT battle_id), " +
+            "COUNT(DISTINCT CASE WHEN winner THEN battle_id END) " +
+            "FROM player_battle_stats GROUP BY clan_tag");
+        
+        register(3, "covering indexes for battle history",
+            "CREATE INDEX idx_battles_clan1_history ON battles " +
+            "(clan1_tag, start_time, id, status, clan2_tag, game_mode, end_time, winner_tag, team1_score, team2_score)",
+            "CREATE INDEX idx_battles_clan2_history ON battles " +
+            "(clan2_tag, start_time, id, status, clan1_tag, game_mode, end_time, winner_tag, team1_score, team2_score)",
+            "CREATE INDEX idx_player_stats_history ON player_battle_stats " +
+            "(player_uuid, battle_id, clan_tag, kills, deaths, score, winner)");
+        
+        register(4, "battle server fleet coordination",
+            "CREATE TABLE IF NOT EXISTS cw_nodes (" +
+            "node_id VARCHAR(64) NOT NULL PRIMARY KEY, " +
+            "active_battles INT NOT NULL DEFAULT 0, " +
+            "heartbeat_time BIGINT NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS battle_leases (" +
+            "request_id VARCHAR(64) NOT NULL PRIMARY KEY, " +
+            "node_id VARCHAR(64) NOT NULL, " +
+            "battle_id VARCHAR(64) NULL, " +
+            "expires_at BIGINT NOT NULL, " +
+            "finished_time BIGINT NULL)",
+            "CREATE INDEX idx_battle_leases_expiry ON battle_leases (finished_time, expires_at)");
+        
+        register(5, "cross-node change feed",
+            "CREATE TABLE IF NOT EXISTS cw_changelog (" +
+            "seq BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+            "entity_type VARCHAR(16) NOT NULL, " +
+            "entity_key VARCHAR(64) NOT NULL, " +
+            "origin_node VARCHAR(64) NOT NULL, " +
+            "created_at BIGINT NOT NULL)",
+            "CREATE INDEX idx_changelog_created ON cw_changelog (created_at)");
+        
+        register(6, "room for time-ordered battle and request IDs",
+            "ALTER TABLE battle_requests MODIFY id VARCHAR(32) NOT NULL",
+            "ALTER TABLE battles MODIFY id VARCHAR(32) NOT NULL",
+            "ALTER TABLE battles MODIFY request_id VARCHAR(32) NOT NULL",
+            "ALTER TABLE player_battle_stats MODIFY battle_id VARCHAR(32) NOT NULL");
+        
+        register(7, "reward ledger",
+            "CREATE TABLE IF NOT EXISTS reward_ledger (" +
+            "battle_id VARCHAR(32) NOT NULL, " +
+            "player_uuid CHAR(36) NOT NULL, " +
+            "clan_tag VARCHAR(32) NOT NULL, " +
+            "reward_type VARCHAR(16) NOT NULL, " +
+            "created_at BIGINT NOT NULL, " +
+            "claim_token VARCHAR(32) NULL, " +
+            "claimed_at BIGINT NULL, " +
+            "delivered_at BIGINT NULL, " +
+            "PRIMARY KEY (battle_id, player_uuid))",
+            "CREATE INDEX idx_reward_ledger_open ON reward_ledger (player_uuid, delivered_at)",
+            "CREATE INDEX idx_reward_ledger_claim ON reward_ledger (claim_token)");
+        
+        register(8, "battle archive catalog and rollups",
+            "CREATE TABLE IF NOT EXISTS archive_segments (" +
+            "file_name VARCHAR(64) NOT NULL PRIMARY KEY, " +
+            "kind VARCHAR(16) NOT NULL, " +
+            "row_count INT NOT NULL, " +
+            "min_time BIGINT NOT NULL, " +
+            "max_time BIGINT NOT NULL, " +
+            "created_at BIGINT NOT NULL, " +
+            "completed_at BIGINT NULL)",
+            // One row per clan, opponent and segment, so rolling a segment up twice is harmless
+            "CREATE TABLE IF NOT EXISTS archived_matchups (" +
+            "clan_tag VARCHAR(32) NOT NULL, " +
+            "opponent_tag VARCHAR(32) NOT NULL, " +
+            "segment_name VARCHAR(64) NOT NULL, " +
+            "battles INT NOT NULL, " +
+            "wins INT NOT NULL, " +
+            "PRIMARY KEY (clan_tag, opponent_tag, segment_name))",
+            "CREATE INDEX idx_battles_archive ON battles (status, start_time)",
+            "CREATE INDEX idx_battle_requests_archive ON battle_requests (status, scheduled_time)");
+        
+        // Battle IDs from before the time-ordered generator do not sort by time, player history pages on start time instead
+        register(9, "player history keyed by battle start time",
+            "ALTER TABLE player_battle_stats ADD COLUMN start_time BIGINT NOT NULL DEFAULT 0",
+            "UPDATE player_battle_stats s JOIN battles b ON b.id = s.battle_id SET s.start_time = b.start_time",
+            "CREATE INDEX idx_player_stats_timeline ON player_battle_stats " +
+            "(player_uuid, start_time, battle_id, clan_tag, kills, deaths, score, winner)",
+            "DROP INDEX idx_player_stats_history ON player_battle_stats");
+        
+        // The clan reload reads these, and the version lets a node tell whether a reload is newer than what it has
+        register(10, "clan rows and members for cross-node reloads",
+            "CREATE TABLE IF NOT EXISTS clans (" +
+            "tag VARCHAR(32) NOT NULL PRIMARY KEY, " +
+            "name VARCHAR(64) NOT NULL, " +
+            "leader_uuid CHAR(36) NOT NULL, " +
+            "rating INT NOT NULL DEFAULT 0, " +
+            "wins INT NOT NULL DEFAULT 0, " +
+            "losses INT NOT NULL DEFAULT 0)",
+            "ALTER TABLE clans ADD COLUMN version BIGINT NOT NULL DEFAULT 0",
+            "CREATE TABLE IF NOT EXISTS clan_members (" +
+            "clan_tag VARCHAR(32) NOT NULL, " +
+            "player_uuid CHAR(36) NOT NULL, " +
+            "role VARCHAR(16) NOT NULL, " +
+            "PRIMARY KEY (clan_tag, player_uuid))",
+            "CREATE INDEX idx_clan_members_player ON clan_members (player_uuid)");
+        
+        // IdGenerator node numbers, claimed by each node on startup so two live nodes never share one
+        register(11, "unique node numbers",
+            "ALTER TABLE cw_nodes ADD COLUMN node_number INT NULL",
+            "CREATE UNIQUE INDEX idx_cw_nodes_number ON cw_nodes (node_number)");
+        
+        // A single row, whichever node holds it runs the archiver
+        register(12, "archive lease",
+            "CREATE TABLE IF NOT EXISTS archive_lease (" +
+            "name VARCHAR(32) NOT NULL PRIMARY KEY, " +
+            "node_id VARCHAR(64) NOT NULL, " +
+            "expires_at BIGINT NOT NULL)");
+        
+        // One stats row per player and battle, so a repeated save is ignored. Rows are copied
+        // through a keyed table because earlier recoveries may have stored duplicates.
+        register(13, "unique player battle stats",
+            "CREATE TABLE player_battle_stats_unique LIKE player_battle_stats",
+            "ALTER TABLE player_battle_stats_unique ADD UNIQUE KEY uk_player_battle (battle_id, player_uuid)",
+            "INSERT IGNORE INTO player_battle_stats_unique SELECT * FROM player_battle_stats",
+            "RENAME TABLE player_battle_stats TO player_battle_stats_old, player_battle_stats_unique TO player_battle_stats",
+            "DROP TABLE player_battle_stats_old");
+    }
+    
+    private void register(int version, String description, String... statements) {
+        migrations.add(new Migration(version, description, statements));
+    }
+    
+    public boolean migrate() {
+        try (Connection conn = plugin.getMetricsManager().instrument(plugin.getDatabaseManager().getConnection())) {
+            Statement statement = conn.createStatement();
+            statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS cw_schema_version (" +
+                "version INT NOT NULL PRIMARY KEY, " +
+                "description VARCHAR(128) NOT NULL, " +
+                "applied_time BIGINT NOT NULL)");
+            
+            ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM cw_schema_version");
+            int currentVersion = rs.next() ? rs.getInt(1) : 0;
+            rs.close();
+            
+            for (Migration migration : migrations) {
+                if (migration.version <= currentVersion) {
+                    continue;
+                }
+                
+                for (String sql : migration.statements) {
+                    statement.executeUpdate(sql);
+                }
+                
+                PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO cw_schema_version (version, description, applied_time) VALUES (?, ?, ?)");
+                ps.setInt(1, migration.version);
+                ps.setString(2, migration.description);
+                ps.setLong(3, System.currentTimeMillis());
+                ps.executeUpdate();
+                ps.close();
+                
+                plugin.getLogger().info("Applied database migration " + migration.version + ": " + migration.description);
+            }
+            statement.close();
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error applying database migrations", e);
+            return false;
+        }
+    }
+    
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final String[] statements;
+        
+        Migration(int version, String description, String[] statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,228 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.utils.Config;
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Spectators get their own, slower stream: the scoreboard refreshes every few seconds and
+// kills arrive as a summary instead of one message each. Past the per-battle cap players
+// only follow the battle, with the score in their action bar and the same summaries.
+public class SpectatorManager {
+    private static final int KILL_FEED_LINES = 3;
+    private static final int SAMPLE_SECONDS = 10;
+    
+    private final ClanWarsPlugin plugin;
+    private final Map<String, SpectatorFeed> feeds; // battle ID -> spectator stream
+    private final LongAdder outboundMessages;
+    private final LongAdder outboundBytes;
+    private final LongAdder scoreboardUpdates;
+    private long intervalBytes; // main thread only
+    
+    // Battles and feeds are only safe to walk on the main thread, so the metrics endpoint
+    // reads these samples instead
+    private final AtomicLong sampledSpectators;
+    private final AtomicLong sampledFollowers;
+    private final AtomicLong sampledBytesPerViewer;
+    
+    public SpectatorManager(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.feeds = new ConcurrentHashMap<>();
+        this.sampledSpectators = new AtomicLong();
+        this.sampledFollowers = new AtomicLong();
+        this.sampledBytesPerViewer = new AtomicLong();
+        
+        MetricsManager metrics = plugin.getMetricsManager();
+        this.outboundMessages = metrics.counter("spectator_messages");
+        this.outboundBytes = metrics.counter("spectator_bytes");
+        this.scoreboardUpdates = metrics.counter("spectator_scoreboard_updates");
+        metrics.gauge("spectators", sampledSpectators::get);
+        metrics.gauge("spectator_followers", sampledFollowers::get);
+        // Encoded bytes sent per viewer during the last sample interval
+        metrics.gauge("spectator_bytes_per_viewer", sampledBytesPerViewer::get);
+        
+        long period = 20L * SAMPLE_SECONDS;
+        Bukkit.getScheduler().runTaskTimer(plugin, this::sample, period, period);
+    }
+    
+    // Makes online non-participants spectators up to the cap, the rest follow the battle
+    public void addSpectators(Battle battle, Location spectatorSpawn) {
+        SpectatorFeed feed = feeds.computeIfAbsent(battle.getId(), id -> new SpectatorFeed());
+        int slots = Config.MAX_SPECTATORS_PER_BATTLE - battle.getSpectators().size();
+        
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (battle.isParticipant(player.getUniqueId()) || plugin.getStaffCache().isStaff(player)) {
+                continue;
+            }
+            
+            if (slots > 0) {
+                slots--;
+                player.setGameMode(GameMode.SPECTATOR);
+                player.teleport(spectatorSpawn);
+                player.sendMessage(ChatColor.GRAY + "You are now spectating the clan battle!");
+                
+                // Add to battle spectators
+                battle.addSpectator(player.getUniqueId());
+            } else {
+                feed.followers.add(player.getUniqueId());
+                player.sendMessage(ChatColor.GRAY + "The arena is full, you are following the clan battle from here.");
+            }
+        }
+    }
+    
+    public void start(Battle battle) {
+        SpectatorFeed feed = feeds.computeIfAbsent(battle.getId(), id -> new SpectatorFeed());
+        long period = 20L * Math.max(1, Config.SPECTATOR_SCOREBOARD_INTERVAL);
+        feed.task = Bukkit.getScheduler().runTaskTimer(plugin, () -> flush(battle, feed), 0L, period);
+    }
+    
+    // Sends what is still queued one last time and forgets the battle, followers get the
+    // final score here because the results broadcast only reaches the arena
+    public void stop(Battle battle) {
+        SpectatorFeed feed = feeds.get(battle.getId());
+        if (feed == null) {
+            return;
+        }
+        if (feed.task != null) {
+            feed.task.cancel();
+        }
+        sendKillFeed(battle, feed);
+        
+        String result = ChatColor.GOLD + "Battle over: " + battle.getClan1Tag() + " " + battle.getTeam1Score() +
+            " - " + battle.getTeam2Score() + " " + battle.getClan2Tag();
+        for (UUID followerId : feed.followers) {
+            send(Bukkit.getPlayer(followerId), result);
+        }
+        // Removed last, the final kill feed above reaches followers through it
+        feeds.remove(battle.getId());
+    }
+    
+    public void recordKill(Battle battle, String killerName, String victimName) {
+        SpectatorFeed feed = feeds.get(battle.getId());
+        if (feed != null) {
+            feed.kills.add(killerName + " killed " + victimName);
+        }
+    }
+    
+    // Announcements are rare, viewers get them right away
+    public void broadcast(Battle battle, String message) {
+        for (UUID spectatorId : battle.getSpectators()) {
+            send(Bukkit.getPlayer(spectatorId), message);
+        }
+        SpectatorFeed feed = feeds.get(battle.getId());
+        if (feed != null) {
+            for (UUID followerId : feed.followers) {
+                send(Bukkit.getPlayer(followerId), message);
+            }
+        }
+    }
+    
+    public boolean isFollowing(UUID playerId) {
+        for (SpectatorFeed feed : feeds.values()) {
+            if (feed.followers.contains(playerId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void flush(Battle battle, SpectatorFeed feed) {
+        BattleManager battleManager = plugin.getBattleManager();
+        for (UUID spectatorId : battle.getSpectators()) {
+            battleManager.queueScoreboardUpdate(spectatorId, battle);
+        }
+        scoreboardUpdates.add(battle.getSpectators().size());
+        
+        String score = ChatColor.GOLD + battle.getClan1Tag() + " " + battle.getTeam1Score() + ChatColor.GRAY + " - " +
+            ChatColor.GOLD + battle.getTeam2Score() + " " + battle.getClan2Tag() + ChatColor.GRAY + " | " + formatTime(battle.getTimeRemaining());
+        feed.followers.removeIf(followerId -> {
+            Player follower = Bukkit.getPlayer(followerId);
+            if (follower == null || !follower.isOnline()) {
+                return true;
+            }
+            follower.spigot().sendMessage(ChatMessageType.ACTION_BAR, TextComponent.fromLegacyText(score));
+            count(score);
+            return false;
+        });
+        
+        sendKillFeed(battle, feed);
+    }
+    
+    private void sendKillFeed(Battle battle, SpectatorFeed feed) {
+        if (feed.kills.isEmpty()) {
+            return;
+        }
+        
+        List<String> kills = new ArrayList<>(feed.kills);
+        feed.kills.clear();
+        StringBuilder summary = new StringBuilder(ChatColor.GRAY + "[Kill feed] " + ChatColor.YELLOW);
+        summary.append(String.join(", ", kills.subList(0, Math.min(KILL_FEED_LINES, kills.size()))));
+        if (kills.size() > KILL_FEED_LINES) {
+            summary.append(ChatColor.GRAY).append(" and ").append(kills.size() - KILL_FEED_LINES).append(" more");
+        }
+        broadcast(battle, summary.toString());
+    }
+    
+    private void send(Player player, String message) {
+        if (player != null && player.isOnline()) {
+            player.sendMessage(message);
+            count(message);
+        }
+    }
+    
+    private void count(String message) {
+        int bytes = message.getBytes(StandardCharsets.UTF_8).length;
+        outboundMessages.increment();
+        outboundBytes.add(bytes);
+        intervalBytes += bytes;
+    }
+    
+    private void sample() {
+        long spectators = countSpectators();
+        long followers = countFollowers();
+        long viewers = spectators + followers;
+        sampledSpectators.set(spectators);
+        sampledFollowers.set(followers);
+        sampledBytesPerViewer.set(viewers == 0 ? 0 : intervalBytes / viewers);
+        intervalBytes = 0;
+    }
+    
+    private long countSpectators() {
+        long count = 0;
+        for (Battle battle : plugin.getBattleManager().getActiveBattles().values()) {
+            count += battle.getSpectators().size();
+        }
+        return count;
+    }
+    
+    private long countFollowers() {
+        long count = 0;
+        for (SpectatorFeed feed : feeds.values()) {
+            count += feed.followers.size();
+        }
+        return count;
+    }
+    
+    private static String formatTime(long seconds) {
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+    
+    private static class SpectatorFeed {
+        private final Set<UUID> followers = ConcurrentHashMap.newKeySet();
+        private final List<String> kills = new ArrayList<>(); // main thread only
+        private BukkitTask task;
+    }
+}
\ No newline at end of file
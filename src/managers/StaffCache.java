@@ -0,0 +1,147 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.models.Battle;
+import com.minecraft.clanwars.utils.Config;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Online staff and admins, kept current by StaffListener so permission questions are set
+// lookups instead of hasPermission over every online player. Bukkit has no event for
+// permission changes, so online players are rechecked every few seconds as well.
+// When staff presence drops below the minimum, active battles pause after a grace period
+// and resume once enough staff is back.
+public class StaffCache {
+    public static final String STAFF_PERMISSION = "clanwars.staff";
+    public static final String ADMIN_PERMISSION = "clanwars.admin";
+    
+    private final ClanWarsPlugin plugin;
+    private final Set<UUID> staff;
+    private final Set<UUID> admins;
+    private BukkitTask resyncTask;
+    private BukkitTask absenceTask;
+    private boolean battlesPaused;
+    
+    public StaffCache(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.staff = ConcurrentHashMap.newKeySet();
+        this.admins = ConcurrentHashMap.newKeySet();
+        
+        MetricsManager metrics = plugin.getMetricsManager();
+        metrics.gauge("staff_online", staff::size);
+        metrics.gauge("admins_online", admins::size);
+    }
+    
+    public void startTasks() {
+        resync();
+        long period = 20L * Math.max(1, Config.STAFF_RESYNC_SECONDS);
+        resyncTask = Bukkit.getScheduler().runTaskTimer(plugin, this::resync, period, period);
+    }
+    
+    public void shutdown() {
+        if (resyncTask != null) {
+            resyncTask.cancel();
+        }
+        if (absenceTask != null) {
+            absenceTask.cancel();
+        }
+    }
+    
+    public void update(Player player) {
+        record(player);
+        checkPresence();
+    }
+    
+    private void record(Player player) {
+        UUID playerId = player.getUniqueId();
+        if (player.hasPermission(STAFF_PERMISSION)) {
+            staff.add(playerId);
+        } else {
+            staff.remove(playerId);
+        }
+        if (player.hasPermission(ADMIN_PERMISSION)) {
+            admins.add(playerId);
+        } else {
+            admins.remove(playerId);
+        }
+    }
+    
+    public void remove(Player player) {
+        staff.remove(player.getUniqueId());
+        admins.remove(player.getUniqueId());
+        checkPresence();
+    }
+    
+    public boolean isStaff(Player player) {
+        return staff.contains(player.getUniqueId());
+    }
+    
+    public boolean isStaffOnline() {
+        return staff.size() >= Math.max(1, Config.MINIMUM_STAFF);
+    }
+    
+    public boolean isAdminOnline() {
+        return !admins.isEmpty();
+    }
+    
+    public List<Player> getOnlineAdmins() {
+        List<Player> online = new ArrayList<>(admins.size());
+        for (UUID adminId : admins) {
+            Player admin = Bukkit.getPlayer(adminId);
+            if (admin != null) {
+                online.add(admin);
+            }
+        }
+        return online;
+    }
+    
+    private void resync() {
+        Set<UUID> online = new HashSet<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            online.add(player.getUniqueId());
+            record(player);
+        }
+        staff.retainAll(online);
+        admins.retainAll(online);
+        checkPresence();
+    }
+    
+    private void checkPresence() {
+        if (!Config.REQUIRE_STAFF_ONLINE) {
+            return;
+        }
+        
+        if (isStaffOnline()) {
+            if (absenceTask != null) {
+                absenceTask.cancel();
+                absenceTask = null;
+            }
+            if (battlesPaused) {
+                battlesPaused = false;
+                BattleManager battleManager = plugin.getBattleManager();
+                for (Battle battle : battleManager.getActiveBattles().values()) {
+                    battleManager.resumeBattle(battle);
+                }
+            }
+        } else if (!battlesPaused && absenceTask == null && plugin.getBattleManager().getActiveBattleCount() > 0) {
+            // Staff may only be reconnecting, give them a moment before stopping the fights
+            BattleManager battleManager = plugin.getBattleManager();
+            for (Battle battle : battleManager.getActiveBattles().values()) {
+                battleManager.broadcastToBattle(battle, ChatColor.RED + "No staff online, the battle pauses in " +
+                    Config.STAFF_ABSENCE_GRACE_SECONDS + " seconds.");
+            }
+            absenceTask = Bukkit.getScheduler().runTaskLater(plugin, () -> {
+                absenceTask = null;
+                battlesPaused = true;
+                for (Battle battle : battleManager.getActiveBattles().values()) {
+                    battleManager.pauseBattle(battle);
+                }
+            }, 20L * Config.STAFF_ABSENCE_GRACE_SECONDS);
+        }
+    }
+}
\ No newline at end of file
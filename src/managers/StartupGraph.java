@@ -0,0 +1,207 @@
+package com.minecraft.clanwars.managers;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Plugin startup as named steps that list the steps they need. Worker steps go to the IO
+// executor as soon as everything they need finished, so independent loads overlap; main
+// steps run on the enabling thread, the only one allowed to touch Bukkit. A failed step
+// skips everything that needs it and fails the startup. Afterwards every step's timing is
+// logged next to the total, which shows how much of the loading overlapped. run blocks the
+// enabling thread, so anything a step hands to the main thread, e.g. through
+// IOExecutor.thenSync or the scheduler, waits until the enable finished and the server ticks.
+// uses lists the steps whose managers a step calls into and fails fast unless each of them
+// finishes before it, so a getter that returns null during startup is caught at registration.
+public class StartupGraph {
+    private final Logger logger;
+    private final Map<String, Step> steps;
+    
+    public StartupGraph(Logger logger) {
+        this.logger = logger;
+        this.steps = new LinkedHashMap<>();
+    }
+    
+    public void worker(String name, IOExecutor.IORunnable action, String... dependencies) {
+        add(name, action, false, dependencies);
+    }
+    
+    public void main(String name, IOExecutor.IORunnable action, String... dependencies) {
+        add(name, action, true, dependencies);
+    }
+    
+    // Every provider must be a dependency of the step, directly or through other steps
+    public void uses(String name, String... providers) {
+        Step step = steps.get(name);
+        if (step == null) {
+            throw new IllegalArgumentException("Startup step " + name + " is not registered");
+        }
+        for (String provider : providers) {
+            if (!dependsOn(step, provider, new HashSet<>())) {
+                throw new IllegalArgumentException("Startup step " + name + " uses " + provider + " without depending on it");
+            }
+        }
+    }
+    
+    private static boolean dependsOn(Step step, String provider, Set<String> visited) {
+        for (Step dependency : step.dependencies) {
+            if (dependency.name.equals(provider)
+                || (visited.add(dependency.name) && dependsOn(dependency, provider, visited))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void add(String name, IOExecutor.IORunnable action, boolean onMain, String[] dependencies) {
+        if (steps.containsKey(name)) {
+            throw new IllegalArgumentException("Startup step " + name + " is already registered");
+        }
+        for (String dependency : dependencies) {
+            if (!steps.containsKey(dependency)) {
+                // Steps are registered after what they need, which also rules out cycles
+                throw new IllegalArgumentException("Startup step " + name + " needs unknown step " + dependency);
+            }
+        }
+        Step step = new Step(name, action, onMain, dependencies.length);
+        for (String dependency : dependencies) {
+            steps.get(dependency).dependents.add(step);
+            step.dependencies.add(steps.get(dependency));
+        }
+        steps.put(name, step);
+    }
+    
+    // Runs every step and blocks until all finished, returns false if any failed
+    public boolean run(IOExecutor io) {
+        long startTime = System.nanoTime();
+        BlockingQueue<Step> finished = new LinkedBlockingQueue<>();
+        Deque<Step> readyOnMain = new ArrayDeque<>();
+        int completed = 0;
+        boolean failed = false;
+        
+        for (Step step : steps.values()) {
+            if (step.remaining == 0) {
+                schedule(step, io, finished, readyOnMain);
+            }
+        }
+        
+        while (completed < steps.size()) {
+            Step step = readyOnMain.poll();
+            if (step != null) {
+                execute(step);
+            } else {
+                try {
+                    step = finished.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            
+            completed++;
+            if (step.error != null) {
+                failed = true;
+                logger.log(Level.SEVERE, "Startup step " + step.name + " failed", step.error);
+            }
+            for (Step dependent : step.dependents) {
+                if (step.error != null || step.skipped) {
+                    if (!dependent.skipped) {
+                        completed += skip(dependent);
+                    }
+                } else if (--dependent.remaining == 0 && !dependent.skipped) {
+                    schedule(dependent, io, finished, readyOnMain);
+                }
+            }
+        }
+        
+        report(System.nanoTime() - startTime, startTime);
+        return !failed;
+    }
+    
+    private void schedule(Step step, IOExecutor io, BlockingQueue<Step> finished, Deque<Step> readyOnMain) {
+        if (step.onMain) {
+            readyOnMain.add(step);
+        } else {
+            io.run(() -> execute(step)).whenComplete((ignored, error) -> finished.add(step));
+        }
+    }
+    
+    private static void execute(Step step) {
+        step.thread = Thread.currentThread().getName();
+        step.startedAt = System.nanoTime();
+        try {
+            step.action.run();
+        } catch (Throwable e) {
+            step.error = e;
+        }
+        step.endedAt = System.nanoTime();
+    }
+    
+    // Marks the step and everything needing it as skipped, returns how many were marked
+    private static int skip(Step step) {
+        step.skipped = true;
+        int count = 1;
+        for (Step dependent : step.dependents) {
+            if (!dependent.skipped) {
+                count += skip(dependent);
+            }
+        }
+        return count;
+    }
+    
+    private void report(long elapsed, long startTime) {
+        long busy = 0;
+        List<Step> ran = new ArrayList<>();
+        for (Step step : steps.values()) {
+            if (step.startedAt != 0) {
+                busy += step.endedAt - step.startedAt;
+                ran.add(step);
+            }
+        }
+        ran.sort(Comparator.comparingLong(step -> step.startedAt));
+        
+        StringBuilder report = new StringBuilder("Startup took " + millis(elapsed) + " ms for " + millis(busy) + " ms of work:");
+        for (Step step : ran) {
+            report.append("\n  ").append(step.name).append(": ").append(millis(step.endedAt - step.startedAt))
+                .append(" ms at +").append(millis(step.startedAt - startTime)).append(" ms on ").append(step.thread);
+            if (step.error != null) {
+                report.append(" (failed)");
+            }
+        }
+        for (Step step : steps.values()) {
+            if (step.skipped) {
+                report.append("\n  ").append(step.name).append(": skipped");
+            }
+        }
+        logger.info(report.toString());
+    }
+    
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+    
+    private static class Step {
+        private final String name;
+        private final IOExecutor.IORunnable action;
+        private final boolean onMain;
+        private final List<Step> dependents;
+        private final List<Step> dependencies;
+        private int remaining; // unfinished dependencies, main thread only
+        private boolean skipped;
+        private String thread;
+        private volatile long startedAt;
+        private volatile long endedAt;
+        private volatile Throwable error;
+        
+        private Step(String name, IOExecutor.IORunnable action, boolean onMain, int dependencies) {
+            this.name = name;
+            this.action = action;
+            this.onMain = onMain;
+            this.dependents = new ArrayList<>();
+            this.dependencies = new ArrayList<>();
+            this.remaining = dependencies;
+        }
+    }
+}
\ No newline at end of file
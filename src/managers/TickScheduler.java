@@ -0,0 +1,156 @@
+package com.minecraft.clanwars.managers;
+
+import com.minecraft.clanwars.ClanWarsPlugin;
+import com.minecraft.clanwars.utils.Config;
+import com.minecraft.clanwars.utils.LatencyHistogram;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+// Runs plugin work on the main thread within a per-tick time budget, work that does not fit
+// spills into following ticks. State changes that must not wait run directly, not through here.
+public class TickScheduler {
+    public enum Priority {
+        NORMAL,     // player-visible world changes, e.g. teleports and rewards
+        DEFERRABLE  // cosmetic work, e.g. scoreboards, broadcasts and reward messages
+    }
+    
+    // Share of the budget held back for deferrable work while normal work is queued
+    private static final double DEFERRABLE_SHARE = 0.25;
+    
+    private final ClanWarsPlugin plugin;
+    private final Map<Priority, Queue<Task>> queues;
+    private final Map<Object, Task> keyedTasks; // coalescing key -> pending task
+    private final LatencyHistogram drainTimer;
+    private final LongAdder spills;
+    private BukkitTask drainTask;
+    
+    public TickScheduler(ClanWarsPlugin plugin) {
+        this.plugin = plugin;
+        this.queues = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ConcurrentLinkedQueue<>());
+        }
+        this.keyedTasks = new ConcurrentHashMap<>();
+        
+        MetricsManager metrics = plugin.getMetricsManager();
+        this.drainTimer = metrics.timer("tick_drain");
+        this.spills = metrics.counter("tick_spills");
+        metrics.gauge("tick_queue_normal", () -> queues.get(Priority.NORMAL).size());
+        metrics.gauge("tick_queue_deferrable", () -> queues.get(Priority.DEFERRABLE).size());
+    }
+    
+    public void start() {
+        drainTask = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+    }
+    
+    // Runs everything still queued, used on shutdown when no more ticks will come
+    public void shutdown() {
+        if (drainTask != null) {
+            drainTask.cancel();
+            drainTask = null;
+        }
+        for (Priority priority : Priority.values()) {
+            runAll(queues.get(priority));
+        }
+    }
+    
+    public void submit(Priority priority, Runnable action) {
+        queues.get(priority).add(new Task(null, priority, action));
+    }
+    
+    // A task submitted under a key that is still pending replaces the pending action
+    // and keeps its place in the queue, so e.g. only the newest scoreboard per player is drawn.
+    // Submitting at another priority moves the task to the end of that priority's queue.
+    public void submit(Priority priority, Object coalesceKey, Runnable action) {
+        keyedTasks.compute(coalesceKey, (key, pending) -> {
+            if (pending != null) {
+                if (pending.priority == priority) {
+                    pending.action = action;
+                    return pending;
+                }
+                pending.action = null;
+            }
+            Task task = new Task(key, priority, action);
+            queues.get(priority).add(task);
+            return task;
+        });
+    }
+    
+    private void drain() {
+        long start = System.nanoTime();
+        long budget = Config.TICK_BUDGET_MS * 1_000_000L;
+        long deadline = start + budget;
+        Queue<Task> normal = queues.get(Priority.NORMAL);
+        Queue<Task> deferrable = queues.get(Priority.DEFERRABLE);
+        
+        // Each priority runs at least one task and deferrable work keeps its share of the budget,
+        // so it is delayed behind normal work but never starved by it. Time it leaves unused goes back to normal work.
+        drainUntil(normal, start + (long) (budget * (1 - DEFERRABLE_SHARE)));
+        drainUntil(deferrable, deadline);
+        drainUntil(normal, deadline);
+        
+        if (!queues.get(Priority.NORMAL).isEmpty() || !queues.get(Priority.DEFERRABLE).isEmpty()) {
+            spills.increment();
+        }
+        drainTimer.record(System.nanoTime() - start);
+    }
+    
+    private void drainUntil(Queue<Task> queue, long deadline) {
+        boolean progressed = false;
+        while (!progressed || System.nanoTime() < deadline) {
+            Task task = queue.poll();
+            if (task == null) {
+                return;
+            }
+            progressed = runTask(task);
+        }
+    }
+    
+    private void runAll(Queue<Task> queue) {
+        Task task;
+        while ((task = queue.poll()) != null) {
+            runTask(task);
+        }
+    }
+    
+    // Returns false for a keyed task that was moved to another priority
+    private boolean runTask(Task task) {
+        if (task.key != null) {
+            keyedTasks.remove(task.key, task);
+        }
+        Runnable action = task.action;
+        if (action == null) {
+            return false;
+        }
+        run(action);
+        return true;
+    }
+    
+    private void run(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Error running scheduled plugin task", e);
+        }
+    }
+    
+    private static class Task {
+        private final Object key;
+        private final Priority priority;
+        private volatile Runnable action;
+        
+        Task(Object key, Priority priority, Runnable action) {
+            this.key = key;
+            this.priority = priority;
+            this.action = action;
+        }
+    }
+}
\ No newline at end of file
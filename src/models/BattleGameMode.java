@@ -0,0 +1,48 @@
+package com.minecraft.clanwars.models;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Game modes a battle can be played in, stored by name in battle_requests and battles
+public enum BattleGameMode {
+    TEAM_DEATHMATCH(false),
+    CAPTURE_THE_FLAG(true),
+    CONTROL_POINT(true),
+    FREE_FOR_ALL(false);
+    
+    private static final Map<String, BattleGameMode> BY_NAME = new HashMap<>();
+    
+    static {
+        for (BattleGameMode mode : values()) {
+            BY_NAME.put(mode.name(), mode);
+        }
+    }
+    
+    private final boolean objectives; // scored by ObjectiveManager instead of kills
+    
+    BattleGameMode(boolean objectives) {
+        this.objectives = objectives;
+    }
+    
+    public boolean hasObjectives() {
+        return objectives;
+    }
+    
+    // Null for a mode this version does not know, e.g. one added by a newer node
+    public static BattleGameMode of(String name) {
+        if (name == null) {
+            return null;
+        }
+        BattleGameMode mode = BY_NAME.get(name);
+        return mode != null ? mode : BY_NAME.get(name.trim().toUpperCase(Locale.ROOT));
+    }
+    
+    // The enum's own name string for known modes, so cached requests and battles share it.
+    // Battle and BattleRequest keep the mode as a String, and neither class is in this source
+    // tree, so they can't be switched to the enum here. Sharing the name is as far as it goes.
+    public static String canonicalName(String name) {
+        BattleGameMode mode = of(name);
+        return mode != null ? mode.name() : name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.minecraft.clanwars.models;
+
+public class BattleSummary {
+    private final String id;
+    private final String clan1Tag;
+    private final String clan2Tag;
+    private final String gameMode;
+    private final long startTime;
+    private final long endTime;
+    private final String winnerTag;
+    private final int team1Score;
+    private final int team2Score;
+    
+    public BattleSummary(String id, String clan1Tag, String clan2Tag, String gameMode, long startTime, long endTime,
+                         String winnerTag, int team1Score, int team2Score) {
+        this.id = id;
+        this.clan1Tag = clan1Tag;
+        this.clan2Tag = clan2Tag;
+        this.gameMode = gameMode;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.winnerTag = winnerTag;
+        this.team1Score = team1Score;
+        this.team2Score = team2Score;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public String getClan1Tag() {
+        return clan1Tag;
+    }
+    
+    public String getClan2Tag() {
+        return clan2Tag;
+    }
+    
+    public String getGameMode() {
+        return gameMode;
+    }
+    
+    public long getStartTime() {
+        return startTime;
+    }
+    
+    public long getEndTime() {
+        return endTime;
+    }
+    
+    public String getWinnerTag() {
+        return winnerTag;
+    }
+    
+    public int getTeam1Score() {
+        return team1Score;
+    }
+    
+    public int getTeam2Score() {
+        return team2Score;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.minecraft.clanwars.models;
+
+// A cylinder in an arena: a control point, or the flag base of one side
+public class CaptureZone {
+    // Players count as inside up to this many blocks above or below the center
+    private static final double HEIGHT = 4.0;
+    
+    public enum Kind {
+        CONTROL_POINT,
+        FLAG_BASE
+    }
+    
+    private final String id;
+    private final int index;
+    private final Kind kind;
+    private final int side; // 0 for clan 1, 1 for clan 2, -1 for control points
+    private final double x;
+    private final double y;
+    private final double z;
+    private final double radius;
+    
+    public CaptureZone(String id, int index, Kind kind, int side, double x, double y, double z, double radius) {
+        this.id = id;
+        this.index = index;
+        this.kind = kind;
+        this.side = side;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.radius = radius;
+    }
+    
+    public boolean contains(double px, double py, double pz) {
+        double dx = px - x;
+        double dz = pz - z;
+        return dx * dx + dz * dz <= radius * radius && Math.abs(py - y) <= HEIGHT;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public int getIndex() {
+        return index;
+    }
+    
+    public Kind getKind() {
+        return kind;
+    }
+    
+    public int getSide() {
+        return side;
+    }
+    
+    public double getX() {
+        return x;
+    }
+    
+    public double getY() {
+        return y;
+    }
+    
+    public double getZ() {
+        return z;
+    }
+    
+    public double getRadius() {
+        return radius;
+    }
+}
\ No newline at end of file
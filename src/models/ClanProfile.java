@@ -0,0 +1,42 @@
+package com.minecraft.clanwars.models;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class ClanProfile {
+    private final String clanTag;
+    private final MemberRoster members;
+    private final LifetimeStats stats;
+    private final HistoryPage<BattleSummary> recentBattles;
+    
+    public ClanProfile(String clanTag, MemberRoster members, LifetimeStats stats, HistoryPage<BattleSummary> recentBattles) {
+        this.clanTag = clanTag;
+        this.members = members;
+        this.stats = stats;
+        this.recentBattles = recentBattles;
+    }
+    
+    public String getClanTag() {
+        return clanTag;
+    }
+    
+    public MemberRoster getMembers() {
+        return members;
+    }
+    
+    // Player UUID -> role name, leaders first, built on demand for display
+    public Map<UUID, String> getMemberRoles() {
+        Map<UUID, String> memberRoles = new LinkedHashMap<>();
+        members.toMap().forEach((playerId, role) -> memberRoles.put(playerId, role.name()));
+        return memberRoles;
+    }
+    
+    public LifetimeStats getStats() {
+        return stats;
+    }
+    
+    public HistoryPage<BattleSummary> getRecentBattles() {
+        return recentBattles;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.minecraft.clanwars.models;
+
+// Clan member ranks, highest first, stored by name in clan_members.role
+public enum ClanRole {
+    LEADER,
+    OFFICER,
+    MEMBER;
+    
+    private static final ClanRole[] VALUES = values();
+    
+    public boolean isAtLeast(ClanRole role) {
+        return ordinal() <= role.ordinal();
+    }
+    
+    // Unknown or missing roles count as plain members
+    public static ClanRole of(String name) {
+        if (name != null) {
+            for (ClanRole role : VALUES) {
+                if (role.name().equalsIgnoreCase(name)) {
+                    return role;
+                }
+            }
+        }
+        return MEMBER;
+    }
+    
+    static ClanRole byOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
\ No newline at end of file
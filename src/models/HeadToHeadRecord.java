@@ -0,0 +1,41 @@
+package com.minecraft.clanwars.models;
+
+public class HeadToHeadRecord {
+    private final String clan1Tag;
+    private final String clan2Tag;
+    private final int clan1Wins;
+    private final int clan2Wins;
+    private final HistoryPage<BattleSummary> recentBattles;
+    
+    public HeadToHeadRecord(String clan1Tag, String clan2Tag, int clan1Wins, int clan2Wins, HistoryPage<BattleSummary> recentBattles) {
+        this.clan1Tag = clan1Tag;
+        this.clan2Tag = clan2Tag;
+        this.clan1Wins = clan1Wins;
+        this.clan2Wins = clan2Wins;
+        this.recentBattles = recentBattles;
+    }
+    
+    public String getClan1Tag() {
+        return clan1Tag;
+    }
+    
+    public String getClan2Tag() {
+        return clan2Tag;
+    }
+    
+    public int getClan1Wins() {
+        return clan1Wins;
+    }
+    
+    public int getClan2Wins() {
+        return clan2Wins;
+    }
+    
+    public int getBattles() {
+        return clan1Wins + clan2Wins;
+    }
+    
+    public HistoryPage<BattleSummary> getRecentBattles() {
+        return recentBattles;
+    }
+}
\ No newline at end of file
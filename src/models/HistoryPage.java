@@ -0,0 +1,25 @@
+package com.minecraft.clanwars.models;
+
+import java.util.List;
+
+public class HistoryPage<T> {
+    private final List<T> entries;
+    private final String nextCursor; // null on the last page
+    
+    public HistoryPage(List<T> entries, String nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<T> getEntries() {
+        return entries;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
\ No newline at end of file
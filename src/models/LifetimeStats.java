@@ -0,0 +1,69 @@
+package com.minecraft.clanwars.models;
+
+public class LifetimeStats {
+    private int kills;
+    private int deaths;
+    private int score;
+    private int battles;
+    private int wins;
+    
+    public LifetimeStats(int kills, int deaths, int score, int battles, int wins) {
+        this.kills = kills;
+        this.deaths = deaths;
+        this.score = score;
+        this.battles = battles;
+        this.wins = wins;
+    }
+    
+    public void add(int kills, int deaths, int score, boolean winner) {
+        this.kills += kills;
+        this.deaths += deaths;
+        this.score += score;
+        this.battles++;
+        if (winner) {
+            this.wins++;
+        }
+    }
+    
+    public void addTotals(int kills, int deaths, int score) {
+        this.kills += kills;
+        this.deaths += deaths;
+        this.score += score;
+    }
+    
+    public void merge(LifetimeStats other) {
+        this.kills += other.kills;
+        this.deaths += other.deaths;
+        this.score += other.score;
+        this.battles += other.battles;
+        this.wins += other.wins;
+    }
+    
+    public int getKills() {
+        return kills;
+    }
+    
+    public int getDeaths() {
+        return deaths;
+    }
+    
+    public int getScore() {
+        return score;
+    }
+    
+    public int getBattles() {
+        return battles;
+    }
+    
+    public int getWins() {
+        return wins;
+    }
+    
+    public double getKillDeathRatio() {
+        return deaths == 0 ? kills : (double) kills / deaths;
+    }
+    
+    public double getWinRate() {
+        return battles == 0 ? 0 : (double) wins / battles;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.minecraft.clanwars.models;
+
+public class MatchSuggestion {
+    private final String clanTag;
+    private final int rating;
+    private final int onlineMembers;
+    private final double score;
+    
+    public MatchSuggestion(String clanTag, int rating, int onlineMembers, double score) {
+        this.clanTag = clanTag;
+        this.rating = rating;
+        this.onlineMembers = onlineMembers;
+        this.score = score;
+    }
+    
+    public String getClanTag() {
+        return clanTag;
+    }
+    
+    public int getRating() {
+        return rating;
+    }
+    
+    public int getOnlineMembers() {
+        return onlineMembers;
+    }
+    
+    // Lower is a better match
+    public double getScore() {
+        return score;
+    }
+}
\ No newline at end of file
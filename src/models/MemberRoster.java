@@ -0,0 +1,134 @@
+package com.minecraft.clanwars.models;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+// A clan's members as parallel primitive arrays sorted by UUID: two longs and a role byte per
+// member instead of a UUID object, a map entry and a role string. Lookups binary search, and
+// a clan is small enough that shifting the arrays on joins and leaves costs nothing.
+public class MemberRoster {
+    private long[] most;
+    private long[] least;
+    private byte[] roles;
+    private int size;
+    
+    public MemberRoster() {
+        this(4);
+    }
+    
+    public MemberRoster(int capacity) {
+        this.most = new long[Math.max(1, capacity)];
+        this.least = new long[Math.max(1, capacity)];
+        this.roles = new byte[Math.max(1, capacity)];
+    }
+    
+    // Adds the member or changes their role, returns whether they are new
+    public boolean put(UUID playerId, ClanRole role) {
+        int index = indexOf(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+        if (index >= 0) {
+            roles[index] = (byte) role.ordinal();
+            return false;
+        }
+        
+        int insertAt = -index - 1;
+        if (size == most.length) {
+            int capacity = size + Math.max(4, size >> 1);
+            most = Arrays.copyOf(most, capacity);
+            least = Arrays.copyOf(least, capacity);
+            roles = Arrays.copyOf(roles, capacity);
+        }
+        System.arraycopy(most, insertAt, most, insertAt + 1, size - insertAt);
+        System.arraycopy(least, insertAt, least, insertAt + 1, size - insertAt);
+        System.arraycopy(roles, insertAt, roles, insertAt + 1, size - insertAt);
+        most[insertAt] = playerId.getMostSignificantBits();
+        least[insertAt] = playerId.getLeastSignificantBits();
+        roles[insertAt] = (byte) role.ordinal();
+        size++;
+        return true;
+    }
+    
+    public boolean remove(UUID playerId) {
+        int index = indexOf(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+        if (index < 0) {
+            return false;
+        }
+        int moved = size - index - 1;
+        System.arraycopy(most, index + 1, most, index, moved);
+        System.arraycopy(least, index + 1, least, index, moved);
+        System.arraycopy(roles, index + 1, roles, index, moved);
+        size--;
+        return true;
+    }
+    
+    public boolean contains(UUID playerId) {
+        return indexOf(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits()) >= 0;
+    }
+    
+    // Null if the player is not a member
+    public ClanRole getRole(UUID playerId) {
+        int index = indexOf(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+        return index >= 0 ? ClanRole.byOrdinal(roles[index]) : null;
+    }
+    
+    public UUID getLeader() {
+        for (int i = 0; i < size; i++) {
+            if (roles[i] == ClanRole.LEADER.ordinal()) {
+                return new UUID(most[i], least[i]);
+            }
+        }
+        return null;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public void forEach(BiConsumer<UUID, ClanRole> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(new UUID(most[i], least[i]), ClanRole.byOrdinal(roles[i]));
+        }
+    }
+    
+    // A copy for callers that want a map, highest ranks first
+    public Map<UUID, ClanRole> toMap() {
+        Map<UUID, ClanRole> map = new LinkedHashMap<>();
+        for (ClanRole role : ClanRole.values()) {
+            for (int i = 0; i < size; i++) {
+                if (roles[i] == role.ordinal()) {
+                    map.put(new UUID(most[i], least[i]), role);
+                }
+            }
+        }
+        return map;
+    }
+    
+    // Releases the spare capacity once a roster is fully loaded
+    public void trim() {
+        if (size < most.length) {
+            most = Arrays.copyOf(most, Math.max(1, size));
+            least = Arrays.copyOf(least, Math.max(1, size));
+            roles = Arrays.copyOf(roles, Math.max(1, size));
+        }
+    }
+    
+    // Binary search in UUID.compareTo order, a negative result is -(insertion point) - 1
+    private int indexOf(long mostBits, long leastBits) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = most[mid] != mostBits ? Long.compare(most[mid], mostBits) : Long.compare(least[mid], leastBits);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
\ No newline at end of file
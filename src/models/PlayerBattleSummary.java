@@ -0,0 +1,55 @@
+package com.minecraft.clanwars.models;
+
+public class PlayerBattleSummary {
+    private final String battleId;
+    private final String clanTag;
+    private final String gameMode;
+    private final long startTime;
+    private final int kills;
+    private final int deaths;
+    private final int score;
+    private final boolean winner;
+    
+    public PlayerBattleSummary(String battleId, String clanTag, String gameMode, long startTime, int kills, int deaths, int score, boolean winner) {
+        this.battleId = battleId;
+        this.clanTag = clanTag;
+        this.gameMode = gameMode;
+        this.startTime = startTime;
+        this.kills = kills;
+        this.deaths = deaths;
+        this.score = score;
+        this.winner = winner;
+    }
+    
+    public String getBattleId() {
+        return battleId;
+    }
+    
+    public String getClanTag() {
+        return clanTag;
+    }
+    
+    public String getGameMode() {
+        return gameMode;
+    }
+    
+    public long getStartTime() {
+        return startTime;
+    }
+    
+    public int getKills() {
+        return kills;
+    }
+    
+    public int getDeaths() {
+        return deaths;
+    }
+    
+    public int getScore() {
+        return score;
+    }
+    
+    public boolean isWinner() {
+        return winner;
+    }
+}
\ No newline at end of file
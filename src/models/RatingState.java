@@ -0,0 +1,47 @@
+package com.minecraft.clanwars.models;
+
+public class RatingState {
+    private double rating;
+    private double deviation;
+    private double volatility;
+    
+    public RatingState(double rating, double deviation, double volatility) {
+        this.rating = rating;
+        this.deviation = deviation;
+        this.volatility = volatility;
+    }
+    
+    public RatingState copy() {
+        return new RatingState(rating, deviation, volatility);
+    }
+    
+    public void set(RatingState other) {
+        this.rating = other.rating;
+        this.deviation = other.deviation;
+        this.volatility = other.volatility;
+    }
+    
+    public double getRating() {
+        return rating;
+    }
+    
+    public void setRating(double rating) {
+        this.rating = rating;
+    }
+    
+    public double getDeviation() {
+        return deviation;
+    }
+    
+    public void setDeviation(double deviation) {
+        this.deviation = deviation;
+    }
+    
+    public double getVolatility() {
+        return volatility;
+    }
+    
+    public void setVolatility(double volatility) {
+        this.volatility = volatility;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,362 @@
+package com.minecraft.clanwars.utils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// One immutable file of archived rows. The header is plain so the index (row count, time range
+// and the clans appearing in the rows) can be read without inflating anything; the body is a
+// GZIP stream holding the rows column by column. Every column starts with a bitmap of its null
+// rows, strings are dictionary coded, longs are zigzag varint deltas from the previous row and
+// ints zigzag varints, which together with sorted rows keeps a segment a fraction of the table.
+public class ArchiveSegment {
+    public static final int MAGIC = 0x43574152; // "CWAR"
+    public static final int VERSION = 1;
+    
+    public enum ColumnType {
+        STRING,
+        LONG,
+        INT,
+        BOOLEAN,
+        UUID
+    }
+    
+    private final File file;
+    private final String kind;
+    private final int rowCount;
+    private final long minTime;
+    private final long maxTime;
+    private final String[] clans; // sorted, so the first and last are the clan min/max
+    private final String[] columnNames;
+    private final ColumnType[] columnTypes;
+    
+    private ArchiveSegment(File file, String kind, int rowCount, long minTime, long maxTime, String[] clans,
+                           String[] columnNames, ColumnType[] columnTypes) {
+        this.file = file;
+        this.kind = kind;
+        this.rowCount = rowCount;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+        this.clans = clans;
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+    }
+    
+    // Writes rows, already sorted by their time column, to a temporary file that only replaces
+    // the target once it is complete and synced
+    public static ArchiveSegment write(File file, String kind, String[] columnNames, ColumnType[] columnTypes,
+                                       List<Object[]> rows, int timeColumn, int... clanColumns) throws IOException {
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        TreeSet<String> clanSet = new TreeSet<>();
+        for (Object[] row : rows) {
+            long time = (Long) row[timeColumn];
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            for (int column : clanColumns) {
+                if (row[column] != null) {
+                    clanSet.add((String) row[column]);
+                }
+            }
+        }
+        ArchiveSegment segment = new ArchiveSegment(file, kind, rows.size(), minTime, maxTime,
+            clanSet.toArray(new String[0]), columnNames, columnTypes);
+        
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(temp);
+        try {
+            DataOutputStream header = new DataOutputStream(new BufferedOutputStream(fileOut));
+            segment.writeHeader(header);
+            header.flush();
+            
+            GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(fileOut), 8192);
+            DataOutputStream body = new DataOutputStream(new BufferedOutputStream(gzip));
+            for (int column = 0; column < columnTypes.length; column++) {
+                writeColumn(body, columnTypes[column], rows, column);
+            }
+            body.flush();
+            gzip.finish();
+            gzip.flush();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return segment;
+    }
+    
+    public static ArchiveSegment open(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1024))) {
+            return readHeader(file, in);
+        }
+    }
+    
+    public List<Object[]> readRows() throws IOException {
+        try (FileInputStream fileIn = new FileInputStream(file)) {
+            // Unbuffered, so the GZIP stream starts exactly where the header ends
+            readHeader(file, new DataInputStream(fileIn));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(fileIn, 8192)));
+            
+            List<Object[]> rows = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                rows.add(new Object[columnTypes.length]);
+            }
+            for (int column = 0; column < columnTypes.length; column++) {
+                readColumn(in, columnTypes[column], rows, column);
+            }
+            return rows;
+        }
+    }
+    
+    public boolean mayContainClan(String clanTag) {
+        return Arrays.binarySearch(clans, clanTag) >= 0;
+    }
+    
+    public boolean overlaps(long from, long to) {
+        return rowCount > 0 && minTime <= to && maxTime >= from;
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    public String getKind() {
+        return kind;
+    }
+    
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    public long getMinTime() {
+        return minTime;
+    }
+    
+    public long getMaxTime() {
+        return maxTime;
+    }
+    
+    public int columnIndex(String name) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No column " + name + " in archive segment " + file.getName());
+    }
+    
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(kind);
+        out.writeInt(rowCount);
+        out.writeLong(minTime);
+        out.writeLong(maxTime);
+        writeVarint(out, clans.length);
+        for (String clan : clans) {
+            out.writeUTF(clan);
+        }
+        writeVarint(out, columnNames.length);
+        for (int i = 0; i < columnNames.length; i++) {
+            out.writeUTF(columnNames[i]);
+            out.writeByte(columnTypes[i].ordinal());
+        }
+    }
+    
+    private static ArchiveSegment readHeader(File file, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an archive segment: " + file.getName());
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported archive segment version " + version + " in " + file.getName());
+        }
+        String kind = in.readUTF();
+        int rowCount = in.readInt();
+        long minTime = in.readLong();
+        long maxTime = in.readLong();
+        String[] clans = new String[readVarint(in)];
+        for (int i = 0; i < clans.length; i++) {
+            clans[i] = in.readUTF();
+        }
+        int columnCount = readVarint(in);
+        String[] columnNames = new String[columnCount];
+        ColumnType[] columnTypes = new ColumnType[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = in.readUTF();
+            columnTypes[i] = ColumnType.values()[in.readUnsignedByte()];
+        }
+        return new ArchiveSegment(file, kind, rowCount, minTime, maxTime, clans, columnNames, columnTypes);
+    }
+    
+    private static void writeColumn(DataOutputStream out, ColumnType type, List<Object[]> rows, int column) throws IOException {
+        BitSet nulls = new BitSet(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i)[column] == null) {
+                nulls.set(i);
+            }
+        }
+        writeBits(out, nulls);
+        
+        switch (type) {
+            case STRING: {
+                Map<String, Integer> dictionary = new LinkedHashMap<>();
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        dictionary.putIfAbsent((String) row[column], dictionary.size());
+                    }
+                }
+                writeVarint(out, dictionary.size());
+                for (String value : dictionary.keySet()) {
+                    out.writeUTF(value);
+                }
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        writeVarint(out, dictionary.get(row[column]));
+                    }
+                }
+                break;
+            }
+            case LONG: {
+                long previous = 0;
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        long value = (Long) row[column];
+                        writeVarLong(out, zigzag(value - previous));
+                        previous = value;
+                    }
+                }
+                break;
+            }
+            case INT:
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        writeVarLong(out, zigzag((Integer) row[column]));
+                    }
+                }
+                break;
+            case BOOLEAN: {
+                BitSet values = new BitSet(rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    if (Boolean.TRUE.equals(rows.get(i)[column])) {
+                        values.set(i);
+                    }
+                }
+                writeBits(out, values);
+                break;
+            }
+            case UUID:
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        UUID value = (UUID) row[column];
+                        out.writeLong(value.getMostSignificantBits());
+                        out.writeLong(value.getLeastSignificantBits());
+                    }
+                }
+                break;
+        }
+    }
+    
+    private static void readColumn(DataInputStream in, ColumnType type, List<Object[]> rows, int column) throws IOException {
+        BitSet nulls = readBits(in);
+        
+        switch (type) {
+            case STRING: {
+                String[] dictionary = new String[readVarint(in)];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = in.readUTF();
+                }
+                for (int i = 0; i < rows.size(); i++) {
+                    if (!nulls.get(i)) {
+                        rows.get(i)[column] = dictionary[readVarint(in)];
+                    }
+                }
+                break;
+            }
+            case LONG: {
+                long previous = 0;
+                for (int i = 0; i < rows.size(); i++) {
+                    if (!nulls.get(i)) {
+                        previous += unzigzag(readVarLong(in));
+                        rows.get(i)[column] = previous;
+                    }
+                }
+                break;
+            }
+            case INT:
+                for (int i = 0; i < rows.size(); i++) {
+                    if (!nulls.get(i)) {
+                        rows.get(i)[column] = (int) unzigzag(readVarLong(in));
+                    }
+                }
+                break;
+            case BOOLEAN: {
+                BitSet values = readBits(in);
+                for (int i = 0; i < rows.size(); i++) {
+                    if (!nulls.get(i)) {
+                        rows.get(i)[column] = values.get(i);
+                    }
+                }
+                break;
+            }
+            case UUID:
+                for (int i = 0; i < rows.size(); i++) {
+                    if (!nulls.get(i)) {
+                        rows.get(i)[column] = new UUID(in.readLong(), in.readLong());
+                    }
+                }
+                break;
+        }
+    }
+    
+    private static void writeBits(DataOutputStream out, BitSet bits) throws IOException {
+        byte[] bytes = bits.toByteArray();
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+    
+    private static BitSet readBits(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarint(in)];
+        in.readFully(bytes);
+        return BitSet.valueOf(bytes);
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+    
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    private static int readVarint(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+    
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in archive segment");
+    }
+}
\ No newline at end of file
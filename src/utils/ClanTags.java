@@ -0,0 +1,37 @@
+package com.minecraft.clanwars.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// One shared String per clan tag. Tags arrive from every result set, change feed reload and
+// archive segment that mentions a clan, and without this each copy would stay alive in the
+// caches holding it. Entries are weak, so the tag of a disbanded clan drops out once no cache
+// refers to it anymore, whichever node or command disbanded it.
+public final class ClanTags {
+    private static final Map<String, WeakReference<String>> TAGS = new WeakHashMap<>();
+    
+    private ClanTags() {
+    }
+    
+    public static String canonical(String tag) {
+        if (tag == null) {
+            return null;
+        }
+        synchronized (TAGS) {
+            WeakReference<String> reference = TAGS.get(tag);
+            String existing = reference != null ? reference.get() : null;
+            if (existing != null) {
+                return existing;
+            }
+            TAGS.put(tag, new WeakReference<>(tag));
+            return tag;
+        }
+    }
+    
+    public static int size() {
+        synchronized (TAGS) {
+            return TAGS.size();
+        }
+    }
+}
\ No newline at end of file
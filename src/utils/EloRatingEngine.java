@@ -0,0 +1,51 @@
+package com.minecraft.clanwars.utils;
+
+import com.minecraft.clanwars.models.RatingState;
+
+public class EloRatingEngine implements RatingEngine {
+    private final double kFactor;
+    
+    public EloRatingEngine(double kFactor) {
+        this.kFactor = kFactor;
+    }
+    
+    @Override
+    public String getName() {
+        return "ELO";
+    }
+    
+    @Override
+    public RatingState newState(double rating) {
+        return new RatingState(rating, 0, 0);
+    }
+    
+    @Override
+    public void applyResult(RatingState winner, RatingState loser) {
+        double expectedWin = expectedScore(winner.getRating(), loser.getRating());
+        double change = kFactor * (1 - expectedWin);
+        
+        winner.setRating(winner.getRating() + change);
+        loser.setRating(Math.max(0, loser.getRating() - change));
+    }
+    
+    @Override
+    public void ratePeriod(RatingState state, RatingState[] snapshot, int[] opponents, double[] scores, int from, int to) {
+        double rating = state.getRating();
+        double change = 0;
+        
+        // All games of the period are rated against the ratings at the start of the period
+        for (int i = from; i < to; i++) {
+            change += kFactor * (scores[i] - expectedScore(rating, snapshot[opponents[i]].getRating()));
+        }
+        state.setRating(Math.max(0, rating + change));
+    }
+    
+    @Override
+    public void skipPeriod(RatingState state) {
+        // Elo ratings do not change without games
+    }
+    
+    private static double expectedScore(double rating, double opponentRating) {
+        return 1.0 / (1.0 + Math.pow(10, (opponentRating - rating) / 400.0));
+    }
+}
\ No newline at end of file
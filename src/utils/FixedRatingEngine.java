@@ -0,0 +1,45 @@
+package com.minecraft.clanwars.utils;
+
+import com.minecraft.clanwars.models.RatingState;
+
+// The original fixed win/loss points, kept for servers that prefer predictable ratings
+public class FixedRatingEngine implements RatingEngine {
+    private final int winPoints;
+    private final int lossPoints;
+    
+    public FixedRatingEngine(int winPoints, int lossPoints) {
+        this.winPoints = winPoints;
+        this.lossPoints = lossPoints;
+    }
+    
+    @Override
+    public String getName() {
+        return "FIXED";
+    }
+    
+    @Override
+    public RatingState newState(double rating) {
+        return new RatingState(rating, 0, 0);
+    }
+    
+    @Override
+    public void applyResult(RatingState winner, RatingState loser) {
+        winner.setRating(winner.getRating() + winPoints);
+        // Make sure rating doesn't go below 0
+        loser.setRating(Math.max(0, loser.getRating() - lossPoints));
+    }
+    
+    @Override
+    public void ratePeriod(RatingState state, RatingState[] snapshot, int[] opponents, double[] scores, int from, int to) {
+        double rating = state.getRating();
+        for (int i = from; i < to; i++) {
+            rating = scores[i] > 0.5 ? rating + winPoints : Math.max(0, rating - lossPoints);
+        }
+        state.setRating(rating);
+    }
+    
+    @Override
+    public void skipPeriod(RatingState state) {
+        // Fixed ratings do not decay
+    }
+}
\ No newline at end of file
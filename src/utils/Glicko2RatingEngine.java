@@ -0,0 +1,143 @@
+package com.minecraft.clanwars.utils;
+
+import com.minecraft.clanwars.models.RatingState;
+
+// Glicko-2 as described by Glickman, "Example of the Glicko-2 system"
+public class Glicko2RatingEngine implements RatingEngine {
+    private static final double SCALE = 173.7178;
+    private static final double BASE_RATING = 1500;
+    private static final double CONVERGENCE = 0.000001;
+    
+    private final double initialDeviation;
+    private final double initialVolatility;
+    private final double tau;
+    
+    public Glicko2RatingEngine(double initialDeviation, double initialVolatility, double tau) {
+        this.initialDeviation = initialDeviation;
+        this.initialVolatility = initialVolatility;
+        this.tau = tau;
+    }
+    
+    @Override
+    public String getName() {
+        return "GLICKO2";
+    }
+    
+    @Override
+    public RatingState newState(double rating) {
+        return new RatingState(rating, initialDeviation, initialVolatility);
+    }
+    
+    @Override
+    public void applyResult(RatingState winner, RatingState loser) {
+        // Treat the battle as a one-game rating period for both sides
+        double winnerMu = mu(winner);
+        double winnerPhi = phi(winner);
+        double loserMu = mu(loser);
+        double loserPhi = phi(loser);
+        
+        update(winner, winnerMu, winnerPhi, new double[] {loserMu}, new double[] {loserPhi}, new double[] {1}, 1);
+        update(loser, loserMu, loserPhi, new double[] {winnerMu}, new double[] {winnerPhi}, new double[] {0}, 1);
+    }
+    
+    @Override
+    public void ratePeriod(RatingState state, RatingState[] snapshot, int[] opponents, double[] scores, int from, int to) {
+        int games = to - from;
+        double[] opponentMu = new double[games];
+        double[] opponentPhi = new double[games];
+        double[] gameScores = new double[games];
+        
+        for (int i = 0; i < games; i++) {
+            RatingState opponent = snapshot[opponents[from + i]];
+            opponentMu[i] = mu(opponent);
+            opponentPhi[i] = phi(opponent);
+            gameScores[i] = scores[from + i];
+        }
+        update(state, mu(state), phi(state), opponentMu, opponentPhi, gameScores, games);
+    }
+    
+    @Override
+    public void skipPeriod(RatingState state) {
+        double phi = phi(state);
+        double newPhi = Math.sqrt(phi * phi + state.getVolatility() * state.getVolatility());
+        state.setDeviation(Math.min(initialDeviation, newPhi * SCALE));
+    }
+    
+    private void update(RatingState state, double mu, double phi, double[] opponentMu, double[] opponentPhi, double[] scores, int games) {
+        double varianceInverse = 0;
+        double improvement = 0;
+        
+        for (int i = 0; i < games; i++) {
+            double g = g(opponentPhi[i]);
+            double expected = 1.0 / (1.0 + Math.exp(-g * (mu - opponentMu[i])));
+            varianceInverse += g * g * expected * (1 - expected);
+            improvement += g * (scores[i] - expected);
+        }
+        
+        double variance = 1.0 / varianceInverse;
+        double delta = variance * improvement;
+        double sigma = newVolatility(state.getVolatility(), phi, variance, delta);
+        
+        double phiStar = Math.sqrt(phi * phi + sigma * sigma);
+        double newPhi = 1.0 / Math.sqrt(1.0 / (phiStar * phiStar) + 1.0 / variance);
+        double newMu = mu + newPhi * newPhi * improvement;
+        
+        state.setRating(Math.max(0, newMu * SCALE + BASE_RATING));
+        state.setDeviation(newPhi * SCALE);
+        state.setVolatility(sigma);
+    }
+    
+    // Illinois algorithm from step 5 of the Glicko-2 paper
+    private double newVolatility(double sigma, double phi, double variance, double delta) {
+        double a = Math.log(sigma * sigma);
+        double deltaSquared = delta * delta;
+        double phiSquared = phi * phi;
+        
+        double upper = a;
+        double lower;
+        if (deltaSquared > phiSquared + variance) {
+            lower = Math.log(deltaSquared - phiSquared - variance);
+        } else {
+            int k = 1;
+            while (f(a - k * tau, a, deltaSquared, phiSquared, variance) < 0) {
+                k++;
+            }
+            lower = a - k * tau;
+        }
+        
+        double fUpper = f(upper, a, deltaSquared, phiSquared, variance);
+        double fLower = f(lower, a, deltaSquared, phiSquared, variance);
+        
+        while (Math.abs(lower - upper) > CONVERGENCE) {
+            double c = upper + (upper - lower) * fUpper / (fLower - fUpper);
+            double fC = f(c, a, deltaSquared, phiSquared, variance);
+            if (fC * fLower <= 0) {
+                upper = lower;
+                fUpper = fLower;
+            } else {
+                fUpper = fUpper / 2;
+            }
+            lower = c;
+            fLower = fC;
+        }
+        return Math.exp(upper / 2);
+    }
+    
+    private double f(double x, double a, double deltaSquared, double phiSquared, double variance) {
+        double ex = Math.exp(x);
+        double denominator = phiSquared + variance + ex;
+        return ex * (deltaSquared - phiSquared - variance - ex) / (2 * denominator * denominator) - (x - a) / (tau * tau);
+    }
+    
+    private static double g(double phi) {
+        return 1.0 / Math.sqrt(1 + 3 * phi * phi / (Math.PI * Math.PI));
+    }
+    
+    private static double mu(RatingState state) {
+        return (state.getRating() - BASE_RATING) / SCALE;
+    }
+    
+    private static double phi(RatingState state) {
+        return state.getDeviation() / SCALE;
+    }
+}
\ No newline at end of file
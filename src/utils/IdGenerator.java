@@ -0,0 +1,145 @@
+package com.minecraft.clanwars.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+// Time-ordered 64-bit IDs: 41 bits of milliseconds since 2024, 10 bits of node number and a
+// 12-bit sequence within the millisecond. They are written as 13 Crockford base32 characters,
+// whose alphabet sorts in ASCII order, so newer rows always land at the right edge of the
+// primary key index. The sequence and clock never run backwards, when the wall clock does or
+// a millisecond runs out of sequence numbers the generator borrows the next millisecond.
+// Players and staff see a 6 character short form hashed from the whole ID; the generator
+// skips IDs whose short form matches one of its recent IDs.
+public class IdGenerator {
+    private static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+    private static final int SHORT_LENGTH = 6;
+    private static final int RECENT_SHORT_FORMS = 1 << 16;
+    
+    private final long node;
+    private final Set<Long> recentShortForms;
+    private final Deque<Long> recentOrder;
+    private long lastTime;
+    private long sequence;
+    
+    public IdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node number must be between 0 and " + MAX_NODE + ", was " + node);
+        }
+        this.node = node;
+        this.recentShortForms = new HashSet<>();
+        this.recentOrder = new ArrayDeque<>();
+        this.lastTime = -1;
+    }
+    
+    public synchronized long nextId() {
+        long id = advance();
+        while (!recentShortForms.add(shortBits(id))) {
+            id = advance();
+        }
+        recentOrder.add(shortBits(id));
+        if (recentOrder.size() > RECENT_SHORT_FORMS) {
+            recentShortForms.remove(recentOrder.poll());
+        }
+        return id;
+    }
+    
+    private long advance() {
+        long now = System.currentTimeMillis() - EPOCH;
+        if (now > lastTime) {
+            lastTime = now;
+            sequence = 0;
+        } else if (sequence < MAX_SEQUENCE) {
+            sequence++;
+        } else {
+            lastTime++;
+            sequence = 0;
+        }
+        return (lastTime << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+    }
+    
+    public String next() {
+        return encode(nextId());
+    }
+    
+    public static String encode(long id) {
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+    
+    // Accepts lower case and the usual look-alikes (O for 0, I and L for 1)
+    public static long decode(String encoded) {
+        long id = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = Character.toUpperCase(encoded.charAt(i));
+            if (c == 'O') {
+                c = '0';
+            } else if (c == 'I' || c == 'L') {
+                c = '1';
+            }
+            int value = indexOf(c);
+            if (value < 0) {
+                throw new IllegalArgumentException("Not a base32 ID: " + encoded);
+            }
+            id = (id << 5) | value;
+        }
+        return id;
+    }
+    
+    // Creation time of an encoded ID, prefixes such as "B-" are ignored
+    public static long timestampOf(String encoded) {
+        String body = encoded.substring(Math.max(0, encoded.length() - ENCODED_LENGTH));
+        return (decode(body) >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+    
+    // Short ID for chat and staff messages, prefixes such as "B-" are kept. IDs that are not
+    // generated ones, e.g. request IDs from before the generator, are returned unchanged.
+    public static String shortForm(String encoded) {
+        if (encoded.length() < ENCODED_LENGTH) {
+            return encoded;
+        }
+        int split = encoded.length() - ENCODED_LENGTH;
+        long bits;
+        try {
+            bits = shortBits(decode(encoded.substring(split)));
+        } catch (IllegalArgumentException e) {
+            return encoded;
+        }
+        char[] chars = new char[SHORT_LENGTH];
+        for (int i = SHORT_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (bits & 31)];
+            bits >>>= 5;
+        }
+        return encoded.substring(0, split) + new String(chars);
+    }
+    
+    // 30 bits of a 64-bit mix of the ID, so time, node and sequence all change the short form.
+    // The bare low bits barely differ between the first IDs of neighbouring milliseconds.
+    private static long shortBits(long id) {
+        long z = id;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return z >>> (64 - 5 * SHORT_LENGTH);
+    }
+    
+    private static int indexOf(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
\ No newline at end of file
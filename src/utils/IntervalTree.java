@@ -0,0 +1,183 @@
+package com.minecraft.clanwars.utils;
+
+import java.util.*;
+
+// Half-open [start, end) intervals in a treap ordered by start, where every node also keeps
+// the largest end below it. Inserts and removals are O(log n) expected, and overlap queries
+// skip every subtree that ends before the query starts, so they cost O(log n + matches).
+public class IntervalTree<T> {
+    private final Random random;
+    private Node<T> root;
+    private int size;
+    
+    public IntervalTree() {
+        this.random = new Random();
+    }
+    
+    public void insert(long start, long end, T value) {
+        root = insert(root, new Node<>(start, end, value, random.nextInt()));
+        size++;
+    }
+    
+    public boolean remove(long start, long end, T value) {
+        int before = size;
+        root = remove(root, start, end, value);
+        return size < before;
+    }
+    
+    public boolean overlaps(long start, long end) {
+        return !overlapping(start, end, 1).isEmpty();
+    }
+    
+    public List<Interval<T>> overlapping(long start, long end) {
+        return overlapping(start, end, Integer.MAX_VALUE);
+    }
+    
+    public List<Interval<T>> overlapping(long start, long end, int limit) {
+        List<Interval<T>> result = new ArrayList<>();
+        collect(root, start, end, limit, result);
+        return result;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private void collect(Node<T> node, long start, long end, int limit, List<Interval<T>> result) {
+        if (node == null || node.maxEnd <= start || result.size() >= limit) {
+            return;
+        }
+        collect(node.left, start, end, limit, result);
+        // Everything to the right starts at or after this node
+        if (node.interval.start >= end || result.size() >= limit) {
+            return;
+        }
+        if (node.interval.end > start) {
+            result.add(node.interval);
+        }
+        collect(node.right, start, end, limit, result);
+    }
+    
+    private Node<T> insert(Node<T> node, Node<T> added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.interval.start < node.interval.start) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+    
+    private Node<T> remove(Node<T> node, long start, long end, T value) {
+        if (node == null) {
+            return null;
+        }
+        Interval<T> interval = node.interval;
+        if (interval.start == start && interval.end == end && Objects.equals(interval.value, value)) {
+            size--;
+            return merge(node.left, node.right);
+        }
+        // Rotations can leave equal starts on either side
+        int before = size;
+        if (start <= interval.start) {
+            node.left = remove(node.left, start, end, value);
+        }
+        if (start >= interval.start && size == before) {
+            node.right = remove(node.right, start, end, value);
+        }
+        node.update();
+        return node;
+    }
+    
+    private Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+    
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+    
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+    
+    public static class Interval<T> {
+        private final long start;
+        private final long end;
+        private final T value;
+        
+        private Interval(long start, long end, T value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+        
+        public long getStart() {
+            return start;
+        }
+        
+        public long getEnd() {
+            return end;
+        }
+        
+        public T getValue() {
+            return value;
+        }
+    }
+    
+    private static class Node<T> {
+        private final Interval<T> interval;
+        private final int priority;
+        private long maxEnd;
+        private Node<T> left;
+        private Node<T> right;
+        
+        private Node(long start, long end, T value, int priority) {
+            this.interval = new Interval<>(start, end, value);
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+        
+        private void update() {
+            maxEnd = interval.end;
+            if (left != null) {
+                maxEnd = Math.max(maxEnd, left.maxEnd);
+            }
+            if (right != null) {
+                maxEnd = Math.max(maxEnd, right.maxEnd);
+            }
+        }
+    }
+}
\ No newline at end of file
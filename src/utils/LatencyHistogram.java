@@ -0,0 +1,98 @@
+package com.minecraft.clanwars.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear histogram in the style of HdrHistogram: every power of two is split into
+// 32 linear sub-buckets, so recorded values keep roughly 3% precision. Recording is a
+// handful of atomic increments and never allocates.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 40; // ~18 minutes in nanoseconds
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+    
+    private final AtomicLongArray counts;
+    private final LongAdder totalCount;
+    private final LongAdder totalSum;
+    private final AtomicLong maxValue;
+    
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.totalCount = new LongAdder();
+        this.totalSum = new LongAdder();
+        this.maxValue = new AtomicLong();
+    }
+    
+    public void record(long value) {
+        long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+        counts.incrementAndGet(indexOf(clamped));
+        totalCount.increment();
+        totalSum.add(clamped);
+        
+        long currentMax = maxValue.get();
+        while (clamped > currentMax && !maxValue.compareAndSet(currentMax, clamped)) {
+            currentMax = maxValue.get();
+        }
+    }
+    
+    public long getCount() {
+        return totalCount.sum();
+    }
+    
+    public long getSum() {
+        return totalSum.sum();
+    }
+    
+    public long getMax() {
+        return maxValue.get();
+    }
+    
+    // Upper bound of the bucket holding the given percentile (0-100)
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+    
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalSum.reset();
+        maxValue.set(0);
+    }
+    
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT * 2) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift); // always in [32, 64)
+        return (shift + 1) * SUB_BUCKET_COUNT + mantissa - SUB_BUCKET_COUNT;
+    }
+    
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKET_COUNT * 2) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long mantissa = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.minecraft.clanwars.utils;
+
+import com.minecraft.clanwars.models.RatingState;
+
+public interface RatingEngine {
+    
+    String getName();
+    
+    RatingState newState(double rating);
+    
+    // Applies a single battle result to both sides in O(1)
+    void applyResult(RatingState winner, RatingState loser);
+    
+    // Rates one clan over a whole rating period. Opponent states are taken from the
+    // snapshot of the start of the period, scores are 1 for a win and 0 for a loss.
+    void ratePeriod(RatingState state, RatingState[] snapshot, int[] opponents, double[] scores, int from, int to);
+    
+    // Called for clans that did not play during a rating period
+    void skipPeriod(RatingState state);
+}
\ No newline at end of file
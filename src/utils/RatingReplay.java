@@ -0,0 +1,143 @@
+package com.minecraft.clanwars.utils;
+
+import com.minecraft.clanwars.models.RatingState;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Rebuilds clan ratings from battles fed in end time order. Battles are grouped into rating
+// periods of a fixed length. Periods have to run in order because each one starts from the
+// previous result, but inside a period every clan is rated against the start-of-period
+// snapshot, so clans are updated in parallel from a flat opponent/score array.
+public class RatingReplay {
+    private final RatingEngine engine;
+    private final double initialRating;
+    private final long periodLength;
+    private final Map<String, Integer> clanIndexes;
+    private final List<RatingState> states;
+    private int[] winners;
+    private int[] losers;
+    private int size;
+    private long periodEnd;
+    private int battles;
+    private int periods;
+    
+    public RatingReplay(RatingEngine engine, double initialRating, long periodLength) {
+        this.engine = engine;
+        this.initialRating = initialRating;
+        this.periodLength = periodLength;
+        this.clanIndexes = new HashMap<>();
+        this.states = new ArrayList<>();
+        this.winners = new int[1024];
+        this.losers = new int[1024];
+        this.periodEnd = Long.MIN_VALUE;
+    }
+    
+    public void addGame(String clan1Tag, String clan2Tag, String winnerTag, long endTime) {
+        if (endTime >= periodEnd) {
+            if (size > 0) {
+                ratePeriod();
+            }
+            periodEnd = (endTime / periodLength + 1) * periodLength;
+        }
+        
+        int clan1 = indexOf(clan1Tag);
+        int clan2 = indexOf(clan2Tag);
+        if (winnerTag.equals(clan1Tag)) {
+            add(clan1, clan2);
+        } else {
+            add(clan2, clan1);
+        }
+        battles++;
+    }
+    
+    // Rates the last, usually partial period, call once after the last battle
+    public void finish() {
+        if (size > 0) {
+            ratePeriod();
+        }
+    }
+    
+    public Map<String, RatingState> getStates() {
+        Map<String, RatingState> result = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : clanIndexes.entrySet()) {
+            result.put(entry.getKey(), states.get(entry.getValue()));
+        }
+        return result;
+    }
+    
+    public int getClanCount() {
+        return states.size();
+    }
+    
+    public int getBattleCount() {
+        return battles;
+    }
+    
+    public int getPeriodCount() {
+        return periods;
+    }
+    
+    private int indexOf(String clanTag) {
+        Integer index = clanIndexes.get(clanTag);
+        if (index == null) {
+            index = states.size();
+            clanIndexes.put(clanTag, index);
+            states.add(engine.newState(initialRating));
+        }
+        return index;
+    }
+    
+    private void add(int winner, int loser) {
+        if (size == winners.length) {
+            winners = Arrays.copyOf(winners, size * 2);
+            losers = Arrays.copyOf(losers, size * 2);
+        }
+        winners[size] = winner;
+        losers[size] = loser;
+        size++;
+    }
+    
+    private void ratePeriod() {
+        int clanCount = states.size();
+        RatingState[] current = states.toArray(new RatingState[0]);
+        
+        // Build per-clan game lists (opponent + score) in one flat array
+        int[] offsets = new int[clanCount + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[winners[i] + 1]++;
+            offsets[losers[i] + 1]++;
+        }
+        for (int i = 0; i < clanCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        
+        int[] fill = Arrays.copyOf(offsets, clanCount);
+        int[] opponents = new int[size * 2];
+        double[] scores = new double[size * 2];
+        for (int i = 0; i < size; i++) {
+            int winner = winners[i];
+            int loser = losers[i];
+            opponents[fill[winner]] = loser;
+            scores[fill[winner]++] = 1;
+            opponents[fill[loser]] = winner;
+            scores[fill[loser]++] = 0;
+        }
+        
+        // Every clan is rated against the start-of-period snapshot, so clans are independent
+        RatingState[] snapshot = new RatingState[clanCount];
+        for (int i = 0; i < clanCount; i++) {
+            snapshot[i] = current[i].copy();
+        }
+        
+        IntStream.range(0, clanCount).parallel().forEach(clan -> {
+            if (offsets[clan] == offsets[clan + 1]) {
+                engine.skipPeriod(current[clan]);
+            } else {
+                engine.ratePeriod(current[clan], snapshot, opponents, scores, offsets[clan], offsets[clan + 1]);
+            }
+        });
+        size = 0;
+        periods++;
+    }
+}
\ No newline at end of file
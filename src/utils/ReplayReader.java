@@ -0,0 +1,324 @@
+package com.minecraft.clanwars.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+// Reads a replay written by ReplayRecorder back into a timeline. A replay is a GZIP
+// stream of length-prefixed records; integers are varints, position and time deltas are
+// zigzag varints, and coordinates are stored in sixteenths of a block. Since version 2 a
+// player record carries its index, version 1 numbered players in record order.
+public class ReplayReader {
+    public static final int MAGIC = 0x43575250; // "CWRP"
+    public static final int VERSION = 2;
+    public static final int POSITION_SCALE = 16;
+    
+    // Record types
+    public static final byte BATTLE = 1;
+    public static final byte PLAYER = 2;
+    public static final byte POSITIONS = 3;
+    public static final byte KILL = 4;
+    public static final byte OBJECTIVE = 5;
+    public static final byte SCORE = 6;
+    public static final byte END = 7;
+    
+    public static Replay read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a replay file: " + file.getName());
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported replay version " + version + " in " + file.getName());
+            }
+            
+            Replay replay = new Replay();
+            List<int[]> last = new ArrayList<>(); // player index -> last x, y, z
+            long time = 0;
+            byte[] record = new byte[256];
+            
+            while (true) {
+                int length;
+                try {
+                    length = readVarint(in);
+                } catch (EOFException e) {
+                    break; // Recording stopped without an END record, e.g. a crash
+                }
+                if (record.length < length) {
+                    record = new byte[Math.max(length, record.length * 2)];
+                }
+                try {
+                    in.readFully(record, 0, length);
+                } catch (EOFException e) {
+                    break; // Torn last record
+                }
+                
+                Cursor c = new Cursor(record, length);
+                byte type = c.readByte();
+                switch (type) {
+                    case BATTLE:
+                        replay.battleId = c.readString();
+                        replay.clan1Tag = c.readString();
+                        replay.clan2Tag = c.readString();
+                        replay.gameMode = c.readString();
+                        replay.startTime = c.readLong();
+                        break;
+                    case PLAYER: {
+                        int index = version >= 2 ? c.readVarint() : replay.players.size();
+                        while (replay.players.size() <= index) {
+                            replay.players.add(null);
+                            replay.playerClans.add(null);
+                        }
+                        replay.players.set(index, new UUID(c.readLong(), c.readLong()));
+                        replay.playerClans.set(index, c.readString());
+                        while (last.size() <= index) {
+                            last.add(new int[3]);
+                        }
+                        break;
+                    }
+                    case POSITIONS: {
+                        time += c.readSignedVarint();
+                        Frame frame = new Frame(time);
+                        int count = c.readVarint();
+                        for (int i = 0; i < count; i++) {
+                            int index = c.readVarint();
+                            while (last.size() <= index) {
+                                last.add(new int[3]); // Its player record was dropped
+                            }
+                            int[] position = last.get(index);
+                            position[0] += c.readSignedVarint();
+                            position[1] += c.readSignedVarint();
+                            position[2] += c.readSignedVarint();
+                            float yaw = c.readByte() * 360f / 256f;
+                            frame.positions.put(index, new double[] {
+                                (double) position[0] / POSITION_SCALE,
+                                (double) position[1] / POSITION_SCALE,
+                                (double) position[2] / POSITION_SCALE,
+                                yaw
+                            });
+                        }
+                        replay.frames.add(frame);
+                        break;
+                    }
+                    case KILL: {
+                        time += c.readSignedVarint();
+                        int killer = c.readVarint();
+                        int victim = c.readVarint();
+                        replay.events.add(new Event(time, type, replay.describe(killer) + " killed " + replay.describe(victim)));
+                        break;
+                    }
+                    case OBJECTIVE:
+                        time += c.readSignedVarint();
+                        replay.events.add(new Event(time, type, c.readString() + ": " + c.readString()));
+                        break;
+                    case SCORE:
+                        time += c.readSignedVarint();
+                        replay.events.add(new Event(time, type, "Score " + c.readVarint() + " - " + c.readVarint()));
+                        break;
+                    case END:
+                        time += c.readSignedVarint();
+                        replay.winnerTag = c.readString();
+                        replay.events.add(new Event(time, type, "Battle ended (" + c.readString() + "), winner " + replay.winnerTag));
+                        break;
+                    default:
+                        // Unknown record from a newer recorder, its length lets us skip it
+                }
+            }
+            return replay;
+        }
+    }
+    
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in replay");
+    }
+    
+    public static class Replay {
+        private String battleId;
+        private String clan1Tag;
+        private String clan2Tag;
+        private String gameMode;
+        private long startTime;
+        private String winnerTag;
+        private final List<UUID> players = new ArrayList<>(); // player index -> UUID, null if never recorded
+        private final List<String> playerClans = new ArrayList<>();
+        private final List<Frame> frames = new ArrayList<>();
+        private final List<Event> events = new ArrayList<>();
+        
+        public String getBattleId() {
+            return battleId;
+        }
+        
+        public String getClan1Tag() {
+            return clan1Tag;
+        }
+        
+        public String getClan2Tag() {
+            return clan2Tag;
+        }
+        
+        public String getGameMode() {
+            return gameMode;
+        }
+        
+        public long getStartTime() {
+            return startTime;
+        }
+        
+        public String getWinnerTag() {
+            return winnerTag;
+        }
+        
+        public List<UUID> getPlayers() {
+            return players;
+        }
+        
+        public String getPlayerClan(int index) {
+            return playerClans.get(index);
+        }
+        
+        public List<Frame> getFrames() {
+            return frames;
+        }
+        
+        public List<Event> getEvents() {
+            return events;
+        }
+        
+        // Last sampled frame at or before the given offset into the battle
+        public Frame getFrameAt(long offsetMillis) {
+            int low = 0;
+            int high = frames.size() - 1;
+            Frame found = null;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (frames.get(mid).time <= offsetMillis) {
+                    found = frames.get(mid);
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+        
+        // Human readable timeline for dispute reviews
+        public List<String> describeTimeline() {
+            List<String> lines = new ArrayList<>();
+            lines.add("Battle " + battleId + ": " + clan1Tag + " vs " + clan2Tag + " (" + gameMode + ")");
+            for (Event event : events) {
+                lines.add(String.format(Locale.ROOT, "[%d:%02d] %s", event.time / 60000, event.time / 1000 % 60, event.description));
+            }
+            return lines;
+        }
+        
+        private String describe(int index) {
+            return index < players.size() && players.get(index) != null ? players.get(index) + " (" + playerClans.get(index) + ")" : "#" + index;
+        }
+    }
+    
+    public static class Frame {
+        private final long time;
+        private final Map<Integer, double[]> positions; // player index -> x, y, z, yaw
+        
+        Frame(long time) {
+            this.time = time;
+            this.positions = new HashMap<>();
+        }
+        
+        // Milliseconds since the battle started
+        public long getTime() {
+            return time;
+        }
+        
+        public Map<Integer, double[]> getPositions() {
+            return positions;
+        }
+    }
+    
+    public static class Event {
+        private final long time;
+        private final byte type;
+        private final String description;
+        
+        Event(long time, byte type, String description) {
+            this.time = time;
+            this.type = type;
+            this.description = description;
+        }
+        
+        public long getTime() {
+            return time;
+        }
+        
+        public byte getType() {
+            return type;
+        }
+        
+        public String getDescription() {
+            return description;
+        }
+    }
+    
+    private static class Cursor {
+        private final byte[] data;
+        private final int limit;
+        private int position;
+        
+        Cursor(byte[] data, int limit) {
+            this.data = data;
+            this.limit = limit;
+        }
+        
+        byte readByte() throws IOException {
+            if (position >= limit) {
+                throw new EOFException("Replay record ended early");
+            }
+            return data[position++];
+        }
+        
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte() & 0xFF;
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in replay");
+        }
+        
+        // Zigzag, small negative deltas stay small
+        int readSignedVarint() throws IOException {
+            int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+        
+        long readLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (readByte() & 0xFF);
+            }
+            return value;
+        }
+        
+        String readString() throws IOException {
+            int length = readVarint();
+            if (length > limit - position) {
+                throw new EOFException("Replay record ended early");
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
\ No newline at end of file
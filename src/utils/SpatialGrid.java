@@ -0,0 +1,54 @@
+package com.minecraft.clanwars.utils;
+
+import java.util.*;
+
+// Uniform grid over a bounded part of the XZ plane for static areas such as capture zones.
+// Each area is stored in every cell its bounding box touches, so finding the areas around a
+// point is one array read no matter how many areas exist. Points outside the bounds have none.
+public class SpatialGrid<T> {
+    private final double cellSize;
+    private final int originX;
+    private final int originZ;
+    private final int width;
+    private final int depth;
+    private final List<List<T>> cells;
+    
+    public SpatialGrid(double cellSize, double minX, double minZ, double maxX, double maxZ) {
+        this.cellSize = cellSize;
+        this.originX = cell(minX);
+        this.originZ = cell(minZ);
+        this.width = cell(maxX) - originX + 1;
+        this.depth = cell(maxZ) - originZ + 1;
+        this.cells = new ArrayList<>(Collections.nCopies(width * depth, Collections.<T>emptyList()));
+    }
+    
+    public void insert(T value, double minX, double minZ, double maxX, double maxZ) {
+        int fromX = Math.max(0, cell(minX) - originX);
+        int toX = Math.min(width - 1, cell(maxX) - originX);
+        int fromZ = Math.max(0, cell(minZ) - originZ);
+        int toZ = Math.min(depth - 1, cell(maxZ) - originZ);
+        for (int x = fromX; x <= toX; x++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                int index = z * width + x;
+                if (cells.get(index).isEmpty()) {
+                    cells.set(index, new ArrayList<>(2));
+                }
+                cells.get(index).add(value);
+            }
+        }
+    }
+    
+    // Areas whose bounding box may contain the point, callers still test the exact shape
+    public List<T> candidates(double x, double z) {
+        int cellX = cell(x) - originX;
+        int cellZ = cell(z) - originZ;
+        if (cellX < 0 || cellZ < 0 || cellX >= width || cellZ >= depth) {
+            return Collections.emptyList();
+        }
+        return cells.get(cellZ * width + cellX);
+    }
+    
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,182 @@
+package com.minecraft.clanwars.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public final class TeamBalancer {
+    
+    private TeamBalancer() {
+    }
+    
+    // Picks which players of the larger team move to the smaller one so both team
+    // totals end up as close as possible. Returns indexes into largerSkills.
+    public static int[] selectMovers(double[] largerSkills, double smallerTotal, int moveCount, long deadlineNanos) {
+        int size = largerSkills.length;
+        if (moveCount <= 0 || moveCount > size) {
+            return new int[0];
+        }
+        
+        double largerTotal = 0;
+        for (double skill : largerSkills) {
+            largerTotal += skill;
+        }
+        // Moving a total of x equalizes the teams when largerTotal - x == smallerTotal + x
+        double target = (largerTotal - smallerTotal) / 2;
+        double mean = target / moveCount;
+        
+        // Greedy start: the players closest to the average skill the movers need
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> Math.abs(largerSkills[i] - mean)));
+        
+        boolean[] moving = new boolean[size];
+        double moved = 0;
+        for (int i = 0; i < moveCount; i++) {
+            moving[order[i]] = true;
+            moved += largerSkills[order[i]];
+        }
+        
+        // Local search: swap a mover with a stayer while that brings the moved total closer
+        improveBySwaps(largerSkills, moving, moved - target, deadlineNanos);
+        
+        int[] movers = new int[moveCount];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (moving[i]) {
+                movers[count++] = i;
+            }
+        }
+        return movers;
+    }
+    
+    // Splits players into two teams of equal size (one apart for odd counts) with the
+    // smallest skill difference. Returns true for players on the first team.
+    public static boolean[] partition(double[] skills, long deadlineNanos) {
+        int size = skills.length;
+        boolean[] firstTeam = new boolean[size];
+        if (size == 0) {
+            return firstTeam;
+        }
+        
+        // Balanced Karmarkar-Karp: pair neighbours in skill order, then repeatedly
+        // set the two largest differences against each other
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> -skills[i]));
+        
+        PriorityQueue<Group> groups = new PriorityQueue<>(Comparator.comparingDouble((Group group) -> group.difference).reversed());
+        for (int i = 0; i + 1 < size; i += 2) {
+            Group group = new Group(skills[order[i]] - skills[order[i + 1]]);
+            group.first.add(order[i]);
+            group.second.add(order[i + 1]);
+            groups.add(group);
+        }
+        if (size % 2 == 1) {
+            Group group = new Group(skills[order[size - 1]]);
+            group.first.add(order[size - 1]);
+            groups.add(group);
+        }
+        
+        while (groups.size() > 1) {
+            Group larger = groups.poll();
+            Group smaller = groups.poll();
+            // Put the smaller group's heavy side with the larger group's light side
+            larger.first.addAll(smaller.second);
+            larger.second.addAll(smaller.first);
+            larger.difference -= smaller.difference;
+            groups.add(larger);
+        }
+        
+        Group result = groups.poll();
+        double difference = 0;
+        for (int index : result.first) {
+            firstTeam[index] = true;
+            difference += skills[index];
+        }
+        for (int index : result.second) {
+            difference -= skills[index];
+        }
+        
+        // Karmarkar-Karp leaves small gaps, close them with pairwise swaps. Moving a
+        // first-team player out drops the difference by twice their skill minus the swap partner's.
+        improveBySwaps(skills, firstTeam, difference / 2, deadlineNanos);
+        return firstTeam;
+    }
+    
+    // Swaps a selected and an unselected player whenever it reduces |excess|, where excess
+    // is how far the selected total is above its target. Uses binary search over the
+    // unselected skills so each pass is O(n log n).
+    private static void improveBySwaps(double[] skills, boolean[] selected, double excess, long deadlineNanos) {
+        int size = skills.length;
+        
+        while (Math.abs(excess) > 1e-9 && System.nanoTime() < deadlineNanos) {
+            List<Integer> unselected = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (!selected[i]) {
+                    unselected.add(i);
+                }
+            }
+            if (unselected.isEmpty() || unselected.size() == size) {
+                return;
+            }
+            unselected.sort(Comparator.comparingDouble(i -> skills[i]));
+            
+            double[] sortedSkills = new double[unselected.size()];
+            for (int i = 0; i < sortedSkills.length; i++) {
+                sortedSkills[i] = skills[unselected.get(i)];
+            }
+            
+            int bestOut = -1;
+            int bestIn = -1;
+            double bestExcess = Math.abs(excess);
+            
+            for (int out = 0; out < size; out++) {
+                if (!selected[out]) {
+                    continue;
+                }
+                // Swapping out for in changes excess by skills[in] - skills[out], ideal in == out - excess
+                double wanted = skills[out] - excess;
+                int position = Arrays.binarySearch(sortedSkills, wanted);
+                if (position < 0) {
+                    position = -position - 1;
+                }
+                
+                for (int candidate = position - 1; candidate <= position; candidate++) {
+                    if (candidate < 0 || candidate >= sortedSkills.length) {
+                        continue;
+                    }
+                    double newExcess = Math.abs(excess + sortedSkills[candidate] - skills[out]);
+                    if (newExcess < bestExcess - 1e-9) {
+                        bestExcess = newExcess;
+                        bestOut = out;
+                        bestIn = unselected.get(candidate);
+                    }
+                }
+            }
+            
+            if (bestOut < 0) {
+                return;
+            }
+            selected[bestOut] = false;
+            selected[bestIn] = true;
+            excess += skills[bestIn] - skills[bestOut];
+        }
+    }
+    
+    private static class Group {
+        private final List<Integer> first = new ArrayList<>();
+        private final List<Integer> second = new ArrayList<>();
+        private double difference;
+        
+        Group(double difference) {
+            this.difference = difference;
+        }
+    }
+}
\ No newline at end of file